@@ -0,0 +1,46 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks matching given pattern and writes the results as JSON, so they can be compared between
+ * releases.
+ * <p/>
+ * Usage: {@code BenchmarkRunner [<includes regexp> [<results file>]]}
+ *
+ * @since 3.0
+ */
+public class BenchmarkRunner
+{
+
+    public static void main( final String[] args )
+        throws Exception
+    {
+        final String includes = args.length > 0 ? args[0] : ".*Benchmark.*";
+        final String results = args.length > 1 ? args[1] : "benchmark-results.json";
+
+        final Options options = new OptionsBuilder()
+            .include( includes )
+            .resultFormat( ResultFormatType.JSON )
+            .result( results )
+            .build();
+
+        new Runner( options ).run();
+    }
+
+}
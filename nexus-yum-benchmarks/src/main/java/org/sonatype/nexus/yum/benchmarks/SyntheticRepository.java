@@ -0,0 +1,101 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+/**
+ * Synthetic Maven-style layout of rpms, as deployed to a hosted repository:
+ * {@code org/example/group<g>/artifact-<a>/<version>/artifact-<a>-<version>.noarch.rpm}, with 10 versions per artifact
+ * and 100 artifacts per group.
+ *
+ * @since 3.0
+ */
+public class SyntheticRepository
+{
+
+    public static final int VERSIONS_PER_ARTIFACT = 10;
+
+    public static final int ARTIFACTS_PER_GROUP = 100;
+
+    public static List<String> paths( final int numberOfRpms )
+    {
+        final List<String> paths = Lists.newArrayListWithCapacity( numberOfRpms );
+        for ( int i = 0; i < numberOfRpms; i++ )
+        {
+            final int artifact = i / VERSIONS_PER_ARTIFACT;
+            final String artifactId = "artifact-" + artifact;
+            final String version = version( i % VERSIONS_PER_ARTIFACT );
+            paths.add(
+                "org/example/group" + ( artifact / ARTIFACTS_PER_GROUP ) + "/" + artifactId + "/" + version + "/"
+                    + artifactId + "-" + version + ".noarch.rpm"
+            );
+        }
+        return paths;
+    }
+
+    public static String version( final int index )
+    {
+        return "1." + index;
+    }
+
+    /**
+     * Creates empty rpm files of the layout, enough for anything not reading the rpm headers.
+     */
+    public static File create( final File baseDir, final int numberOfRpms )
+        throws IOException
+    {
+        for ( final String path : paths( numberOfRpms ) )
+        {
+            final File rpm = new File( baseDir, path );
+            Files.createParentDirs( rpm );
+            Files.touch( rpm );
+        }
+        return baseDir;
+    }
+
+    /**
+     * @return repomd.xml content with checksum prefixed locations, as generated by createrepo
+     */
+    public static String repomd( final String baseUrl )
+    {
+        final StringBuilder repomd = new StringBuilder();
+        repomd.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" );
+        repomd.append( "<repomd xmlns=\"http://linux.duke.edu/metadata/repo\">\n" );
+        repomd.append( "  <revision>1330537351</revision>\n" );
+        final String[][] types = {
+            { "other_db", "other.sqlite.bz2" }, { "other", "other.xml.gz" },
+            { "filelists_db", "filelists.sqlite.bz2" }, { "filelists", "filelists.xml.gz" },
+            { "primary_db", "primary.sqlite.bz2" }, { "primary", "primary.xml.gz" }
+        };
+        for ( int i = 0; i < types.length; i++ )
+        {
+            final String checksum = String.format( "%040x", 0xcafe0000L + i );
+            repomd.append( "  <data type=\"" ).append( types[i][0] ).append( "\">\n" );
+            repomd.append( "    <location xml:base=\"" ).append( baseUrl ).append( "\" href=\"repodata/" )
+                .append( checksum ).append( "-" ).append( types[i][1] ).append( "\"/>\n" );
+            repomd.append( "    <checksum type=\"sha1\">" ).append( checksum ).append( "</checksum>\n" );
+            repomd.append( "    <timestamp>1330537351</timestamp>\n" );
+            repomd.append( "    <size>1461</size>\n" );
+            repomd.append( "  </data>\n" );
+        }
+        repomd.append( "</repomd>\n" );
+        return repomd.toString();
+    }
+
+}
@@ -0,0 +1,95 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.nexus.yum.benchmarks.SyntheticRepository;
+import com.google.common.io.Files;
+
+/**
+ * Benchmarks parsing repomd.xml (done for every steady link and group merge) and rebasing it for versioned views.
+ *
+ * @since 3.0
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class RepoMDBenchmark
+{
+
+    private static final String RPM_URL = "http://localhost:8081/nexus/content/repositories/releases/";
+
+    private static final String VERSION_URL = "http://localhost:8081/nexus/service/local/yum/repos/releases/1.0/";
+
+    private byte[] repomd;
+
+    private File workDir;
+
+    private File repomdFile;
+
+    private boolean rebased;
+
+    @Setup( Level.Trial )
+    public void createRepoMD()
+        throws IOException
+    {
+        repomd = SyntheticRepository.repomd( RPM_URL ).getBytes( "UTF-8" );
+        workDir = Files.createTempDir();
+        repomdFile = new File( workDir, "repomd.xml" );
+        Files.write( repomd, repomdFile );
+    }
+
+    @TearDown( Level.Trial )
+    public void deleteRepoMD()
+        throws IOException
+    {
+        FileUtils.deleteDirectory( workDir );
+    }
+
+    @Benchmark
+    public String parse()
+    {
+        return new RepoMD( new ByteArrayInputStream( repomd ) ).getPrimaryLocation();
+    }
+
+    @Benchmark
+    public boolean rebase()
+        throws IOException
+    {
+        rebased = !rebased;
+        return rebased
+            ? RepoMD.rebase( repomdFile, RPM_URL, VERSION_URL )
+            : RepoMD.rebase( repomdFile, VERSION_URL, RPM_URL );
+    }
+
+}
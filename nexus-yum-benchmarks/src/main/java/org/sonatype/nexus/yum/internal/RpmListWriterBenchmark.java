@@ -0,0 +1,126 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.nexus.yum.benchmarks.SyntheticRepository;
+import org.sonatype.sisu.resource.scanner.scanners.SerialScanner;
+import com.google.common.io.Files;
+
+/**
+ * Benchmarks {@link RpmListWriter} on a full scan, on an incremental update and on extracting a version.
+ *
+ * @since 3.0
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class RpmListWriterBenchmark
+{
+
+    private static final String REPOSITORY_ID = "releases";
+
+    @Param( { "1000", "10000", "100000" } )
+    public int rpms;
+
+    private File workDir;
+
+    private File rpmDir;
+
+    private ListFileFactory fileFactory;
+
+    private RpmScanner scanner;
+
+    private String addedRpm;
+
+    @Setup( Level.Trial )
+    public void createRepository()
+        throws IOException
+    {
+        workDir = Files.createTempDir();
+        rpmDir = SyntheticRepository.create( new File( workDir, "rpms" ), rpms );
+        fileFactory = new ListFileFactory()
+        {
+            @Override
+            public File getRpmListFile( final String id )
+            {
+                return new File( workDir, id + ".txt" );
+            }
+
+            @Override
+            public File getRpmListFile( final String id, final String version )
+            {
+                return new File( workDir, id + "-" + version + ".txt" );
+            }
+        };
+        scanner = new RpmScanner( new SerialScanner() );
+        addedRpm = SyntheticRepository.paths( rpms ).get( rpms / 2 );
+
+        writer( null, null ).writeList();
+    }
+
+    @TearDown( Level.Trial )
+    public void deleteRepository()
+        throws IOException
+    {
+        FileUtils.deleteDirectory( workDir );
+    }
+
+    @Benchmark
+    public File scanAndWriteList()
+        throws IOException
+    {
+        fileFactory.getRpmListFile( REPOSITORY_ID ).delete();
+        return writer( null, null ).writeList();
+    }
+
+    @Benchmark
+    public File updateListWithAddedRpm()
+        throws IOException
+    {
+        return writer( addedRpm, null ).writeList();
+    }
+
+    @Benchmark
+    public File extractVersionList()
+        throws IOException
+    {
+        return writer( null, SyntheticRepository.version( 0 ) ).writeList();
+    }
+
+    private RpmListWriter writer( final String addedFiles, final String version )
+    {
+        return new RpmListWriter( REPOSITORY_ID, rpmDir, addedFiles, version, true, fileFactory, scanner );
+    }
+
+}
@@ -0,0 +1,96 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.nexus.scheduling.NexusScheduler;
+import org.sonatype.nexus.yum.benchmarks.SyntheticRepository;
+import org.sonatype.nexus.yum.internal.metrics.YumMetrics;
+
+/**
+ * Benchmarks {@link SteadyLinksRequestProcessor#matchRequestPath}, which runs for every read of a repodata file.
+ *
+ * @since 3.0
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class SteadyLinksBenchmark
+{
+
+    private SteadyLinksRequestProcessor processor;
+
+    private byte[] repomd;
+
+    @Setup( Level.Trial )
+    public void createProcessor()
+        throws IOException
+    {
+        processor = new SteadyLinksRequestProcessor( new YumMetrics( schedulerStub() ) );
+        repomd = SyntheticRepository.repomd( "http://localhost:8081/nexus/content/repositories/releases/" )
+            .getBytes( "UTF-8" );
+    }
+
+    /**
+     * Metrics only get the scheduler when queried for pending tasks, which the benchmarked path never does.
+     */
+    private static NexusScheduler schedulerStub()
+    {
+        return (NexusScheduler) Proxy.newProxyInstance(
+            SteadyLinksBenchmark.class.getClassLoader(), new Class<?>[]{ NexusScheduler.class },
+            new InvocationHandler()
+            {
+                @Override
+                public Object invoke( final Object proxy, final Method method, final Object[] args )
+                {
+                    throw new UnsupportedOperationException( method.getName() );
+                }
+            }
+        );
+    }
+
+    @Benchmark
+    public String redirectPlainName()
+    {
+        return processor.matchRequestPath( "/repodata/primary.xml.gz", new ByteArrayInputStream( repomd ) );
+    }
+
+    @Benchmark
+    public String passChecksumName()
+    {
+        return processor.matchRequestPath(
+            "/repodata/00000000000000000000000000000000cafe0005-primary.xml.gz", new ByteArrayInputStream( repomd )
+        );
+    }
+
+}
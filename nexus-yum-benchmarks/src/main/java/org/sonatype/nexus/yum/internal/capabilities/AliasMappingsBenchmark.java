@@ -0,0 +1,76 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.capabilities;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.google.common.collect.Maps;
+
+/**
+ * Benchmarks parsing and formatting of {@link AliasMappings}, done on every configuration change and alias update.
+ *
+ * @since 3.0
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class AliasMappingsBenchmark
+{
+
+    @Param( { "10", "100", "1000" } )
+    public int aliases;
+
+    private String mappings;
+
+    private Map<String, String> aliasMap;
+
+    @Setup( Level.Trial )
+    public void createMappings()
+    {
+        aliasMap = Maps.newHashMap();
+        for ( int i = 0; i < aliases; i++ )
+        {
+            aliasMap.put( "alias-" + i, "1." + i );
+        }
+        mappings = new AliasMappings( aliasMap ).toString();
+    }
+
+    @Benchmark
+    public Map<String, String> parse()
+    {
+        return new AliasMappings( mappings ).aliases();
+    }
+
+    @Benchmark
+    public String format()
+    {
+        return new AliasMappings( aliasMap ).toString();
+    }
+
+}
@@ -0,0 +1,81 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.restlet.data.Method;
+import org.restlet.data.Request;
+import org.restlet.resource.ResourceException;
+import org.sonatype.nexus.yum.benchmarks.SyntheticRepository;
+
+/**
+ * Benchmarks {@link UrlPathParser#parse} for requests of versioned repositories, cycling through the rpm paths of a
+ * synthetic repository.
+ *
+ * @since 3.0
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class UrlPathParserBenchmark
+{
+
+    private static final String VERSIONED_URL = "http://localhost:8081/nexus/service/local/yum/repos/releases/1.0/";
+
+    @Param( { "1000", "10000", "100000" } )
+    public int rpms;
+
+    private UrlPathParser parser;
+
+    private Request[] requests;
+
+    private int next;
+
+    @Setup( Level.Trial )
+    public void createRequests()
+    {
+        parser = new UrlPathParser( "repos", 2 );
+        final List<String> paths = SyntheticRepository.paths( rpms );
+        requests = new Request[paths.size()];
+        for ( int i = 0; i < requests.length; i++ )
+        {
+            requests[i] = new Request( Method.GET, VERSIONED_URL + paths.get( i ) );
+        }
+    }
+
+    @Benchmark
+    public UrlPathInterpretation parse()
+        throws ResourceException
+    {
+        next = ( next + 1 ) % requests.length;
+        return parser.parse( requests[next] );
+    }
+
+}
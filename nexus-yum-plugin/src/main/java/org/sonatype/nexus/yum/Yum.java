@@ -25,6 +25,18 @@ public interface Yum
 
     static final long DEFAULT_DELETE_PROCESSING_DELAY = 10;
 
+    static final int DEFAULT_RETAINED_GENERATIONS = 1;
+
+    static final long DEFAULT_RETENTION_MAX_AGE = 10;
+
+    static final long DEFAULT_RETENTION_MAX_SIZE = 0;
+
+    static final int DEFAULT_MAX_PARALLEL_THREADS = 0;
+
+    static final int DEFAULT_SCHEDULING_WEIGHT = 1;
+
+    static final long DEFAULT_STORAGE_SCAN_INTERVAL = 0;
+
     Yum setProcessDeletes( boolean processDeletes );
 
     Yum setDeleteProcessingDelay( final long numberOfSeconds );
@@ -33,6 +45,69 @@ public interface Yum
 
     long deleteProcessingDelay();
 
+    Yum setGenerateDatabase( boolean generateDatabase );
+
+    boolean shouldGenerateDatabase();
+
+    /**
+     * @param numberOfGenerations number of superseded metadata generations to keep available
+     * @since 3.0
+     */
+    Yum setRetainedGenerations( int numberOfGenerations );
+
+    /**
+     * @param numberOfMinutes time after which a superseded metadata generation is no longer kept available
+     * @since 3.0
+     */
+    Yum setRetentionMaxAge( long numberOfMinutes );
+
+    /**
+     * @param numberOfMegabytes maximum size of kept superseded metadata generations (0 = unlimited)
+     * @since 3.0
+     */
+    Yum setRetentionMaxSize( long numberOfMegabytes );
+
+    int retainedGenerations();
+
+    long retentionMaxAge();
+
+    long retentionMaxSize();
+
+    /**
+     * @param numberOfThreads maximum number of metadata generations of this repository running in parallel
+     *                        (0 = only limited by the global maximum)
+     * @since 3.0
+     */
+    Yum setMaxParallelThreads( int numberOfThreads );
+
+    /**
+     * @param weight share of the generation threads this repository gets relative to other repositories, when
+     *               threads are contended
+     * @since 3.0
+     */
+    Yum setSchedulingWeight( int weight );
+
+    int maxParallelThreads();
+
+    int schedulingWeight();
+
+    /**
+     * @param extractHeadersOnStore true to read RPM headers and render their metadata right after they are stored
+     * @since 3.0
+     */
+    Yum setExtractHeadersOnStore( boolean extractHeadersOnStore );
+
+    boolean shouldExtractHeadersOnStore();
+
+    /**
+     * @param numberOfSeconds interval of scanning the storage for RPMs added or deleted directly on disk, bypassing
+     *                        Nexus (0 = never)
+     * @since 3.0
+     */
+    Yum setStorageScanInterval( long numberOfSeconds );
+
+    long storageScanInterval();
+
     File getBaseDir();
 
     Set<String> getVersions();
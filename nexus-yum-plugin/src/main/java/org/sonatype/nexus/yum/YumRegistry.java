@@ -21,6 +21,16 @@ public interface YumRegistry
 
     static final int DEFAULT_MAX_NUMBER_PARALLEL_THREADS = 10;
 
+    /**
+     * @since 3.0
+     */
+    static final int DEFAULT_INTERACTIVE_RESERVED_THREADS = 1;
+
+    /**
+     * @since 3.0
+     */
+    static final int DEFAULT_SORT_MEMORY = 32;
+
     Yum register( MavenRepository repository );
 
     Yum unregister( String repositoryId );
@@ -33,6 +43,31 @@ public interface YumRegistry
 
     int maxNumberOfParallelThreads();
 
+    /**
+     * Reserves a number of the parallel threads for generating versioned repositories clients are waiting for, so
+     * they do not queue up behind background rebuilds.
+     *
+     * @since 3.0
+     */
+    YumRegistry setInteractiveReservedThreads( int interactiveReservedThreads );
+
+    /**
+     * @since 3.0
+     */
+    int interactiveReservedThreads();
+
+    /**
+     * Heap (in megabytes) a metadata generation may use for sorting the list of RPMs, before spilling to disk.
+     *
+     * @since 3.0
+     */
+    YumRegistry setSortMemory( int sortMemory );
+
+    /**
+     * @since 3.0
+     */
+    int sortMemory();
+
     File getTemporaryDirectory();
 
 }
@@ -14,13 +14,23 @@ package org.sonatype.nexus.yum.internal;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.events.NexusStartedEvent;
 import org.sonatype.nexus.proxy.events.RepositoryGroupMembersChangedEvent;
 import org.sonatype.nexus.proxy.events.RepositoryItemEvent;
 import org.sonatype.nexus.proxy.events.RepositoryItemEventDelete;
@@ -28,12 +38,15 @@ import org.sonatype.nexus.proxy.events.RepositoryItemEventStore;
 import org.sonatype.nexus.proxy.events.RepositoryRegistryEventAdd;
 import org.sonatype.nexus.proxy.events.RepositoryRegistryEventRemove;
 import org.sonatype.nexus.proxy.item.StorageCollectionItem;
-import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
 import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
 import org.sonatype.nexus.scheduling.NexusScheduler;
 import org.sonatype.nexus.yum.Yum;
 import org.sonatype.nexus.yum.YumRegistry;
 import org.sonatype.nexus.yum.YumRepository;
+import org.sonatype.nexus.yum.internal.rpm.HeaderExtractor;
+import org.sonatype.nexus.yum.internal.rpm.HeaderIndex;
+import org.sonatype.nexus.yum.internal.rpm.RpmChecksums;
 import org.sonatype.nexus.yum.internal.task.MergeMetadataTask;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
 import com.google.common.eventbus.AllowConcurrentEvents;
@@ -45,6 +58,8 @@ import com.google.common.eventbus.Subscribe;
 public class EventsRouter
 {
 
+    private static final Logger LOG = LoggerFactory.getLogger( EventsRouter.class );
+
     private final Provider<RepositoryRegistry> repositoryRegistry;
 
     private final Provider<YumRegistry> yumRegistryProvider;
@@ -53,16 +68,55 @@ public class EventsRouter
 
     private final Provider<SteadyLinksRequestProcessor> steadyLinksProcessor;
 
+    private final Provider<RpmChecksums> checksums;
+
+    private final Provider<YumExecutors> executors;
+
+    private final Provider<HeaderExtractor> headerExtractor;
+
+    private final Provider<HeaderIndex> headerIndex;
+
+    private final Provider<VersionIndex> versionIndex;
+
     @Inject
     public EventsRouter( final Provider<RepositoryRegistry> repositoryRegistry,
                          final Provider<YumRegistry> yumRegistryProvider,
                          final Provider<NexusScheduler> nexusScheduler,
-                         final Provider<SteadyLinksRequestProcessor> steadyLinksProcessor )
+                         final Provider<SteadyLinksRequestProcessor> steadyLinksProcessor,
+                         final Provider<RpmChecksums> checksums,
+                         final Provider<YumExecutors> executors,
+                         final Provider<HeaderExtractor> headerExtractor,
+                         final Provider<HeaderIndex> headerIndex,
+                         final Provider<VersionIndex> versionIndex )
     {
         this.steadyLinksProcessor = checkNotNull( steadyLinksProcessor );
         this.repositoryRegistry = checkNotNull( repositoryRegistry );
         this.yumRegistryProvider = checkNotNull( yumRegistryProvider );
         this.nexusScheduler = checkNotNull( nexusScheduler );
+        this.checksums = checkNotNull( checksums );
+        this.executors = checkNotNull( executors );
+        this.headerExtractor = checkNotNull( headerExtractor );
+        this.headerIndex = checkNotNull( headerIndex );
+        this.versionIndex = checkNotNull( versionIndex );
+    }
+
+    /**
+     * Deletes persisted indexes of repositories removed while Nexus was down, as no removal event will tell.
+     */
+    @Subscribe
+    public void on( final NexusStartedEvent event )
+    {
+        final Set<String> repositoryIds = new HashSet<String>( headerIndex.get().persistedRepositoryIds() );
+        repositoryIds.addAll( versionIndex.get().persistedRepositoryIds() );
+        for ( final String repositoryId : repositoryIds )
+        {
+            if ( !repositoryRegistry.get().repositoryIdExists( repositoryId ) )
+            {
+                LOG.debug( "Deleting persisted indexes of removed repository {}", repositoryId );
+                headerIndex.get().removeRepository( repositoryId );
+                versionIndex.get().removeRepository( repositoryId );
+            }
+        }
     }
 
     @AllowConcurrentEvents
@@ -81,6 +135,8 @@ public class EventsRouter
         event.getRepository().getRequestProcessors().remove(
             SteadyLinksRequestProcessor.class.getName()
         );
+        headerIndex.get().removeRepository( event.getRepository().getId() );
+        versionIndex.get().removeRepository( event.getRepository().getId() );
     }
 
     @AllowConcurrentEvents
@@ -105,12 +161,101 @@ public class EventsRouter
             final Yum yum = yumRegistryProvider.get().get( eventStore.getRepository().getId() );
             if ( yum != null )
             {
-                yum.markDirty( getItemVersion( eventStore.getItem() ) );
-                yum.addToYumRepository( eventStore.getItem().getPath() );
+                final String path = eventStore.getItem().getPath();
+                yum.markDirty( VersionIndex.versionOf( path ) );
+                versionIndex.get().add( eventStore.getRepository().getId(), path );
+                if ( eventStore.getItem() instanceof StorageFileItem && yum.shouldExtractHeadersOnStore() )
+                {
+                    extractHeaderAndAdd( yum, (StorageFileItem) eventStore.getItem() );
+                }
+                else
+                {
+                    yum.addToYumRepository( path );
+                    if ( eventStore.getItem() instanceof StorageFileItem )
+                    {
+                        storeSha256( (StorageFileItem) eventStore.getItem() );
+                    }
+                }
             }
         }
     }
 
+    /**
+     * Calculates SHA-256 while the just stored RPM is likely still in page cache, so metadata generation does not
+     * need to hash it again.
+     */
+    private void storeSha256( final StorageFileItem item )
+    {
+        executors.get().io().execute( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    checksums.get().storeSha256( item );
+                }
+                catch ( IOException e )
+                {
+                    LOG.warn( "Could not store SHA-256 of {}", item.getPath(), e );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Reads the header of just stored RPM (which also stores its SHA-256) and puts the rendered metadata into
+     * {@link HeaderIndex}, then adds the RPM to the yum repository, so metadata generation only has to assemble it
+     * instead of reading the header again. The RPM is added as well if extraction fails or is discarded because the
+     * pool is saturated.
+     */
+    private void extractHeaderAndAdd( final Yum yum, final StorageFileItem item )
+    {
+        executors.get().io().execute( new FutureTask<Void>( new Callable<Void>()
+        {
+            @Override
+            public Void call()
+                throws IOException
+            {
+                headerExtractor.get().extract(
+                    yum.getRepository().getId(), item, new File( yum.getBaseDir(), item.getPath() )
+                );
+                return null;
+            }
+        } )
+        {
+            @Override
+            protected void done()
+            {
+                try
+                {
+                    if ( !isCancelled() )
+                    {
+                        get();
+                    }
+                }
+                catch ( ExecutionException e )
+                {
+                    LOG.warn( "Could not extract header of {}", item.getPath(), e.getCause() );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+                finally
+                {
+                    yum.addToYumRepository( item.getPath() );
+                }
+            }
+
+            @Override
+            public String toString()
+            {
+                return "header extraction of " + item.getPath();
+            }
+        } );
+    }
+
     @AllowConcurrentEvents
     @Subscribe
     public void on( RepositoryItemEventDelete itemEvent )
@@ -121,10 +266,16 @@ public class EventsRouter
             if ( isRpmItemEvent( itemEvent ) )
             {
                 yum.deleteRpm( itemEvent.getItem().getPath() );
+                headerIndex.get().remove( itemEvent.getRepository().getId(), itemEvent.getItem().getPath() );
+                versionIndex.get().remove( itemEvent.getRepository().getId(), itemEvent.getItem().getPath() );
             }
             else if ( isCollectionItem( itemEvent ) )
             {
                 yum.deleteDirectory( itemEvent.getItem().getPath() );
+                headerIndex.get().remove( itemEvent.getRepository().getId(), itemEvent.getItem().getPath() );
+                versionIndex.get().removeDirectory(
+                    itemEvent.getRepository().getId(), itemEvent.getItem().getPath()
+                );
             }
         }
     }
@@ -140,12 +291,6 @@ public class EventsRouter
             && itemEvent.getItem().getPath().endsWith( ".rpm" );
     }
 
-    private String getItemVersion( StorageItem item )
-    {
-        String[] parts = item.getParentPath().split( "/" );
-        return parts[parts.length - 1];
-    }
-
     private boolean anyOfRepositoriesHasYumRepository( final List<String> repositoryIds )
     {
         if ( repositoryIds != null )
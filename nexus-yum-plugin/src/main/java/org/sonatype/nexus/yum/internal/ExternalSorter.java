@@ -0,0 +1,337 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sorts lines (in natural {@link String} order) within a heap budget. Lines are collected in memory until the budget
+ * is used up, then sorted and spilled to a temporary file. The sorted lines are read back by merging the spilled
+ * files, so the number of lines is only limited by disk space.
+ * <p/>
+ * Lines must not contain line breaks. Not thread safe.
+ *
+ * @since 3.0
+ */
+public class ExternalSorter
+    implements Closeable
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger( ExternalSorter.class );
+
+    /**
+     * Default heap budget, in megabytes.
+     */
+    public static final int DEFAULT_MEMORY = 32;
+
+    private static final long MEGABYTE = 1024 * 1024;
+
+    /**
+     * Estimated heap used by a line in addition to its characters (String, char[] and list slot).
+     */
+    private static final int LINE_OVERHEAD = 64;
+
+    /**
+     * Maximum number of files merged at once, to limit number of open files.
+     */
+    private static final int MAX_MERGED_FILES = 64;
+
+    private static final String UTF_8 = "UTF-8";
+
+    private final File tempDir;
+
+    private final long memory;
+
+    private final List<String> lines = new ArrayList<String>();
+
+    private final List<File> spills = new ArrayList<File>();
+
+    private long usedMemory;
+
+    private Merger merger;
+
+    /**
+     * @param tempDir directory to spill into
+     * @param memory  heap budget in bytes
+     */
+    public ExternalSorter( final File tempDir, final long memory )
+    {
+        this.tempDir = checkNotNull( tempDir );
+        checkArgument( memory > 0, "Memory must be positive" );
+        this.memory = memory;
+    }
+
+    /**
+     * @param megabytes heap budget in megabytes, {@link #DEFAULT_MEMORY} if not positive
+     * @return heap budget in bytes
+     */
+    public static long megabytes( final int megabytes )
+    {
+        return MEGABYTE * ( megabytes > 0 ? megabytes : DEFAULT_MEMORY );
+    }
+
+    public void add( final String line )
+        throws IOException
+    {
+        checkState( merger == null, "Lines already sorted" );
+        lines.add( line );
+        usedMemory += LINE_OVERHEAD + 2L * line.length();
+        if ( usedMemory >= memory )
+        {
+            spills.add( spill( lines ) );
+            lines.clear();
+            usedMemory = 0;
+        }
+    }
+
+    /**
+     * @return all added lines, sorted. Must be called only once.
+     */
+    public Iterator<String> sorted()
+        throws IOException
+    {
+        checkState( merger == null, "Lines already sorted" );
+        if ( spills.isEmpty() )
+        {
+            Collections.sort( lines );
+            merger = new Merger( Collections.<File>emptyList() );
+            return lines.iterator();
+        }
+        if ( !lines.isEmpty() )
+        {
+            spills.add( spill( lines ) );
+            lines.clear();
+        }
+        while ( spills.size() > MAX_MERGED_FILES )
+        {
+            final List<File> merged = new ArrayList<File>( spills.subList( 0, MAX_MERGED_FILES ) );
+            spills.removeAll( merged );
+            spills.add( merge( merged ) );
+        }
+        LOG.debug( "Merging {} sorted files from {}", spills.size(), tempDir );
+        merger = new Merger( spills );
+        return merger;
+    }
+
+    /**
+     * Deletes the spilled files.
+     */
+    @Override
+    public void close()
+    {
+        if ( merger != null )
+        {
+            merger.close();
+        }
+        for ( final File spill : spills )
+        {
+            spill.delete();
+        }
+        lines.clear();
+    }
+
+    private File spill( final List<String> sorted )
+        throws IOException
+    {
+        Collections.sort( sorted );
+        final File file = createSpillFile();
+        Writer out = null;
+        try
+        {
+            out = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), UTF_8 ), 64 * 1024 );
+            for ( final String line : sorted )
+            {
+                out.write( line );
+                out.write( '\n' );
+            }
+            out.close();
+        }
+        finally
+        {
+            IOUtils.closeQuietly( out );
+        }
+        LOG.debug( "Spilled {} sorted lines to {}", sorted.size(), file );
+        return file;
+    }
+
+    private File merge( final List<File> files )
+        throws IOException
+    {
+        final File file = createSpillFile();
+        final Merger merged = new Merger( files );
+        Writer out = null;
+        try
+        {
+            out = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), UTF_8 ), 64 * 1024 );
+            while ( merged.hasNext() )
+            {
+                out.write( merged.next() );
+                out.write( '\n' );
+            }
+            out.close();
+        }
+        finally
+        {
+            IOUtils.closeQuietly( out );
+            merged.close();
+        }
+        for ( final File spill : files )
+        {
+            spill.delete();
+        }
+        return file;
+    }
+
+    private File createSpillFile()
+        throws IOException
+    {
+        tempDir.mkdirs();
+        return File.createTempFile( "sort-", ".txt", tempDir );
+    }
+
+    /**
+     * Merges sorted files, reading the next line of a file only when its current one was returned.
+     */
+    private static class Merger
+        implements Iterator<String>, Closeable
+    {
+
+        private final PriorityQueue<Source> sources = new PriorityQueue<Source>();
+
+        private final List<Source> opened = new ArrayList<Source>();
+
+        Merger( final List<File> files )
+            throws IOException
+        {
+            try
+            {
+                for ( final File file : files )
+                {
+                    final Source source = new Source( file );
+                    opened.add( source );
+                    if ( source.advance() )
+                    {
+                        sources.add( source );
+                    }
+                }
+            }
+            catch ( IOException e )
+            {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return !sources.isEmpty();
+        }
+
+        @Override
+        public String next()
+        {
+            final Source source = sources.poll();
+            if ( source == null )
+            {
+                throw new NoSuchElementException();
+            }
+            final String line = source.line;
+            try
+            {
+                if ( source.advance() )
+                {
+                    sources.add( source );
+                }
+            }
+            catch ( IOException e )
+            {
+                throw new IllegalStateException( "Could not read " + source.file, e );
+            }
+            return line;
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close()
+        {
+            for ( final Source source : opened )
+            {
+                IOUtils.closeQuietly( source.reader );
+            }
+            sources.clear();
+        }
+
+    }
+
+    private static class Source
+        implements Comparable<Source>
+    {
+
+        private final File file;
+
+        private final BufferedReader reader;
+
+        private String line;
+
+        Source( final File file )
+            throws IOException
+        {
+            this.file = file;
+            this.reader = new BufferedReader( new InputStreamReader( new FileInputStream( file ), UTF_8 ), 64 * 1024 );
+        }
+
+        boolean advance()
+            throws IOException
+        {
+            line = reader.readLine();
+            return line != null;
+        }
+
+        @Override
+        public int compareTo( final Source other )
+        {
+            return line.compareTo( other.line );
+        }
+
+    }
+
+}
@@ -16,13 +16,20 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.Collection;
 import java.util.Map;
 
+import org.apache.commons.io.IOUtils;
 import org.codehaus.plexus.util.xml.XmlStreamReader;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
 import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+import org.codehaus.plexus.util.xml.Xpp3DomWriter;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Maps;
 import com.google.common.io.Closeables;
@@ -30,6 +37,8 @@ import com.google.common.io.Closeables;
 public class RepoMD
 {
 
+    private static final String XML_BASE = "xml:base";
+
     private final Map<String, String> locations;
 
     public RepoMD( final InputStream in )
@@ -93,4 +102,136 @@ public class RepoMD
         return getLocation( "primary" );
     }
 
+    /**
+     * Rewrites the {@code xml:base} attribute of every data location in given repomd.xml that starts with
+     * {@code fromUrl} so it starts with {@code toUrl} instead. Checksums, timestamps and sizes are left as they are, as
+     * the referenced files do not change. The new content is written to a sibling file that replaces the original one.
+     *
+     * @param file    repomd.xml to rewrite
+     * @param fromUrl base url to be replaced
+     * @param toUrl   base url to replace with
+     * @return true if the file was rewritten, false if there was nothing to rewrite
+     * @since 3.0
+     */
+    public static boolean rebase( final File file, final String fromUrl, final String toUrl )
+        throws IOException
+    {
+        if ( fromUrl == null || toUrl == null || fromUrl.equals( toUrl ) || !file.exists() )
+        {
+            return false;
+        }
+
+        final Xpp3Dom dom = read( file );
+        boolean changed = false;
+        for ( final Xpp3Dom data : dom.getChildren( "data" ) )
+        {
+            final Xpp3Dom location = data.getChild( "location" );
+            final String base = location == null ? null : location.getAttribute( XML_BASE );
+            if ( base != null && base.startsWith( fromUrl ) )
+            {
+                location.setAttribute( XML_BASE, toUrl + base.substring( fromUrl.length() ) );
+                changed = true;
+            }
+        }
+        if ( !changed )
+        {
+            return false;
+        }
+        write( file, dom );
+        return true;
+    }
+
+    /**
+     * Renames every data file referenced by given repomd.xml to a name prefixed with its checksum (as
+     * 'createrepo --unique-md-filenames' does), and rewrites its location accordingly, so the files of a generation
+     * never replace the ones of another generation. Files already named that way are left as they are. Used for
+     * tools without such option, like mergerepo.
+     *
+     * @param file repomd.xml, located in the repodata directory below the repository root
+     * @return true if the file was rewritten, false if all data files were uniquely named already
+     * @since 3.0
+     */
+    public static boolean uniquify( final File file )
+        throws IOException
+    {
+        final File repoDir = file.getAbsoluteFile().getParentFile().getParentFile();
+        final Xpp3Dom dom = read( file );
+        boolean changed = false;
+        for ( final Xpp3Dom data : dom.getChildren( "data" ) )
+        {
+            final Xpp3Dom location = data.getChild( "location" );
+            final Xpp3Dom checksum = data.getChild( "checksum" );
+            final String href = location == null ? null : location.getAttribute( "href" );
+            if ( href == null || checksum == null || checksum.getValue() == null )
+            {
+                continue;
+            }
+            final int slash = href.lastIndexOf( '/' );
+            final String prefix = checksum.getValue().trim() + "-";
+            if ( href.startsWith( prefix, slash + 1 ) )
+            {
+                continue;
+            }
+            final String uniqueHref = href.substring( 0, slash + 1 ) + prefix + href.substring( slash + 1 );
+            final File source = new File( repoDir, href );
+            final File target = new File( repoDir, uniqueHref );
+            if ( !source.renameTo( target ) && !( target.delete() && source.renameTo( target ) ) )
+            {
+                throw new IOException( "Could not rename " + source.getAbsolutePath() + " to " + target.getName() );
+            }
+            location.setAttribute( "href", uniqueHref );
+            changed = true;
+        }
+        if ( changed )
+        {
+            write( file, dom );
+        }
+        return changed;
+    }
+
+    private static Xpp3Dom read( final File file )
+        throws IOException
+    {
+        BufferedInputStream in = null;
+        try
+        {
+            in = new BufferedInputStream( new FileInputStream( file ) );
+            return Xpp3DomBuilder.build( new XmlStreamReader( in ) );
+        }
+        catch ( XmlPullParserException e )
+        {
+            throw new IOException( "Could not parse " + file.getAbsolutePath(), e );
+        }
+        finally
+        {
+            Closeables.closeQuietly( in );
+        }
+    }
+
+    /**
+     * Writes given content to a sibling file that replaces the given one.
+     */
+    private static void write( final File file, final Xpp3Dom dom )
+        throws IOException
+    {
+        final File tmp = new File( file.getParentFile(), "." + file.getName() + ".tmp" );
+        Writer out = null;
+        try
+        {
+            out = new OutputStreamWriter( new FileOutputStream( tmp ), "UTF-8" );
+            out.write( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" );
+            Xpp3DomWriter.write( out, dom );
+            out.write( "\n" );
+        }
+        finally
+        {
+            IOUtils.closeQuietly( out );
+        }
+        if ( !tmp.renameTo( file ) && !( file.delete() && tmp.renameTo( file ) ) )
+        {
+            tmp.delete();
+            throw new IOException( "Could not replace " + file.getAbsolutePath() );
+        }
+    }
+
 }
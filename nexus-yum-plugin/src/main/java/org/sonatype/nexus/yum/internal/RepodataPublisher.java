@@ -0,0 +1,331 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.nexus.yum.YumRepository.PATH_OF_REPODATA;
+import static org.sonatype.nexus.yum.YumRepository.PATH_OF_REPOMD_XML;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonatype.nexus.yum.Yum;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Publishes yum metadata, generated into a staging directory, to the "repodata" directory of a repository.
+ * <p/>
+ * Metadata files are put next to the live ones under a temporary name and renamed into place, repomd.xml last, so
+ * clients always see a repomd.xml whose referenced files are available. Files of previous generations are retained
+ * (limited by number, age and total size), so clients holding an older repomd.xml can still get them. That requires
+ * uniquely named metadata files (e.g. 'createrepo --unique-md-filenames' or {@link RepoMD#uniquify(File)}): changed
+ * files referenced by the current repomd.xml are never replaced.
+ *
+ * @since 3.0
+ */
+public class RepodataPublisher
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger( RepodataPublisher.class );
+
+    private static final String STAGING_DIR_NAME = "staging";
+
+    private static final String GENERATIONS_DIR_NAME = "generations";
+
+    private static final String SNAPSHOT_PREFIX = "repomd-";
+
+    private static final String SNAPSHOT_SUFFIX = ".xml";
+
+    private static final long MEGABYTE = 1024 * 1024;
+
+    private final File repoDir;
+
+    private final File stagingDir;
+
+    private final File generationsDir;
+
+    private final int retainedGenerations;
+
+    private final long retentionMaxAge;
+
+    private final long retentionMaxSize;
+
+    /**
+     * @param repoDir             directory containing the live "repodata" directory
+     * @param workDir             directory owned by this publisher, used for staging and remembering previous
+     *                            generations
+     * @param retainedGenerations number of superseded generations to retain
+     * @param retentionMaxAge     milliseconds a generation is retained after being superseded
+     * @param retentionMaxSize    maximum number of bytes used by files only referenced by retained generations
+     *                            (0 = unlimited)
+     */
+    public RepodataPublisher( final File repoDir,
+                              final File workDir,
+                              final int retainedGenerations,
+                              final long retentionMaxAge,
+                              final long retentionMaxSize )
+    {
+        this.repoDir = checkNotNull( repoDir );
+        this.stagingDir = new File( checkNotNull( workDir ), STAGING_DIR_NAME );
+        this.generationsDir = new File( workDir, GENERATIONS_DIR_NAME );
+        this.retainedGenerations = retainedGenerations;
+        this.retentionMaxAge = retentionMaxAge;
+        this.retentionMaxSize = retentionMaxSize;
+    }
+
+    /**
+     * Creates a publisher retaining generations as configured for given yum repository, or using defaults if there
+     * is none.
+     */
+    public RepodataPublisher( final File repoDir, final File workDir, final Yum yum )
+    {
+        this(
+            repoDir,
+            workDir,
+            yum == null ? Yum.DEFAULT_RETAINED_GENERATIONS : yum.retainedGenerations(),
+            TimeUnit.MINUTES.toMillis( yum == null ? Yum.DEFAULT_RETENTION_MAX_AGE : yum.retentionMaxAge() ),
+            MEGABYTE * ( yum == null ? Yum.DEFAULT_RETENTION_MAX_SIZE : yum.retentionMaxSize() )
+        );
+    }
+
+    /**
+     * Creates an empty staging directory to generate metadata into.
+     *
+     * @param seed true to copy the current generation into the staging directory (e.g. for 'createrepo --update')
+     * @return staging directory
+     */
+    public File prepare( final boolean seed )
+        throws IOException
+    {
+        FileUtils.deleteDirectory( stagingDir );
+        stagingDir.mkdirs();
+        final File liveRepomd = new File( repoDir, PATH_OF_REPOMD_XML );
+        if ( seed && liveRepomd.isFile() )
+        {
+            for ( final String location : locationsOf( liveRepomd ) )
+            {
+                final File file = new File( repoDir, location );
+                if ( file.isFile() )
+                {
+                    FileUtils.copyFile( file, new File( stagingDir, location ) );
+                }
+            }
+            FileUtils.copyFile( liveRepomd, new File( stagingDir, PATH_OF_REPOMD_XML ) );
+        }
+        return stagingDir;
+    }
+
+    /**
+     * Publishes the metadata from staging directory, making it the current generation.
+     */
+    public void publish()
+        throws IOException
+    {
+        final File stagedRepomd = new File( stagingDir, PATH_OF_REPOMD_XML );
+        if ( !stagedRepomd.isFile() )
+        {
+            throw new IOException( "No yum metadata generated in " + stagingDir.getAbsolutePath() );
+        }
+
+        final File liveRepomd = new File( repoDir, PATH_OF_REPOMD_XML );
+        final Collection<String> liveLocations = liveRepomd.isFile()
+            ? locationsOf( liveRepomd )
+            : Sets.<String>newHashSet();
+        final List<String> changedLocations = Lists.newArrayList();
+        for ( final String location : locationsOf( stagedRepomd ) )
+        {
+            final File target = new File( repoDir, location );
+            if ( !target.exists() || !FileUtils.contentEquals( new File( stagingDir, location ), target ) )
+            {
+                if ( target.exists() && liveLocations.contains( location ) )
+                {
+                    // clients reading the current repomd.xml would get files of the new generation
+                    throw new IOException(
+                        "Refusing to replace " + target.getAbsolutePath()
+                            + ", referenced by current repomd.xml; metadata files must be uniquely named"
+                    );
+                }
+                changedLocations.add( location );
+            }
+        }
+
+        new File( repoDir, PATH_OF_REPODATA ).mkdirs();
+        for ( final String location : changedLocations )
+        {
+            install( new File( stagingDir, location ), new File( repoDir, location ) );
+        }
+
+        if ( liveRepomd.isFile() )
+        {
+            generationsDir.mkdirs();
+            FileUtils.copyFile(
+                liveRepomd, new File( generationsDir, SNAPSHOT_PREFIX + System.currentTimeMillis() + SNAPSHOT_SUFFIX )
+            );
+        }
+        install( stagedRepomd, liveRepomd );
+        LOG.debug( "Published yum metadata from {} to {}", stagingDir, repoDir );
+
+        FileUtils.deleteQuietly( stagingDir );
+        prune();
+    }
+
+    /**
+     * Deletes files only referenced by generations that are no longer retained. Superseded generations are retained
+     * newest first, as long as their number, age and total size of files they exclusively reference stay within the
+     * configured limits.
+     */
+    public void prune()
+    {
+        final File[] snapshots = generationsDir.listFiles( new FilenameFilter()
+        {
+
+            @Override
+            public boolean accept( final File dir, final String name )
+            {
+                return name.startsWith( SNAPSHOT_PREFIX ) && name.endsWith( SNAPSHOT_SUFFIX );
+            }
+
+        } );
+        if ( snapshots == null )
+        {
+            return;
+        }
+        Arrays.sort( snapshots, new Comparator<File>()
+        {
+
+            @Override
+            public int compare( final File file1, final File file2 )
+            {
+                final long supersededAt1 = supersededAt( file1 );
+                final long supersededAt2 = supersededAt( file2 );
+                return supersededAt1 > supersededAt2 ? -1 : ( supersededAt1 == supersededAt2 ? 0 : 1 );
+            }
+
+        } );
+
+        final long now = System.currentTimeMillis();
+        final Set<String> retained = Sets.newHashSet();
+        final List<File> expired = Lists.newArrayList();
+
+        final File liveRepomd = new File( repoDir, PATH_OF_REPOMD_XML );
+        if ( liveRepomd.isFile() )
+        {
+            retained.addAll( locationsOf( liveRepomd ) );
+        }
+        int retainedCount = 0;
+        long retainedSize = 0;
+        for ( final File snapshot : snapshots )
+        {
+            final Collection<String> locations = locationsOf( snapshot );
+            final long size = exclusiveSize( locations, retained );
+            if ( expired.isEmpty()
+                && retainedCount < retainedGenerations
+                && now - supersededAt( snapshot ) < retentionMaxAge
+                && ( retentionMaxSize <= 0 || retainedSize + size <= retentionMaxSize ) )
+            {
+                retainedCount++;
+                retainedSize += size;
+                retained.addAll( locations );
+            }
+            else
+            {
+                expired.add( snapshot );
+            }
+        }
+        for ( final File snapshot : expired )
+        {
+            for ( final String location : locationsOf( snapshot ) )
+            {
+                if ( !retained.contains( location ) && !PATH_OF_REPOMD_XML.equals( location ) )
+                {
+                    LOG.debug( "Deleting superseded yum metadata file {}", location );
+                    FileUtils.deleteQuietly( new File( repoDir, location ) );
+                }
+            }
+            FileUtils.deleteQuietly( snapshot );
+        }
+    }
+
+    private long exclusiveSize( final Collection<String> locations, final Set<String> retained )
+    {
+        long size = 0;
+        for ( final String location : locations )
+        {
+            if ( !retained.contains( location ) )
+            {
+                size += new File( repoDir, location ).length();
+            }
+        }
+        return size;
+    }
+
+    private static long supersededAt( final File snapshot )
+    {
+        final String name = snapshot.getName();
+        try
+        {
+            return Long.parseLong(
+                name.substring( SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length() )
+            );
+        }
+        catch ( NumberFormatException e )
+        {
+            return snapshot.lastModified();
+        }
+    }
+
+    private static Collection<String> locationsOf( final File repomd )
+    {
+        try
+        {
+            return new RepoMD( repomd ).getLocations();
+        }
+        catch ( RuntimeException e )
+        {
+            LOG.warn( "Could not read yum metadata locations from {}: {}", repomd, e.getMessage() );
+            return Sets.newHashSet();
+        }
+    }
+
+    /**
+     * Puts the file next to the target under a temporary name, then renames it, so the target is replaced in one
+     * step.
+     */
+    private static void install( final File source, final File target )
+        throws IOException
+    {
+        final File tmp = new File( target.getParentFile(), "." + target.getName() + ".publishing" );
+        FileUtils.deleteQuietly( tmp );
+        if ( !source.renameTo( tmp ) )
+        {
+            FileUtils.copyFile( source, tmp );
+        }
+        if ( !tmp.renameTo( target ) && !( target.delete() && tmp.renameTo( target ) ) )
+        {
+            FileUtils.deleteQuietly( tmp );
+            throw new IOException( "Could not publish " + target.getAbsolutePath() );
+        }
+    }
+
+}
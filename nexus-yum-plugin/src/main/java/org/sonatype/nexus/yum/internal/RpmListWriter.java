@@ -14,33 +14,52 @@ package org.sonatype.nexus.yum.internal;
 
 import static java.io.File.pathSeparator;
 import static java.io.File.separator;
-import static java.lang.String.format;
-import static org.apache.commons.io.IOUtils.readLines;
-import static org.apache.commons.io.IOUtils.write;
-import static org.apache.commons.io.IOUtils.writeLines;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.TreeMap;
+import java.util.Set;
+import javax.annotation.Nullable;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.LineIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Writes the list of RPMs to generate metadata for. Lists are streamed from and to disk, and sorting is done via an
+ * {@link ExternalSorter}, so the heap used does not depend on the number of RPMs.
+ */
 public class RpmListWriter
 {
 
     private static final int POSITION_AFTER_SLASH = 1;
 
+    /**
+     * Non existing package written to an otherwise empty list, as an empty list would make createrepo scan the whole
+     * directory.
+     */
+    public static final String EMPTY_LIST_PLACEHOLDER =
+        ".foo/.bar.rpm/to-avoid-an-empty-rpm-list-file/that-would-cause-createrepo-to-scan-the-whole-repo.rpm";
+
+    /**
+     * Separates directory and file name in sorted lines. Sorts before any character of a path, so lines are sorted
+     * by directory first.
+     */
+    private static final char DIRECTORY_SEPARATOR = '\0';
+
+    private static final String UTF_8 = "UTF-8";
+
     private static final Logger LOG = LoggerFactory.getLogger( RpmListWriter.class );
 
     private final File rpmListFile;
@@ -59,6 +78,10 @@ public class RpmListWriter
 
     private final RpmScanner scanner;
 
+    private final long sortMemory;
+
+    private final VersionIndex versionIndex;
+
     public RpmListWriter( final String repositoryId,
                           final File baseRpmDir,
                           final String addedFiles,
@@ -66,6 +89,45 @@ public class RpmListWriter
                           final boolean singleRpmPerDirectory,
                           final ListFileFactory fileFactory,
                           final RpmScanner scanner )
+    {
+        this(
+            repositoryId, baseRpmDir, addedFiles, version, singleRpmPerDirectory, fileFactory, scanner,
+            ExternalSorter.megabytes( ExternalSorter.DEFAULT_MEMORY )
+        );
+    }
+
+    /**
+     * @param sortMemory heap budget in bytes for sorting the list of RPMs
+     * @since 3.0
+     */
+    public RpmListWriter( final String repositoryId,
+                          final File baseRpmDir,
+                          final String addedFiles,
+                          final String version,
+                          final boolean singleRpmPerDirectory,
+                          final ListFileFactory fileFactory,
+                          final RpmScanner scanner,
+                          final long sortMemory )
+    {
+        this(
+            repositoryId, baseRpmDir, addedFiles, version, singleRpmPerDirectory, fileFactory, scanner, sortMemory, null
+        );
+    }
+
+    /**
+     * @param sortMemory   heap budget in bytes for sorting the list of RPMs
+     * @param versionIndex index to look up RPMs of a version in, instead of filtering the list (can be null)
+     * @since 3.0
+     */
+    public RpmListWriter( final String repositoryId,
+                          final File baseRpmDir,
+                          final String addedFiles,
+                          final String version,
+                          final boolean singleRpmPerDirectory,
+                          final ListFileFactory fileFactory,
+                          final RpmScanner scanner,
+                          final long sortMemory,
+                          final @Nullable VersionIndex versionIndex )
     {
         this.repositoryId = repositoryId;
         this.baseRpmDir = baseRpmDir;
@@ -74,6 +136,8 @@ public class RpmListWriter
         this.singleRpmPerDirectory = singleRpmPerDirectory;
         this.fileFactory = fileFactory;
         this.scanner = scanner;
+        this.sortMemory = sortMemory;
+        this.versionIndex = versionIndex;
         this.rpmListFile = fileFactory.getRpmListFile( repositoryId );
     }
 
@@ -83,19 +147,13 @@ public class RpmListWriter
         if ( rpmListFile.exists() )
         {
             LOG.debug( "Reuse existing rpm list file : {}", rpmListFile );
-            List<String> rpmFileList = pruneToExistingRpms();
 
             if ( isNotBlank( version ) )
             {
-                return extractVersionOfListFile( rpmFileList );
+                return extractVersionOfListFile();
             }
 
-            if ( isNotBlank( addedFiles ) )
-            {
-                addNewlyAddedRpmFileToList( rpmFileList );
-            }
-
-            writeRpmFileList( rpmFileList );
+            pruneToExistingRpmsAndAddNewlyAddedFiles();
         }
         else
         {
@@ -105,116 +163,183 @@ public class RpmListWriter
         return rpmListFile;
     }
 
-    private File extractVersionOfListFile( List<String> files )
+    private File extractVersionOfListFile()
         throws IOException
     {
-        List<String> filesWithRequiredVersion = new ArrayList<String>();
-        for ( String file : files )
+        final File rpmVersionedListFile = fileFactory.getRpmListFile( repositoryId, version );
+        if ( versionIndex != null )
         {
-            if ( hasRequiredVersion( file ) )
+            versionIndex.loadIfNeeded( repositoryId, baseRpmDir, scanner );
+            // index has all stored RPMs, not only the listed latest ones
+            final Map<String, String> latest = new LinkedHashMap<String, String>();
+            for ( final String file : versionIndex.get( repositoryId, version ) )
+            {
+                if ( exists( file ) )
+                {
+                    final String key = singleRpmPerDirectory ? directoryOf( file ) : file;
+                    final String current = latest.get( key );
+                    if ( current == null || isNewer( file, current ) )
+                    {
+                        latest.put( key, file );
+                    }
+                }
+            }
+            final ListFile listFile = new ListFile( rpmVersionedListFile );
+            try
+            {
+                for ( final String file : latest.values() )
+                {
+                    listFile.add( file );
+                }
+                listFile.close();
+            }
+            finally
             {
-                filesWithRequiredVersion.add( file );
+                listFile.closeQuietly();
             }
+            return rpmVersionedListFile;
+        }
+        final ListFile listFile = new ListFile( rpmVersionedListFile );
+        final LineIterator files = FileUtils.lineIterator( rpmListFile, UTF_8 );
+        try
+        {
+            while ( files.hasNext() )
+            {
+                final String file = files.nextLine();
+                if ( exists( file ) && hasRequiredVersion( file ) )
+                {
+                    listFile.add( file );
+                }
+            }
+            listFile.close();
+        }
+        finally
+        {
+            LineIterator.closeQuietly( files );
+            listFile.closeQuietly();
         }
-
-        File rpmVersionedListFile = fileFactory.getRpmListFile( repositoryId, version );
-        writeRpmFileList( filesWithRequiredVersion, rpmVersionedListFile );
         return rpmVersionedListFile;
     }
 
-    private boolean hasRequiredVersion( String file )
+    private boolean hasRequiredVersion( final String file )
     {
-        String[] segments = file.split( "\\/" );
-        return ( segments.length >= 2 ) && version.equals( segments[segments.length - 2] );
+        return file.indexOf( '/' ) >= 0 && version.equals( VersionIndex.versionOf( file ) );
     }
 
-    private void addNewlyAddedRpmFileToList( List<String> fileList )
+    /**
+     * Copies the existing list, leaving out RPMs that do not exist anymore, and appends added files not yet listed.
+     * If only the latest RPM of a directory is listed, an added file replaces the listed one of its directory when
+     * newer, and is left out otherwise. Only the added files are held in memory.
+     */
+    private void pruneToExistingRpmsAndAddNewlyAddedFiles()
         throws IOException
     {
-        final String[] filenames = addedFiles.split( pathSeparator );
-        for ( String filename : filenames )
-        {
-            filename = addFileToList( fileList, filename );
-        }
-    }
-
-    private String addFileToList( List<String> fileList, String filename )
-    {
-        final int startPosition = filename.startsWith( "/" ) ? POSITION_AFTER_SLASH : 0;
-        filename = filename.substring( startPosition );
-
-        if ( !fileList.contains( filename ) )
-        {
-            fileList.add( filename );
-            LOG.debug( "Added rpm {} to file list.", filename );
-        }
-        else
+        final Set<String> filesToAdd = new LinkedHashSet<String>();
+        if ( isNotBlank( addedFiles ) )
         {
-            LOG.debug( "Rpm {} already exists in file list.", filename );
+            for ( final String filename : addedFiles.split( pathSeparator ) )
+            {
+                filesToAdd.add( filename.substring( filename.startsWith( "/" ) ? POSITION_AFTER_SLASH : 0 ) );
+            }
         }
-        return filename;
-    }
-
-    private List<String> pruneToExistingRpms()
-        throws IOException
-    {
-        List<String> files = readRpmFileList();
-        for ( int i = 0; i < files.size(); i++ )
+        // latest added file per directory, if only the latest RPM of a directory is listed
+        final Map<String, String> latestAdded = new HashMap<String, String>();
+        if ( singleRpmPerDirectory )
         {
-            if ( !new File( baseRpmDir, files.get( i ) ).exists() )
+            for ( final String file : filesToAdd )
             {
-                LOG.debug( "Removed {} from rpm list.", files.get( i ) );
-                files.remove( i );
-                i--;
-
+                final String latest = latestAdded.get( directoryOf( file ) );
+                if ( latest == null || isNewer( file, latest ) )
+                {
+                    latestAdded.put( directoryOf( file ), file );
+                }
             }
+            filesToAdd.retainAll( latestAdded.values() );
         }
-        return files;
-    }
-
-    private void writeRpmFileList( Collection<String> files )
-        throws IOException
-    {
-        writeRpmFileList( files, rpmListFile );
-    }
 
-    private void writeRpmFileList( Collection<String> files, File rpmListOutputFile )
-        throws IOException
-    {
-        FileOutputStream outputStream = new FileOutputStream( rpmListOutputFile );
+        final File prunedListFile = new File( rpmListFile.getParentFile(), "." + rpmListFile.getName() + ".tmp" );
+        final ListFile listFile = new ListFile( prunedListFile );
+        final LineIterator files = FileUtils.lineIterator( rpmListFile, UTF_8 );
         try
         {
-            writeLines( files, "\n", outputStream );
-            if ( files.isEmpty() )
+            while ( files.hasNext() )
             {
-                LOG.debug(
-                    "Write non existing package to rpm list file {} to avoid an empty packge list that would cause createrepo to scan the whole directory",
-                    rpmListOutputFile );
-                write(
-                    ".foo/.bar.rpm/to-avoid-an-empty-rpm-list-file/that-would-cause-createrepo-to-scan-the-whole-repo.rpm",
-                    outputStream );
+                final String file = files.nextLine();
+                if ( !exists( file ) )
+                {
+                    LOG.debug( "Removed {} from rpm list.", file );
+                }
+                else if ( isSupersededByAddedFile( file, latestAdded, filesToAdd ) )
+                {
+                    LOG.debug( "Removed {} from rpm list, as a newer rpm was added to its directory.", file );
+                }
+                else
+                {
+                    listFile.add( file );
+                    if ( filesToAdd.remove( file ) )
+                    {
+                        LOG.debug( "Rpm {} already exists in file list.", file );
+                    }
+                }
+            }
+            for ( final String file : filesToAdd )
+            {
+                listFile.add( file );
+                LOG.debug( "Added rpm {} to file list.", file );
             }
+            listFile.close();
         }
         finally
         {
-            outputStream.close();
+            LineIterator.closeQuietly( files );
+            listFile.closeQuietly();
         }
-        LOG.debug( "Wrote {} rpm packages to rpm list file {} .", files.size(), rpmListFile );
+        FileUtils.deleteQuietly( rpmListFile );
+        FileUtils.moveFile( prunedListFile, rpmListFile );
     }
 
-    @SuppressWarnings( "unchecked" )
-    private List<String> readRpmFileList()
-        throws IOException
+    /**
+     * Decides between a listed file and the file added to its directory, if only the latest RPM of a directory is
+     * listed. Drops the added file if the listed one is newer.
+     *
+     * @return true if listed file is to be replaced by added file
+     */
+    private boolean isSupersededByAddedFile( final String file,
+                                             final Map<String, String> latestAdded,
+                                             final Set<String> filesToAdd )
     {
-        FileInputStream inputStream = new FileInputStream( rpmListFile );
-        try
+        final String added = latestAdded.get( directoryOf( file ) );
+        if ( added == null || added.equals( file ) || !filesToAdd.contains( added ) )
         {
-            return readLines( inputStream );
+            return false;
         }
-        finally
+        if ( isNewer( added, file ) )
         {
-            inputStream.close();
+            return true;
         }
+        filesToAdd.remove( added );
+        LOG.debug( "Rpm {} not added to rpm list, as {} is newer.", added, file );
+        return false;
+    }
+
+    private static boolean isNewer( final String file, final String other )
+    {
+        return RpmVersionComparator.INSTANCE.compare( nameOf( file ), nameOf( other ) ) > 0;
+    }
+
+    private static String directoryOf( final String file )
+    {
+        return file.substring( 0, file.lastIndexOf( '/' ) + 1 );
+    }
+
+    private static String nameOf( final String file )
+    {
+        return file.substring( file.lastIndexOf( '/' ) + 1 );
+    }
+
+    private boolean exists( final String file )
+    {
+        return file.length() > 0 && new File( baseRpmDir, file ).exists();
     }
 
     private void rewriteList()
@@ -222,65 +347,104 @@ public class RpmListWriter
     {
         if ( singleRpmPerDirectory )
         {
-            rewriteFileList( getSortedFilteredFileList() );
+            rewriteSortedFilteredFileList();
         }
         else
         {
-            writeRpmFileList( getRelativeFilenames( scanner.scan( baseRpmDir ) ), rpmListFile );
-        }
-    }
-
-    private List<String> getRelativeFilenames( Collection<File> rpmFileList )
-    {
-        List<String> result = new ArrayList<String>( rpmFileList.size() );
-        for ( File rpmFile : rpmFileList )
-        {
-            result.add( getRelativePath( rpmFile ) );
+            final ListFile listFile = new ListFile( rpmListFile );
+            try
+            {
+                scan( new RpmScanner.Listener()
+                {
+                    @Override
+                    public void onRpm( final File rpm )
+                        throws IOException
+                    {
+                        listFile.add( getRelativePath( rpm ) );
+                    }
+                } );
+                listFile.close();
+            }
+            finally
+            {
+                listFile.closeQuietly();
+            }
         }
-        return result;
     }
 
-    private void rewriteFileList( Map<String, String> fileMap )
+    /**
+     * Lists the latest RPM of every directory (matching requested version, as ordered by
+     * {@link RpmVersionComparator}), sorted by directory.
+     */
+    private void rewriteSortedFilteredFileList()
         throws IOException
     {
-        Writer writer = new FileWriter( rpmListFile );
+        final ExternalSorter sorter = new ExternalSorter( rpmListFile.getParentFile(), sortMemory );
+        Writer writer = null;
         try
         {
-            for ( Entry<String, String> entry : fileMap.entrySet() )
+            scan( new RpmScanner.Listener()
+            {
+                @Override
+                public void onRpm( final File file )
+                    throws IOException
+                {
+                    File parentFile = file.getParentFile();
+                    if ( matchesRequestedVersion( parentFile ) )
+                    {
+                        sorter.add( getRelativePath( parentFile ) + DIRECTORY_SEPARATOR + file.getName() );
+                    }
+                }
+            } );
+
+            writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( rpmListFile ), UTF_8 ) );
+            String parentDir = null;
+            String latest = null;
+            for ( final Iterator<String> lines = sorter.sorted(); lines.hasNext(); )
             {
-                writer.append( format( "%s%s\n", entry.getKey(), entry.getValue() ) );
+                final String line = lines.next();
+                final int separatorIndex = line.indexOf( DIRECTORY_SEPARATOR );
+                final String dir = line.substring( 0, separatorIndex );
+                final String name = line.substring( separatorIndex + 1 );
+                if ( parentDir != null && !parentDir.equals( dir ) )
+                {
+                    writer.append( parentDir ).append( latest ).append( '\n' );
+                    latest = null;
+                }
+                parentDir = dir;
+                if ( latest == null || RpmVersionComparator.INSTANCE.compare( name, latest ) > 0 )
+                {
+                    latest = name;
+                }
             }
+            if ( parentDir != null )
+            {
+                writer.append( parentDir ).append( latest ).append( '\n' );
+            }
+            writer.close();
         }
         finally
         {
-            writer.close();
+            IOUtils.closeQuietly( writer );
+            sorter.close();
         }
         LOG.debug( "Wrote temporary package list to {}", rpmListFile.getAbsoluteFile() );
     }
 
-    private Map<String, String> getSortedFilteredFileList()
+    /**
+     * Scans storage for RPMs. When listing all versions the version index is filled by the same scan, so it gets all
+     * stored RPMs, including the ones not stored via Nexus and the older ones of each directory.
+     */
+    private void scan( final RpmScanner.Listener listener )
+        throws IOException
     {
-        String absoluteBasePath = baseRpmDir + separator;
-
-        Map<String, String> fileMap = new TreeMap<String, String>();
-
-        for ( File file : scanner.scan( baseRpmDir ) )
+        if ( versionIndex != null && version == null )
         {
-            File parentFile = file.getParentFile();
-            if ( matchesRequestedVersion( parentFile ) )
-            {
-                String parentDir = getRelativePath( parentFile );
-                putLatestArtifactInMap( parentDir, file.getName(), fileMap );
-            }
+            versionIndex.load( repositoryId, baseRpmDir, scanner, listener );
         }
-        return fileMap;
-    }
-
-    private void putLatestArtifactInMap( String parentDir, String filename, Map<String, String> fileMap )
-    {
-        if ( !fileMap.containsKey( parentDir ) || ( filename.compareTo( fileMap.get( parentDir ) ) > 0 ) )
+        else
         {
-            fileMap.put( parentDir, filename );
+            scanner.scan( baseRpmDir, listener );
         }
     }
 
@@ -300,4 +464,52 @@ public class RpmListWriter
         return ( version == null ) || parentFile.getName().equals( version );
     }
 
+    /**
+     * A list file being written, getting {@link #EMPTY_LIST_PLACEHOLDER} if no RPM was added.
+     */
+    private static class ListFile
+    {
+
+        private final File file;
+
+        private final Writer writer;
+
+        private int count;
+
+        ListFile( final File file )
+            throws IOException
+        {
+            this.file = file;
+            this.writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), UTF_8 ) );
+        }
+
+        void add( final String rpm )
+            throws IOException
+        {
+            writer.append( rpm ).append( '\n' );
+            count++;
+        }
+
+        void close()
+            throws IOException
+        {
+            if ( count == 0 )
+            {
+                LOG.debug(
+                    "Write non existing package to rpm list file {} to avoid an empty package list that would cause "
+                        + "createrepo to scan the whole directory", file
+                );
+                writer.write( EMPTY_LIST_PLACEHOLDER );
+            }
+            writer.close();
+            LOG.debug( "Wrote {} rpm packages to rpm list file {} .", count, file );
+        }
+
+        void closeQuietly()
+        {
+            IOUtils.closeQuietly( writer );
+        }
+
+    }
+
 }
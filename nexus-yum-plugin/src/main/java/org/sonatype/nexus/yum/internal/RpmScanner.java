@@ -15,6 +15,7 @@ package org.sonatype.nexus.yum.internal;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Set;
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -47,7 +48,7 @@ public class RpmScanner
             @Override
             public void onFile( final File file )
             {
-                if ( "rpm".equals( FileUtils.extension( file.getName() ) ) )
+                if ( isRpm( file ) )
                 {
                     rpms.add( file );
                 }
@@ -57,4 +58,56 @@ public class RpmScanner
         return rpms;
     }
 
+    /**
+     * Scans without collecting the found RPMs, so memory usage does not depend on number of RPMs. Once the listener
+     * failed it is not called anymore and its failure is rethrown at the end of scan.
+     *
+     * @since 3.0
+     */
+    public void scan( final File basedDir, final Listener listener )
+        throws IOException
+    {
+        final IOException[] failure = new IOException[1];
+
+        scanner.scan( basedDir, new ListenerSupport()
+        {
+            @Override
+            public void onFile( final File file )
+            {
+                if ( failure[0] == null && isRpm( file ) )
+                {
+                    try
+                    {
+                        listener.onRpm( file );
+                    }
+                    catch ( IOException e )
+                    {
+                        failure[0] = e;
+                    }
+                }
+            }
+        } );
+
+        if ( failure[0] != null )
+        {
+            throw failure[0];
+        }
+    }
+
+    private static boolean isRpm( final File file )
+    {
+        return "rpm".equals( FileUtils.extension( file.getName() ) );
+    }
+
+    /**
+     * @since 3.0
+     */
+    public static interface Listener
+    {
+
+        void onRpm( File rpm )
+            throws IOException;
+
+    }
+
 }
@@ -0,0 +1,226 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import java.util.Comparator;
+
+/**
+ * Orders RPM file names ("name-version-release.arch.rpm") as rpm orders packages: by name, then by version and release
+ * compared with rpmvercmp, so e.g. 1.10 is newer than 1.9 and 1.0~rc1 is older than 1.0. File names not following the
+ * pattern are compared as a whole with rpmvercmp.
+ *
+ * @since 3.0
+ */
+public class RpmVersionComparator
+    implements Comparator<String>
+{
+
+    public static final RpmVersionComparator INSTANCE = new RpmVersionComparator();
+
+    @Override
+    public int compare( final String fileName1, final String fileName2 )
+    {
+        final String[] nvr1 = nameVersionRelease( fileName1 );
+        final String[] nvr2 = nameVersionRelease( fileName2 );
+        int result;
+        if ( nvr1 == null || nvr2 == null )
+        {
+            result = rpmvercmp( fileName1, fileName2 );
+        }
+        else
+        {
+            result = nvr1[0].compareTo( nvr2[0] );
+            if ( result == 0 )
+            {
+                result = rpmvercmp( nvr1[1], nvr2[1] );
+            }
+            if ( result == 0 )
+            {
+                result = rpmvercmp( nvr1[2], nvr2[2] );
+            }
+        }
+        return result != 0 ? result : fileName1.compareTo( fileName2 );
+    }
+
+    /**
+     * Compares two version (or release) strings the way rpm does: alphanumeric segments are compared one by one,
+     * numerically if both are numbers (a number is newer than letters), separators are ignored, "~" sorts before
+     * anything (even the end) and "^" after the end but before anything else.
+     *
+     * @return negative, zero or positive if first version is older, same or newer than second
+     */
+    public static int rpmvercmp( final String version1, final String version2 )
+    {
+        if ( version1.equals( version2 ) )
+        {
+            return 0;
+        }
+        final int length1 = version1.length();
+        final int length2 = version2.length();
+        int i = 0;
+        int j = 0;
+        while ( i < length1 || j < length2 )
+        {
+            while ( i < length1 && isSeparator( version1.charAt( i ) ) )
+            {
+                i++;
+            }
+            while ( j < length2 && isSeparator( version2.charAt( j ) ) )
+            {
+                j++;
+            }
+
+            final char c1 = i < length1 ? version1.charAt( i ) : 0;
+            final char c2 = j < length2 ? version2.charAt( j ) : 0;
+            if ( c1 == '~' || c2 == '~' )
+            {
+                if ( c1 != '~' )
+                {
+                    return 1;
+                }
+                if ( c2 != '~' )
+                {
+                    return -1;
+                }
+                i++;
+                j++;
+                continue;
+            }
+            if ( c1 == '^' || c2 == '^' )
+            {
+                if ( i == length1 )
+                {
+                    return -1;
+                }
+                if ( j == length2 )
+                {
+                    return 1;
+                }
+                if ( c1 != '^' )
+                {
+                    return 1;
+                }
+                if ( c2 != '^' )
+                {
+                    return -1;
+                }
+                i++;
+                j++;
+                continue;
+            }
+            if ( i == length1 || j == length2 )
+            {
+                break;
+            }
+
+            final boolean numeric = isDigit( c1 );
+            final int start1 = i;
+            final int start2 = j;
+            while ( i < length1 && isSegmentChar( version1.charAt( i ), numeric ) )
+            {
+                i++;
+            }
+            while ( j < length2 && isSegmentChar( version2.charAt( j ), numeric ) )
+            {
+                j++;
+            }
+            if ( j == start2 )
+            {
+                // segments of different types, numeric is newer
+                return numeric ? 1 : -1;
+            }
+
+            final int result;
+            if ( numeric )
+            {
+                result = compareNumbers( version1, start1, i, version2, start2, j );
+            }
+            else
+            {
+                result = version1.substring( start1, i ).compareTo( version2.substring( start2, j ) );
+            }
+            if ( result != 0 )
+            {
+                return result < 0 ? -1 : 1;
+            }
+        }
+        if ( i >= length1 && j >= length2 )
+        {
+            return 0;
+        }
+        return i < length1 ? 1 : -1;
+    }
+
+    /**
+     * @return name, version and release of given RPM file name or null if it does not follow the pattern
+     */
+    static String[] nameVersionRelease( final String fileName )
+    {
+        String base = fileName.endsWith( ".rpm" ) ? fileName.substring( 0, fileName.length() - 4 ) : fileName;
+        final int archStart = base.lastIndexOf( '.' );
+        if ( archStart > 0 )
+        {
+            base = base.substring( 0, archStart );
+        }
+        final int releaseStart = base.lastIndexOf( '-' );
+        final int versionStart = releaseStart > 0 ? base.lastIndexOf( '-', releaseStart - 1 ) : -1;
+        if ( versionStart <= 0 )
+        {
+            return null;
+        }
+        return new String[]{
+            base.substring( 0, versionStart ),
+            base.substring( versionStart + 1, releaseStart ),
+            base.substring( releaseStart + 1 )
+        };
+    }
+
+    private static int compareNumbers( final String version1, int start1, final int end1,
+                                       final String version2, int start2, final int end2 )
+    {
+        while ( start1 < end1 - 1 && version1.charAt( start1 ) == '0' )
+        {
+            start1++;
+        }
+        while ( start2 < end2 - 1 && version2.charAt( start2 ) == '0' )
+        {
+            start2++;
+        }
+        if ( end1 - start1 != end2 - start2 )
+        {
+            return ( end1 - start1 ) - ( end2 - start2 );
+        }
+        return version1.substring( start1, end1 ).compareTo( version2.substring( start2, end2 ) );
+    }
+
+    private static boolean isSegmentChar( final char c, final boolean numeric )
+    {
+        return numeric ? isDigit( c ) : isAlpha( c );
+    }
+
+    private static boolean isSeparator( final char c )
+    {
+        return !isDigit( c ) && !isAlpha( c ) && c != '~' && c != '^';
+    }
+
+    private static boolean isDigit( final char c )
+    {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isAlpha( final char c )
+    {
+        return ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' );
+    }
+
+}
@@ -12,11 +12,13 @@
  */
 package org.sonatype.nexus.yum.internal;
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sonatype.nexus.yum.YumRepository.PATH_OF_REPODATA;
 import static org.sonatype.nexus.yum.YumRepository.PATH_OF_REPOMD_XML;
 
 import java.io.IOException;
 import java.io.InputStream;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
@@ -32,6 +34,7 @@ import org.sonatype.nexus.proxy.item.StorageItem;
 import org.sonatype.nexus.proxy.repository.AbstractRequestProcessor;
 import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.proxy.repository.RequestProcessor;
+import org.sonatype.nexus.yum.internal.metrics.YumMetrics;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.io.Closeables;
 
@@ -52,6 +55,14 @@ public class SteadyLinksRequestProcessor
     static final String REQUEST_PATH_NEW =
         SteadyLinksRequestProcessor.class.getName() + ".newRequestPath";
 
+    private final YumMetrics metrics;
+
+    @Inject
+    public SteadyLinksRequestProcessor( final YumMetrics metrics )
+    {
+        this.metrics = checkNotNull( metrics );
+    }
+
     @Override
     public boolean process( final Repository repository, final ResourceStoreRequest request, final Action action )
     {
@@ -84,6 +95,11 @@ public class SteadyLinksRequestProcessor
                                 request.getRequestContext().put( REQUEST_PATH_NEW, newRequestPath );
 
                                 LOG.debug( "Request changed from '{}' to '{}'", requestPath, newRequestPath );
+                                metrics.get( repository.getId() ).steadyLinkHit();
+                            }
+                            else if ( !isUnique( requestPath ) )
+                            {
+                                metrics.get( repository.getId() ).steadyLinkMiss();
                             }
                         }
                         finally
@@ -142,7 +158,8 @@ public class SteadyLinksRequestProcessor
 
         for ( final String location : new RepoMD( repomd ).getLocations() )
         {
-            if ( !repodataSubPath.equals( location ) && location.endsWith( repodataSubPath ) )
+            // only plain names are redirected, checksum prefixed ones of retained generations are served as they are
+            if ( location.endsWith( "-" + repodataSubPath ) )
             {
                 return requestPath.substring( 0, requestPath.indexOf( PATH_OF_REPODATA ) ) + location;
             }
@@ -151,4 +168,13 @@ public class SteadyLinksRequestProcessor
         return null;
     }
 
+    /**
+     * @return true if requested file has a checksum prefixed name already, so there is nothing to redirect
+     */
+    @VisibleForTesting
+    static boolean isUnique( final String requestPath )
+    {
+        return requestPath.substring( requestPath.lastIndexOf( '/' ) + 1 ).matches( "[0-9a-f]{32,}-.+" );
+    }
+
 }
@@ -0,0 +1,346 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Iterator;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.LineIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.google.common.base.Joiner;
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * Size and last modification time of all RPMs of a repository storage, as a file sorted by location. Taking a snapshot
+ * walks the storage once, without reading any RPM; comparing two snapshots streams both files, so neither depends on
+ * the heap for the number of RPMs.
+ *
+ * @since 3.0
+ */
+public class StorageSnapshot
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger( StorageSnapshot.class );
+
+    /**
+     * Separates directory, file name, size and modification time. Sorts before any character of a path, so lines are
+     * sorted by directory first.
+     */
+    private static final char SEPARATOR = '\0';
+
+    private static final String UTF_8 = "UTF-8";
+
+    private final File file;
+
+    public StorageSnapshot( final File file )
+    {
+        this.file = checkNotNull( file );
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    public boolean exists()
+    {
+        return file.isFile();
+    }
+
+    /**
+     * Walks the storage and writes a snapshot of all found RPMs.
+     *
+     * @param sortMemory heap budget in bytes for sorting
+     * @return taken snapshot
+     */
+    public static StorageSnapshot take( final RpmScanner scanner, final File baseDir, final File file,
+                                        final long sortMemory )
+        throws IOException
+    {
+        final String basePath = baseDir.getAbsolutePath() + File.separator;
+        final ExternalSorter sorter = new ExternalSorter( file.getParentFile(), sortMemory );
+        try
+        {
+            scanner.scan( baseDir, new RpmScanner.Listener()
+            {
+                @Override
+                public void onRpm( final File rpm )
+                    throws IOException
+                {
+                    String path = rpm.getAbsolutePath();
+                    if ( path.startsWith( basePath ) )
+                    {
+                        path = path.substring( basePath.length() );
+                    }
+                    path = path.replace( File.separatorChar, '/' );
+                    final int nameStart = path.lastIndexOf( '/' ) + 1;
+                    sorter.add(
+                        path.substring( 0, nameStart ) + SEPARATOR + path.substring( nameStart ) + SEPARATOR
+                            + rpm.length() + SEPARATOR + rpm.lastModified()
+                    );
+                }
+            } );
+
+            write( sorter.sorted(), file );
+        }
+        finally
+        {
+            sorter.close();
+        }
+        LOG.debug( "Took snapshot of storage {} into {}", baseDir, file );
+        return new StorageSnapshot( file );
+    }
+
+    /**
+     * Writes a snapshot of the RPMs listed by given RPM list (as written by {@link RpmListWriter}). Such a snapshot
+     * has no size and modification time, so compared to it RPMs are only reported as added or removed.
+     *
+     * @param sortMemory heap budget in bytes for sorting
+     * @return written snapshot
+     */
+    public static StorageSnapshot listed( final File rpmListFile, final File file, final long sortMemory )
+        throws IOException
+    {
+        final ExternalSorter sorter = new ExternalSorter( file.getParentFile(), sortMemory );
+        try
+        {
+            final LineIterator lines = FileUtils.lineIterator( rpmListFile, UTF_8 );
+            try
+            {
+                while ( lines.hasNext() )
+                {
+                    final String line = lines.nextLine();
+                    if ( line.length() > 0 && !RpmListWriter.EMPTY_LIST_PLACEHOLDER.equals( line ) )
+                    {
+                        final String location = line.startsWith( "/" ) ? line.substring( 1 ) : line;
+                        final int nameStart = location.lastIndexOf( '/' ) + 1;
+                        sorter.add( location.substring( 0, nameStart ) + SEPARATOR + location.substring( nameStart ) );
+                    }
+                }
+            }
+            finally
+            {
+                LineIterator.closeQuietly( lines );
+            }
+            write( sorter.sorted(), file );
+        }
+        finally
+        {
+            sorter.close();
+        }
+        return new StorageSnapshot( file );
+    }
+
+    /**
+     * Writes a snapshot holding only the latest RPM of every directory of this one, as ordered by
+     * {@link RpmVersionComparator}, which are the RPMs listed when generating a single RPM per directory.
+     *
+     * @return written snapshot
+     */
+    public StorageSnapshot latestPerDirectory( final File latestFile )
+        throws IOException
+    {
+        final Reader reader = new Reader( file );
+        try
+        {
+            write( new AbstractIterator<String>()
+            {
+                @Override
+                protected String computeNext()
+                {
+                    String[] latest = reader.entry;
+                    if ( latest == null )
+                    {
+                        return endOfData();
+                    }
+                    reader.next();
+                    while ( reader.entry != null && reader.entry[0].equals( latest[0] ) )
+                    {
+                        if ( RpmVersionComparator.INSTANCE.compare( reader.entry[1], latest[1] ) > 0 )
+                        {
+                            latest = reader.entry;
+                        }
+                        reader.next();
+                    }
+                    return Joiner.on( SEPARATOR ).join( latest );
+                }
+            }, latestFile );
+        }
+        finally
+        {
+            reader.close();
+        }
+        return new StorageSnapshot( latestFile );
+    }
+
+    /**
+     * Compares this snapshot with an older one of same storage.
+     *
+     * @param older snapshot to compare to, if not existing all RPMs are reported as added
+     */
+    public void diff( final StorageSnapshot older, final Listener listener )
+        throws IOException
+    {
+        final Reader newer = new Reader( file );
+        final Reader previous = new Reader( older.exists() ? older.file : null );
+        try
+        {
+            while ( newer.entry != null || previous.entry != null )
+            {
+                final int order;
+                if ( newer.entry == null )
+                {
+                    order = 1;
+                }
+                else if ( previous.entry == null )
+                {
+                    order = -1;
+                }
+                else
+                {
+                    order = newer.key().compareTo( previous.key() );
+                }
+                if ( order < 0 )
+                {
+                    listener.onAdded( newer.location() );
+                    newer.next();
+                }
+                else if ( order > 0 )
+                {
+                    listener.onRemoved( previous.location() );
+                    previous.next();
+                }
+                else
+                {
+                    if ( newer.hasAttributes() && previous.hasAttributes()
+                        && ( !newer.entry[2].equals( previous.entry[2] )
+                        || !newer.entry[3].equals( previous.entry[3] ) ) )
+                    {
+                        listener.onChanged( newer.location() );
+                    }
+                    newer.next();
+                    previous.next();
+                }
+            }
+        }
+        finally
+        {
+            newer.close();
+            previous.close();
+        }
+    }
+
+    private static void write( final Iterator<String> lines, final File file )
+        throws IOException
+    {
+        final File tmp = new File( file.getParentFile(), "." + file.getName() + ".tmp" );
+        file.getParentFile().mkdirs();
+        final Writer writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( tmp ), UTF_8 ) );
+        try
+        {
+            while ( lines.hasNext() )
+            {
+                writer.append( lines.next() ).append( '\n' );
+            }
+        }
+        finally
+        {
+            IOUtils.closeQuietly( writer );
+        }
+        FileUtils.deleteQuietly( file );
+        FileUtils.moveFile( tmp, file );
+    }
+
+    /**
+     * Receives differences between two snapshots, with locations relative to storage root.
+     */
+    public static interface Listener
+    {
+
+        void onAdded( String location )
+            throws IOException;
+
+        void onChanged( String location )
+            throws IOException;
+
+        void onRemoved( String location )
+            throws IOException;
+
+    }
+
+    /**
+     * Reads entries of a snapshot one by one.
+     */
+    private static class Reader
+    {
+
+        private final LineIterator lines;
+
+        /**
+         * Directory, name, size and modification time (if known) of current entry, null once all were read.
+         */
+        private String[] entry;
+
+        Reader( final File file )
+            throws IOException
+        {
+            this.lines = file == null ? null : FileUtils.lineIterator( file, UTF_8 );
+            next();
+        }
+
+        void next()
+        {
+            entry = null;
+            while ( entry == null && lines != null && lines.hasNext() )
+            {
+                final String[] parts = lines.nextLine().split( String.valueOf( SEPARATOR ) );
+                if ( parts.length == 4 || parts.length == 2 )
+                {
+                    entry = parts;
+                }
+            }
+        }
+
+        boolean hasAttributes()
+        {
+            return entry.length == 4;
+        }
+
+        String key()
+        {
+            return entry[0] + SEPARATOR + entry[1];
+        }
+
+        String location()
+        {
+            return entry[0] + entry[1];
+        }
+
+        void close()
+        {
+            LineIterator.closeQuietly( lines );
+        }
+
+    }
+
+}
@@ -0,0 +1,392 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.io.File.pathSeparator;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonatype.nexus.yum.Yum;
+import org.sonatype.nexus.yum.YumRegistry;
+import org.sonatype.nexus.yum.internal.rpm.HeaderIndex;
+import com.google.common.base.Joiner;
+
+/**
+ * Picks up RPMs added, changed or deleted directly on disk (e.g. by rsync or a restore), which bypass Nexus events.
+ * Every {@link Yum#storageScanInterval()} seconds the storage of a repository is walked into a {@link StorageSnapshot}
+ * compared with the previous one, and the differences are fed into the same incremental path as stored and deleted
+ * RPMs, so a bulk import results in one generation adding the imported RPMs instead of a full rebuild.
+ * <p/>
+ * RPMs already known to {@link VersionIndex} (as stored or deleted via Nexus) are left out. The previous snapshot is
+ * kept under the plugin temporary directory, so changes made while Nexus was down are picked up by the first scan.
+ * <p/>
+ * {@link #reconcile(Yum, File, boolean)} compares the storage against generated metadata instead, as safety net for
+ * any change that was missed.
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+public class StorageWatcher
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger( StorageWatcher.class );
+
+    private static final String DIR_NAME = ".snapshots";
+
+    private final YumRegistry yumRegistry;
+
+    private final YumExecutors executors;
+
+    private final RpmScanner scanner;
+
+    private final VersionIndex versionIndex;
+
+    private final HeaderIndex headerIndex;
+
+    private final ConcurrentMap<String, Watch> watches = new ConcurrentHashMap<String, Watch>();
+
+    @Inject
+    public StorageWatcher( final YumRegistry yumRegistry,
+                           final YumExecutors executors,
+                           final RpmScanner scanner,
+                           final VersionIndex versionIndex,
+                           final HeaderIndex headerIndex )
+    {
+        this.yumRegistry = checkNotNull( yumRegistry );
+        this.executors = checkNotNull( executors );
+        this.scanner = checkNotNull( scanner );
+        this.versionIndex = checkNotNull( versionIndex );
+        this.headerIndex = checkNotNull( headerIndex );
+    }
+
+    /**
+     * Starts, reschedules or stops (if interval is not positive) watching the storage of given yum repository, as
+     * configured by its {@link Yum#storageScanInterval()}. Watching stops as well once it gets unregistered.
+     */
+    public void watch( final Yum yum )
+    {
+        final String repositoryId = yum.getRepository().getId();
+        final long interval = yum.storageScanInterval();
+        final Watch existing = watches.get( repositoryId );
+        if ( existing != null && existing.yum == yum && existing.interval == interval )
+        {
+            return;
+        }
+        unwatch( repositoryId );
+        if ( interval > 0 )
+        {
+            final Watch watch = new Watch( yum, interval );
+            watches.put( repositoryId, watch );
+            watch.future = executors.delays().scheduleWithFixedDelay( watch, interval, interval, SECONDS );
+            LOG.debug( "Scanning storage of {} every {} seconds", repositoryId, interval );
+        }
+    }
+
+    public void unwatch( final String repositoryId )
+    {
+        final Watch watch = watches.remove( repositoryId );
+        if ( watch != null && watch.future != null )
+        {
+            watch.future.cancel( false );
+        }
+    }
+
+    /**
+     * Scans storage of given yum repository and feeds differences to previous scan into it.
+     *
+     * @return number of added, changed and deleted RPMs
+     */
+    int scan( final Yum yum )
+        throws IOException
+    {
+        final String repositoryId = yum.getRepository().getId();
+        final File directory = new File( yumRegistry.getTemporaryDirectory(), DIR_NAME );
+        final StorageSnapshot previous = new StorageSnapshot( new File( directory, repositoryId + ".txt" ) );
+        final boolean first = !previous.exists();
+        final StorageSnapshot current = StorageSnapshot.take(
+            scanner, yum.getBaseDir(), new File( directory, repositoryId + ".next.txt" ),
+            ExternalSorter.megabytes( yumRegistry.sortMemory() )
+        );
+
+        final List<String> added = new ArrayList<String>();
+        final List<String> deleted = new ArrayList<String>();
+        if ( !first )
+        {
+            current.diff( previous, new StorageSnapshot.Listener()
+            {
+                @Override
+                public void onAdded( final String location )
+                {
+                    if ( !versionIndex.contains( repositoryId, location ) )
+                    {
+                        added.add( location );
+                    }
+                }
+
+                @Override
+                public void onChanged( final String location )
+                {
+                    // checksum and rendered metadata are stale
+                    headerIndex.remove( repositoryId, location );
+                    added.add( location );
+                }
+
+                @Override
+                public void onRemoved( final String location )
+                {
+                    // unless loaded, index does not tell if deletion was already processed
+                    if ( !versionIndex.isLoaded( repositoryId ) || versionIndex.contains( repositoryId, location ) )
+                    {
+                        deleted.add( location );
+                    }
+                }
+            } );
+        }
+        replace( current, previous );
+        if ( first )
+        {
+            LOG.debug( "Took first snapshot of storage of {}", repositoryId );
+            return 0;
+        }
+
+        return apply( yum, added, deleted, "Storage scan" );
+    }
+
+    /**
+     * Compares the storage of given yum repository with the RPMs listed by its last generated metadata and feeds the
+     * differences into it: RPMs missing from metadata are added, RPMs no longer stored are deleted and RPMs whose size
+     * or modification time changed since the last reconciliation are added again. If generated metadata lists only
+     * the latest RPM of every directory, only those are compared.
+     *
+     * @param rpmListFile           RPM list written by last generation
+     * @param singleRpmPerDirectory true if generation lists only the latest RPM of every directory
+     * @return number of added, changed and deleted RPMs
+     */
+    public int reconcile( final Yum yum, final File rpmListFile, final boolean singleRpmPerDirectory )
+        throws IOException
+    {
+        final String repositoryId = yum.getRepository().getId();
+        final File baseDir = yum.getBaseDir();
+        final File directory = new File( yumRegistry.getTemporaryDirectory(), DIR_NAME );
+        final long sortMemory = ExternalSorter.megabytes( yumRegistry.sortMemory() );
+        final StorageSnapshot previous = new StorageSnapshot(
+            new File( directory, repositoryId + "-reconciled.txt" )
+        );
+        final StorageSnapshot current = StorageSnapshot.take(
+            scanner, baseDir, new File( directory, repositoryId + "-reconciled.next.txt" ), sortMemory
+        );
+        final File latestFile = new File( directory, repositoryId + "-latest.txt" );
+        final File listedFile = new File( directory, repositoryId + "-listed.txt" );
+
+        final Set<String> added = new LinkedHashSet<String>();
+        final List<String> deleted = new ArrayList<String>();
+        try
+        {
+            final StorageSnapshot listed = StorageSnapshot.listed( rpmListFile, listedFile, sortMemory );
+            final StorageSnapshot expected = singleRpmPerDirectory ? current.latestPerDirectory( latestFile ) : current;
+            expected.diff( listed, new StorageSnapshot.Listener()
+            {
+                @Override
+                public void onAdded( final String location )
+                {
+                    added.add( location );
+                }
+
+                @Override
+                public void onChanged( final String location )
+                {
+                    // listed RPMs have no size and modification time
+                }
+
+                @Override
+                public void onRemoved( final String location )
+                {
+                    // a still stored one got superseded by the latest RPM of its directory (if listing a single one)
+                    if ( !new File( baseDir, location ).isFile() )
+                    {
+                        deleted.add( location );
+                    }
+                }
+            } );
+            if ( previous.exists() )
+            {
+                current.diff( previous, new StorageSnapshot.Listener()
+                {
+                    @Override
+                    public void onAdded( final String location )
+                    {
+                        // compared to metadata above
+                    }
+
+                    @Override
+                    public void onChanged( final String location )
+                    {
+                        headerIndex.remove( repositoryId, location );
+                        added.add( location );
+                    }
+
+                    @Override
+                    public void onRemoved( final String location )
+                    {
+                        // compared to metadata above
+                    }
+                } );
+            }
+            replace( current, previous );
+        }
+        finally
+        {
+            FileUtils.deleteQuietly( latestFile );
+            FileUtils.deleteQuietly( listedFile );
+            FileUtils.deleteQuietly( current.getFile() );
+        }
+
+        return apply( yum, added, deleted, "Reconciliation" );
+    }
+
+    private void replace( final StorageSnapshot current, final StorageSnapshot previous )
+        throws IOException
+    {
+        if ( !current.getFile().renameTo( previous.getFile() ) )
+        {
+            previous.getFile().delete();
+            if ( !current.getFile().renameTo( previous.getFile() ) )
+            {
+                throw new IOException( "Could not write " + previous.getFile() );
+            }
+        }
+    }
+
+    /**
+     * Feeds added and deleted RPMs into the same incremental path as RPMs stored and deleted via Nexus.
+     */
+    private int apply( final Yum yum, final Collection<String> added, final Collection<String> deleted,
+                       final String origin )
+    {
+        final String repositoryId = yum.getRepository().getId();
+        for ( final String location : added )
+        {
+            versionIndex.add( repositoryId, location );
+            yum.markDirty( VersionIndex.versionOf( location ) );
+        }
+        for ( final String location : deleted )
+        {
+            versionIndex.remove( repositoryId, location );
+            headerIndex.remove( repositoryId, location );
+            yum.markDirty( VersionIndex.versionOf( location ) );
+            yum.deleteRpm( "/" + location );
+        }
+        if ( !added.isEmpty() )
+        {
+            final List<String> paths = new ArrayList<String>( added.size() );
+            for ( final String location : added )
+            {
+                paths.add( "/" + location );
+            }
+            yum.addToYumRepository( Joiner.on( pathSeparator ).join( paths ) );
+        }
+        if ( !added.isEmpty() || !deleted.isEmpty() )
+        {
+            LOG.info(
+                "{} of {} found {} RPMs added or changed and {} deleted outside of Nexus",
+                new Object[]{ origin, repositoryId, added.size(), deleted.size() }
+            );
+        }
+        return added.size() + deleted.size();
+    }
+
+    /**
+     * Periodic scan of a repository. Scans run on io threads, never more than one at a time per repository.
+     */
+    private class Watch
+        implements Runnable
+    {
+
+        private final Yum yum;
+
+        private final long interval;
+
+        private volatile Future<?> pending;
+
+        private volatile ScheduledFuture<?> future;
+
+        Watch( final Yum yum, final long interval )
+        {
+            this.yum = yum;
+            this.interval = interval;
+        }
+
+        @Override
+        public void run()
+        {
+            final String repositoryId = yum.getRepository().getId();
+            if ( yumRegistry.get( repositoryId ) != yum )
+            {
+                if ( watches.get( repositoryId ) == this )
+                {
+                    unwatch( repositoryId );
+                }
+                else if ( future != null )
+                {
+                    future.cancel( false );
+                }
+                return;
+            }
+            // io executor cancels scans it discards
+            if ( pending == null || pending.isDone() )
+            {
+                pending = executors.io().submit( new Scan() );
+            }
+        }
+
+        private class Scan
+            implements Runnable
+        {
+
+            @Override
+            public void run()
+            {
+                try
+                {
+                    scan( yum );
+                }
+                catch ( Exception e )
+                {
+                    LOG.warn( "Could not scan storage of {}", yum.getRepository().getId(), e );
+                }
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,343 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonatype.nexus.yum.YumRegistry;
+import org.sonatype.nexus.yum.internal.rpm.VersionTable;
+
+/**
+ * RPMs of a repository grouped by the name of their directory, which is the version a versioned yum repository
+ * lists. Maintained on store and delete of RPMs, and filled by a scan of the repository storage on first use, so
+ * listing the RPMs of a version is a lookup. Locations are held in a compact {@link VersionTable} per repository,
+ * persisted under the plugin temporary directory, so the index (and whether it was filled) survives restarts.
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+public class VersionIndex
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger( VersionIndex.class );
+
+    private static final String DIR_NAME = ".versions";
+
+    private static final String LOADED_SUFFIX = ".loaded";
+
+    private final File directory;
+
+    private final ConcurrentMap<String, Versions> repositories = new ConcurrentHashMap<String, Versions>();
+
+    @Inject
+    public VersionIndex( final YumRegistry yumRegistry )
+    {
+        this( new File( yumRegistry.getTemporaryDirectory(), DIR_NAME ) );
+    }
+
+    /**
+     * @param directory directory to persist index into, null to keep it in memory only
+     */
+    public VersionIndex( final @Nullable File directory )
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * Creates an index kept in memory only.
+     */
+    public VersionIndex()
+    {
+        this( (File) null );
+    }
+
+    /**
+     * @param path path of RPM
+     * @return name of directory containing the RPM, empty if located in root directory
+     */
+    public static String versionOf( final String path )
+    {
+        final int end = path.lastIndexOf( '/' );
+        if ( end < 0 )
+        {
+            return "";
+        }
+        return path.substring( path.lastIndexOf( '/', end - 1 ) + 1, end );
+    }
+
+    /**
+     * @param path path of stored RPM, relative to repository root
+     */
+    public void add( final String repositoryId, final String path )
+    {
+        final Versions versions = versions( repositoryId );
+        synchronized ( versions )
+        {
+            versions.table().add( location( path ) );
+        }
+    }
+
+    /**
+     * @param path path of deleted RPM, relative to repository root
+     */
+    public void remove( final String repositoryId, final String path )
+    {
+        final Versions versions = versions( repositoryId );
+        final String location = location( path );
+        synchronized ( versions )
+        {
+            versions.table().remove( location );
+        }
+    }
+
+    /**
+     * @param path path of deleted directory, relative to repository root
+     */
+    public void removeDirectory( final String repositoryId, final String path )
+    {
+        final Versions versions = versions( repositoryId );
+        synchronized ( versions )
+        {
+            versions.table().removeDirectory( location( path ) );
+        }
+    }
+
+    /**
+     * Drops index of repository, including the persisted one.
+     */
+    public void removeRepository( final String repositoryId )
+    {
+        final Versions versions = versions( repositoryId );
+        synchronized ( versions )
+        {
+            versions.delete();
+        }
+        repositories.remove( repositoryId );
+    }
+
+    /**
+     * @return ids of repositories with a persisted index, whether used since start or not
+     */
+    public Set<String> persistedRepositoryIds()
+    {
+        return VersionTable.persistedRepositoryIds( directory );
+    }
+
+    /**
+     * Fills index out of a scan of given storage directory, if not yet done.
+     */
+    public void loadIfNeeded( final String repositoryId, final File baseDir, final RpmScanner scanner )
+        throws IOException
+    {
+        if ( !isLoaded( repositoryId ) )
+        {
+            load( repositoryId, baseDir, scanner, null );
+        }
+    }
+
+    /**
+     * Replaces indexed RPMs by the ones found by a scan of given storage directory. Each found RPM is passed on to
+     * given listener, so callers scanning the storage anyway do it once. RPMs stored and deleted meanwhile are
+     * indexed as usual, the storage is not locked during the scan.
+     *
+     * @param listener listener to pass found RPMs to (can be null)
+     */
+    public void load( final String repositoryId,
+                      final File baseDir,
+                      final RpmScanner scanner,
+                      final @Nullable RpmScanner.Listener listener )
+        throws IOException
+    {
+        final Versions versions = versions( repositoryId );
+        synchronized ( versions )
+        {
+            versions.delete();
+        }
+        final String basePath = baseDir.getAbsolutePath() + File.separator;
+        scanner.scan( baseDir, new RpmScanner.Listener()
+        {
+            @Override
+            public void onRpm( final File rpm )
+                throws IOException
+            {
+                final String path = rpm.getAbsolutePath();
+                if ( path.startsWith( basePath ) )
+                {
+                    add( repositoryId, path.substring( basePath.length() ).replace( File.separatorChar, '/' ) );
+                }
+                if ( listener != null )
+                {
+                    listener.onRpm( rpm );
+                }
+            }
+        } );
+        synchronized ( versions )
+        {
+            versions.setLoaded();
+            LOG.debug( "Indexed versions of {} RPMs of {}", versions.table().size(), repositoryId );
+        }
+    }
+
+    /**
+     * @return true if RPM at given path is indexed
+     */
+    public boolean contains( final String repositoryId, final String path )
+    {
+        final Versions versions = versions( repositoryId );
+        final String location = location( path );
+        synchronized ( versions )
+        {
+            return versions.table().contains( location );
+        }
+    }
+
+    /**
+     * @return true if index was filled out of a storage scan already, so it has all RPMs of repository
+     */
+    public boolean isLoaded( final String repositoryId )
+    {
+        final Versions versions = versions( repositoryId );
+        synchronized ( versions )
+        {
+            return versions.isLoaded();
+        }
+    }
+
+    /**
+     * @return locations of RPMs in directories named as given version, in order they were added
+     */
+    public List<String> get( final String repositoryId, final String version )
+    {
+        final Versions versions = versions( repositoryId );
+        synchronized ( versions )
+        {
+            return versions.table().get( version );
+        }
+    }
+
+    private Versions versions( final String repositoryId )
+    {
+        Versions versions = repositories.get( repositoryId );
+        if ( versions == null )
+        {
+            final Versions created = new Versions( repositoryId );
+            versions = repositories.putIfAbsent( repositoryId, created );
+            if ( versions == null )
+            {
+                versions = created;
+            }
+        }
+        return versions;
+    }
+
+    private static String location( final String path )
+    {
+        return path.startsWith( "/" ) ? path.substring( 1 ) : path;
+    }
+
+    /**
+     * RPM locations of a repository by version. All access has to be synchronized on it.
+     */
+    private class Versions
+    {
+
+        private final String repositoryId;
+
+        private VersionTable table;
+
+        private Boolean loaded;
+
+        Versions( final String repositoryId )
+        {
+            this.repositoryId = repositoryId;
+        }
+
+        /**
+         * @return table, loaded from persisted index on first call
+         */
+        VersionTable table()
+        {
+            if ( table == null )
+            {
+                table = directory == null ? new VersionTable() : new VersionTable( directory, repositoryId );
+            }
+            return table;
+        }
+
+        boolean isLoaded()
+        {
+            if ( loaded == null )
+            {
+                loaded = directory != null && loadedMarker().isFile();
+            }
+            return loaded;
+        }
+
+        void setLoaded()
+        {
+            loaded = Boolean.TRUE;
+            if ( directory != null )
+            {
+                try
+                {
+                    directory.mkdirs();
+                    loadedMarker().createNewFile();
+                }
+                catch ( IOException e )
+                {
+                    LOG.warn( "Could not mark version index of repository {} as loaded", repositoryId, e );
+                }
+            }
+        }
+
+        /**
+         * Drops table and loaded state, including the persisted ones.
+         */
+        void delete()
+        {
+            if ( table != null )
+            {
+                table.delete();
+            }
+            else if ( directory != null )
+            {
+                VersionTable.deletePersisted( directory, repositoryId );
+            }
+            if ( directory != null )
+            {
+                loadedMarker().delete();
+            }
+            table = null;
+            loaded = Boolean.FALSE;
+        }
+
+        private File loadedMarker()
+        {
+            return new File( directory, repositoryId + LOADED_SUFFIX );
+        }
+
+    }
+
+}
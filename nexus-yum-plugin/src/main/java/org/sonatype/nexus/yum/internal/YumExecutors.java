@@ -0,0 +1,361 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.sonatype.nexus.yum.internal.metrics.YumMetrics.JMX_DOMAIN;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonatype.nexus.proxy.events.NexusStoppedEvent;
+import org.sonatype.nexus.yum.internal.metrics.ExecutorMetrics;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Named thread pools of the yum plugin:
+ * <ul>
+ * <li>{@code delays} - delayed work, e.g. processing of directory deletions</li>
+ * <li>{@code io} - best effort background work, e.g. hashing and header extraction of stored RPMs; tasks are
+ * discarded when saturated, so submitters (e.g. event handlers) are never slowed down</li>
+ * <li>{@code cpu} - CPU bound work, e.g. compression of metadata; tasks run in the submitting thread when
+ * saturated</li>
+ * </ul>
+ * Pools are created once and only resized when the yum capability is (re)activated. They are shut down when Nexus
+ * stops. Queue depth, active threads and task durations of each pool are exposed via JMX under
+ * {@code org.sonatype.nexus.yum:type=Executor,name=<pool>} and via the {@code /yum/metrics} resource.
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+@EventBus.Managed
+public class YumExecutors
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger( YumExecutors.class );
+
+    public static final int DEFAULT_DELAY_THREADS = 2;
+
+    public static final int DEFAULT_IO_THREADS = 4;
+
+    /**
+     * Use one thread per available processor.
+     */
+    public static final int DEFAULT_CPU_THREADS = 0;
+
+    private static final int QUEUE_CAPACITY = 1000;
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final InstrumentedScheduledThreadPoolExecutor delays;
+
+    private final InstrumentedThreadPoolExecutor io;
+
+    private final InstrumentedThreadPoolExecutor cpu;
+
+    private final MBeanServer mBeanServer;
+
+    public YumExecutors()
+    {
+        delays = new InstrumentedScheduledThreadPoolExecutor( "delays", DEFAULT_DELAY_THREADS );
+        io = new InstrumentedThreadPoolExecutor( "io", DEFAULT_IO_THREADS, false );
+        cpu = new InstrumentedThreadPoolExecutor( "cpu", cpuThreads( DEFAULT_CPU_THREADS ), true );
+        mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        for ( final ExecutorMetrics metrics : metrics() )
+        {
+            register( metrics );
+        }
+    }
+
+    public ScheduledThreadPoolExecutor delays()
+    {
+        return delays;
+    }
+
+    public ExecutorService io()
+    {
+        return io;
+    }
+
+    public ExecutorService cpu()
+    {
+        return cpu;
+    }
+
+    public Collection<ExecutorMetrics> metrics()
+    {
+        return Arrays.asList( delays.metrics, io.metrics, cpu.metrics );
+    }
+
+    /**
+     * Resizes pools in place, values lower than 1 fall back to defaults.
+     */
+    public void resize( final int delayThreads, final int ioThreads, final int cpuThreads )
+    {
+        delays.setCorePoolSize( delayThreads > 0 ? delayThreads : DEFAULT_DELAY_THREADS );
+        resize( io, ioThreads > 0 ? ioThreads : DEFAULT_IO_THREADS );
+        resize( cpu, cpuThreads( cpuThreads ) );
+        LOG.debug(
+            "Yum executors sized to {} delay, {} io and {} cpu threads",
+            new Object[]{ delays.getCorePoolSize(), io.getCorePoolSize(), cpu.getCorePoolSize() }
+        );
+    }
+
+    public void shutdown()
+    {
+        delays.shutdown();
+        io.shutdown();
+        cpu.shutdown();
+        for ( final ExecutorMetrics metrics : metrics() )
+        {
+            unregister( metrics );
+        }
+    }
+
+    @Subscribe
+    public void on( final NexusStoppedEvent event )
+    {
+        shutdown();
+    }
+
+    private void resize( final ThreadPoolExecutor executor, final int threads )
+    {
+        // core size must never exceed maximum size
+        if ( threads > executor.getMaximumPoolSize() )
+        {
+            executor.setMaximumPoolSize( threads );
+            executor.setCorePoolSize( threads );
+        }
+        else
+        {
+            executor.setCorePoolSize( threads );
+            executor.setMaximumPoolSize( threads );
+        }
+    }
+
+    private static int cpuThreads( final int configured )
+    {
+        return configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+    }
+
+    private void register( final ExecutorMetrics metrics )
+    {
+        try
+        {
+            final ObjectName name = objectName( metrics.getName() );
+            if ( mBeanServer.isRegistered( name ) )
+            {
+                mBeanServer.unregisterMBean( name );
+            }
+            mBeanServer.registerMBean( metrics, name );
+        }
+        catch ( JMException e )
+        {
+            LOG.warn( "Could not register metrics of yum executor '{}' with JMX", metrics.getName(), e );
+        }
+    }
+
+    private void unregister( final ExecutorMetrics metrics )
+    {
+        try
+        {
+            final ObjectName name = objectName( metrics.getName() );
+            if ( mBeanServer.isRegistered( name ) )
+            {
+                mBeanServer.unregisterMBean( name );
+            }
+        }
+        catch ( JMException e )
+        {
+            LOG.warn( "Could not unregister metrics of yum executor '{}' from JMX", metrics.getName(), e );
+        }
+    }
+
+    static ObjectName objectName( final String poolName )
+        throws JMException
+    {
+        return new ObjectName( JMX_DOMAIN + ":type=Executor,name=" + ObjectName.quote( poolName ) );
+    }
+
+    /**
+     * Bounded pool, running tasks in the submitting thread or discarding them when saturated.
+     */
+    private static class InstrumentedThreadPoolExecutor
+        extends ThreadPoolExecutor
+    {
+
+        private final ExecutorMetrics metrics;
+
+        InstrumentedThreadPoolExecutor( final String name, final int threads, final boolean callerRunsWhenSaturated )
+        {
+            super(
+                threads, threads, KEEP_ALIVE_SECONDS, SECONDS,
+                new LinkedBlockingQueue<Runnable>( QUEUE_CAPACITY ),
+                new ThreadFactoryBuilder().setNameFormat( "yum-" + name + "-%d" ).setDaemon( true ).build()
+            );
+            allowCoreThreadTimeOut( true );
+            metrics = new ExecutorMetrics( name, this );
+            setRejectedExecutionHandler(
+                callerRunsWhenSaturated ? new CallerRuns( metrics ) : new CancelAndLog( metrics )
+            );
+        }
+
+        @Override
+        protected void beforeExecute( final Thread thread, final Runnable runnable )
+        {
+            super.beforeExecute( thread, runnable );
+            metrics.started();
+        }
+
+        @Override
+        protected void afterExecute( final Runnable runnable, final Throwable throwable )
+        {
+            metrics.finished();
+            super.afterExecute( runnable, throwable );
+        }
+
+    }
+
+    /**
+     * Scheduled pool discarding (and logging) tasks submitted after shutdown. Delayed tasks are dropped on shutdown.
+     */
+    private static class InstrumentedScheduledThreadPoolExecutor
+        extends ScheduledThreadPoolExecutor
+    {
+
+        private final ExecutorMetrics metrics;
+
+        InstrumentedScheduledThreadPoolExecutor( final String name, final int threads )
+        {
+            super(
+                threads, new ThreadFactoryBuilder().setNameFormat( "yum-" + name + "-%d" ).setDaemon( true ).build()
+            );
+            setExecuteExistingDelayedTasksAfterShutdownPolicy( false );
+            metrics = new ExecutorMetrics( name, this );
+            setRejectedExecutionHandler( new DiscardAndLog( metrics ) );
+        }
+
+        @Override
+        protected void beforeExecute( final Thread thread, final Runnable runnable )
+        {
+            super.beforeExecute( thread, runnable );
+            metrics.started();
+        }
+
+        @Override
+        protected void afterExecute( final Runnable runnable, final Throwable throwable )
+        {
+            metrics.finished();
+            super.afterExecute( runnable, throwable );
+        }
+
+    }
+
+    /**
+     * Runs tasks in the submitting thread. After shutdown tasks are rejected, so submitters can run them on their own
+     * instead of waiting for them forever.
+     */
+    private static class CallerRuns
+        implements RejectedExecutionHandler
+    {
+
+        private final ExecutorMetrics metrics;
+
+        CallerRuns( final ExecutorMetrics metrics )
+        {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void rejectedExecution( final Runnable runnable, final ThreadPoolExecutor executor )
+        {
+            if ( executor.isShutdown() )
+            {
+                metrics.rejected();
+                throw new RejectedExecutionException( "Yum executor '" + metrics.getName() + "' is shut down" );
+            }
+            metrics.callerRan();
+            runnable.run();
+        }
+
+    }
+
+    /**
+     * Discards (and logs) tasks. Discarded futures get cancelled, so nobody waits for them forever.
+     */
+    private static class CancelAndLog
+        implements RejectedExecutionHandler
+    {
+
+        private final ExecutorMetrics metrics;
+
+        CancelAndLog( final ExecutorMetrics metrics )
+        {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void rejectedExecution( final Runnable runnable, final ThreadPoolExecutor executor )
+        {
+            metrics.rejected();
+            if ( runnable instanceof Future )
+            {
+                ( (Future<?>) runnable ).cancel( false );
+            }
+            LOG.warn(
+                "Yum executor '{}' is {}, discarding {}",
+                new Object[]{ metrics.getName(), executor.isShutdown() ? "shut down" : "saturated", runnable }
+            );
+        }
+
+    }
+
+    private static class DiscardAndLog
+        implements RejectedExecutionHandler
+    {
+
+        private final ExecutorMetrics metrics;
+
+        DiscardAndLog( final ExecutorMetrics metrics )
+        {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void rejectedExecution( final Runnable runnable, final ThreadPoolExecutor executor )
+        {
+            metrics.rejected();
+            LOG.warn( "Yum executor '{}' is shut down, discarding {}", metrics.getName(), runnable );
+        }
+
+    }
+
+}
@@ -27,7 +27,6 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -40,6 +39,7 @@ import org.sonatype.nexus.rest.RepositoryURLBuilder;
 import org.sonatype.nexus.scheduling.NexusScheduler;
 import org.sonatype.nexus.yum.Yum;
 import org.sonatype.nexus.yum.YumRepository;
+import org.sonatype.nexus.yum.internal.metrics.YumMetrics;
 import org.sonatype.nexus.yum.internal.task.GenerateMetadataTask;
 import org.sonatype.nexus.yum.internal.task.TaskAlreadyScheduledException;
 import org.sonatype.scheduling.ScheduledTask;
@@ -60,7 +60,9 @@ public class YumImpl
 
     private final NexusScheduler nexusScheduler;
 
-    private final ScheduledThreadPoolExecutor executor;
+    private final YumExecutors executors;
+
+    private final YumMetrics metrics;
 
     private final Repository repository;
 
@@ -70,6 +72,22 @@ public class YumImpl
 
     private long deleteProcessingDelay;
 
+    private boolean generateDatabase;
+
+    private int retainedGenerations;
+
+    private long retentionMaxAge;
+
+    private long retentionMaxSize;
+
+    private int maxParallelThreads;
+
+    private int schedulingWeight;
+
+    private boolean extractHeadersOnStore;
+
+    private long storageScanInterval;
+
     private final File baseDir;
 
     private final Set<String> versions;
@@ -85,7 +103,8 @@ public class YumImpl
     @Inject
     public YumImpl( final RepositoryURLBuilder repositoryURLBuilder,
                     final NexusScheduler nexusScheduler,
-                    final ScheduledThreadPoolExecutor executor,
+                    final YumExecutors executors,
+                    final YumMetrics metrics,
                     final @Assisted Repository repository,
                     final @Assisted File temporaryDirectory )
         throws MalformedURLException, URISyntaxException
@@ -93,12 +112,20 @@ public class YumImpl
     {
         this.repositoryURLBuilder = checkNotNull( repositoryURLBuilder );
         this.nexusScheduler = checkNotNull( nexusScheduler );
-        this.executor = checkNotNull( executor );
+        this.executors = checkNotNull( executors );
+        this.metrics = checkNotNull( metrics );
         this.repository = checkNotNull( repository );
         this.temporaryDirectory = checkNotNull( temporaryDirectory );
 
         this.processDeletes = true;
         this.deleteProcessingDelay = DEFAULT_DELETE_PROCESSING_DELAY;
+        this.generateDatabase = true;
+        this.retainedGenerations = DEFAULT_RETAINED_GENERATIONS;
+        this.retentionMaxAge = DEFAULT_RETENTION_MAX_AGE;
+        this.retentionMaxSize = DEFAULT_RETENTION_MAX_SIZE;
+        this.maxParallelThreads = DEFAULT_MAX_PARALLEL_THREADS;
+        this.schedulingWeight = DEFAULT_SCHEDULING_WEIGHT;
+        this.storageScanInterval = DEFAULT_STORAGE_SCAN_INTERVAL;
 
         this.versions = Sets.newHashSet();
         this.aliases = Maps.newHashMap();
@@ -140,6 +167,110 @@ public class YumImpl
         return deleteProcessingDelay;
     }
 
+    @Override
+    public Yum setGenerateDatabase( final boolean generateDatabase )
+    {
+        this.generateDatabase = generateDatabase;
+        return this;
+    }
+
+    @Override
+    public boolean shouldGenerateDatabase()
+    {
+        return generateDatabase;
+    }
+
+    @Override
+    public Yum setRetainedGenerations( final int numberOfGenerations )
+    {
+        this.retainedGenerations = numberOfGenerations;
+        return this;
+    }
+
+    @Override
+    public Yum setRetentionMaxAge( final long numberOfMinutes )
+    {
+        this.retentionMaxAge = numberOfMinutes;
+        return this;
+    }
+
+    @Override
+    public Yum setRetentionMaxSize( final long numberOfMegabytes )
+    {
+        this.retentionMaxSize = numberOfMegabytes;
+        return this;
+    }
+
+    @Override
+    public int retainedGenerations()
+    {
+        return retainedGenerations;
+    }
+
+    @Override
+    public long retentionMaxAge()
+    {
+        return retentionMaxAge;
+    }
+
+    @Override
+    public long retentionMaxSize()
+    {
+        return retentionMaxSize;
+    }
+
+    @Override
+    public Yum setMaxParallelThreads( final int numberOfThreads )
+    {
+        this.maxParallelThreads = numberOfThreads;
+        return this;
+    }
+
+    @Override
+    public Yum setSchedulingWeight( final int weight )
+    {
+        this.schedulingWeight = weight;
+        return this;
+    }
+
+    @Override
+    public int maxParallelThreads()
+    {
+        return maxParallelThreads;
+    }
+
+    @Override
+    public int schedulingWeight()
+    {
+        return schedulingWeight;
+    }
+
+    @Override
+    public Yum setExtractHeadersOnStore( final boolean extractHeadersOnStore )
+    {
+        this.extractHeadersOnStore = extractHeadersOnStore;
+        return this;
+    }
+
+    @Override
+    public boolean shouldExtractHeadersOnStore()
+    {
+        return extractHeadersOnStore;
+    }
+
+    @Override
+    public Yum setStorageScanInterval( final long numberOfSeconds )
+    {
+        this.storageScanInterval = numberOfSeconds;
+        return this;
+    }
+
+    @Override
+    public long storageScanInterval()
+    {
+        return storageScanInterval;
+    }
+
     @Override
     public File getBaseDir()
     {
@@ -202,6 +333,8 @@ public class YumImpl
             task.setRepoUrl( yumRepoUrl.toString() );
             task.setRepositoryId( repository.getId() );
             task.setVersion( version );
+            task.setGenerateDatabase( shouldGenerateDatabase() );
+            task.setAssembleMetadata( shouldExtractHeadersOnStore() );
             return submitTask( task );
         }
         catch ( Exception e )
@@ -222,6 +355,7 @@ public class YumImpl
             );
             yumRepository = (YumRepositoryImpl) future.get();
             cache.cache( yumRepository );
+            metrics.get( repository.getId() ).setVersionedCacheSize( cache.size() );
         }
         return yumRepository;
     }
@@ -234,6 +368,7 @@ public class YumImpl
         }
         catch ( TaskAlreadyScheduledException e )
         {
+            metrics.get( repository.getId() ).coalesced();
             return mergeAddedFiles( e.getOriginal(), task );
         }
     }
@@ -261,6 +396,8 @@ public class YumImpl
             task.setRpmUrl( repositoryURLBuilder.getRepositoryContentUrl( repository ) );
             task.setRepositoryId( repository.getId() );
             task.setAddedFiles( filePath );
+            task.setGenerateDatabase( shouldGenerateDatabase() );
+            task.setAssembleMetadata( shouldExtractHeadersOnStore() );
             return submitTask( task );
         }
         catch ( Exception e )
@@ -338,14 +475,14 @@ public class YumImpl
 
     private void schedule( DelayedDirectoryDeletionTask task )
     {
-        final ScheduledFuture<?> future = executor.schedule( task, deleteProcessingDelay(), SECONDS );
+        final ScheduledFuture<?> future = executors.delays().schedule( task, deleteProcessingDelay(), SECONDS );
         taskMap.put( future, task );
         reverseTaskMap.put( task, future );
     }
 
     private DelayedDirectoryDeletionTask findDelayedParentDirectory( final String path )
     {
-        for ( final Runnable runnable : executor.getQueue() )
+        for ( final Runnable runnable : executors.delays().getQueue() )
         {
             DelayedDirectoryDeletionTask dirTask = taskMap.get( runnable );
             if ( dirTask != null && path.startsWith( dirTask.path ) )
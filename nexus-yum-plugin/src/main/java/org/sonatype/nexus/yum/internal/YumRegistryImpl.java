@@ -32,6 +32,7 @@ import org.sonatype.nexus.proxy.repository.HostedRepository;
 import org.sonatype.nexus.scheduling.NexusScheduler;
 import org.sonatype.nexus.yum.Yum;
 import org.sonatype.nexus.yum.YumRegistry;
+import org.sonatype.nexus.yum.internal.metrics.YumMetrics;
 import org.sonatype.nexus.yum.internal.task.RepositoryScanningTask;
 
 @Named
@@ -50,17 +51,27 @@ public class YumRegistryImpl
 
     private final YumFactory yumFactory;
 
+    private final YumMetrics metrics;
+
     private int maxNumberOfParallelThreads;
 
+    private int interactiveReservedThreads;
+
+    private int sortMemory;
+
     @Inject
     public YumRegistryImpl( final NexusConfiguration nexusConfiguration,
                             final NexusScheduler nexusScheduler,
-                            final YumFactory yumFactory )
+                            final YumFactory yumFactory,
+                            final YumMetrics metrics )
     {
         this.nexusConfiguration = checkNotNull( nexusConfiguration );
         this.nexusScheduler = checkNotNull( nexusScheduler );
         this.yumFactory = checkNotNull( yumFactory );
+        this.metrics = checkNotNull( metrics );
         this.maxNumberOfParallelThreads = DEFAULT_MAX_NUMBER_PARALLEL_THREADS;
+        this.interactiveReservedThreads = DEFAULT_INTERACTIVE_RESERVED_THREADS;
+        this.sortMemory = DEFAULT_SORT_MEMORY;
     }
 
     @Override
@@ -89,6 +100,7 @@ public class YumRegistryImpl
     public Yum unregister( final String repositoryId )
     {
         final Yum yum = yums.remove( repositoryId );
+        metrics.remove( repositoryId );
         if ( yum != null )
         {
             LOG.info( "Unregistered repository '{}' as Yum repository", repositoryId );
@@ -130,6 +142,34 @@ public class YumRegistryImpl
         return maxNumberOfParallelThreads;
     }
 
+    @Override
+    public YumRegistry setInteractiveReservedThreads( final int interactiveReservedThreads )
+    {
+        this.interactiveReservedThreads = interactiveReservedThreads;
+
+        return this;
+    }
+
+    @Override
+    public int interactiveReservedThreads()
+    {
+        return interactiveReservedThreads;
+    }
+
+    @Override
+    public YumRegistry setSortMemory( final int sortMemory )
+    {
+        this.sortMemory = sortMemory;
+
+        return this;
+    }
+
+    @Override
+    public int sortMemory()
+    {
+        return sortMemory;
+    }
+
     @Override
     public File getTemporaryDirectory()
     {
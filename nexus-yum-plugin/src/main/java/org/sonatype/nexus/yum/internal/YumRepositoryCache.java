@@ -46,6 +46,11 @@ public class YumRepositoryCache
         }
     }
 
+    public int size()
+    {
+        return cache.size();
+    }
+
     private String hash( String id, String version )
     {
         return id + "/" + version;
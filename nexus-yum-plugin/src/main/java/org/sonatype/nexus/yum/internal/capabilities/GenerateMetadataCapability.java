@@ -23,18 +23,25 @@ import org.sonatype.nexus.plugins.capabilities.support.condition.Conditions;
 import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
 import org.sonatype.nexus.yum.Yum;
 import org.sonatype.nexus.yum.YumRegistry;
+import org.sonatype.nexus.yum.internal.StorageWatcher;
+import org.sonatype.nexus.yum.internal.metrics.YumMetrics;
 
 @Named( GenerateMetadataCapabilityDescriptor.TYPE_ID )
 public class GenerateMetadataCapability
     extends MetadataCapabilitySupport<GenerateMetadataCapabilityConfiguration>
 {
 
+    private final StorageWatcher storageWatcher;
+
     @Inject
     public GenerateMetadataCapability( final YumRegistry yumRegistry,
                                        final Conditions conditions,
-                                       final RepositoryRegistry repositoryRegistry )
+                                       final RepositoryRegistry repositoryRegistry,
+                                       final YumMetrics metrics,
+                                       final StorageWatcher storageWatcher )
     {
-        super( yumRegistry, conditions, repositoryRegistry );
+        super( yumRegistry, conditions, repositoryRegistry, metrics );
+        this.storageWatcher = checkNotNull( storageWatcher );
     }
 
     @Override
@@ -46,6 +53,16 @@ public class GenerateMetadataCapability
         yum.setAliases( configuration().aliases() );
         yum.setProcessDeletes( configuration().shouldProcessDeletes() );
         yum.setDeleteProcessingDelay( configuration().deleteProcessingDelay() );
+        yum.setGenerateDatabase( configuration().shouldGenerateDatabase() );
+        yum.setRetainedGenerations( configuration().retainedGenerations() );
+        yum.setRetentionMaxAge( configuration().retentionMaxAge() );
+        yum.setRetentionMaxSize( configuration().retentionMaxSize() );
+        yum.setMaxParallelThreads( configuration().maxParallelThreads() );
+        yum.setSchedulingWeight( configuration().schedulingWeight() );
+        yum.setExtractHeadersOnStore( configuration().shouldExtractHeadersOnStore() );
+        yum.setStorageScanInterval( configuration().storageScanInterval() );
+
+        storageWatcher.watch( yum );
     }
 
     @Override
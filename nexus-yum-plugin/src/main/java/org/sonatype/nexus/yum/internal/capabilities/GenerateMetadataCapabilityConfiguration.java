@@ -34,22 +34,42 @@ public class GenerateMetadataCapabilityConfiguration
 
     public static final String DELETE_PROCESSING_DELAY = "deleteProcessingDelay";
 
+    public static final String MAX_PARALLEL_THREADS = "maxParallelThreads";
+
+    public static final String SCHEDULING_WEIGHT = "schedulingWeight";
+
+    public static final String EXTRACT_HEADERS_ON_STORE = "extractHeadersOnStore";
+
+    public static final String STORAGE_SCAN_INTERVAL = "storageScanInterval";
+
     private Map<String, String> aliases;
 
     private boolean processDeletes;
 
     private long deleteProcessingDelay;
 
+    private int maxParallelThreads;
+
+    private int schedulingWeight;
+
+    private boolean extractHeadersOnStore;
+
+    private long storageScanInterval;
+
     public GenerateMetadataCapabilityConfiguration( final String repository,
                                                     final Map<String, String> aliases,
                                                     final boolean processDeletes,
-                                                    final long deleteProcessingDelay )
+                                                    final long deleteProcessingDelay,
+                                                    final boolean generateDatabase )
     {
-        super( repository );
+        super( repository, generateDatabase );
         this.aliases = Maps.newTreeMap();
         this.aliases.putAll( checkNotNull( aliases ) );
         this.processDeletes = processDeletes;
         this.deleteProcessingDelay = deleteProcessingDelay;
+        this.maxParallelThreads = Yum.DEFAULT_MAX_PARALLEL_THREADS;
+        this.schedulingWeight = Yum.DEFAULT_SCHEDULING_WEIGHT;
+        this.storageScanInterval = Yum.DEFAULT_STORAGE_SCAN_INTERVAL;
     }
 
     public GenerateMetadataCapabilityConfiguration( final Map<String, String> properties )
@@ -62,7 +82,7 @@ public class GenerateMetadataCapabilityConfiguration
         boolean processDeletes = true;
         if ( properties.containsKey( DELETE_PROCESSING ) )
         {
-            processDeletes = Boolean.parseBoolean( DELETE_PROCESSING );
+            processDeletes = Boolean.parseBoolean( properties.get( DELETE_PROCESSING ) );
         }
         this.processDeletes = processDeletes;
 
@@ -76,6 +96,41 @@ public class GenerateMetadataCapabilityConfiguration
             // will use default
         }
         this.deleteProcessingDelay = deleteProcessingDelay;
+
+        int maxParallelThreads = Yum.DEFAULT_MAX_PARALLEL_THREADS;
+        try
+        {
+            maxParallelThreads = Integer.parseInt( properties.get( MAX_PARALLEL_THREADS ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            // will use default
+        }
+        this.maxParallelThreads = maxParallelThreads;
+
+        int schedulingWeight = Yum.DEFAULT_SCHEDULING_WEIGHT;
+        try
+        {
+            schedulingWeight = Math.max( 1, Integer.parseInt( properties.get( SCHEDULING_WEIGHT ) ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            // will use default
+        }
+        this.schedulingWeight = schedulingWeight;
+
+        this.extractHeadersOnStore = Boolean.parseBoolean( properties.get( EXTRACT_HEADERS_ON_STORE ) );
+
+        long storageScanInterval = Yum.DEFAULT_STORAGE_SCAN_INTERVAL;
+        try
+        {
+            storageScanInterval = Math.max( 0, Long.parseLong( properties.get( STORAGE_SCAN_INTERVAL ) ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            // will use default
+        }
+        this.storageScanInterval = storageScanInterval;
     }
 
     public Map<String, String> aliases()
@@ -93,12 +148,36 @@ public class GenerateMetadataCapabilityConfiguration
         return processDeletes;
     }
 
+    public int maxParallelThreads()
+    {
+        return maxParallelThreads;
+    }
+
+    public int schedulingWeight()
+    {
+        return schedulingWeight;
+    }
+
+    public boolean shouldExtractHeadersOnStore()
+    {
+        return extractHeadersOnStore;
+    }
+
+    public long storageScanInterval()
+    {
+        return storageScanInterval;
+    }
+
     public Map<String, String> asMap()
     {
         final Map<String, String> props = super.asMap();
         props.put( ALIASES, new AliasMappings( aliases ).toString() );
         props.put( DELETE_PROCESSING, String.valueOf( processDeletes ) );
         props.put( DELETE_PROCESSING_DELAY, String.valueOf( deleteProcessingDelay ) );
+        props.put( MAX_PARALLEL_THREADS, String.valueOf( maxParallelThreads ) );
+        props.put( SCHEDULING_WEIGHT, String.valueOf( schedulingWeight ) );
+        props.put( EXTRACT_HEADERS_ON_STORE, String.valueOf( extractHeadersOnStore ) );
+        props.put( STORAGE_SCAN_INTERVAL, String.valueOf( storageScanInterval ) );
         return props;
     }
 
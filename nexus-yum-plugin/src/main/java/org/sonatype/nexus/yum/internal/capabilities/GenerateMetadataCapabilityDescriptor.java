@@ -73,6 +73,62 @@ public class GenerateMetadataCapabilityDescriptor
                 "Number of seconds to wait before regenerating Yum repository when an RPM is removed"
                     + " (default 10 seconds)",
                 FormField.OPTIONAL
+            ),
+            new CheckboxFormField(
+                GenerateMetadataCapabilityConfiguration.GENERATE_DATABASE,
+                "Generate sqlite databases",
+                "Check if sqlite databases (primary_db, filelists_db, other_db) should be generated besides the XML"
+                    + " metadata (default true)",
+                FormField.OPTIONAL
+            ),
+            new NumberTextFormField(
+                GenerateMetadataCapabilityConfiguration.RETAINED_GENERATIONS,
+                "Retained generations",
+                "Number of previous metadata generations kept available for clients holding an older repomd.xml"
+                    + " (default 1)",
+                FormField.OPTIONAL
+            ),
+            new NumberTextFormField(
+                GenerateMetadataCapabilityConfiguration.RETENTION_MAX_AGE,
+                "Retention max age",
+                "Number of minutes a previous metadata generation is kept available (default 10 minutes)",
+                FormField.OPTIONAL
+            ),
+            new NumberTextFormField(
+                GenerateMetadataCapabilityConfiguration.RETENTION_MAX_SIZE,
+                "Retention max size",
+                "Maximum size in megabytes of kept previous metadata generations (default 0, no limit)",
+                FormField.OPTIONAL
+            ),
+            new NumberTextFormField(
+                GenerateMetadataCapabilityConfiguration.MAX_PARALLEL_THREADS,
+                "Max number of parallel threads",
+                "Maximum number of threads generating Yum metadata for this repository at the same time"
+                    + " (default 0, only limited by the Yum configuration)",
+                FormField.OPTIONAL
+            ),
+            new NumberTextFormField(
+                GenerateMetadataCapabilityConfiguration.SCHEDULING_WEIGHT,
+                "Scheduling weight",
+                "Share of the generation threads this repository gets relative to other repositories when they are"
+                    + " all busy (default 1)",
+                FormField.OPTIONAL
+            ),
+            new CheckboxFormField(
+                GenerateMetadataCapabilityConfiguration.EXTRACT_HEADERS_ON_STORE,
+                "Extract headers on store",
+                "Check if RPM headers should be read right after an RPM is stored, so its metadata is prepared before"
+                    + " the next generation. Without sqlite databases, metadata is then assembled out of the prepared"
+                    + " package metadata instead of running createrepo (default false)",
+                FormField.OPTIONAL
+            ),
+            new NumberTextFormField(
+                GenerateMetadataCapabilityConfiguration.STORAGE_SCAN_INTERVAL,
+                "Storage scan interval",
+                "Number of seconds between scans of the repository storage for RPMs added or deleted directly on"
+                    + " disk (e.g. by rsync), which are then added to or removed from Yum repository (default 0 ="
+                    + " never)",
+                FormField.OPTIONAL
             )
         );
         this.validators = validators;
@@ -12,13 +12,18 @@
  */
 package org.sonatype.nexus.yum.internal.capabilities;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
 import java.util.Map;
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.sonatype.nexus.plugins.capabilities.support.condition.Conditions;
 import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.nexus.yum.Yum;
 import org.sonatype.nexus.yum.YumRegistry;
+import org.sonatype.nexus.yum.internal.metrics.YumMetrics;
 
 @Named( MergeMetadataCapabilityDescriptor.TYPE_ID )
 public class MergeMetadataCapability
@@ -28,9 +33,22 @@ public class MergeMetadataCapability
     @Inject
     public MergeMetadataCapability( final YumRegistry service,
                                     final Conditions conditions,
-                                    final RepositoryRegistry repositoryRegistry )
+                                    final RepositoryRegistry repositoryRegistry,
+                                    final YumMetrics metrics )
+    {
+        super( service, conditions, repositoryRegistry, metrics );
+    }
+
+    @Override
+    void configureYum( final Yum yum )
     {
-        super( service, conditions, repositoryRegistry );
+        checkNotNull( yum );
+        checkState( isConfigured() );
+
+        yum.setGenerateDatabase( configuration().shouldGenerateDatabase() );
+        yum.setRetainedGenerations( configuration().retainedGenerations() );
+        yum.setRetentionMaxAge( configuration().retentionMaxAge() );
+        yum.setRetentionMaxSize( configuration().retentionMaxSize() );
     }
 
     @Override
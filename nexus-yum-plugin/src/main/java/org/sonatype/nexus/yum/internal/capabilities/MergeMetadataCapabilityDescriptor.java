@@ -19,7 +19,9 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.sonatype.nexus.formfields.CheckboxFormField;
 import org.sonatype.nexus.formfields.FormField;
+import org.sonatype.nexus.formfields.NumberTextFormField;
 import org.sonatype.nexus.formfields.RepoOrGroupComboFormField;
 import org.sonatype.nexus.plugins.capabilities.CapabilityDescriptor;
 import org.sonatype.nexus.plugins.capabilities.CapabilityIdentity;
@@ -49,7 +51,33 @@ public class MergeMetadataCapabilityDescriptor
             TYPE,
             "Yum: Merge Metadata",
             "Merges Yum metadata from group members.",
-            new RepoOrGroupComboFormField( REPOSITORY_ID, FormField.MANDATORY )
+            new RepoOrGroupComboFormField( REPOSITORY_ID, FormField.MANDATORY ),
+            new CheckboxFormField(
+                MergeMetadataCapabilityConfiguration.GENERATE_DATABASE,
+                "Generate sqlite databases",
+                "Check if sqlite databases (primary_db, filelists_db, other_db) should be generated besides the XML"
+                    + " metadata (default true)",
+                FormField.OPTIONAL
+            ),
+            new NumberTextFormField(
+                MergeMetadataCapabilityConfiguration.RETAINED_GENERATIONS,
+                "Retained generations",
+                "Number of previous metadata generations kept available for clients holding an older repomd.xml"
+                    + " (default 1)",
+                FormField.OPTIONAL
+            ),
+            new NumberTextFormField(
+                MergeMetadataCapabilityConfiguration.RETENTION_MAX_AGE,
+                "Retention max age",
+                "Number of minutes a previous metadata generation is kept available (default 10 minutes)",
+                FormField.OPTIONAL
+            ),
+            new NumberTextFormField(
+                MergeMetadataCapabilityConfiguration.RETENTION_MAX_SIZE,
+                "Retention max size",
+                "Maximum size in megabytes of kept previous metadata generations (default 0, no limit)",
+                FormField.OPTIONAL
+            )
         );
         this.validators = validators;
     }
@@ -16,6 +16,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.Map;
 
+import org.sonatype.nexus.yum.Yum;
 import com.google.common.collect.Maps;
 
 /**
@@ -28,17 +29,78 @@ public abstract class MetadataCapabilityConfigurationSupport
 
     public static final String REPOSITORY_ID = "repository";
 
+    public static final String GENERATE_DATABASE = "generateDatabase";
+
+    public static final String RETAINED_GENERATIONS = "retainedGenerations";
+
+    public static final String RETENTION_MAX_AGE = "retentionMaxAge";
+
+    public static final String RETENTION_MAX_SIZE = "retentionMaxSize";
+
     private String repository;
 
-    public MetadataCapabilityConfigurationSupport( final String repository )
+    private boolean generateDatabase;
+
+    private int retainedGenerations;
+
+    private long retentionMaxAge;
+
+    private long retentionMaxSize;
+
+    public MetadataCapabilityConfigurationSupport( final String repository,
+                                                   final boolean generateDatabase )
     {
         this.repository = checkNotNull( repository );
+        this.generateDatabase = generateDatabase;
+        this.retainedGenerations = Yum.DEFAULT_RETAINED_GENERATIONS;
+        this.retentionMaxAge = Yum.DEFAULT_RETENTION_MAX_AGE;
+        this.retentionMaxSize = Yum.DEFAULT_RETENTION_MAX_SIZE;
     }
 
     public MetadataCapabilityConfigurationSupport( final Map<String, String> properties )
     {
         checkNotNull( properties );
         this.repository = properties.get( REPOSITORY_ID );
+
+        boolean generateDatabase = true;
+        if ( properties.containsKey( GENERATE_DATABASE ) )
+        {
+            generateDatabase = Boolean.parseBoolean( properties.get( GENERATE_DATABASE ) );
+        }
+        this.generateDatabase = generateDatabase;
+
+        int retainedGenerations = Yum.DEFAULT_RETAINED_GENERATIONS;
+        try
+        {
+            retainedGenerations = Integer.parseInt( properties.get( RETAINED_GENERATIONS ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            // will use default
+        }
+        this.retainedGenerations = retainedGenerations;
+
+        long retentionMaxAge = Yum.DEFAULT_RETENTION_MAX_AGE;
+        try
+        {
+            retentionMaxAge = Long.parseLong( properties.get( RETENTION_MAX_AGE ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            // will use default
+        }
+        this.retentionMaxAge = retentionMaxAge;
+
+        long retentionMaxSize = Yum.DEFAULT_RETENTION_MAX_SIZE;
+        try
+        {
+            retentionMaxSize = Long.parseLong( properties.get( RETENTION_MAX_SIZE ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            // will use default
+        }
+        this.retentionMaxSize = retentionMaxSize;
     }
 
     public String repository()
@@ -46,10 +108,34 @@ public abstract class MetadataCapabilityConfigurationSupport
         return repository;
     }
 
+    public boolean shouldGenerateDatabase()
+    {
+        return generateDatabase;
+    }
+
+    public int retainedGenerations()
+    {
+        return retainedGenerations;
+    }
+
+    public long retentionMaxAge()
+    {
+        return retentionMaxAge;
+    }
+
+    public long retentionMaxSize()
+    {
+        return retentionMaxSize;
+    }
+
     public Map<String, String> asMap()
     {
         final Map<String, String> props = Maps.newHashMap();
         props.put( REPOSITORY_ID, repository );
+        props.put( GENERATE_DATABASE, String.valueOf( generateDatabase ) );
+        props.put( RETAINED_GENERATIONS, String.valueOf( retainedGenerations ) );
+        props.put( RETENTION_MAX_AGE, String.valueOf( retentionMaxAge ) );
+        props.put( RETENTION_MAX_SIZE, String.valueOf( retentionMaxSize ) );
         return props;
     }
 
@@ -15,6 +15,8 @@ package org.sonatype.nexus.yum.internal.capabilities;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.InputStream;
+import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import javax.inject.Inject;
 
@@ -33,6 +35,8 @@ import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.yum.Yum;
 import org.sonatype.nexus.yum.YumRegistry;
 import org.sonatype.nexus.yum.internal.YumConfigContentGenerator;
+import org.sonatype.nexus.yum.internal.metrics.Timeline;
+import org.sonatype.nexus.yum.internal.metrics.YumMetrics;
 import com.google.common.base.Throwables;
 import com.google.common.io.Closeables;
 
@@ -40,22 +44,28 @@ public abstract class MetadataCapabilitySupport<C extends MetadataCapabilityConf
     extends CapabilitySupport
 {
 
+    private static final int MAX_RUNS_IN_STATUS = 5;
+
     private final YumRegistry yumRegistry;
 
     private final Conditions conditions;
 
     private final RepositoryRegistry repositoryRegistry;
 
+    private final YumMetrics metrics;
+
     private C configuration;
 
     @Inject
     public MetadataCapabilitySupport( final YumRegistry yumRegistry,
                                       final Conditions conditions,
-                                      final RepositoryRegistry repositoryRegistry )
+                                      final RepositoryRegistry repositoryRegistry,
+                                      final YumMetrics metrics )
     {
         this.yumRegistry = checkNotNull( yumRegistry );
         this.conditions = checkNotNull( conditions );
         this.repositoryRegistry = checkNotNull( repositoryRegistry );
+        this.metrics = checkNotNull( metrics );
     }
 
     @Override
@@ -183,7 +193,8 @@ public abstract class MetadataCapabilitySupport<C extends MetadataCapabilityConf
                             "<b>Example Yum configuration file:</b><br/><br/>"
                                 + "<pre>"
                                 + IOUtils.toString( in )
-                                + "</pre>";
+                                + "</pre>"
+                                + recentRuns( repository.getId() );
                     }
                     finally
                     {
@@ -199,6 +210,26 @@ public abstract class MetadataCapabilitySupport<C extends MetadataCapabilityConf
         return null;
     }
 
+    private String recentRuns( final String repositoryId )
+    {
+        final List<Timeline> timelines = metrics.get( repositoryId ).timelines();
+        if ( timelines.isEmpty() )
+        {
+            return "";
+        }
+        final StringBuilder status = new StringBuilder( "<br/><b>Recent metadata runs:</b><br/><br/><pre>" );
+        for ( final Timeline timeline : timelines.subList( 0, Math.min( MAX_RUNS_IN_STATUS, timelines.size() ) ) )
+        {
+            status.append( new Date( timeline.getStartedAt() ) );
+            if ( timeline.getVersion() != null )
+            {
+                status.append( " [" ).append( timeline.getVersion() ).append( ']' );
+            }
+            status.append( ' ' ).append( timeline ).append( '\n' );
+        }
+        return status.append( "</pre>" ).toString();
+    }
+
     public C configuration()
     {
         return configuration;
@@ -20,6 +20,7 @@ import javax.inject.Named;
 
 import org.sonatype.nexus.plugins.capabilities.support.CapabilitySupport;
 import org.sonatype.nexus.yum.YumRegistry;
+import org.sonatype.nexus.yum.internal.YumExecutors;
 
 @Named( YumCapabilityDescriptor.TYPE_ID )
 public class YumCapability
@@ -28,12 +29,16 @@ public class YumCapability
 
     private final YumRegistry yumRegistry;
 
+    private final YumExecutors executors;
+
     private YumCapabilityConfiguration configuration;
 
     @Inject
-    public YumCapability( final YumRegistry yumRegistry )
+    public YumCapability( final YumRegistry yumRegistry,
+                          final YumExecutors executors )
     {
         this.yumRegistry = checkNotNull( yumRegistry );
+        this.executors = checkNotNull( executors );
     }
 
     @Override
@@ -68,6 +73,9 @@ public class YumCapability
     public void onActivate()
     {
         yumRegistry.setMaxNumberOfParallelThreads( configuration.maxNumberParallelThreads() );
+        yumRegistry.setInteractiveReservedThreads( configuration.interactiveReservedThreads() );
+        yumRegistry.setSortMemory( configuration.sortMemory() );
+        executors.resize( configuration.delayThreads(), configuration.ioThreads(), configuration.cpuThreads() );
     }
 
     @Override
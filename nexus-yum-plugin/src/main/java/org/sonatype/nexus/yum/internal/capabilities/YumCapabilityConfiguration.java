@@ -15,6 +15,7 @@ package org.sonatype.nexus.yum.internal.capabilities;
 import java.util.Map;
 
 import org.sonatype.nexus.yum.YumRegistry;
+import org.sonatype.nexus.yum.internal.YumExecutors;
 import com.google.common.collect.Maps;
 
 /**
@@ -27,11 +28,37 @@ public class YumCapabilityConfiguration
 
     public static final String MAX_NUMBER_PARALLEL_THREADS = "maxNumberParallelThreads";
 
+    public static final String INTERACTIVE_RESERVED_THREADS = "interactiveReservedThreads";
+
+    public static final String DELAY_THREADS = "delayThreads";
+
+    public static final String IO_THREADS = "ioThreads";
+
+    public static final String CPU_THREADS = "cpuThreads";
+
+    public static final String SORT_MEMORY = "sortMemory";
+
     private int maxParallelThreads;
 
+    private int interactiveReservedThreads;
+
+    private int delayThreads = YumExecutors.DEFAULT_DELAY_THREADS;
+
+    private int ioThreads = YumExecutors.DEFAULT_IO_THREADS;
+
+    private int cpuThreads = YumExecutors.DEFAULT_CPU_THREADS;
+
+    private int sortMemory = YumRegistry.DEFAULT_SORT_MEMORY;
+
     public YumCapabilityConfiguration( final int maxParallelThreads )
+    {
+        this( maxParallelThreads, YumRegistry.DEFAULT_INTERACTIVE_RESERVED_THREADS );
+    }
+
+    public YumCapabilityConfiguration( final int maxParallelThreads, final int interactiveReservedThreads )
     {
         this.maxParallelThreads = maxParallelThreads;
+        this.interactiveReservedThreads = interactiveReservedThreads;
     }
 
     public YumCapabilityConfiguration( final Map<String, String> properties )
@@ -46,6 +73,34 @@ public class YumCapabilityConfiguration
             // will use default
         }
         this.maxParallelThreads = maxParallelThreads;
+
+        int interactiveReservedThreads = YumRegistry.DEFAULT_INTERACTIVE_RESERVED_THREADS;
+        try
+        {
+            interactiveReservedThreads = Integer.parseInt( properties.get( INTERACTIVE_RESERVED_THREADS ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            // will use default
+        }
+        this.interactiveReservedThreads = interactiveReservedThreads;
+
+        this.delayThreads = parse( properties, DELAY_THREADS, YumExecutors.DEFAULT_DELAY_THREADS );
+        this.ioThreads = parse( properties, IO_THREADS, YumExecutors.DEFAULT_IO_THREADS );
+        this.cpuThreads = parse( properties, CPU_THREADS, YumExecutors.DEFAULT_CPU_THREADS );
+        this.sortMemory = parse( properties, SORT_MEMORY, YumRegistry.DEFAULT_SORT_MEMORY );
+    }
+
+    private static int parse( final Map<String, String> properties, final String key, final int defaultValue )
+    {
+        try
+        {
+            return Integer.parseInt( properties.get( key ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            return defaultValue;
+        }
     }
 
     public int maxNumberParallelThreads()
@@ -53,10 +108,40 @@ public class YumCapabilityConfiguration
         return maxParallelThreads;
     }
 
+    public int interactiveReservedThreads()
+    {
+        return interactiveReservedThreads;
+    }
+
+    public int delayThreads()
+    {
+        return delayThreads;
+    }
+
+    public int ioThreads()
+    {
+        return ioThreads;
+    }
+
+    public int cpuThreads()
+    {
+        return cpuThreads;
+    }
+
+    public int sortMemory()
+    {
+        return sortMemory;
+    }
+
     public Map<String, String> asMap()
     {
         final Map<String, String> props = Maps.newHashMap();
         props.put( MAX_NUMBER_PARALLEL_THREADS, String.valueOf( maxParallelThreads ) );
+        props.put( INTERACTIVE_RESERVED_THREADS, String.valueOf( interactiveReservedThreads ) );
+        props.put( DELAY_THREADS, String.valueOf( delayThreads ) );
+        props.put( IO_THREADS, String.valueOf( ioThreads ) );
+        props.put( CPU_THREADS, String.valueOf( cpuThreads ) );
+        props.put( SORT_MEMORY, String.valueOf( sortMemory ) );
         return props;
     }
 
@@ -53,6 +53,38 @@ public class YumCapabilityDescriptor
                 "Maximum number of threads to be used for generating Yum repositories"
                     + " (default 10 threads)",
                 FormField.OPTIONAL
+            ),
+            new NumberTextFormField(
+                YumCapabilityConfiguration.INTERACTIVE_RESERVED_THREADS,
+                "Threads reserved for versioned repositories",
+                "Number of the parallel threads only used for generating versioned repositories requested by clients,"
+                    + " so they are not delayed by background rebuilds (default 1 thread)",
+                FormField.OPTIONAL
+            ),
+            new NumberTextFormField(
+                YumCapabilityConfiguration.DELAY_THREADS,
+                "Delay threads",
+                "Number of threads running delayed work like processing of deletions (default 2 threads)",
+                FormField.OPTIONAL
+            ),
+            new NumberTextFormField(
+                YumCapabilityConfiguration.IO_THREADS,
+                "I/O threads",
+                "Number of threads fetching repository content (default 4 threads)",
+                FormField.OPTIONAL
+            ),
+            new NumberTextFormField(
+                YumCapabilityConfiguration.CPU_THREADS,
+                "CPU threads",
+                "Number of threads parsing and compressing metadata (default 0, one thread per processor)",
+                FormField.OPTIONAL
+            ),
+            new NumberTextFormField(
+                YumCapabilityConfiguration.SORT_MEMORY,
+                "Sort memory (MB)",
+                "Heap a metadata generation may use for sorting the list of RPMs, larger lists are sorted on disk"
+                    + " (default 32)",
+                FormField.OPTIONAL
             )
         );
         this.validators = validators;
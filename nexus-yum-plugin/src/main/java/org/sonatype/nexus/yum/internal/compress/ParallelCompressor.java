@@ -0,0 +1,90 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.compress;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Gzips metadata using all available cores, by splitting it into blocks compressed in parallel via
+ * {@link ParallelGzipOutputStream}.
+ *
+ * @since 3.0
+ */
+public class ParallelCompressor
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger( ParallelCompressor.class );
+
+    public static final String EXTENSION = "gz";
+
+    private final ExecutorService executor;
+
+    public ParallelCompressor( final ExecutorService executor )
+    {
+        this.executor = checkNotNull( executor );
+    }
+
+    /**
+     * Compresses given source file into a sibling file with ".gz" appended to its name.
+     *
+     * @return compressed file
+     */
+    public File compress( final File source )
+        throws IOException
+    {
+        final File target = new File( source.getParentFile(), source.getName() + "." + EXTENSION );
+        final long start = System.currentTimeMillis();
+
+        InputStream in = null;
+        OutputStream out = null;
+        try
+        {
+            in = new BufferedInputStream( new FileInputStream( source ) );
+            out = openStream( new FileOutputStream( target ) );
+            IOUtils.copy( in, out );
+            out.close();
+        }
+        finally
+        {
+            IOUtils.closeQuietly( in );
+            IOUtils.closeQuietly( out );
+        }
+
+        LOG.debug(
+            "Compressed {} to {} in {} ms", new Object[]{ source, target, System.currentTimeMillis() - start }
+        );
+        return target;
+    }
+
+    /**
+     * @return stream gzipping everything written to it into given stream, which is closed with it
+     */
+    public OutputStream openStream( final OutputStream out )
+    {
+        return new ParallelGzipOutputStream( out, executor );
+    }
+
+}
@@ -0,0 +1,245 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.compress;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip output stream compressing fixed size blocks in parallel (pigz style). Every block is written as a separate
+ * gzip member, so the result is a multi-member gzip file as defined by RFC 1952, readable by gzip, zlib and the
+ * python gzip module used by yum.
+ *
+ * @since 3.0
+ */
+public class ParallelGzipOutputStream
+    extends OutputStream
+{
+
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private final OutputStream out;
+
+    private final Executor executor;
+
+    private final int blockSize;
+
+    private final int maxPendingBlocks;
+
+    private final int level;
+
+    private final LinkedList<FutureTask<byte[]>> pending = new LinkedList<FutureTask<byte[]>>();
+
+    private byte[] buffer;
+
+    private int count;
+
+    private boolean written;
+
+    private boolean closed;
+
+    public ParallelGzipOutputStream( final OutputStream out, final Executor executor )
+    {
+        this( out, executor, DEFAULT_BLOCK_SIZE, Runtime.getRuntime().availableProcessors() * 2,
+              Deflater.DEFAULT_COMPRESSION );
+    }
+
+    public ParallelGzipOutputStream( final OutputStream out,
+                                     final Executor executor,
+                                     final int blockSize,
+                                     final int maxPendingBlocks,
+                                     final int level )
+    {
+        checkArgument( blockSize > 0, "Block size must be positive" );
+        checkArgument( maxPendingBlocks > 0, "Number of pending blocks must be positive" );
+        this.out = checkNotNull( out );
+        this.executor = checkNotNull( executor );
+        this.blockSize = blockSize;
+        this.maxPendingBlocks = maxPendingBlocks;
+        this.level = level;
+        this.buffer = new byte[blockSize];
+    }
+
+    @Override
+    public void write( final int b )
+        throws IOException
+    {
+        ensureOpen();
+        buffer[count++] = (byte) b;
+        if ( count == blockSize )
+        {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write( final byte[] b, final int off, final int len )
+        throws IOException
+    {
+        ensureOpen();
+        int offset = off;
+        int remaining = len;
+        while ( remaining > 0 )
+        {
+            final int chunk = Math.min( remaining, blockSize - count );
+            System.arraycopy( b, offset, buffer, count, chunk );
+            count += chunk;
+            offset += chunk;
+            remaining -= chunk;
+            if ( count == blockSize )
+            {
+                submitBlock();
+            }
+        }
+    }
+
+    /**
+     * Compresses the currently buffered data as a gzip member of its own and writes all pending members.
+     */
+    @Override
+    public void flush()
+        throws IOException
+    {
+        ensureOpen();
+        if ( count > 0 )
+        {
+            submitBlock();
+        }
+        writePending( 0 );
+        out.flush();
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        if ( closed )
+        {
+            return;
+        }
+        try
+        {
+            // an empty stream still has to be a valid gzip file
+            if ( count > 0 || !written )
+            {
+                submitBlock();
+            }
+            writePending( 0 );
+        }
+        finally
+        {
+            closed = true;
+            buffer = null;
+            for ( final FutureTask<byte[]> task : pending )
+            {
+                task.cancel( false );
+            }
+            pending.clear();
+            out.close();
+        }
+    }
+
+    private void submitBlock()
+        throws IOException
+    {
+        final byte[] block = buffer;
+        final int length = count;
+        final FutureTask<byte[]> task = new FutureTask<byte[]>( new Callable<byte[]>()
+        {
+            @Override
+            public byte[] call()
+                throws Exception
+            {
+                return compress( block, length );
+            }
+        } );
+        try
+        {
+            executor.execute( task );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            // executor is saturated or shut down, compress in calling thread
+            task.run();
+        }
+        pending.add( task );
+        written = true;
+        buffer = new byte[blockSize];
+        count = 0;
+        writePending( maxPendingBlocks );
+    }
+
+    private void writePending( final int maxRemaining )
+        throws IOException
+    {
+        while ( pending.size() > maxRemaining )
+        {
+            out.write( get( pending.removeFirst() ) );
+        }
+    }
+
+    private byte[] get( final FutureTask<byte[]> task )
+        throws IOException
+    {
+        try
+        {
+            return task.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while compressing", e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new IOException( "Could not compress block", e.getCause() );
+        }
+    }
+
+    private byte[] compress( final byte[] block, final int length )
+        throws IOException
+    {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream( length / 2 + 64 );
+        final GZIPOutputStream gzip = new GZIPOutputStream( compressed, 8192 )
+        {
+            {
+                def.setLevel( level );
+            }
+        };
+        gzip.write( block, 0, length );
+        gzip.close();
+        return compressed.toByteArray();
+    }
+
+    private void ensureOpen()
+        throws IOException
+    {
+        if ( closed )
+        {
+            throw new IOException( "Stream closed" );
+        }
+    }
+
+}
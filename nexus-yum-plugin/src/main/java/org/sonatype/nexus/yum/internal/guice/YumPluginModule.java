@@ -12,7 +12,6 @@
  */
 package org.sonatype.nexus.yum.internal.guice;
 
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 import javax.inject.Named;
 
 import org.sonatype.nexus.yum.Yum;
@@ -26,12 +25,9 @@ public class YumPluginModule
     extends AbstractModule
 {
 
-    private static final int POOL_SIZE = 10;
-
     @Override
     protected void configure()
     {
-        bind( ScheduledThreadPoolExecutor.class ).toInstance( new ScheduledThreadPoolExecutor( POOL_SIZE ) );
         install( new FactoryModuleBuilder().implement( Yum.class, YumImpl.class ).build( YumFactory.class ) );
     }
 
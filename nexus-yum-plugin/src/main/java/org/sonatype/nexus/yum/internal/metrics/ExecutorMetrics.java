@@ -0,0 +1,145 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gauges and task timer of one yum executor pool. Pools report execution of each task via {@link #started()} and
+ * {@link #finished()}, both called from the executing thread.
+ *
+ * @since 3.0
+ */
+public class ExecutorMetrics
+    implements ExecutorMetricsMBean
+{
+
+    private final String name;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Timer tasks = new Timer();
+
+    private final AtomicLong rejectedTasks = new AtomicLong();
+
+    private final AtomicLong callerRunTasks = new AtomicLong();
+
+    private final ThreadLocal<Long> startedAt = new ThreadLocal<Long>();
+
+    public ExecutorMetrics( final String name, final ThreadPoolExecutor executor )
+    {
+        this.name = checkNotNull( name );
+        this.executor = checkNotNull( executor );
+    }
+
+    public void started()
+    {
+        startedAt.set( System.currentTimeMillis() );
+    }
+
+    public void finished()
+    {
+        final Long started = startedAt.get();
+        if ( started != null )
+        {
+            startedAt.remove();
+            tasks.update( System.currentTimeMillis() - started );
+        }
+    }
+
+    /**
+     * Task was dropped, as pool was saturated or shut down.
+     */
+    public void rejected()
+    {
+        rejectedTasks.incrementAndGet();
+    }
+
+    /**
+     * Task was run by the submitting thread, as pool was saturated.
+     */
+    public void callerRan()
+    {
+        callerRunTasks.incrementAndGet();
+    }
+
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public int getPoolSize()
+    {
+        return executor.getPoolSize();
+    }
+
+    @Override
+    public int getMaximumPoolSize()
+    {
+        return executor.getMaximumPoolSize();
+    }
+
+    @Override
+    public int getActiveCount()
+    {
+        return executor.getActiveCount();
+    }
+
+    @Override
+    public int getQueueSize()
+    {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public long getCompletedTaskCount()
+    {
+        return tasks.count();
+    }
+
+    @Override
+    public long getRejectedTaskCount()
+    {
+        return rejectedTasks.get();
+    }
+
+    @Override
+    public long getCallerRunTaskCount()
+    {
+        return callerRunTasks.get();
+    }
+
+    @Override
+    public long getTaskTotalMillis()
+    {
+        return tasks.totalMillis();
+    }
+
+    @Override
+    public long getTaskMaxMillis()
+    {
+        return tasks.maxMillis();
+    }
+
+    @Override
+    public long getTaskLastMillis()
+    {
+        return tasks.lastMillis();
+    }
+
+}
@@ -0,0 +1,45 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.metrics;
+
+/**
+ * JMX view of {@link ExecutorMetrics}. Durations are in milliseconds.
+ *
+ * @since 3.0
+ */
+public interface ExecutorMetricsMBean
+{
+
+    String getName();
+
+    int getPoolSize();
+
+    int getMaximumPoolSize();
+
+    int getActiveCount();
+
+    int getQueueSize();
+
+    long getCompletedTaskCount();
+
+    long getRejectedTaskCount();
+
+    long getCallerRunTaskCount();
+
+    long getTaskTotalMillis();
+
+    long getTaskMaxMillis();
+
+    long getTaskLastMillis();
+
+}
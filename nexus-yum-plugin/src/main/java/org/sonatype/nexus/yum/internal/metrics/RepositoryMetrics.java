@@ -0,0 +1,246 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters, timers and gauges of one yum enabled repository.
+ *
+ * @since 3.0
+ */
+public class RepositoryMetrics
+    implements RepositoryMetricsMBean
+{
+
+    /**
+     * Number of most recent run timelines retained.
+     */
+    static final int MAX_TIMELINES = 20;
+
+    private final String repositoryId;
+
+    private final YumMetrics metrics;
+
+    private final Timer generations = new Timer();
+
+    private final AtomicLong generationFailures = new AtomicLong();
+
+    private final AtomicLong packagesProcessed = new AtomicLong();
+
+    private final Timer merges = new Timer();
+
+    private final AtomicLong mergeFailures = new AtomicLong();
+
+    private final AtomicLong coalescedEvents = new AtomicLong();
+
+    private final AtomicLong supersededRuns = new AtomicLong();
+
+    private final AtomicLong steadyLinkHits = new AtomicLong();
+
+    private final AtomicLong steadyLinkMisses = new AtomicLong();
+
+    private final AtomicInteger versionedCacheSize = new AtomicInteger();
+
+    private final LinkedList<Timeline> timelines = new LinkedList<Timeline>();
+
+    RepositoryMetrics( final String repositoryId, final YumMetrics metrics )
+    {
+        this.repositoryId = checkNotNull( repositoryId );
+        this.metrics = checkNotNull( metrics );
+    }
+
+    public void generated( final long millis, final int numberOfPackages )
+    {
+        generations.update( millis );
+        packagesProcessed.addAndGet( numberOfPackages );
+    }
+
+    public void generationFailed()
+    {
+        generationFailures.incrementAndGet();
+    }
+
+    public void merged( final long millis )
+    {
+        merges.update( millis );
+    }
+
+    public void mergeFailed()
+    {
+        mergeFailures.incrementAndGet();
+    }
+
+    public void coalesced()
+    {
+        coalescedEvents.incrementAndGet();
+    }
+
+    public void superseded()
+    {
+        supersededRuns.incrementAndGet();
+    }
+
+    public void steadyLinkHit()
+    {
+        steadyLinkHits.incrementAndGet();
+    }
+
+    public void steadyLinkMiss()
+    {
+        steadyLinkMisses.incrementAndGet();
+    }
+
+    public void setVersionedCacheSize( final int size )
+    {
+        versionedCacheSize.set( size );
+    }
+
+    public void record( final Timeline timeline )
+    {
+        synchronized ( timelines )
+        {
+            timelines.addFirst( timeline );
+            if ( timelines.size() > MAX_TIMELINES )
+            {
+                timelines.removeLast();
+            }
+        }
+    }
+
+    /**
+     * @return timelines of most recent runs, newest first
+     */
+    public List<Timeline> timelines()
+    {
+        synchronized ( timelines )
+        {
+            return new ArrayList<Timeline>( timelines );
+        }
+    }
+
+    @Override
+    public String getRepositoryId()
+    {
+        return repositoryId;
+    }
+
+    @Override
+    public long getGenerationCount()
+    {
+        return generations.count();
+    }
+
+    @Override
+    public long getGenerationTotalMillis()
+    {
+        return generations.totalMillis();
+    }
+
+    @Override
+    public long getGenerationMaxMillis()
+    {
+        return generations.maxMillis();
+    }
+
+    @Override
+    public long getGenerationLastMillis()
+    {
+        return generations.lastMillis();
+    }
+
+    @Override
+    public long getGenerationFailures()
+    {
+        return generationFailures.get();
+    }
+
+    @Override
+    public long getPackagesProcessed()
+    {
+        return packagesProcessed.get();
+    }
+
+    @Override
+    public long getMergeCount()
+    {
+        return merges.count();
+    }
+
+    @Override
+    public long getMergeTotalMillis()
+    {
+        return merges.totalMillis();
+    }
+
+    @Override
+    public long getMergeMaxMillis()
+    {
+        return merges.maxMillis();
+    }
+
+    @Override
+    public long getMergeLastMillis()
+    {
+        return merges.lastMillis();
+    }
+
+    @Override
+    public long getMergeFailures()
+    {
+        return mergeFailures.get();
+    }
+
+    @Override
+    public int getPendingTasks()
+    {
+        return metrics.pendingTasks( repositoryId );
+    }
+
+    @Override
+    public long getCoalescedEvents()
+    {
+        return coalescedEvents.get();
+    }
+
+    @Override
+    public long getSupersededRuns()
+    {
+        return supersededRuns.get();
+    }
+
+    @Override
+    public long getSteadyLinkHits()
+    {
+        return steadyLinkHits.get();
+    }
+
+    @Override
+    public long getSteadyLinkMisses()
+    {
+        return steadyLinkMisses.get();
+    }
+
+    @Override
+    public int getVersionedCacheSize()
+    {
+        return versionedCacheSize.get();
+    }
+
+}
@@ -0,0 +1,59 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.metrics;
+
+/**
+ * JMX view of {@link RepositoryMetrics}. Durations are in milliseconds.
+ *
+ * @since 3.0
+ */
+public interface RepositoryMetricsMBean
+{
+
+    String getRepositoryId();
+
+    long getGenerationCount();
+
+    long getGenerationTotalMillis();
+
+    long getGenerationMaxMillis();
+
+    long getGenerationLastMillis();
+
+    long getGenerationFailures();
+
+    long getPackagesProcessed();
+
+    long getMergeCount();
+
+    long getMergeTotalMillis();
+
+    long getMergeMaxMillis();
+
+    long getMergeLastMillis();
+
+    long getMergeFailures();
+
+    int getPendingTasks();
+
+    long getCoalescedEvents();
+
+    long getSupersededRuns();
+
+    long getSteadyLinkHits();
+
+    long getSteadyLinkMisses();
+
+    int getVersionedCacheSize();
+
+}
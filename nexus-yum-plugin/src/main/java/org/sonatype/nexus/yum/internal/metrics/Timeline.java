@@ -0,0 +1,169 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Timing breakdown of one metadata generation or merge run. Each phase lasts from the end of the previous phase (or
+ * the creation of the timeline) until it is ended.
+ *
+ * @since 3.0
+ */
+public class Timeline
+{
+
+    private final String repositoryId;
+
+    private final String version;
+
+    private final long startedAt;
+
+    private final List<Phase> phases = new ArrayList<Phase>();
+
+    private long phaseStartedAt;
+
+    private boolean succeeded;
+
+    public Timeline( final String repositoryId, final String version )
+    {
+        this.repositoryId = repositoryId;
+        this.version = version;
+        this.startedAt = System.currentTimeMillis();
+        this.phaseStartedAt = startedAt;
+    }
+
+    public Timeline end( final String phase )
+    {
+        return end( phase, -1, -1 );
+    }
+
+    /**
+     * @param numberOfPackages packages handled by phase, or -1 if not applicable
+     * @param numberOfBytes    bytes produced by phase, or -1 if not applicable
+     */
+    public Timeline end( final String phase, final long numberOfPackages, final long numberOfBytes )
+    {
+        final long now = System.currentTimeMillis();
+        phases.add( new Phase( phase, now - phaseStartedAt, numberOfPackages, numberOfBytes ) );
+        phaseStartedAt = now;
+        return this;
+    }
+
+    public Timeline succeeded()
+    {
+        succeeded = true;
+        return this;
+    }
+
+    public String getRepositoryId()
+    {
+        return repositoryId;
+    }
+
+    public String getVersion()
+    {
+        return version;
+    }
+
+    public long getStartedAt()
+    {
+        return startedAt;
+    }
+
+    public boolean isSucceeded()
+    {
+        return succeeded;
+    }
+
+    public long getTotalMillis()
+    {
+        return phaseStartedAt - startedAt;
+    }
+
+    public List<Phase> getPhases()
+    {
+        return Collections.unmodifiableList( phases );
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append( succeeded ? "succeeded" : "failed" ).append( " in " ).append( getTotalMillis() ).append( "ms:" );
+        for ( final Phase phase : phases )
+        {
+            sb.append( ' ' ).append( phase );
+        }
+        return sb.toString();
+    }
+
+    public static class Phase
+    {
+
+        private final String name;
+
+        private final long millis;
+
+        private final long numberOfPackages;
+
+        private final long numberOfBytes;
+
+        private Phase( final String name, final long millis, final long numberOfPackages, final long numberOfBytes )
+        {
+            this.name = name;
+            this.millis = millis;
+            this.numberOfPackages = numberOfPackages;
+            this.numberOfBytes = numberOfBytes;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public long getMillis()
+        {
+            return millis;
+        }
+
+        public long getNumberOfPackages()
+        {
+            return numberOfPackages;
+        }
+
+        public long getNumberOfBytes()
+        {
+            return numberOfBytes;
+        }
+
+        @Override
+        public String toString()
+        {
+            final StringBuilder sb = new StringBuilder( name ).append( '=' ).append( millis ).append( "ms" );
+            if ( numberOfPackages >= 0 )
+            {
+                sb.append( '/' ).append( numberOfPackages ).append( "pkgs" );
+            }
+            if ( numberOfBytes >= 0 )
+            {
+                sb.append( '/' ).append( numberOfBytes ).append( 'B' );
+            }
+            return sb.toString();
+        }
+
+    }
+
+}
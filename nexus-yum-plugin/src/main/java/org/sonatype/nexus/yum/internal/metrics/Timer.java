@@ -0,0 +1,65 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accumulates count, total, maximum and last duration of a repeated operation.
+ *
+ * @since 3.0
+ */
+public class Timer
+{
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong totalMillis = new AtomicLong();
+
+    private final AtomicLong maxMillis = new AtomicLong();
+
+    private final AtomicLong lastMillis = new AtomicLong();
+
+    public void update( final long millis )
+    {
+        count.incrementAndGet();
+        totalMillis.addAndGet( millis );
+        lastMillis.set( millis );
+        long max = maxMillis.get();
+        while ( millis > max && !maxMillis.compareAndSet( max, millis ) )
+        {
+            max = maxMillis.get();
+        }
+    }
+
+    public long count()
+    {
+        return count.get();
+    }
+
+    public long totalMillis()
+    {
+        return totalMillis.get();
+    }
+
+    public long maxMillis()
+    {
+        return maxMillis.get();
+    }
+
+    public long lastMillis()
+    {
+        return lastMillis.get();
+    }
+
+}
@@ -0,0 +1,190 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.scheduling.TaskState.SLEEPING;
+import static org.sonatype.scheduling.TaskState.SUBMITTED;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonatype.nexus.scheduling.NexusScheduler;
+import org.sonatype.nexus.yum.internal.task.GenerateMetadataTask;
+import org.sonatype.nexus.yum.internal.task.MergeMetadataTask;
+import org.sonatype.scheduling.ScheduledTask;
+
+/**
+ * Registry of {@link RepositoryMetrics} per repository. Each of them is exposed via JMX under
+ * {@code org.sonatype.nexus.yum:type=RepositoryMetrics,repository=<id>} and via the {@code /yum/metrics} resource.
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+public class YumMetrics
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger( YumMetrics.class );
+
+    public static final String JMX_DOMAIN = "org.sonatype.nexus.yum";
+
+    private final ConcurrentMap<String, RepositoryMetrics> metrics =
+        new ConcurrentHashMap<String, RepositoryMetrics>();
+
+    private final NexusScheduler nexusScheduler;
+
+    private final MBeanServer mBeanServer;
+
+    @Inject
+    public YumMetrics( final NexusScheduler nexusScheduler )
+    {
+        this.nexusScheduler = checkNotNull( nexusScheduler );
+        this.mBeanServer = ManagementFactory.getPlatformMBeanServer();
+    }
+
+    /**
+     * @return metrics of repository, created and registered with JMX on first access
+     */
+    public RepositoryMetrics get( final String repositoryId )
+    {
+        RepositoryMetrics repositoryMetrics = metrics.get( repositoryId );
+        if ( repositoryMetrics == null )
+        {
+            final RepositoryMetrics created = new RepositoryMetrics( repositoryId, this );
+            repositoryMetrics = metrics.putIfAbsent( repositoryId, created );
+            if ( repositoryMetrics == null )
+            {
+                repositoryMetrics = created;
+                register( created );
+            }
+        }
+        return repositoryMetrics;
+    }
+
+    public Collection<RepositoryMetrics> getAll()
+    {
+        return new ArrayList<RepositoryMetrics>( metrics.values() );
+    }
+
+    public void remove( final String repositoryId )
+    {
+        if ( metrics.remove( repositoryId ) != null )
+        {
+            unregister( repositoryId );
+        }
+    }
+
+    /**
+     * @return number of submitted but not yet running generate/merge tasks of repository
+     */
+    int pendingTasks( final String repositoryId )
+    {
+        int pending = 0;
+        final Map<String, List<ScheduledTask<?>>> activeTasks = nexusScheduler.getActiveTasks();
+        if ( activeTasks != null )
+        {
+            pending += pendingTasks( activeTasks.get( GenerateMetadataTask.ID ), repositoryId );
+            pending += pendingTasks( activeTasks.get( MergeMetadataTask.ID ), repositoryId );
+        }
+        return pending;
+    }
+
+    private int pendingTasks( final List<ScheduledTask<?>> scheduledTasks, final String repositoryId )
+    {
+        int pending = 0;
+        if ( scheduledTasks != null )
+        {
+            for ( final ScheduledTask<?> scheduledTask : scheduledTasks )
+            {
+                if ( ( SUBMITTED.equals( scheduledTask.getTaskState() )
+                    || SLEEPING.equals( scheduledTask.getTaskState() ) )
+                    && repositoryId.equals( repositoryIdOf( scheduledTask.getTask() ) ) )
+                {
+                    pending++;
+                }
+            }
+        }
+        return pending;
+    }
+
+    private String repositoryIdOf( final Object task )
+    {
+        if ( task instanceof GenerateMetadataTask )
+        {
+            return ( (GenerateMetadataTask) task ).getRepositoryId();
+        }
+        if ( task instanceof MergeMetadataTask && ( (MergeMetadataTask) task ).getGroupRepository() != null )
+        {
+            return ( (MergeMetadataTask) task ).getGroupRepository().getId();
+        }
+        return null;
+    }
+
+    private void register( final RepositoryMetrics repositoryMetrics )
+    {
+        try
+        {
+            final ObjectName name = objectName( repositoryMetrics.getRepositoryId() );
+            if ( mBeanServer.isRegistered( name ) )
+            {
+                mBeanServer.unregisterMBean( name );
+            }
+            mBeanServer.registerMBean( repositoryMetrics, name );
+        }
+        catch ( JMException e )
+        {
+            LOG.warn(
+                "Could not register metrics of repository '{}' with JMX", repositoryMetrics.getRepositoryId(), e
+            );
+        }
+    }
+
+    private void unregister( final String repositoryId )
+    {
+        try
+        {
+            final ObjectName name = objectName( repositoryId );
+            if ( mBeanServer.isRegistered( name ) )
+            {
+                mBeanServer.unregisterMBean( name );
+            }
+        }
+        catch ( JMException e )
+        {
+            LOG.warn( "Could not unregister metrics of repository '{}' from JMX", repositoryId, e );
+        }
+    }
+
+    static ObjectName objectName( final String repositoryId )
+        throws JMException
+    {
+        return new ObjectName(
+            JMX_DOMAIN + ":type=RepositoryMetrics,repository=" + ObjectName.quote( repositoryId )
+        );
+    }
+
+}
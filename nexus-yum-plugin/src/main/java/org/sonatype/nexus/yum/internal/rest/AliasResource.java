@@ -41,6 +41,7 @@ import org.sonatype.nexus.plugins.capabilities.CapabilityRegistry;
 import org.sonatype.nexus.rest.AbstractNexusPlexusResource;
 import org.sonatype.nexus.yum.Yum;
 import org.sonatype.nexus.yum.YumRegistry;
+import org.sonatype.nexus.yum.internal.capabilities.AliasMappings;
 import org.sonatype.nexus.yum.internal.capabilities.GenerateMetadataCapability;
 import org.sonatype.nexus.yum.internal.capabilities.GenerateMetadataCapabilityConfiguration;
 import org.sonatype.nexus.yum.internal.capabilities.GenerateMetadataCapabilityDescriptor;
@@ -186,13 +187,12 @@ public class AliasResource
         newAliases.putAll( configuration.aliases() );
         newAliases.put( alias, version );
 
+        final Map<String, String> newProperties = configuration.asMap();
+        newProperties.put(
+            GenerateMetadataCapabilityConfiguration.ALIASES, new AliasMappings( newAliases ).toString()
+        );
         final GenerateMetadataCapabilityConfiguration newConfiguration =
-            new GenerateMetadataCapabilityConfiguration(
-                configuration.repository(),
-                newAliases,
-                configuration.shouldProcessDeletes(),
-                configuration.deleteProcessingDelay()
-            );
+            new GenerateMetadataCapabilityConfiguration( newProperties );
 
         try
         {
@@ -0,0 +1,197 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rest;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.restlet.data.MediaType.APPLICATION_JSON;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+import org.restlet.Context;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.resource.ResourceException;
+import org.restlet.resource.StringRepresentation;
+import org.restlet.resource.Variant;
+import org.sonatype.nexus.rest.AbstractNexusPlexusResource;
+import org.sonatype.nexus.yum.internal.YumExecutors;
+import org.sonatype.nexus.yum.internal.metrics.ExecutorMetrics;
+import org.sonatype.nexus.yum.internal.metrics.RepositoryMetrics;
+import org.sonatype.nexus.yum.internal.metrics.YumMetrics;
+import org.sonatype.plexus.rest.resource.PathProtectionDescriptor;
+import org.sonatype.plexus.rest.resource.PlexusResource;
+
+/**
+ * Resource providing metrics of all yum enabled repositories as JSON, e.g. to be polled by monitoring via
+ * http://localhost:8080/nexus/service/local/yum/metrics
+ *
+ * @since 3.0
+ */
+@Path( MetricsResource.RESOURCE_URI )
+@Produces( { "application/json" } )
+@Named
+@Singleton
+public class MetricsResource
+    extends AbstractNexusPlexusResource
+    implements PlexusResource
+{
+
+    public static final String RESOURCE_URI = "/yum/metrics";
+
+    private final YumMetrics metrics;
+
+    private final YumExecutors executors;
+
+    @Inject
+    public MetricsResource( final YumMetrics metrics,
+                            final YumExecutors executors )
+    {
+        this.metrics = checkNotNull( metrics );
+        this.executors = checkNotNull( executors );
+    }
+
+    @Override
+    public Object get( Context context, Request request, Response response, Variant variant )
+        throws ResourceException
+    {
+        final StringBuilder json = new StringBuilder( "{\"repositories\":[" );
+        boolean first = true;
+        for ( final RepositoryMetrics repositoryMetrics : metrics.getAll() )
+        {
+            if ( !first )
+            {
+                json.append( ',' );
+            }
+            first = false;
+            append( json, repositoryMetrics );
+        }
+        json.append( "],\"executors\":[" );
+        first = true;
+        for ( final ExecutorMetrics executorMetrics : executors.metrics() )
+        {
+            if ( !first )
+            {
+                json.append( ',' );
+            }
+            first = false;
+            append( json, executorMetrics );
+        }
+        json.append( "]}" );
+        return new StringRepresentation( json.toString(), APPLICATION_JSON );
+    }
+
+    private void append( final StringBuilder json, final RepositoryMetrics metrics )
+    {
+        json.append( "{\"repositoryId\":\"" ).append( escape( metrics.getRepositoryId() ) ).append( '"' );
+        json.append( ",\"generation\":{" );
+        json.append( "\"count\":" ).append( metrics.getGenerationCount() );
+        json.append( ",\"totalMillis\":" ).append( metrics.getGenerationTotalMillis() );
+        json.append( ",\"maxMillis\":" ).append( metrics.getGenerationMaxMillis() );
+        json.append( ",\"lastMillis\":" ).append( metrics.getGenerationLastMillis() );
+        json.append( ",\"failures\":" ).append( metrics.getGenerationFailures() );
+        json.append( ",\"packagesProcessed\":" ).append( metrics.getPackagesProcessed() );
+        json.append( "},\"merge\":{" );
+        json.append( "\"count\":" ).append( metrics.getMergeCount() );
+        json.append( ",\"totalMillis\":" ).append( metrics.getMergeTotalMillis() );
+        json.append( ",\"maxMillis\":" ).append( metrics.getMergeMaxMillis() );
+        json.append( ",\"lastMillis\":" ).append( metrics.getMergeLastMillis() );
+        json.append( ",\"failures\":" ).append( metrics.getMergeFailures() );
+        json.append( "},\"pendingTasks\":" ).append( metrics.getPendingTasks() );
+        json.append( ",\"coalescedEvents\":" ).append( metrics.getCoalescedEvents() );
+        json.append( ",\"supersededRuns\":" ).append( metrics.getSupersededRuns() );
+        json.append( ",\"steadyLinkHits\":" ).append( metrics.getSteadyLinkHits() );
+        json.append( ",\"steadyLinkMisses\":" ).append( metrics.getSteadyLinkMisses() );
+        json.append( ",\"versionedCacheSize\":" ).append( metrics.getVersionedCacheSize() );
+        json.append( '}' );
+    }
+
+    private void append( final StringBuilder json, final ExecutorMetrics metrics )
+    {
+        json.append( "{\"name\":\"" ).append( escape( metrics.getName() ) ).append( '"' );
+        json.append( ",\"poolSize\":" ).append( metrics.getPoolSize() );
+        json.append( ",\"maximumPoolSize\":" ).append( metrics.getMaximumPoolSize() );
+        json.append( ",\"activeCount\":" ).append( metrics.getActiveCount() );
+        json.append( ",\"queueSize\":" ).append( metrics.getQueueSize() );
+        json.append( ",\"rejectedTasks\":" ).append( metrics.getRejectedTaskCount() );
+        json.append( ",\"callerRunTasks\":" ).append( metrics.getCallerRunTaskCount() );
+        json.append( ",\"tasks\":{" );
+        json.append( "\"count\":" ).append( metrics.getCompletedTaskCount() );
+        json.append( ",\"totalMillis\":" ).append( metrics.getTaskTotalMillis() );
+        json.append( ",\"maxMillis\":" ).append( metrics.getTaskMaxMillis() );
+        json.append( ",\"lastMillis\":" ).append( metrics.getTaskLastMillis() );
+        json.append( "}}" );
+    }
+
+    /**
+     * @return given value escaped to be used as content of a JSON string
+     */
+    static String escape( final String value )
+    {
+        final StringBuilder escaped = new StringBuilder( value.length() );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            final char c = value.charAt( i );
+            switch ( c )
+            {
+                case '"':
+                    escaped.append( "\\\"" );
+                    break;
+                case '\\':
+                    escaped.append( "\\\\" );
+                    break;
+                case '\n':
+                    escaped.append( "\\n" );
+                    break;
+                case '\r':
+                    escaped.append( "\\r" );
+                    break;
+                case '\t':
+                    escaped.append( "\\t" );
+                    break;
+                default:
+                    if ( c < 0x20 )
+                    {
+                        escaped.append( String.format( "\\u%04x", (int) c ) );
+                    }
+                    else
+                    {
+                        escaped.append( c );
+                    }
+            }
+        }
+        return escaped.toString();
+    }
+
+    @Override
+    public String getResourceUri()
+    {
+        return RESOURCE_URI;
+    }
+
+    @Override
+    public PathProtectionDescriptor getResourceProtection()
+    {
+        return new PathProtectionDescriptor( RESOURCE_URI, "authcBasic,perms[nexus:yumMetrics]" );
+    }
+
+    @Override
+    public Object getPayloadInstance()
+    {
+        return null;
+    }
+
+}
@@ -0,0 +1,149 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rest;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.restlet.data.MediaType.APPLICATION_JSON;
+import static org.restlet.data.Status.CLIENT_ERROR_NOT_FOUND;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+import org.restlet.Context;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.resource.ResourceException;
+import org.restlet.resource.StringRepresentation;
+import org.restlet.resource.Variant;
+import org.sonatype.nexus.rest.AbstractNexusPlexusResource;
+import org.sonatype.nexus.yum.YumRegistry;
+import org.sonatype.nexus.yum.internal.metrics.Timeline;
+import org.sonatype.nexus.yum.internal.metrics.YumMetrics;
+import org.sonatype.plexus.rest.resource.PathProtectionDescriptor;
+import org.sonatype.plexus.rest.resource.PlexusResource;
+
+/**
+ * Resource providing the per phase timing of the most recent metadata generation / merge runs of a repository as
+ * JSON, newest first, via http://localhost:8080/nexus/service/local/yum/timeline/<repo-id>
+ *
+ * @since 3.0
+ */
+@Path( TimelineResource.RESOURCE_URI )
+@Produces( { "application/json" } )
+@Named
+@Singleton
+public class TimelineResource
+    extends AbstractNexusPlexusResource
+    implements PlexusResource
+{
+
+    private static final String URL_PREFIX = "/yum/timeline";
+
+    public static final String REPOSITORY_ID_PARAM = "repositoryId";
+
+    public static final String RESOURCE_URI = URL_PREFIX + "/{" + REPOSITORY_ID_PARAM + "}";
+
+    private final YumRegistry yumRegistry;
+
+    private final YumMetrics metrics;
+
+    @Inject
+    public TimelineResource( final YumRegistry yumRegistry,
+                             final YumMetrics metrics )
+    {
+        this.yumRegistry = checkNotNull( yumRegistry );
+        this.metrics = checkNotNull( metrics );
+    }
+
+    @Override
+    public Object get( Context context, Request request, Response response, Variant variant )
+        throws ResourceException
+    {
+        final String repositoryId = request.getAttributes().get( REPOSITORY_ID_PARAM ).toString();
+        if ( !yumRegistry.isRegistered( repositoryId ) )
+        {
+            throw new ResourceException(
+                CLIENT_ERROR_NOT_FOUND, "Could not find Yum repository with id '" + repositoryId + "'"
+            );
+        }
+
+        final StringBuilder json = new StringBuilder( "{\"repositoryId\":\"" )
+            .append( MetricsResource.escape( repositoryId ) ).append( "\",\"timelines\":[" );
+        boolean first = true;
+        for ( final Timeline timeline : metrics.get( repositoryId ).timelines() )
+        {
+            if ( !first )
+            {
+                json.append( ',' );
+            }
+            first = false;
+            append( json, timeline );
+        }
+        json.append( "]}" );
+        return new StringRepresentation( json.toString(), APPLICATION_JSON );
+    }
+
+    private void append( final StringBuilder json, final Timeline timeline )
+    {
+        json.append( "{\"version\":" );
+        if ( timeline.getVersion() == null )
+        {
+            json.append( "null" );
+        }
+        else
+        {
+            json.append( '"' ).append( MetricsResource.escape( timeline.getVersion() ) ).append( '"' );
+        }
+        json.append( ",\"startedAt\":" ).append( timeline.getStartedAt() );
+        json.append( ",\"succeeded\":" ).append( timeline.isSucceeded() );
+        json.append( ",\"totalMillis\":" ).append( timeline.getTotalMillis() );
+        json.append( ",\"phases\":[" );
+        boolean first = true;
+        for ( final Timeline.Phase phase : timeline.getPhases() )
+        {
+            if ( !first )
+            {
+                json.append( ',' );
+            }
+            first = false;
+            json.append( "{\"name\":\"" ).append( MetricsResource.escape( phase.getName() ) ).append( '"' );
+            json.append( ",\"millis\":" ).append( phase.getMillis() );
+            json.append( ",\"packages\":" ).append( phase.getNumberOfPackages() );
+            json.append( ",\"bytes\":" ).append( phase.getNumberOfBytes() );
+            json.append( '}' );
+        }
+        json.append( "]}" );
+    }
+
+    @Override
+    public String getResourceUri()
+    {
+        return RESOURCE_URI;
+    }
+
+    @Override
+    public PathProtectionDescriptor getResourceProtection()
+    {
+        return new PathProtectionDescriptor( URL_PREFIX + "/**", "authcBasic,perms[nexus:yumMetrics]" );
+    }
+
+    @Override
+    public Object getPayloadInstance()
+    {
+        return null;
+    }
+
+}
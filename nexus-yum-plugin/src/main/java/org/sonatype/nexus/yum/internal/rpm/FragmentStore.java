@@ -0,0 +1,298 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rpm;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonatype.nexus.yum.YumRegistry;
+
+/**
+ * Pre-serialised {@code <package>} elements of primary.xml, filelists.xml and other.xml, stored under the plugin
+ * temporary directory and keyed by SHA-256 of the RPM.
+ * <p/>
+ * Each entry is a single file holding the UTF-8 encoded fragments, preceded by their lengths, so metadata can be
+ * assembled by copying bytes. Neither the location of an RPM nor the modification time of its file ({@code <time
+ * file="..."/>}) are part of an entry, as the same RPM can be stored at several locations; primary fragment is stored
+ * split around them.
+ * <p/>
+ * Entries of RPMs no longer referenced by {@link HeaderIndex} are deleted by {@link #sweep(Set, long)}.
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+public class FragmentStore
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger( FragmentStore.class );
+
+    private static final String DIR_NAME = ".fragments";
+
+    private static final String TIME_FILE_START = "  <time file=\"";
+
+    private static final String LOCATION_START = "  <location href=\"";
+
+    private static final String UTF_8 = "UTF-8";
+
+    private final File directory;
+
+    @Inject
+    public FragmentStore( final YumRegistry yumRegistry )
+    {
+        this( new File( yumRegistry.getTemporaryDirectory(), DIR_NAME ) );
+    }
+
+    public FragmentStore( final File directory )
+    {
+        this.directory = checkNotNull( directory );
+    }
+
+    public boolean contains( final String checksum )
+    {
+        return fileOf( checksum ).isFile();
+    }
+
+    /**
+     * Stores fragments of an RPM, unless already stored.
+     */
+    public void put( final PackageFragments fragments )
+        throws IOException
+    {
+        final File file = fileOf( fragments.getChecksum() );
+        if ( file.isFile() )
+        {
+            return;
+        }
+        final String primary = fragments.getPrimary();
+        final int timeStart = primary.indexOf( TIME_FILE_START );
+        final int locationStart = primary.indexOf( LOCATION_START );
+        if ( timeStart < 0 || locationStart < timeStart )
+        {
+            throw new IOException( "No file time and location in primary fragment of " + fragments );
+        }
+        final int timeValueStart = timeStart + TIME_FILE_START.length();
+        final int timeValueEnd = primary.indexOf( '"', timeValueStart );
+        final int locationEnd = primary.indexOf( '\n', locationStart ) + 1;
+
+        file.getParentFile().mkdirs();
+        final File tmp = new File( file.getParentFile(), "." + file.getName() + "." + Thread.currentThread().getId() );
+        DataOutputStream out = null;
+        try
+        {
+            out = new DataOutputStream( new FileOutputStream( tmp ) );
+            final byte[][] parts = {
+                bytes( primary.substring( 0, timeValueStart ) ),
+                bytes( primary.substring( timeValueEnd, locationStart ) ),
+                bytes( primary.substring( locationEnd ) ),
+                bytes( fragments.getFilelists() ),
+                bytes( fragments.getOther() )
+            };
+            for ( final byte[] part : parts )
+            {
+                out.writeInt( part.length );
+            }
+            for ( final byte[] part : parts )
+            {
+                out.write( part );
+            }
+        }
+        finally
+        {
+            IOUtils.closeQuietly( out );
+        }
+        if ( !tmp.renameTo( file ) )
+        {
+            tmp.delete();
+            if ( !file.isFile() )
+            {
+                throw new IOException( "Could not store fragments of " + fragments + " to " + file );
+            }
+        }
+        LOG.debug( "Stored fragments of {}", fragments );
+    }
+
+    /**
+     * @return stored fragments of RPM with given checksum or null if not stored
+     */
+    public Entry get( final String checksum )
+        throws IOException
+    {
+        final File file = fileOf( checksum );
+        if ( !file.isFile() )
+        {
+            return null;
+        }
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream( new FileInputStream( file ) );
+            final int[] lengths = new int[5];
+            int total = 0;
+            for ( int i = 0; i < lengths.length; i++ )
+            {
+                lengths[i] = in.readInt();
+                total += lengths[i];
+            }
+            final byte[] bytes = new byte[total];
+            in.readFully( bytes );
+            return new Entry( bytes, lengths );
+        }
+        finally
+        {
+            IOUtils.closeQuietly( in );
+        }
+    }
+
+    /**
+     * Deletes entries of RPMs with checksums not contained in given ones. Entries stored since given time are kept,
+     * as they might have been stored after the referenced checksums were collected.
+     *
+     * @param referenced   checksums of all RPMs still referenced
+     * @param storedBefore time in milliseconds, only entries stored before it get deleted
+     * @return number of deleted entries
+     */
+    public int sweep( final Set<String> referenced, final long storedBefore )
+    {
+        int deleted = 0;
+        final File[] buckets = directory.listFiles();
+        if ( buckets != null )
+        {
+            for ( final File bucket : buckets )
+            {
+                final File[] files = bucket.listFiles();
+                if ( files != null )
+                {
+                    for ( final File file : files )
+                    {
+                        if ( !referenced.contains( file.getName() ) && isStale( file, storedBefore ) && file.delete() )
+                        {
+                            deleted++;
+                        }
+                    }
+                }
+            }
+        }
+        LOG.debug( "Deleted {} unreferenced fragments from {}", deleted, directory );
+        return deleted;
+    }
+
+    /**
+     * Temporary files of crashed writes are kept for an hour, so entries being stored right now are not affected.
+     */
+    private static boolean isStale( final File file, final long storedBefore )
+    {
+        final long lastModified = file.lastModified();
+        return file.getName().startsWith( "." )
+            ? lastModified < storedBefore - TimeUnit.HOURS.toMillis( 1 )
+            : lastModified < storedBefore;
+    }
+
+    private File fileOf( final String checksum )
+    {
+        checkNotNull( checksum );
+        return new File( new File( directory, checksum.substring( 0, Math.min( 2, checksum.length() ) ) ), checksum );
+    }
+
+    private static byte[] bytes( final String value )
+        throws UnsupportedEncodingException
+    {
+        return value.getBytes( UTF_8 );
+    }
+
+    /**
+     * Stored fragments of one RPM.
+     */
+    public static class Entry
+    {
+
+        private final byte[] bytes;
+
+        private final int primaryMiddleOffset;
+
+        private final int primaryTailOffset;
+
+        private final int filelistsOffset;
+
+        private final int otherOffset;
+
+        private Entry( final byte[] bytes, final int[] lengths )
+        {
+            this.bytes = bytes;
+            this.primaryMiddleOffset = lengths[0];
+            this.primaryTailOffset = primaryMiddleOffset + lengths[1];
+            this.filelistsOffset = primaryTailOffset + lengths[2];
+            this.otherOffset = filelistsOffset + lengths[3];
+        }
+
+        /**
+         * Writes the primary.xml {@code <package>} element, located at given location.
+         *
+         * @param base     base url of location (can be null)
+         * @param location path of RPM relative to base url
+         * @param fileTime last modified time of RPM file at location in seconds
+         */
+        public void writePrimary( final OutputStream out, final String base, final String location,
+                                  final long fileTime )
+            throws IOException
+        {
+            out.write( bytes, 0, primaryMiddleOffset );
+            out.write( bytes( String.valueOf( fileTime ) ) );
+            out.write( bytes, primaryMiddleOffset, primaryTailOffset - primaryMiddleOffset );
+            final StringBuilder element = new StringBuilder( "  <location " );
+            if ( base != null )
+            {
+                element.append( "xml:base=\"" ).append( PackageXmlWriter.escape( base ) ).append( "\" " );
+            }
+            element.append( "href=\"" ).append( PackageXmlWriter.escape( location ) ).append( "\"/>\n" );
+            out.write( bytes( element.toString() ) );
+            out.write( bytes, primaryTailOffset, filelistsOffset - primaryTailOffset );
+        }
+
+        /**
+         * Writes the filelists.xml {@code <package>} element.
+         */
+        public void writeFilelists( final OutputStream out )
+            throws IOException
+        {
+            out.write( bytes, filelistsOffset, otherOffset - filelistsOffset );
+        }
+
+        /**
+         * Writes the other.xml {@code <package>} element.
+         */
+        public void writeOther( final OutputStream out )
+            throws IOException
+        {
+            out.write( bytes, otherOffset, bytes.length - otherOffset );
+        }
+
+    }
+
+}
@@ -0,0 +1,111 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rpm;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+
+/**
+ * Reads the header of an RPM, renders its metadata into the {@link FragmentStore} (unless already there) and records
+ * the RPM in the {@link HeaderIndex}.
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+public class HeaderExtractor
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger( HeaderExtractor.class );
+
+    private final RpmChecksums checksums;
+
+    private final HeaderIndex index;
+
+    private final FragmentStore store;
+
+    private final ThreadLocal<RpmHeaderReader> readers = new ThreadLocal<RpmHeaderReader>()
+    {
+        @Override
+        protected RpmHeaderReader initialValue()
+        {
+            return new RpmHeaderReader();
+        }
+    };
+
+    @Inject
+    public HeaderExtractor( final RpmChecksums checksums, final HeaderIndex index, final FragmentStore store )
+    {
+        this.checksums = checkNotNull( checksums );
+        this.index = checkNotNull( index );
+        this.store = checkNotNull( store );
+    }
+
+    /**
+     * Extracts the header of a just stored RPM, storing its SHA-256 as item attribute.
+     *
+     * @param repositoryId repository RPM was stored in
+     * @param item         stored RPM
+     * @param rpm          file of stored RPM
+     * @return SHA-256 of RPM
+     */
+    public String extract( final String repositoryId, final StorageFileItem item, final File rpm )
+        throws IOException
+    {
+        final String checksum = checksums.storeSha256( item );
+        extract( repositoryId, item.getPath(), rpm, checksum );
+        return checksum;
+    }
+
+    /**
+     * @param repositoryId repository containing the RPM
+     * @param path         path of RPM relative to repository root
+     * @param rpm          file of RPM
+     * @param checksum     SHA-256 of RPM
+     */
+    public void extract( final String repositoryId, final String path, final File rpm, final String checksum )
+        throws IOException
+    {
+        if ( !store.contains( checksum ) )
+        {
+            final RpmHeaderReader reader = readers.get();
+            final RpmHeader header = reader.read( rpm );
+            final PackageFragments fragments = PackageXmlWriter.render(
+                reader.getSignature(), header, HeaderIndex.location( path ), checksum,
+                rpm.length(), rpm.lastModified() / 1000
+            );
+            store.put( fragments );
+            LOG.debug( "Extracted header of {}:{} {}", new Object[]{ repositoryId, path, fragments } );
+        }
+        index.put( repositoryId, path, checksum );
+    }
+
+    /**
+     * Computes SHA-256 of an RPM that is not available as storage item (reads the whole file).
+     */
+    public String sha256( final File rpm )
+        throws IOException
+    {
+        return readers.get().checksum( rpm, "SHA-256" );
+    }
+
+}
@@ -0,0 +1,291 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rpm;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonatype.nexus.yum.YumRegistry;
+
+/**
+ * SHA-256 checksums of RPMs with extracted headers per repository, keyed by location of RPM (relative to repository
+ * root). The rendered metadata itself is kept in {@link FragmentStore}, keyed by checksum. Locations and checksums are
+ * held in a compact {@link PackageTable} per repository, persisted under the plugin temporary directory (see
+ * {@link PackageIndexFile}) and loaded on first use of a repository, so they survive restarts.
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+public class HeaderIndex
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger( HeaderIndex.class );
+
+    private static final String DIR_NAME = ".index";
+
+    private final File directory;
+
+    private final YumRegistry yumRegistry;
+
+    private final ConcurrentMap<String, Packages> repositories = new ConcurrentHashMap<String, Packages>();
+
+    @Inject
+    public HeaderIndex( final YumRegistry yumRegistry )
+    {
+        this( new File( yumRegistry.getTemporaryDirectory(), DIR_NAME ), yumRegistry );
+    }
+
+    /**
+     * @param directory directory to persist index into, null to keep it in memory only
+     */
+    public HeaderIndex( final @Nullable File directory )
+    {
+        this( directory, null );
+    }
+
+    /**
+     * @param directory   directory to persist index into, null to keep it in memory only
+     * @param yumRegistry registry of yum repositories whose persisted indexes are in use, null if all are
+     */
+    public HeaderIndex( final @Nullable File directory, final @Nullable YumRegistry yumRegistry )
+    {
+        this.directory = directory;
+        this.yumRegistry = yumRegistry;
+    }
+
+    public void put( final String repositoryId, final String location, final String checksum )
+    {
+        final Packages packages = packages( repositoryId );
+        synchronized ( packages )
+        {
+            packages.table().put( location( location ), checksum );
+            if ( packages.file != null )
+            {
+                try
+                {
+                    packages.file.put( location( location ), checksum );
+                    packages.file.compactIfNeeded( packages.table );
+                }
+                catch ( IOException e )
+                {
+                    packages.disablePersistence( e );
+                }
+            }
+        }
+    }
+
+    /**
+     * @return checksum of RPM at location or null if not indexed
+     */
+    public String get( final String repositoryId, final String location )
+    {
+        final Packages packages = packages( repositoryId );
+        synchronized ( packages )
+        {
+            return packages.table().get( location( location ) );
+        }
+    }
+
+    /**
+     * @return checksums of all indexed RPMs of repository, keyed by location
+     */
+    public Map<String, String> get( final String repositoryId )
+    {
+        final Packages packages = packages( repositoryId );
+        synchronized ( packages )
+        {
+            return packages.table().toMap();
+        }
+    }
+
+    /**
+     * @return checksums of all indexed RPMs of all repositories, including persisted indexes of yum repositories not
+     *         used since start
+     */
+    public Set<String> checksums()
+    {
+        final Set<String> repositoryIds = new HashSet<String>( repositories.keySet() );
+        for ( final String repositoryId : persistedRepositoryIds() )
+        {
+            if ( yumRegistry == null || yumRegistry.isRegistered( repositoryId ) )
+            {
+                repositoryIds.add( repositoryId );
+            }
+        }
+        final Set<String> checksums = new HashSet<String>();
+        for ( final String repositoryId : repositoryIds )
+        {
+            final Packages packages = packages( repositoryId );
+            synchronized ( packages )
+            {
+                packages.table().addChecksumsTo( checksums );
+            }
+        }
+        return checksums;
+    }
+
+    /**
+     * @return ids of repositories with a persisted index, whether used since start or not
+     */
+    public Set<String> persistedRepositoryIds()
+    {
+        return PackageIndexFile.repositoryIds( directory );
+    }
+
+    /**
+     * Removes the RPM at given location, or all RPMs below it if it is a directory.
+     */
+    public void remove( final String repositoryId, final String path )
+    {
+        final Packages packages = packages( repositoryId );
+        final String location = location( path );
+        synchronized ( packages )
+        {
+            final boolean removed = packages.table().remove( location );
+            final boolean removedDirectory = !removed && packages.table.removeDirectory( location ) > 0;
+            if ( packages.file != null && ( removed || removedDirectory ) )
+            {
+                try
+                {
+                    if ( removed )
+                    {
+                        packages.file.remove( location );
+                    }
+                    else
+                    {
+                        packages.file.removeDirectory( location );
+                    }
+                }
+                catch ( IOException e )
+                {
+                    packages.disablePersistence( e );
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops index of repository, including the persisted one.
+     */
+    public void removeRepository( final String repositoryId )
+    {
+        final Packages packages = repositories.remove( repositoryId );
+        if ( packages != null )
+        {
+            synchronized ( packages )
+            {
+                if ( packages.file != null )
+                {
+                    packages.file.delete();
+                }
+            }
+        }
+        else if ( directory != null )
+        {
+            new PackageIndexFile( directory, repositoryId ).delete();
+        }
+    }
+
+    /**
+     * @return location of RPM relative to repository root, as used in primary.xml
+     */
+    public static String location( final String path )
+    {
+        return path.startsWith( "/" ) ? path.substring( 1 ) : path;
+    }
+
+    private Packages packages( final String repositoryId )
+    {
+        Packages packages = repositories.get( repositoryId );
+        if ( packages == null )
+        {
+            final Packages created = new Packages( repositoryId );
+            packages = repositories.putIfAbsent( repositoryId, created );
+            if ( packages == null )
+            {
+                packages = created;
+            }
+        }
+        return packages;
+    }
+
+    /**
+     * Index of a repository. All access has to be synchronized on it.
+     */
+    private class Packages
+    {
+
+        private final String repositoryId;
+
+        private PackageTable table;
+
+        private PackageIndexFile file;
+
+        Packages( final String repositoryId )
+        {
+            this.repositoryId = repositoryId;
+        }
+
+        /**
+         * @return table, loaded from persisted index on first call
+         */
+        PackageTable table()
+        {
+            if ( table == null )
+            {
+                table = new PackageTable();
+                if ( directory != null )
+                {
+                    file = new PackageIndexFile( directory, repositoryId );
+                    try
+                    {
+                        file.load( table );
+                    }
+                    catch ( IOException e )
+                    {
+                        disablePersistence( e );
+                    }
+                }
+            }
+            return table;
+        }
+
+        /**
+         * Keeps index in memory only, dropping the persisted one, as it would miss changes from now on.
+         */
+        void disablePersistence( final IOException e )
+        {
+            LOG.warn(
+                "Could not persist package index of repository {}, keeping it in memory only",
+                new Object[]{ repositoryId, e }
+            );
+            file.delete();
+            file = null;
+        }
+
+    }
+
+}
@@ -0,0 +1,139 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rpm;
+
+/**
+ * Map of long keys to non negative int values, without boxing (open addressing with linear probing).
+ * <p/>
+ * Not thread safe.
+ *
+ * @since 3.0
+ */
+class LongIntMap
+{
+
+    static final int NOT_FOUND = -1;
+
+    private long[] keys = new long[64];
+
+    /**
+     * Value + 1, 0 marks a free slot.
+     */
+    private int[] values = new int[64];
+
+    private int size;
+
+    static long key( final int high, final int low )
+    {
+        return ( (long) high << 32 ) | ( low & 0xFFFFFFFFL );
+    }
+
+    int get( final long key )
+    {
+        return values[slotOf( key )] - 1;
+    }
+
+    void put( final long key, final int value )
+    {
+        final int slot = slotOf( key );
+        if ( values[slot] == 0 )
+        {
+            size++;
+        }
+        keys[slot] = key;
+        values[slot] = value + 1;
+        if ( size * 2 > values.length )
+        {
+            resize();
+        }
+    }
+
+    /**
+     * @return removed value or {@link #NOT_FOUND}
+     */
+    int remove( final long key )
+    {
+        final int mask = values.length - 1;
+        int slot = slotOf( key );
+        final int value = values[slot] - 1;
+        if ( value == NOT_FOUND )
+        {
+            return NOT_FOUND;
+        }
+        size--;
+        // shift following entries of the probe sequence back, so no tombstones are needed
+        int next = slot;
+        while ( true )
+        {
+            next = ( next + 1 ) & mask;
+            if ( values[next] == 0 )
+            {
+                break;
+            }
+            final int home = hash( keys[next] ) & mask;
+            if ( ( next > slot && ( home <= slot || home > next ) ) || ( next < slot && home <= slot && home > next ) )
+            {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                slot = next;
+            }
+        }
+        values[slot] = 0;
+        return value;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    long memory()
+    {
+        return 12L * values.length;
+    }
+
+    private int slotOf( final long key )
+    {
+        final int mask = values.length - 1;
+        int slot = hash( key ) & mask;
+        while ( values[slot] != 0 && keys[slot] != key )
+        {
+            slot = ( slot + 1 ) & mask;
+        }
+        return slot;
+    }
+
+    private void resize()
+    {
+        final long[] oldKeys = keys;
+        final int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        for ( int i = 0; i < oldValues.length; i++ )
+        {
+            if ( oldValues[i] != 0 )
+            {
+                final int slot = slotOf( oldKeys[i] );
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int hash( final long key )
+    {
+        final long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) ( mixed ^ ( mixed >>> 32 ) );
+    }
+
+}
@@ -0,0 +1,403 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rpm;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.LineIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.yum.internal.RpmListWriter;
+import org.sonatype.nexus.yum.internal.YumExecutors;
+import org.sonatype.nexus.yum.internal.compress.ParallelCompressor;
+import com.google.common.io.CountingOutputStream;
+
+/**
+ * Generates primary.xml.gz, filelists.xml.gz, other.xml.gz and repomd.xml by concatenating the pre-rendered package
+ * elements from {@link FragmentStore} inside the compressed streams, instead of running createrepo. Only RPMs without
+ * stored fragments have their header read. No sqlite databases are generated.
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+public class MetadataAssembler
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger( MetadataAssembler.class );
+
+    private static final String REPODATA = "repodata";
+
+    private static final String UTF_8 = "UTF-8";
+
+    private static final String PACKAGES_FILE = ".packages.txt";
+
+    private final FragmentStore store;
+
+    private final HeaderIndex index;
+
+    private final HeaderExtractor extractor;
+
+    private final RpmChecksums checksums;
+
+    private final YumExecutors executors;
+
+    @Inject
+    public MetadataAssembler( final FragmentStore store,
+                              final HeaderIndex index,
+                              final HeaderExtractor extractor,
+                              final RpmChecksums checksums,
+                              final YumExecutors executors )
+    {
+        this.store = checkNotNull( store );
+        this.index = checkNotNull( index );
+        this.extractor = checkNotNull( extractor );
+        this.checksums = checkNotNull( checksums );
+        this.executors = checkNotNull( executors );
+    }
+
+    /**
+     * @param repositoryId repository containing the RPMs
+     * @param repository   repository containing the RPMs, used to get stored checksums (can be null)
+     * @param rpmDir       directory RPM locations are relative to
+     * @param rpmListFile  file listing RPM locations, one per line (as written by {@link RpmListWriter})
+     * @param baseUrl      url RPM locations are relative to (can be null)
+     * @param outputDir    directory to write "repodata" into
+     * @return number of packages in generated metadata
+     */
+    public int assemble( final String repositoryId,
+                         final @Nullable Repository repository,
+                         final File rpmDir,
+                         final File rpmListFile,
+                         final @Nullable String baseUrl,
+                         final File outputDir )
+        throws IOException
+    {
+        final File repodata = new File( outputDir, REPODATA );
+        repodata.mkdirs();
+        // checksum, file time and location of every package, so their count is known before streaming the fragments
+        final File packages = new File( repodata, PACKAGES_FILE );
+        try
+        {
+            final int count = listPackages( repositoryId, repository, rpmDir, rpmListFile, packages );
+            final MetadataFile primary = new MetadataFile(
+                repodata, "primary",
+                "<metadata xmlns=\"http://linux.duke.edu/metadata/common\""
+                    + " xmlns:rpm=\"http://linux.duke.edu/metadata/rpm\" packages=\"" + count + "\">\n",
+                "</metadata>\n"
+            );
+            final MetadataFile filelists = new MetadataFile(
+                repodata, "filelists",
+                "<filelists xmlns=\"http://linux.duke.edu/metadata/filelists\" packages=\"" + count + "\">\n",
+                "</filelists>\n"
+            );
+            final MetadataFile other = new MetadataFile(
+                repodata, "other",
+                "<otherdata xmlns=\"http://linux.duke.edu/metadata/other\" packages=\"" + count + "\">\n",
+                "</otherdata>\n"
+            );
+            final LineIterator lines = FileUtils.lineIterator( packages, UTF_8 );
+            try
+            {
+                while ( lines.hasNext() )
+                {
+                    final String line = lines.nextLine();
+                    final int checksumEnd = line.indexOf( ' ' );
+                    final int timeEnd = line.indexOf( ' ', checksumEnd + 1 );
+                    final String checksum = line.substring( 0, checksumEnd );
+                    final long fileTime = Long.parseLong( line.substring( checksumEnd + 1, timeEnd ) );
+                    final String location = line.substring( timeEnd + 1 );
+                    final FragmentStore.Entry entry = store.get( checksum );
+                    if ( entry == null )
+                    {
+                        throw new IOException( "Stored fragments of " + location + " vanished" );
+                    }
+                    entry.writePrimary( primary.out, baseUrl, location, fileTime );
+                    entry.writeFilelists( filelists.out );
+                    entry.writeOther( other.out );
+                }
+                primary.close();
+                filelists.close();
+                other.close();
+            }
+            finally
+            {
+                LineIterator.closeQuietly( lines );
+                primary.closeQuietly();
+                filelists.closeQuietly();
+                other.closeQuietly();
+            }
+
+            writeRepoMD( repodata, baseUrl, primary, filelists, other );
+            LOG.debug(
+                "Assembled yum metadata of {} packages of {} into {}", new Object[]{ count, repositoryId, repodata }
+            );
+            return count;
+        }
+        finally
+        {
+            packages.delete();
+        }
+    }
+
+    /**
+     * Writes checksum, file time (in seconds) and location of every listed RPM existing in rpmDir into given file, one
+     * per line, making sure fragments of each are stored.
+     *
+     * @return number of written packages
+     */
+    private int listPackages( final String repositoryId,
+                              final @Nullable Repository repository,
+                              final File rpmDir,
+                              final File rpmListFile,
+                              final File packages )
+        throws IOException
+    {
+        int count = 0;
+        final LineIterator lines = FileUtils.lineIterator( rpmListFile, UTF_8 );
+        Writer out = null;
+        try
+        {
+            out = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( packages ), UTF_8 ) );
+            while ( lines.hasNext() )
+            {
+                final String location = HeaderIndex.location( lines.nextLine().trim() );
+                final File rpm = new File( rpmDir, location );
+                if ( location.length() > 0 && !RpmListWriter.EMPTY_LIST_PLACEHOLDER.equals( location )
+                    && rpm.isFile() )
+                {
+                    out.write( checksumOf( repositoryId, repository, location, rpm ) );
+                    out.write( ' ' );
+                    out.write( String.valueOf( rpm.lastModified() / 1000 ) );
+                    out.write( ' ' );
+                    out.write( location );
+                    out.write( '\n' );
+                    count++;
+                }
+            }
+            out.close();
+        }
+        finally
+        {
+            LineIterator.closeQuietly( lines );
+            IOUtils.closeQuietly( out );
+        }
+        return count;
+    }
+
+    /**
+     * Deletes stored fragments no indexed RPM of any repository refers to any more, e.g. of deleted or replaced RPMs.
+     *
+     * @return number of deleted fragments
+     */
+    public int collectGarbage()
+    {
+        // file systems may keep modification times in seconds only
+        final long storedBefore = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis( 2 );
+        return store.sweep( index.checksums(), storedBefore );
+    }
+
+    /**
+     * Looks up the checksum of an RPM in the header index, else takes the one stored with the item or computes it,
+     * and makes sure the fragments of the RPM are stored.
+     */
+    private String checksumOf( final String repositoryId, final Repository repository, final String location,
+                               final File rpm )
+        throws IOException
+    {
+        String checksum = index.get( repositoryId, location );
+        if ( checksum != null && store.contains( checksum ) )
+        {
+            return checksum;
+        }
+        checksum = null;
+        if ( repository != null )
+        {
+            try
+            {
+                checksum = checksums.storedSha256( repository, "/" + location );
+            }
+            catch ( Exception e )
+            {
+                LOG.debug( "Could not get checksum of {}:{} from storage", new Object[]{ repositoryId, location, e } );
+            }
+        }
+        if ( checksum == null )
+        {
+            checksum = extractor.sha256( rpm );
+        }
+        extractor.extract( repositoryId, location, rpm, checksum );
+        return checksum;
+    }
+
+    private void writeRepoMD( final File repodata, final String baseUrl, final MetadataFile... files )
+        throws IOException
+    {
+        final long timestamp = System.currentTimeMillis() / 1000;
+        final StringBuilder repomd = new StringBuilder( 2048 );
+        repomd.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" );
+        repomd.append( "<repomd xmlns=\"http://linux.duke.edu/metadata/repo\"" )
+            .append( " xmlns:rpm=\"http://linux.duke.edu/metadata/rpm\">\n" );
+        repomd.append( "  <revision>" ).append( timestamp ).append( "</revision>\n" );
+        for ( final MetadataFile file : files )
+        {
+            repomd.append( "  <data type=\"" ).append( file.type ).append( "\">\n" );
+            repomd.append( "    <checksum type=\"" ).append( PackageXmlWriter.CHECKSUM_TYPE ).append( "\">" )
+                .append( file.checksum ).append( "</checksum>\n" );
+            repomd.append( "    <open-checksum type=\"" ).append( PackageXmlWriter.CHECKSUM_TYPE ).append( "\">" )
+                .append( file.openChecksum ).append( "</open-checksum>\n" );
+            repomd.append( "    <location " );
+            if ( baseUrl != null )
+            {
+                repomd.append( "xml:base=\"" ).append( PackageXmlWriter.escape( baseUrl ) ).append( "\" " );
+            }
+            repomd.append( "href=\"" ).append( REPODATA ).append( '/' ).append( file.name ).append( "\"/>\n" );
+            repomd.append( "    <timestamp>" ).append( timestamp ).append( "</timestamp>\n" );
+            repomd.append( "    <size>" ).append( file.size ).append( "</size>\n" );
+            repomd.append( "    <open-size>" ).append( file.openSize ).append( "</open-size>\n" );
+            repomd.append( "  </data>\n" );
+        }
+        repomd.append( "</repomd>\n" );
+
+        final File tmp = new File( repodata, ".repomd.xml.tmp" );
+        Writer out = null;
+        try
+        {
+            out = new OutputStreamWriter( new FileOutputStream( tmp ), UTF_8 );
+            out.write( repomd.toString() );
+        }
+        finally
+        {
+            IOUtils.closeQuietly( out );
+        }
+        rename( tmp, new File( repodata, "repomd.xml" ) );
+    }
+
+    private static void rename( final File source, final File target )
+        throws IOException
+    {
+        if ( !source.renameTo( target ) && !( target.delete() && source.renameTo( target ) ) )
+        {
+            throw new IOException( "Could not write " + target.getAbsolutePath() );
+        }
+    }
+
+    private static MessageDigest sha256()
+        throws IOException
+    {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-256" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IOException( "SHA-256 not available", e );
+        }
+    }
+
+    /**
+     * A gzipped metadata file being written. Once closed it is named by its checksum (as createrepo does with
+     * --unique-md-filenames), so files of retained previous generations are not overwritten.
+     */
+    private class MetadataFile
+    {
+
+        private final File repodata;
+
+        private final String type;
+
+        private final String footer;
+
+        private final File tmp;
+
+        private final MessageDigest digest;
+
+        private final MessageDigest openDigest;
+
+        private final CountingOutputStream counter;
+
+        private final CountingOutputStream openCounter;
+
+        private final OutputStream out;
+
+        private String name;
+
+        private String checksum;
+
+        private String openChecksum;
+
+        private long size;
+
+        private long openSize;
+
+        MetadataFile( final File repodata, final String type, final String header, final String footer )
+            throws IOException
+        {
+            this.repodata = repodata;
+            this.type = type;
+            this.footer = footer;
+            this.tmp = new File( repodata, "." + type + ".xml.gz.tmp" );
+            this.digest = sha256();
+            this.openDigest = sha256();
+            counter = new CountingOutputStream(
+                new DigestOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ) ), digest )
+            );
+            openCounter = new CountingOutputStream(
+                new DigestOutputStream( new ParallelCompressor( executors.cpu() ).openStream( counter ), openDigest )
+            );
+            out = new BufferedOutputStream( openCounter, 64 * 1024 );
+            out.write( ( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + header ).getBytes( UTF_8 ) );
+        }
+
+        void close()
+            throws IOException
+        {
+            out.write( footer.getBytes( UTF_8 ) );
+            out.close();
+            size = counter.getCount();
+            openSize = openCounter.getCount();
+            checksum = RpmHeaderReader.toHex( digest.digest() );
+            openChecksum = RpmHeaderReader.toHex( openDigest.digest() );
+            name = checksum + "-" + type + ".xml.gz";
+            rename( tmp, new File( repodata, name ) );
+        }
+
+        void closeQuietly()
+        {
+            IOUtils.closeQuietly( out );
+            FileUtils.deleteQuietly( tmp );
+        }
+
+    }
+
+}
@@ -0,0 +1,124 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rpm;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Pre-rendered {@code <package>} elements of one RPM for primary.xml, filelists.xml and other.xml, plus the fields
+ * identifying the package.
+ *
+ * @since 3.0
+ */
+public class PackageFragments
+{
+
+    private final String name;
+
+    private final String arch;
+
+    private final String epoch;
+
+    private final String version;
+
+    private final String release;
+
+    private final String checksum;
+
+    private final String location;
+
+    private final String primary;
+
+    private final String filelists;
+
+    private final String other;
+
+    public PackageFragments( final String name, final String arch, final String epoch, final String version,
+                             final String release, final String checksum, final String location,
+                             final String primary, final String filelists, final String other )
+    {
+        this.name = checkNotNull( name );
+        this.arch = checkNotNull( arch );
+        this.epoch = checkNotNull( epoch );
+        this.version = checkNotNull( version );
+        this.release = checkNotNull( release );
+        this.checksum = checkNotNull( checksum );
+        this.location = checkNotNull( location );
+        this.primary = checkNotNull( primary );
+        this.filelists = checkNotNull( filelists );
+        this.other = checkNotNull( other );
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public String getArch()
+    {
+        return arch;
+    }
+
+    public String getEpoch()
+    {
+        return epoch;
+    }
+
+    public String getVersion()
+    {
+        return version;
+    }
+
+    public String getRelease()
+    {
+        return release;
+    }
+
+    /**
+     * @return SHA-256 of RPM, the package id
+     */
+    public String getChecksum()
+    {
+        return checksum;
+    }
+
+    /**
+     * @return path of RPM relative to repository root
+     */
+    public String getLocation()
+    {
+        return location;
+    }
+
+    public String getPrimary()
+    {
+        return primary;
+    }
+
+    public String getFilelists()
+    {
+        return filelists;
+    }
+
+    public String getOther()
+    {
+        return other;
+    }
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName() + "{" + name + "-" + epoch + ":" + version + "-" + release + "." + arch + "}";
+    }
+
+}
@@ -0,0 +1,406 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rpm;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persisted {@link PackageTable} (or {@link VersionTable}) of a repository, as an append only journal of changes.
+ * Changes are fixed width records (operation, checksum and position of location in a string pool) in a ".records"
+ * file, locations are appended to a ".names" file. On load both files are mapped into memory and replayed, so the
+ * table is restored without reading any RPM. Once most records are obsolete, both files are rewritten out of the
+ * table. Files are never truncated, as they may still be mapped (buffers cannot be unmapped explicitly, and mapped
+ * files cannot be truncated on some platforms): they are rewritten into new files renamed over the old ones.
+ * <p/>
+ * Content is a cache: whenever files are found incomplete (e.g. crash while writing) the valid head is kept, when
+ * found inconsistent they are discarded. Not thread safe.
+ *
+ * @since 3.0
+ */
+class PackageIndexFile
+    implements Closeable
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger( PackageIndexFile.class );
+
+    private static final String RECORDS_SUFFIX = ".records";
+
+    private static final int MAGIC = 0x59494458;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * byte operation, 3 bytes padding, int location length, long location offset, checksum
+     */
+    static final int RECORD_SIZE = 16 + PackageTable.CHECKSUM_LENGTH;
+
+    private static final byte PUT = 1;
+
+    private static final byte REMOVE = 2;
+
+    private static final byte REMOVE_DIRECTORY = 3;
+
+    /**
+     * Minimum number of records before files get compacted.
+     */
+    private static final int COMPACT_THRESHOLD = 4096;
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final File recordsFile;
+
+    private final File namesFile;
+
+    private RandomAccessFile records;
+
+    private RandomAccessFile names;
+
+    private long recordsSize;
+
+    private long namesSize;
+
+    private long generation;
+
+    PackageIndexFile( final File directory, final String repositoryId )
+    {
+        checkNotNull( directory );
+        checkNotNull( repositoryId );
+        this.recordsFile = new File( directory, repositoryId + RECORDS_SUFFIX );
+        this.namesFile = new File( directory, repositoryId + ".names" );
+    }
+
+    /**
+     * Replays persisted changes into given table and opens files for appending.
+     *
+     * @return number of replayed records
+     */
+    int load( final Table table )
+        throws IOException
+    {
+        int replayed = 0;
+        if ( recordsFile.isFile() && namesFile.isFile() )
+        {
+            try
+            {
+                replayed = replay( table );
+            }
+            catch ( IOException e )
+            {
+                LOG.warn( "Discarding unreadable package index {}: {}", recordsFile, e.getMessage() );
+                close();
+                replayed = 0;
+            }
+        }
+        if ( records == null )
+        {
+            rewrite( null );
+        }
+        return replayed;
+    }
+
+    void put( final String location, final String checksum )
+        throws IOException
+    {
+        append( PUT, location, checksum );
+    }
+
+    void remove( final String location )
+        throws IOException
+    {
+        append( REMOVE, location, null );
+    }
+
+    void removeDirectory( final String path )
+        throws IOException
+    {
+        append( REMOVE_DIRECTORY, path, null );
+    }
+
+    /**
+     * Rewrites files out of given table, if most records are obsolete.
+     */
+    void compactIfNeeded( final Table table )
+        throws IOException
+    {
+        final long count = ( recordsSize - HEADER_SIZE ) / RECORD_SIZE;
+        if ( count > COMPACT_THRESHOLD && count > 4L * table.size() )
+        {
+            LOG.debug( "Compacting {} records of {} into {}", new Object[]{ count, recordsFile, table.size() } );
+            rewrite( table );
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        if ( records != null )
+        {
+            try
+            {
+                records.getChannel().force( false );
+                names.getChannel().force( false );
+            }
+            catch ( IOException e )
+            {
+                LOG.debug( "Could not flush {}", recordsFile, e );
+            }
+        }
+        IOUtils.closeQuietly( records );
+        IOUtils.closeQuietly( names );
+        records = null;
+        names = null;
+    }
+
+    void delete()
+    {
+        close();
+        recordsFile.delete();
+        namesFile.delete();
+    }
+
+    /**
+     * @return ids of repositories with files in given directory
+     */
+    static Set<String> repositoryIds( final File directory )
+    {
+        final Set<String> repositoryIds = new HashSet<String>();
+        final String[] files = directory == null ? null : directory.list();
+        if ( files != null )
+        {
+            for ( final String file : files )
+            {
+                if ( file.endsWith( RECORDS_SUFFIX ) )
+                {
+                    repositoryIds.add( file.substring( 0, file.length() - RECORDS_SUFFIX.length() ) );
+                }
+            }
+        }
+        return repositoryIds;
+    }
+
+    private int replay( final Table table )
+        throws IOException
+    {
+        records = new RandomAccessFile( recordsFile, "rw" );
+        names = new RandomAccessFile( namesFile, "rw" );
+        final FileChannel recordsChannel = records.getChannel();
+        final FileChannel namesChannel = names.getChannel();
+        final MappedByteBuffer recordsBuffer = recordsChannel.map(
+            FileChannel.MapMode.READ_ONLY, 0, recordsChannel.size()
+        );
+        final MappedByteBuffer namesBuffer = namesChannel.map( FileChannel.MapMode.READ_ONLY, 0, namesChannel.size() );
+        generation = readHeader( recordsBuffer );
+        if ( readHeader( namesBuffer ) != generation )
+        {
+            throw new IOException( "Generation of " + namesFile + " does not match" );
+        }
+
+        final byte[] checksum = new byte[PackageTable.CHECKSUM_LENGTH];
+        byte[] location = new byte[256];
+        int replayed = 0;
+        long namesEnd = HEADER_SIZE;
+        while ( recordsBuffer.remaining() >= RECORD_SIZE )
+        {
+            final int start = recordsBuffer.position();
+            final byte operation = recordsBuffer.get();
+            recordsBuffer.position( start + 4 );
+            final int length = recordsBuffer.getInt();
+            final long offset = recordsBuffer.getLong();
+            recordsBuffer.get( checksum );
+            if ( operation < PUT || operation > REMOVE_DIRECTORY || length < 0 || offset < HEADER_SIZE
+                || offset + length > namesBuffer.limit() )
+            {
+                // incomplete write, keep what came before
+                recordsBuffer.position( start );
+                break;
+            }
+            if ( length > location.length )
+            {
+                location = new byte[length];
+            }
+            namesBuffer.position( (int) offset );
+            namesBuffer.get( location, 0, length );
+            final String path = new String( location, 0, length, UTF_8 );
+            if ( operation == PUT )
+            {
+                table.put( path, RpmHeaderReader.toHex( checksum ) );
+            }
+            else if ( operation == REMOVE )
+            {
+                table.remove( path );
+            }
+            else
+            {
+                table.removeDirectory( path );
+            }
+            namesEnd = Math.max( namesEnd, offset + length );
+            replayed++;
+        }
+        recordsSize = recordsBuffer.position();
+        namesSize = namesEnd;
+        LOG.debug( "Loaded {} records of {} into {} packages", new Object[]{ replayed, recordsFile, table.size() } );
+        if ( recordsSize != recordsChannel.size() )
+        {
+            // appending would leave the incomplete tail in place
+            LOG.debug( "Rewriting incomplete records of {}", recordsFile );
+            rewrite( table );
+        }
+        return replayed;
+    }
+
+    /**
+     * Writes content of given table (if any) into new files of next generation and renames them over the current
+     * ones, which are reopened for appending. Names file goes first: a crash in between leaves files of different
+     * generations, which are discarded on load.
+     */
+    private void rewrite( final Table table )
+        throws IOException
+    {
+        close();
+        final File recordsTmp = new File( recordsFile.getPath() + TMP_SUFFIX );
+        final File namesTmp = new File( namesFile.getPath() + TMP_SUFFIX );
+        recordsFile.getParentFile().mkdirs();
+        records = new RandomAccessFile( recordsTmp, "rw" );
+        names = new RandomAccessFile( namesTmp, "rw" );
+        try
+        {
+            records.setLength( 0 );
+            names.setLength( 0 );
+            generation++;
+            writeHeader( names.getChannel() );
+            writeHeader( records.getChannel() );
+            recordsSize = HEADER_SIZE;
+            namesSize = HEADER_SIZE;
+            if ( table != null )
+            {
+                for ( final Map.Entry<String, String> entry : table.toMap().entrySet() )
+                {
+                    put( entry.getKey(), entry.getValue() );
+                }
+            }
+        }
+        finally
+        {
+            close();
+        }
+        install( namesTmp, namesFile );
+        install( recordsTmp, recordsFile );
+        records = new RandomAccessFile( recordsFile, "rw" );
+        names = new RandomAccessFile( namesFile, "rw" );
+    }
+
+    private static void install( final File tmp, final File target )
+        throws IOException
+    {
+        if ( !tmp.renameTo( target ) && !( target.delete() && tmp.renameTo( target ) ) )
+        {
+            tmp.delete();
+            throw new IOException( "Could not replace " + target.getAbsolutePath() );
+        }
+    }
+
+    private void append( final byte operation, final String path, final String checksum )
+        throws IOException
+    {
+        final byte[] location = path.getBytes( UTF_8 );
+        final ByteBuffer record = ByteBuffer.allocate( RECORD_SIZE );
+        record.put( operation ).put( new byte[3] ).putInt( location.length ).putLong( namesSize );
+        if ( checksum != null )
+        {
+            for ( int i = 0; i < PackageTable.CHECKSUM_LENGTH; i++ )
+            {
+                record.put( (byte) Integer.parseInt( checksum.substring( 2 * i, 2 * i + 2 ), 16 ) );
+            }
+        }
+        record.clear();
+        // location first, so a record never points to a missing location
+        writeFully( names.getChannel(), ByteBuffer.wrap( location ), namesSize );
+        namesSize += location.length;
+        writeFully( records.getChannel(), record, recordsSize );
+        recordsSize += RECORD_SIZE;
+    }
+
+    private void writeHeader( final FileChannel channel )
+        throws IOException
+    {
+        final ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+        header.putInt( MAGIC ).putInt( VERSION ).putLong( generation );
+        header.flip();
+        writeFully( channel, header, 0 );
+    }
+
+    private long readHeader( final ByteBuffer buffer )
+        throws IOException
+    {
+        if ( buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION )
+        {
+            throw new IOException( "Not a package index of version " + VERSION );
+        }
+        return buffer.getLong();
+    }
+
+    /**
+     * Table changes are replayed into and compacted out of.
+     */
+    interface Table
+    {
+
+        /**
+         * @param checksum hex encoded SHA-256 or all zeros if written without checksum
+         */
+        void put( String location, String checksum );
+
+        boolean remove( String location );
+
+        int removeDirectory( String path );
+
+        int size();
+
+        /**
+         * @return checksums keyed by location, null if table has no checksums
+         */
+        Map<String, String> toMap();
+
+    }
+
+    private static void writeFully( final FileChannel channel, final ByteBuffer buffer, final long position )
+        throws IOException
+    {
+        long at = position;
+        while ( buffer.hasRemaining() )
+        {
+            at += channel.write( buffer, at );
+        }
+    }
+
+}
@@ -0,0 +1,348 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rpm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact table of the RPMs of a repository, mapping location to SHA-256 checksum. Locations are stored as directory
+ * id plus name, directories as parent id plus name, names being interned in a {@link SymbolTable}, so directory
+ * prefixes and version directories shared by packages are stored once. Checksums are kept as raw bytes. All in
+ * primitive arrays, which costs about a hundred bytes per package instead of several hundreds for maps of strings.
+ * <p/>
+ * Not thread safe.
+ *
+ * @since 3.0
+ */
+public class PackageTable
+    implements PackageIndexFile.Table
+{
+
+    public static final int CHECKSUM_LENGTH = 32;
+
+    private static final int ROOT = 0;
+
+    private static final int FREE = -1;
+
+    private final SymbolTable names = new SymbolTable();
+
+    /**
+     * (parent directory, name) to directory.
+     */
+    private final LongIntMap directories = new LongIntMap();
+
+    private int[] directoryParents = new int[16];
+
+    private int[] directoryNames = new int[16];
+
+    private int directoryCount;
+
+    /**
+     * (directory, name) to row.
+     */
+    private final LongIntMap rows = new LongIntMap();
+
+    private int[] rowDirectories = new int[64];
+
+    private int[] rowNames = new int[64];
+
+    private byte[] checksums = new byte[64 * CHECKSUM_LENGTH];
+
+    private int rowCount;
+
+    private int[] freeRows = new int[16];
+
+    private int freeCount;
+
+    public PackageTable()
+    {
+        directoryParents[ROOT] = FREE;
+        directoryNames[ROOT] = names.intern( "" );
+        directoryCount = 1;
+    }
+
+    /**
+     * @param location RPM location, relative to repository root
+     * @param checksum hex encoded SHA-256 checksum of RPM
+     */
+    @Override
+    public void put( final String location, final String checksum )
+    {
+        final byte[] bytes = parse( checksum );
+        final int slash = location.lastIndexOf( '/' );
+        final int directory = directory( location, slash, true );
+        final int name = names.intern( location.substring( slash + 1 ) );
+        final long key = LongIntMap.key( directory, name );
+        int row = rows.get( key );
+        if ( row == LongIntMap.NOT_FOUND )
+        {
+            row = allocateRow();
+            rowDirectories[row] = directory;
+            rowNames[row] = name;
+            rows.put( key, row );
+        }
+        System.arraycopy( bytes, 0, checksums, row * CHECKSUM_LENGTH, CHECKSUM_LENGTH );
+    }
+
+    /**
+     * @return hex encoded checksum of RPM at location or null if not contained
+     */
+    public String get( final String location )
+    {
+        final int row = row( location );
+        return row == LongIntMap.NOT_FOUND ? null : checksum( row );
+    }
+
+    /**
+     * @return true if there was an RPM at location
+     */
+    @Override
+    public boolean remove( final String location )
+    {
+        final int row = row( location );
+        if ( row == LongIntMap.NOT_FOUND )
+        {
+            return false;
+        }
+        freeRow( row );
+        return true;
+    }
+
+    /**
+     * @param path directory, relative to repository root
+     * @return number of removed RPMs, located in directory or one of its subdirectories
+     */
+    @Override
+    public int removeDirectory( final String path )
+    {
+        final String trimmed = path.endsWith( "/" ) ? path.substring( 0, path.length() - 1 ) : path;
+        final int directory = trimmed.length() == 0 ? ROOT : directory( trimmed, trimmed.length(), false );
+        if ( directory == LongIntMap.NOT_FOUND )
+        {
+            return 0;
+        }
+        int removed = 0;
+        for ( int row = 0; row < rowCount; row++ )
+        {
+            if ( rowDirectories[row] != FREE && isBelow( rowDirectories[row], directory ) )
+            {
+                freeRow( row );
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public int size()
+    {
+        return rows.size();
+    }
+
+    /**
+     * @return checksums of all RPMs, keyed by location
+     */
+    @Override
+    public Map<String, String> toMap()
+    {
+        final Map<String, String> map = new HashMap<String, String>( size() * 2 );
+        final String[] paths = new String[directoryCount];
+        for ( int row = 0; row < rowCount; row++ )
+        {
+            if ( rowDirectories[row] != FREE )
+            {
+                map.put( path( rowDirectories[row], paths ) + names.get( rowNames[row] ), checksum( row ) );
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Adds hex encoded checksums of all RPMs to given collection.
+     */
+    public void addChecksumsTo( final Collection<String> collection )
+    {
+        for ( int row = 0; row < rowCount; row++ )
+        {
+            if ( rowDirectories[row] != FREE )
+            {
+                collection.add( checksum( row ) );
+            }
+        }
+    }
+
+    /**
+     * @return approximate number of heap bytes used
+     */
+    public long memory()
+    {
+        return names.memory() + directories.memory() + rows.memory()
+            + 4L * ( directoryParents.length + directoryNames.length + rowDirectories.length + rowNames.length
+            + freeRows.length ) + checksums.length;
+    }
+
+    /**
+     * @param end end of directory part of location
+     * @return id of directory or {@link LongIntMap#NOT_FOUND} if not contained and not to be created
+     */
+    private int directory( final String location, final int end, final boolean create )
+    {
+        int directory = ROOT;
+        int start = 0;
+        while ( start < end )
+        {
+            int slash = location.indexOf( '/', start );
+            if ( slash < 0 || slash > end )
+            {
+                slash = end;
+            }
+            if ( slash > start )
+            {
+                final String segment = location.substring( start, slash );
+                final int name = create ? names.intern( segment ) : names.find( segment );
+                if ( name == SymbolTable.NOT_FOUND )
+                {
+                    return LongIntMap.NOT_FOUND;
+                }
+                final long key = LongIntMap.key( directory, name );
+                int child = directories.get( key );
+                if ( child == LongIntMap.NOT_FOUND )
+                {
+                    if ( !create )
+                    {
+                        return LongIntMap.NOT_FOUND;
+                    }
+                    child = addDirectory( directory, name );
+                    directories.put( key, child );
+                }
+                directory = child;
+            }
+            start = slash + 1;
+        }
+        return directory;
+    }
+
+    private int addDirectory( final int parent, final int name )
+    {
+        if ( directoryCount == directoryParents.length )
+        {
+            directoryParents = Arrays.copyOf( directoryParents, directoryCount * 2 );
+            directoryNames = Arrays.copyOf( directoryNames, directoryCount * 2 );
+        }
+        directoryParents[directoryCount] = parent;
+        directoryNames[directoryCount] = name;
+        return directoryCount++;
+    }
+
+    private int row( final String location )
+    {
+        final int slash = location.lastIndexOf( '/' );
+        final int directory = directory( location, Math.max( slash, 0 ), false );
+        if ( directory == LongIntMap.NOT_FOUND )
+        {
+            return LongIntMap.NOT_FOUND;
+        }
+        final int name = names.find( location.substring( slash + 1 ) );
+        if ( name == SymbolTable.NOT_FOUND )
+        {
+            return LongIntMap.NOT_FOUND;
+        }
+        return rows.get( LongIntMap.key( directory, name ) );
+    }
+
+    private int allocateRow()
+    {
+        if ( freeCount > 0 )
+        {
+            return freeRows[--freeCount];
+        }
+        if ( rowCount == rowDirectories.length )
+        {
+            rowDirectories = Arrays.copyOf( rowDirectories, rowCount * 2 );
+            rowNames = Arrays.copyOf( rowNames, rowCount * 2 );
+            checksums = Arrays.copyOf( checksums, rowCount * 2 * CHECKSUM_LENGTH );
+        }
+        return rowCount++;
+    }
+
+    private void freeRow( final int row )
+    {
+        rows.remove( LongIntMap.key( rowDirectories[row], rowNames[row] ) );
+        rowDirectories[row] = FREE;
+        if ( freeCount == freeRows.length )
+        {
+            freeRows = Arrays.copyOf( freeRows, freeCount * 2 );
+        }
+        freeRows[freeCount++] = row;
+    }
+
+    private boolean isBelow( final int directory, final int ancestor )
+    {
+        for ( int current = directory; current != FREE; current = directoryParents[current] )
+        {
+            if ( current == ancestor )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return path of directory ending with "/" (empty for root), cached in given array
+     */
+    private String path( final int directory, final String[] paths )
+    {
+        if ( directory == ROOT )
+        {
+            return "";
+        }
+        if ( paths[directory] == null )
+        {
+            paths[directory] =
+                path( directoryParents[directory], paths ) + names.get( directoryNames[directory] ) + "/";
+        }
+        return paths[directory];
+    }
+
+    private String checksum( final int row )
+    {
+        return RpmHeaderReader.toHex(
+            Arrays.copyOfRange( checksums, row * CHECKSUM_LENGTH, ( row + 1 ) * CHECKSUM_LENGTH )
+        );
+    }
+
+    private static byte[] parse( final String checksum )
+    {
+        checkArgument( checksum.length() == 2 * CHECKSUM_LENGTH, "Not a SHA-256 checksum: %s", checksum );
+        final byte[] bytes = new byte[CHECKSUM_LENGTH];
+        for ( int i = 0; i < CHECKSUM_LENGTH; i++ )
+        {
+            bytes[i] = (byte) ( ( digit( checksum, 2 * i ) << 4 ) | digit( checksum, 2 * i + 1 ) );
+        }
+        return bytes;
+    }
+
+    private static int digit( final String hex, final int index )
+    {
+        final int digit = Character.digit( hex.charAt( index ), 16 );
+        checkArgument( digit >= 0, "Not a SHA-256 checksum: %s", hex );
+        return digit;
+    }
+
+}
@@ -0,0 +1,355 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rpm;
+
+import java.util.regex.Pattern;
+
+/**
+ * Renders the {@code <package>} elements of primary.xml, filelists.xml and other.xml out of an RPM header, the same
+ * way createrepo does.
+ *
+ * @since 3.0
+ */
+public class PackageXmlWriter
+{
+
+    public static final String CHECKSUM_TYPE = "sha256";
+
+    /**
+     * Files listed in primary.xml, all others are only listed in filelists.xml.
+     */
+    private static final Pattern PRIMARY_FILES = Pattern.compile( ".*bin/.*|/etc/.*|/usr/lib/sendmail" );
+
+    private static final int SENSE_LESS = 2;
+
+    private static final int SENSE_GREATER = 4;
+
+    private static final int SENSE_EQUAL = 8;
+
+    private static final int SENSE_PRE = 64 | 512 | 1024;
+
+    private static final int FILE_GHOST = 64;
+
+    private static final int MODE_TYPE = 0170000;
+
+    private static final int MODE_DIRECTORY = 0040000;
+
+    private PackageXmlWriter()
+    {
+        // static utility
+    }
+
+    /**
+     * @param signature signature header of RPM
+     * @param header    main header of RPM
+     * @param location  path of RPM relative to repository root
+     * @param checksum  SHA-256 of RPM
+     * @param size      size of RPM file
+     * @param time      last modified time of RPM file in seconds
+     */
+    public static PackageFragments render( final RpmHeader signature, final RpmHeader header, final String location,
+                                           final String checksum, final long size, final long time )
+    {
+        final String name = string( header, RpmHeader.NAME );
+        final String arch = header.contains( RpmHeader.SOURCERPM ) ? string( header, RpmHeader.ARCH ) : "src";
+        final String epoch = String.valueOf( header.getNumber( RpmHeader.EPOCH, 0 ) );
+        final String version = string( header, RpmHeader.VERSION );
+        final String release = string( header, RpmHeader.RELEASE );
+        final PackageFile[] files = files( header );
+        final long archiveSize = header.getNumber(
+            RpmHeader.ARCHIVESIZE, signature.getNumber( RpmHeader.SIGNATURE_PAYLOADSIZE, 0 )
+        );
+
+        final StringBuilder primary = new StringBuilder( 2048 );
+        primary.append( "<package type=\"rpm\">\n" );
+        element( primary, "  ", "name", name );
+        element( primary, "  ", "arch", arch );
+        version( primary.append( "  " ), epoch, version, release );
+        primary.append( "  <checksum type=\"" ).append( CHECKSUM_TYPE ).append( "\" pkgid=\"YES\">" )
+            .append( checksum ).append( "</checksum>\n" );
+        element( primary, "  ", "summary", string( header, RpmHeader.SUMMARY ) );
+        element( primary, "  ", "description", string( header, RpmHeader.DESCRIPTION ) );
+        element( primary, "  ", "packager", string( header, RpmHeader.PACKAGER ) );
+        element( primary, "  ", "url", string( header, RpmHeader.URL ) );
+        primary.append( "  <time file=\"" ).append( time ).append( "\" build=\"" )
+            .append( header.getNumber( RpmHeader.BUILDTIME, 0 ) ).append( "\"/>\n" );
+        primary.append( "  <size package=\"" ).append( size ).append( "\" installed=\"" )
+            .append( header.getNumber( RpmHeader.SIZE, 0 ) ).append( "\" archive=\"" )
+            .append( archiveSize ).append( "\"/>\n" );
+        primary.append( "  <location href=\"" ).append( escape( location ) ).append( "\"/>\n" );
+        primary.append( "  <format>\n" );
+        element( primary, "    ", "rpm:license", string( header, RpmHeader.LICENSE ) );
+        element( primary, "    ", "rpm:vendor", string( header, RpmHeader.VENDOR ) );
+        element( primary, "    ", "rpm:group", string( header, RpmHeader.GROUP ) );
+        element( primary, "    ", "rpm:buildhost", string( header, RpmHeader.BUILDHOST ) );
+        element( primary, "    ", "rpm:sourcerpm", string( header, RpmHeader.SOURCERPM ) );
+        primary.append( "    <rpm:header-range start=\"" ).append( header.getStart() ).append( "\" end=\"" )
+            .append( header.getEnd() ).append( "\"/>\n" );
+        dependencies( primary, header, "rpm:provides",
+                      RpmHeader.PROVIDENAME, RpmHeader.PROVIDEFLAGS, RpmHeader.PROVIDEVERSION, false );
+        dependencies( primary, header, "rpm:requires",
+                      RpmHeader.REQUIRENAME, RpmHeader.REQUIREFLAGS, RpmHeader.REQUIREVERSION, true );
+        dependencies( primary, header, "rpm:conflicts",
+                      RpmHeader.CONFLICTNAME, RpmHeader.CONFLICTFLAGS, RpmHeader.CONFLICTVERSION, false );
+        dependencies( primary, header, "rpm:obsoletes",
+                      RpmHeader.OBSOLETENAME, RpmHeader.OBSOLETEFLAGS, RpmHeader.OBSOLETEVERSION, false );
+        for ( final PackageFile file : files )
+        {
+            if ( PRIMARY_FILES.matcher( file.path ).matches() )
+            {
+                file( primary.append( "    " ), file );
+            }
+        }
+        primary.append( "  </format>\n" );
+        primary.append( "</package>\n" );
+
+        final StringBuilder filelists = new StringBuilder( 256 + files.length * 64 );
+        packageStart( filelists, checksum, name, arch, epoch, version, release );
+        for ( final PackageFile file : files )
+        {
+            file( filelists.append( "  " ), file );
+        }
+        filelists.append( "</package>\n" );
+
+        final StringBuilder other = new StringBuilder( 512 );
+        packageStart( other, checksum, name, arch, epoch, version, release );
+        final String[] authors = header.getStrings( RpmHeader.CHANGELOGNAME );
+        final long[] dates = header.getNumbers( RpmHeader.CHANGELOGTIME );
+        final String[] texts = header.getStrings( RpmHeader.CHANGELOGTEXT );
+        for ( int i = 0; i < authors.length && i < dates.length && i < texts.length; i++ )
+        {
+            other.append( "  <changelog author=\"" ).append( escape( authors[i] ) ).append( "\" date=\"" )
+                .append( dates[i] ).append( "\">" ).append( escape( texts[i] ) ).append( "</changelog>\n" );
+        }
+        other.append( "</package>\n" );
+
+        return new PackageFragments(
+            name, arch, epoch, version, release, checksum, location,
+            primary.toString(), filelists.toString(), other.toString()
+        );
+    }
+
+    private static void packageStart( final StringBuilder xml, final String checksum, final String name,
+                                      final String arch, final String epoch, final String version,
+                                      final String release )
+    {
+        xml.append( "<package pkgid=\"" ).append( checksum ).append( "\" name=\"" ).append( escape( name ) )
+            .append( "\" arch=\"" ).append( escape( arch ) ).append( "\">\n  " );
+        version( xml, epoch, version, release );
+    }
+
+    private static void version( final StringBuilder xml, final String epoch, final String version,
+                                 final String release )
+    {
+        xml.append( "<version epoch=\"" ).append( escape( epoch ) ).append( "\" ver=\"" ).append( escape( version ) )
+            .append( "\" rel=\"" ).append( escape( release ) ).append( "\"/>\n" );
+    }
+
+    private static void element( final StringBuilder xml, final String indent, final String name,
+                                 final String value )
+    {
+        xml.append( indent ).append( '<' ).append( name );
+        if ( value.length() == 0 )
+        {
+            xml.append( "/>\n" );
+        }
+        else
+        {
+            xml.append( '>' ).append( escape( value ) ).append( "</" ).append( name ).append( ">\n" );
+        }
+    }
+
+    private static void dependencies( final StringBuilder xml, final RpmHeader header, final String element,
+                                      final int nameTag, final int flagsTag, final int versionTag,
+                                      final boolean requires )
+    {
+        final String[] names = header.getStrings( nameTag );
+        if ( names.length == 0 )
+        {
+            return;
+        }
+        final long[] flags = header.getNumbers( flagsTag );
+        final String[] versions = header.getStrings( versionTag );
+        final StringBuilder entries = new StringBuilder();
+        for ( int i = 0; i < names.length; i++ )
+        {
+            final int flag = i < flags.length ? (int) flags[i] : 0;
+            entries.append( "      <rpm:entry name=\"" ).append( escape( names[i] ) ).append( '"' );
+            final String comparison = comparison( flag );
+            if ( comparison != null && i < versions.length && versions[i].length() > 0 )
+            {
+                entries.append( " flags=\"" ).append( comparison ).append( '"' );
+                evr( entries, versions[i] );
+            }
+            if ( requires && ( flag & SENSE_PRE ) != 0 )
+            {
+                entries.append( " pre=\"1\"" );
+            }
+            entries.append( "/>\n" );
+        }
+        if ( entries.length() > 0 )
+        {
+            xml.append( "    <" ).append( element ).append( ">\n" ).append( entries )
+                .append( "    </" ).append( element ).append( ">\n" );
+        }
+    }
+
+    private static String comparison( final int flag )
+    {
+        switch ( flag & ( SENSE_LESS | SENSE_GREATER | SENSE_EQUAL ) )
+        {
+            case SENSE_LESS:
+                return "LT";
+            case SENSE_GREATER:
+                return "GT";
+            case SENSE_EQUAL:
+                return "EQ";
+            case SENSE_LESS | SENSE_EQUAL:
+                return "LE";
+            case SENSE_GREATER | SENSE_EQUAL:
+                return "GE";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Splits [epoch:]version[-release] into attributes.
+     */
+    private static void evr( final StringBuilder xml, final String evr )
+    {
+        final int colon = evr.indexOf( ':' );
+        final int dash = evr.lastIndexOf( '-' );
+        final String epoch = colon > 0 ? evr.substring( 0, colon ) : "0";
+        final String version = evr.substring( colon + 1, dash > colon ? dash : evr.length() );
+        xml.append( " epoch=\"" ).append( escape( epoch ) ).append( "\" ver=\"" ).append( escape( version ) )
+            .append( '"' );
+        if ( dash > colon )
+        {
+            xml.append( " rel=\"" ).append( escape( evr.substring( dash + 1 ) ) ).append( '"' );
+        }
+    }
+
+    private static void file( final StringBuilder xml, final PackageFile file )
+    {
+        xml.append( "<file" );
+        if ( file.type != null )
+        {
+            xml.append( " type=\"" ).append( file.type ).append( '"' );
+        }
+        xml.append( '>' ).append( escape( file.path ) ).append( "</file>\n" );
+    }
+
+    private static PackageFile[] files( final RpmHeader header )
+    {
+        final String[] baseNames = header.getStrings( RpmHeader.BASENAMES );
+        final String[] paths;
+        if ( baseNames.length > 0 )
+        {
+            final String[] dirNames = header.getStrings( RpmHeader.DIRNAMES );
+            final long[] dirIndexes = header.getNumbers( RpmHeader.DIRINDEXES );
+            paths = new String[baseNames.length];
+            for ( int i = 0; i < baseNames.length; i++ )
+            {
+                final int dirIndex = i < dirIndexes.length ? (int) dirIndexes[i] : -1;
+                paths[i] = ( dirIndex >= 0 && dirIndex < dirNames.length ? dirNames[dirIndex] : "" ) + baseNames[i];
+            }
+        }
+        else
+        {
+            paths = header.getStrings( RpmHeader.OLDFILENAMES );
+        }
+        final long[] modes = header.getNumbers( RpmHeader.FILEMODES );
+        final long[] fileFlags = header.getNumbers( RpmHeader.FILEFLAGS );
+        final PackageFile[] files = new PackageFile[paths.length];
+        for ( int i = 0; i < paths.length; i++ )
+        {
+            String type = null;
+            if ( i < fileFlags.length && ( fileFlags[i] & FILE_GHOST ) != 0 )
+            {
+                type = "ghost";
+            }
+            else if ( i < modes.length && ( modes[i] & MODE_TYPE ) == MODE_DIRECTORY )
+            {
+                type = "dir";
+            }
+            files[i] = new PackageFile( paths[i], type );
+        }
+        return files;
+    }
+
+    private static String string( final RpmHeader header, final int tag )
+    {
+        final String value = header.getString( tag );
+        return value == null ? "" : value;
+    }
+
+    static String escape( final String value )
+    {
+        StringBuilder escaped = null;
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            final char c = value.charAt( i );
+            final String replacement;
+            switch ( c )
+            {
+                case '&':
+                    replacement = "&amp;";
+                    break;
+                case '<':
+                    replacement = "&lt;";
+                    break;
+                case '>':
+                    replacement = "&gt;";
+                    break;
+                case '"':
+                    replacement = "&quot;";
+                    break;
+                default:
+                    replacement = null;
+            }
+            if ( replacement != null && escaped == null )
+            {
+                escaped = new StringBuilder( value.length() + 16 ).append( value, 0, i );
+            }
+            if ( escaped != null )
+            {
+                if ( replacement != null )
+                {
+                    escaped.append( replacement );
+                }
+                else
+                {
+                    escaped.append( c );
+                }
+            }
+        }
+        return escaped == null ? value : escaped.toString();
+    }
+
+    private static class PackageFile
+    {
+
+        private final String path;
+
+        private final String type;
+
+        PackageFile( final String path, final String type )
+        {
+            this.path = path;
+            this.type = type;
+        }
+
+    }
+
+}
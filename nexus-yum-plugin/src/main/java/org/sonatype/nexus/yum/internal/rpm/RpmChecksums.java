@@ -0,0 +1,170 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rpm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonatype.nexus.proxy.attributes.Attributes;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+import org.sonatype.nexus.proxy.repository.Repository;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Closeables;
+
+/**
+ * Provides checksums of stored RPMs out of the item attributes, so they are not hashed again on each metadata
+ * generation. SHA-1 and MD5 are the digests Nexus calculates on store. SHA-256, the default checksum of yum metadata,
+ * is calculated once (see {@link #storeSha256(StorageFileItem)}) and persisted as item attribute as well.
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+public class RpmChecksums
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger( RpmChecksums.class );
+
+    public static final String SHA256 = "sha256";
+
+    public static final String SHA1 = "sha1";
+
+    public static final String MD5 = "md5";
+
+    /**
+     * Item attribute holding the SHA-256 calculated by yum plugin.
+     */
+    public static final String SHA256_ATTRIBUTE = "yum.digest.sha256";
+
+    private static final Map<String, String> ATTRIBUTES = ImmutableMap.of(
+        SHA256, SHA256_ATTRIBUTE,
+        SHA1, "digest.sha1",
+        // createrepo name of SHA-1
+        "sha", "digest.sha1",
+        MD5, "digest.md5"
+    );
+
+    private static final Map<String, String> ALGORITHMS = ImmutableMap.of(
+        SHA256, "SHA-256",
+        SHA1, "SHA-1",
+        "sha", "SHA-1",
+        MD5, "MD5"
+    );
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * @param algorithm yum checksum type (sha256, sha1/sha or md5)
+     * @return checksum stored with item or null if there is none
+     */
+    public String storedChecksum( final StorageFileItem item, final String algorithm )
+    {
+        final String attribute = ATTRIBUTES.get( algorithm );
+        return attribute == null ? null : item.getRepositoryItemAttributes().get( attribute );
+    }
+
+    /**
+     * Reads the SHA-256 stored with the item at given path straight from attribute storage, without retrieving the
+     * item itself.
+     *
+     * @return SHA-256 stored with item or null if there is none
+     */
+    public String storedSha256( final Repository repository, final String path )
+        throws IOException
+    {
+        final Attributes attributes = repository.getAttributesHandler().getAttributeStorage().getAttributes(
+            repository.createUid( path )
+        );
+        return attributes == null ? null : attributes.get( SHA256_ATTRIBUTE );
+    }
+
+    /**
+     * @param algorithm yum checksum type (sha256, sha1/sha or md5)
+     * @return checksum stored with item, calculated from content if there is none
+     */
+    public String checksum( final StorageFileItem item, final String algorithm )
+        throws IOException
+    {
+        final String stored = storedChecksum( item, algorithm );
+        if ( stored != null )
+        {
+            return stored;
+        }
+        if ( SHA256.equals( algorithm ) )
+        {
+            return storeSha256( item );
+        }
+        return calculate( item, algorithm );
+    }
+
+    /**
+     * Calculates the SHA-256 of item (if not already done) and persists it as item attribute.
+     *
+     * @return SHA-256 of item
+     */
+    public String storeSha256( final StorageFileItem item )
+        throws IOException
+    {
+        final String stored = storedChecksum( item, SHA256 );
+        if ( stored != null )
+        {
+            return stored;
+        }
+        final String sha256 = calculate( item, SHA256 );
+        item.getRepositoryItemAttributes().put( SHA256_ATTRIBUTE, sha256 );
+        final Repository repository = item.getRepositoryItemUid().getRepository();
+        repository.getAttributesHandler().storeAttributes( item );
+        LOG.debug( "Stored SHA-256 of {}:{}", repository.getId(), item.getPath() );
+        return sha256;
+    }
+
+    private String calculate( final StorageFileItem item, final String algorithm )
+        throws IOException
+    {
+        final MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( ALGORITHMS.containsKey( algorithm )
+                                                    ? ALGORITHMS.get( algorithm )
+                                                    : algorithm );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IOException( "Unsupported checksum type " + algorithm, e );
+        }
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        InputStream in = null;
+        try
+        {
+            in = item.getInputStream();
+            int read;
+            while ( ( read = in.read( buffer ) ) >= 0 )
+            {
+                digest.update( buffer, 0, read );
+            }
+        }
+        finally
+        {
+            Closeables.closeQuietly( in );
+        }
+        return RpmHeaderReader.toHex( digest.digest() );
+    }
+
+}
@@ -0,0 +1,362 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rpm;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * View of an RPM header structure (signature or main header), decoding tags on access. The underlying buffer is owned
+ * by the {@link RpmHeaderReader} that read it, so a header is only valid until that reader reads the next file.
+ *
+ * @since 3.0
+ */
+public class RpmHeader
+{
+
+    public static final int NAME = 1000;
+
+    public static final int VERSION = 1001;
+
+    public static final int RELEASE = 1002;
+
+    public static final int EPOCH = 1003;
+
+    public static final int SUMMARY = 1004;
+
+    public static final int DESCRIPTION = 1005;
+
+    public static final int BUILDTIME = 1006;
+
+    public static final int BUILDHOST = 1007;
+
+    public static final int SIZE = 1009;
+
+    public static final int VENDOR = 1011;
+
+    public static final int LICENSE = 1014;
+
+    public static final int PACKAGER = 1015;
+
+    public static final int GROUP = 1016;
+
+    public static final int URL = 1020;
+
+    public static final int ARCH = 1022;
+
+    public static final int FILESIZES = 1028;
+
+    public static final int OLDFILENAMES = 1027;
+
+    public static final int FILEMODES = 1030;
+
+    public static final int FILEFLAGS = 1037;
+
+    public static final int SOURCERPM = 1044;
+
+    public static final int ARCHIVESIZE = 1046;
+
+    public static final int PROVIDENAME = 1047;
+
+    public static final int REQUIREFLAGS = 1048;
+
+    public static final int REQUIRENAME = 1049;
+
+    public static final int REQUIREVERSION = 1050;
+
+    public static final int CONFLICTFLAGS = 1053;
+
+    public static final int CONFLICTNAME = 1054;
+
+    public static final int CONFLICTVERSION = 1055;
+
+    public static final int CHANGELOGTIME = 1080;
+
+    public static final int CHANGELOGNAME = 1081;
+
+    public static final int CHANGELOGTEXT = 1082;
+
+    public static final int OBSOLETENAME = 1090;
+
+    public static final int PROVIDEFLAGS = 1112;
+
+    public static final int PROVIDEVERSION = 1113;
+
+    public static final int OBSOLETEFLAGS = 1114;
+
+    public static final int OBSOLETEVERSION = 1115;
+
+    public static final int DIRINDEXES = 1116;
+
+    public static final int BASENAMES = 1117;
+
+    public static final int DIRNAMES = 1118;
+
+    /**
+     * Signature header: size of main header plus payload.
+     */
+    public static final int SIGNATURE_SIZE = 1000;
+
+    /**
+     * Signature header: MD5 of main header plus payload.
+     */
+    public static final int SIGNATURE_MD5 = 1004;
+
+    /**
+     * Signature header: uncompressed size of payload.
+     */
+    public static final int SIGNATURE_PAYLOADSIZE = 1007;
+
+    private static final int TYPE_CHAR = 1;
+
+    private static final int TYPE_INT8 = 2;
+
+    private static final int TYPE_INT16 = 3;
+
+    private static final int TYPE_INT32 = 4;
+
+    private static final int TYPE_INT64 = 5;
+
+    private static final int TYPE_STRING = 6;
+
+    private static final int TYPE_BIN = 7;
+
+    private static final int TYPE_STRING_ARRAY = 8;
+
+    private static final int TYPE_I18NSTRING = 9;
+
+    private static final int INDEX_ENTRY_SIZE = 16;
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private final ByteBuffer data;
+
+    private final int entries;
+
+    private final int storeOffset;
+
+    private final long start;
+
+    private final long end;
+
+    private final RpmHeaderReader reader;
+
+    RpmHeader( final ByteBuffer data, final int entries, final long start, final long end,
+               final RpmHeaderReader reader )
+    {
+        this.data = data;
+        this.entries = entries;
+        this.storeOffset = entries * INDEX_ENTRY_SIZE;
+        this.start = start;
+        this.end = end;
+        this.reader = reader;
+    }
+
+    /**
+     * @return file offset of header structure (as used by the "rpm:header-range" element of primary.xml)
+     */
+    public long getStart()
+    {
+        return start;
+    }
+
+    /**
+     * @return file offset right after header structure
+     */
+    public long getEnd()
+    {
+        return end;
+    }
+
+    public boolean contains( final int tag )
+    {
+        return find( tag ) >= 0;
+    }
+
+    /**
+     * @return first string of tag, or null if not present
+     */
+    public String getString( final int tag )
+    {
+        final int entry = find( tag );
+        if ( entry < 0 || !isString( type( entry ) ) || count( entry ) < 1 )
+        {
+            return null;
+        }
+        return readString( dataOffset( entry ) );
+    }
+
+    /**
+     * @return all strings of tag, or an empty array if not present
+     */
+    public String[] getStrings( final int tag )
+    {
+        final int entry = find( tag );
+        if ( entry < 0 || !isString( type( entry ) ) )
+        {
+            return new String[0];
+        }
+        final String[] strings = new String[type( entry ) == TYPE_STRING ? 1 : count( entry )];
+        int offset = dataOffset( entry );
+        for ( int i = 0; i < strings.length; i++ )
+        {
+            strings[i] = readString( offset );
+            offset += reader.lastStringLength + 1;
+        }
+        return strings;
+    }
+
+    /**
+     * @return first integer of tag, or given default value if not present
+     */
+    public long getNumber( final int tag, final long defaultValue )
+    {
+        final int entry = find( tag );
+        if ( entry < 0 || count( entry ) < 1 )
+        {
+            return defaultValue;
+        }
+        return readNumber( type( entry ), dataOffset( entry ), defaultValue );
+    }
+
+    /**
+     * @return all integers of tag, or an empty array if not present
+     */
+    public long[] getNumbers( final int tag )
+    {
+        final int entry = find( tag );
+        if ( entry < 0 )
+        {
+            return new long[0];
+        }
+        final int type = type( entry );
+        final long[] numbers = new long[count( entry )];
+        final int width = width( type );
+        final int offset = dataOffset( entry );
+        for ( int i = 0; i < numbers.length && width > 0; i++ )
+        {
+            numbers[i] = readNumber( type, offset + i * width, 0 );
+        }
+        return numbers;
+    }
+
+    /**
+     * @return binary value of tag, or null if not present
+     */
+    public byte[] getBinary( final int tag )
+    {
+        final int entry = find( tag );
+        if ( entry < 0 || type( entry ) != TYPE_BIN )
+        {
+            return null;
+        }
+        final byte[] bytes = new byte[count( entry )];
+        final int offset = dataOffset( entry );
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            bytes[i] = data.get( offset + i );
+        }
+        return bytes;
+    }
+
+    private int find( final int tag )
+    {
+        for ( int entry = 0; entry < entries; entry++ )
+        {
+            if ( data.getInt( entry * INDEX_ENTRY_SIZE ) == tag )
+            {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    private int type( final int entry )
+    {
+        return data.getInt( entry * INDEX_ENTRY_SIZE + 4 );
+    }
+
+    private int dataOffset( final int entry )
+    {
+        return storeOffset + data.getInt( entry * INDEX_ENTRY_SIZE + 8 );
+    }
+
+    private int count( final int entry )
+    {
+        return data.getInt( entry * INDEX_ENTRY_SIZE + 12 );
+    }
+
+    private static boolean isString( final int type )
+    {
+        return type == TYPE_STRING || type == TYPE_STRING_ARRAY || type == TYPE_I18NSTRING;
+    }
+
+    private static int width( final int type )
+    {
+        switch ( type )
+        {
+            case TYPE_CHAR:
+            case TYPE_INT8:
+                return 1;
+            case TYPE_INT16:
+                return 2;
+            case TYPE_INT32:
+                return 4;
+            case TYPE_INT64:
+                return 8;
+            default:
+                return 0;
+        }
+    }
+
+    private long readNumber( final int type, final int offset, final long defaultValue )
+    {
+        switch ( type )
+        {
+            case TYPE_CHAR:
+            case TYPE_INT8:
+                return data.get( offset ) & 0xff;
+            case TYPE_INT16:
+                return data.getShort( offset ) & 0xffff;
+            case TYPE_INT32:
+                return data.getInt( offset ) & 0xffffffffL;
+            case TYPE_INT64:
+                return data.getLong( offset );
+            default:
+                return defaultValue;
+        }
+    }
+
+    /**
+     * Decodes the NUL terminated string at offset, via the scratch buffer of reader.
+     */
+    private String readString( final int offset )
+    {
+        byte[] scratch = reader.scratch;
+        int length = 0;
+        byte b;
+        while ( offset + length < data.limit() && ( b = data.get( offset + length ) ) != 0 )
+        {
+            if ( length == scratch.length )
+            {
+                final byte[] grown = new byte[scratch.length * 2];
+                System.arraycopy( scratch, 0, grown, 0, length );
+                scratch = reader.scratch = grown;
+            }
+            scratch[length++] = b;
+        }
+        reader.lastStringLength = length;
+        return new String( scratch, 0, length, UTF_8 );
+    }
+
+}
@@ -0,0 +1,236 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rpm;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Reads the signature and main header of RPM files without touching their payload. Only the lead and the header
+ * sections are read, into buffers reused between files; headers above {@link #MAX_BUFFERED_HEADER_SIZE} (e.g. of
+ * packages with huge file lists) are memory mapped instead. Tags are decoded lazily when accessed via
+ * {@link RpmHeader}.
+ * <p/>
+ * Not thread safe: use one reader per thread. Headers returned are only valid until the next file is read.
+ *
+ * @since 3.0
+ */
+public class RpmHeaderReader
+{
+
+    static final int MAX_BUFFERED_HEADER_SIZE = 1024 * 1024;
+
+    private static final int LEAD_SIZE = 96;
+
+    private static final int LEAD_MAGIC = 0xedabeedb;
+
+    private static final int HEADER_INTRO_SIZE = 16;
+
+    private static final int HEADER_MAGIC = 0x8eade8;
+
+    private static final int INDEX_ENTRY_SIZE = 16;
+
+    private static final int MAX_INDEX_ENTRIES = 0xffff;
+
+    private static final int DIGEST_BUFFER_SIZE = 64 * 1024;
+
+    private final ByteBuffer lead = ByteBuffer.allocate( LEAD_SIZE );
+
+    private final ByteBuffer intro = ByteBuffer.allocate( HEADER_INTRO_SIZE );
+
+    private ByteBuffer signatureBuffer = ByteBuffer.allocate( 4 * 1024 );
+
+    private ByteBuffer headerBuffer = ByteBuffer.allocate( 64 * 1024 );
+
+    private ByteBuffer digestBuffer;
+
+    private RpmHeader signature;
+
+    private RpmHeader header;
+
+    /**
+     * Scratch buffer for decoding strings, shared by headers of this reader.
+     */
+    byte[] scratch = new byte[256];
+
+    int lastStringLength;
+
+    /**
+     * Reads signature and main header of given RPM.
+     *
+     * @return main header
+     */
+    public RpmHeader read( final File rpm )
+        throws IOException
+    {
+        final RandomAccessFile file = new RandomAccessFile( rpm, "r" );
+        try
+        {
+            final FileChannel channel = file.getChannel();
+            lead.clear();
+            readFully( channel, lead, 0 );
+            if ( lead.getInt( 0 ) != LEAD_MAGIC )
+            {
+                throw new IOException( "Not an RPM: " + rpm );
+            }
+            signature = readHeader( channel, LEAD_SIZE, true, rpm );
+            // signature header is padded to a multiple of 8 bytes
+            final long headerStart = ( signature.getEnd() + 7 ) & ~7L;
+            header = readHeader( channel, headerStart, false, rpm );
+            return header;
+        }
+        finally
+        {
+            IOUtils.closeQuietly( file );
+        }
+    }
+
+    /**
+     * @return signature header of last read RPM
+     */
+    public RpmHeader getSignature()
+    {
+        return signature;
+    }
+
+    /**
+     * @return main header of last read RPM
+     */
+    public RpmHeader getHeader()
+    {
+        return header;
+    }
+
+    /**
+     * Computes the checksum of the whole file, the only operation reading the payload. Meant for the case a checksum
+     * is explicitly required and no stored one is available.
+     *
+     * @return hex encoded checksum
+     */
+    public String checksum( final File rpm, final String algorithm )
+        throws IOException
+    {
+        final MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( algorithm );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IOException( "Unsupported checksum algorithm " + algorithm, e );
+        }
+        if ( digestBuffer == null )
+        {
+            digestBuffer = ByteBuffer.allocateDirect( DIGEST_BUFFER_SIZE );
+        }
+        final RandomAccessFile file = new RandomAccessFile( rpm, "r" );
+        try
+        {
+            final FileChannel channel = file.getChannel();
+            digestBuffer.clear();
+            while ( channel.read( digestBuffer ) >= 0 )
+            {
+                digestBuffer.flip();
+                digest.update( digestBuffer );
+                digestBuffer.clear();
+            }
+        }
+        finally
+        {
+            IOUtils.closeQuietly( file );
+        }
+        return toHex( digest.digest() );
+    }
+
+    private RpmHeader readHeader( final FileChannel channel, final long position, final boolean isSignature,
+                                  final File rpm )
+        throws IOException
+    {
+        intro.clear();
+        readFully( channel, intro, position );
+        if ( ( intro.getInt( 0 ) >>> 8 ) != HEADER_MAGIC )
+        {
+            throw new IOException( "Corrupt RPM header at " + position + ": " + rpm );
+        }
+        final int entries = intro.getInt( 8 );
+        final int storeSize = intro.getInt( 12 );
+        final long size = (long) entries * INDEX_ENTRY_SIZE + storeSize;
+        final long dataStart = position + HEADER_INTRO_SIZE;
+        if ( entries < 0 || entries > MAX_INDEX_ENTRIES || storeSize < 0 || dataStart + size > channel.size() )
+        {
+            throw new IOException( "Corrupt RPM header at " + position + ": " + rpm );
+        }
+
+        final ByteBuffer data;
+        if ( size > MAX_BUFFERED_HEADER_SIZE )
+        {
+            data = channel.map( FileChannel.MapMode.READ_ONLY, dataStart, size );
+        }
+        else
+        {
+            ByteBuffer buffer = isSignature ? signatureBuffer : headerBuffer;
+            if ( buffer.capacity() < size )
+            {
+                buffer = ByteBuffer.allocate( Integer.highestOneBit( (int) size ) << 1 );
+                if ( isSignature )
+                {
+                    signatureBuffer = buffer;
+                }
+                else
+                {
+                    headerBuffer = buffer;
+                }
+            }
+            buffer.clear();
+            buffer.limit( (int) size );
+            readFully( channel, buffer, dataStart );
+            data = buffer;
+        }
+        return new RpmHeader( data, entries, position, dataStart + size, this );
+    }
+
+    private static void readFully( final FileChannel channel, final ByteBuffer buffer, final long position )
+        throws IOException
+    {
+        long offset = position;
+        while ( buffer.hasRemaining() )
+        {
+            final int read = channel.read( buffer, offset );
+            if ( read < 0 )
+            {
+                throw new EOFException( "Unexpected end of RPM at " + offset );
+            }
+            offset += read;
+        }
+    }
+
+    static String toHex( final byte[] bytes )
+    {
+        final char[] digits = "0123456789abcdef".toCharArray();
+        final StringBuilder hex = new StringBuilder( bytes.length * 2 );
+        for ( final byte b : bytes )
+        {
+            hex.append( digits[( b >> 4 ) & 0xf] ).append( digits[b & 0xf] );
+        }
+        return hex.toString();
+    }
+
+}
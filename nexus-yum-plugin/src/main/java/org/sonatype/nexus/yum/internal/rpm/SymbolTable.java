@@ -0,0 +1,170 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rpm;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Interns strings into ids. Every distinct string is stored once, UTF-8 encoded in a shared byte pool, so repeated
+ * names (directories, versions, architectures) cost an int per use. Symbols are never removed.
+ * <p/>
+ * Not thread safe.
+ *
+ * @since 3.0
+ */
+public class SymbolTable
+{
+
+    public static final int NOT_FOUND = -1;
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private byte[] pool = new byte[1024];
+
+    /**
+     * Start of symbol i in pool is ends[i - 1] (0 for first symbol), end is ends[i].
+     */
+    private int[] ends = new int[64];
+
+    private int[] hashes = new int[64];
+
+    private int size;
+
+    /**
+     * Open addressing table of symbol id + 1, 0 marks a free slot.
+     */
+    private int[] slots = new int[128];
+
+    /**
+     * @return id of given string, added if not yet contained
+     */
+    public int intern( final String symbol )
+    {
+        final byte[] bytes = symbol.getBytes( UTF_8 );
+        final int hash = hash( bytes );
+        final int slot = slotOf( bytes, hash );
+        if ( slots[slot] != 0 )
+        {
+            return slots[slot] - 1;
+        }
+        final int start = size == 0 ? 0 : ends[size - 1];
+        if ( start + bytes.length > pool.length )
+        {
+            pool = Arrays.copyOf( pool, Math.max( pool.length * 2, start + bytes.length ) );
+        }
+        System.arraycopy( bytes, 0, pool, start, bytes.length );
+        if ( size == ends.length )
+        {
+            ends = Arrays.copyOf( ends, size * 2 );
+            hashes = Arrays.copyOf( hashes, size * 2 );
+        }
+        ends[size] = start + bytes.length;
+        hashes[size] = hash;
+        slots[slot] = size + 1;
+        size++;
+        if ( size * 2 > slots.length )
+        {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    /**
+     * @return id of given string or {@link #NOT_FOUND}
+     */
+    public int find( final String symbol )
+    {
+        final byte[] bytes = symbol.getBytes( UTF_8 );
+        return slots[slotOf( bytes, hash( bytes ) )] - 1;
+    }
+
+    public String get( final int id )
+    {
+        final int start = id == 0 ? 0 : ends[id - 1];
+        return new String( pool, start, ends[id] - start, UTF_8 );
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return approximate number of bytes used
+     */
+    public long memory()
+    {
+        return pool.length + 4L * ( ends.length + hashes.length + slots.length );
+    }
+
+    private int slotOf( final byte[] bytes, final int hash )
+    {
+        final int mask = slots.length - 1;
+        int slot = hash & mask;
+        while ( slots[slot] != 0 && !equals( slots[slot] - 1, bytes, hash ) )
+        {
+            slot = ( slot + 1 ) & mask;
+        }
+        return slot;
+    }
+
+    private boolean equals( final int id, final byte[] bytes, final int hash )
+    {
+        if ( hashes[id] != hash )
+        {
+            return false;
+        }
+        final int start = id == 0 ? 0 : ends[id - 1];
+        if ( ends[id] - start != bytes.length )
+        {
+            return false;
+        }
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            if ( pool[start + i] != bytes[i] )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash()
+    {
+        slots = new int[slots.length * 2];
+        final int mask = slots.length - 1;
+        for ( int id = 0; id < size; id++ )
+        {
+            int slot = hashes[id] & mask;
+            while ( slots[slot] != 0 )
+            {
+                slot = ( slot + 1 ) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    private static int hash( final byte[] bytes )
+    {
+        int hash = 0;
+        for ( final byte b : bytes )
+        {
+            hash = 31 * hash + b;
+        }
+        // spread bits, as slots are picked by the low ones
+        hash ^= ( hash >>> 20 ) ^ ( hash >>> 12 );
+        return hash ^ ( hash >>> 7 ) ^ ( hash >>> 4 );
+    }
+
+}
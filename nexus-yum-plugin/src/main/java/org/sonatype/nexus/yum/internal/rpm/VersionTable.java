@@ -0,0 +1,449 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rpm;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compact table of the RPM locations of a repository, grouped by name of their directory (the version). Directory
+ * paths, file names and versions are interned in a {@link SymbolTable}, so a location costs a few ints; the RPMs of a
+ * version are chained in the order they were added, so listing them needs no scan. All in primitive arrays, instead
+ * of a set of full paths per version.
+ * <p/>
+ * Optionally persisted as journal of changes (see {@link PackageIndexFile}), so it survives restarts.
+ * <p/>
+ * Not thread safe.
+ *
+ * @since 3.0
+ */
+public class VersionTable
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger( VersionTable.class );
+
+    private static final int NONE = -1;
+
+    private final SymbolTable names = new SymbolTable();
+
+    /**
+     * (directory, name) to row.
+     */
+    private final LongIntMap rows = new LongIntMap();
+
+    /**
+     * Version to first and last row of its chain.
+     */
+    private final LongIntMap firstRows = new LongIntMap();
+
+    private final LongIntMap lastRows = new LongIntMap();
+
+    private int[] rowDirectories = new int[64];
+
+    private int[] rowNames = new int[64];
+
+    private int[] rowVersions = new int[64];
+
+    private int[] previousRows = new int[64];
+
+    private int[] nextRows = new int[64];
+
+    private int rowCount;
+
+    private int[] freeRows = new int[16];
+
+    private int freeCount;
+
+    private final String repositoryId;
+
+    private PackageIndexFile file;
+
+    /**
+     * Creates a table kept in memory only.
+     */
+    public VersionTable()
+    {
+        this.repositoryId = null;
+    }
+
+    /**
+     * Creates a table persisted into given directory, restoring the persisted changes.
+     */
+    public VersionTable( final File directory, final String repositoryId )
+    {
+        this.repositoryId = repositoryId;
+        file = new PackageIndexFile( directory, repositoryId );
+        try
+        {
+            file.load( new Journal() );
+        }
+        catch ( IOException e )
+        {
+            disablePersistence( e );
+        }
+    }
+
+    /**
+     * @param location RPM location, relative to repository root
+     * @return true if location was not contained yet
+     */
+    public boolean add( final String location )
+    {
+        if ( !addRow( location ) )
+        {
+            return false;
+        }
+        if ( file != null )
+        {
+            try
+            {
+                file.put( location, null );
+                file.compactIfNeeded( new Journal() );
+            }
+            catch ( IOException e )
+            {
+                disablePersistence( e );
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if there was an RPM at location
+     */
+    public boolean remove( final String location )
+    {
+        if ( !removeRow( location ) )
+        {
+            return false;
+        }
+        if ( file != null )
+        {
+            try
+            {
+                file.remove( location );
+            }
+            catch ( IOException e )
+            {
+                disablePersistence( e );
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param path directory, relative to repository root
+     * @return number of removed RPMs, located in directory or one of its subdirectories
+     */
+    public int removeDirectory( final String path )
+    {
+        final int removed = removeRows( path );
+        if ( removed > 0 && file != null )
+        {
+            try
+            {
+                file.removeDirectory( path );
+            }
+            catch ( IOException e )
+            {
+                disablePersistence( e );
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Deletes the persisted table, if any. Table is kept in memory only from now on.
+     */
+    public void delete()
+    {
+        if ( file != null )
+        {
+            file.delete();
+            file = null;
+        }
+    }
+
+    /**
+     * Deletes the table persisted into given directory, without loading it.
+     */
+    public static void deletePersisted( final File directory, final String repositoryId )
+    {
+        new PackageIndexFile( directory, repositoryId ).delete();
+    }
+
+    /**
+     * @return ids of repositories with a table persisted into given directory
+     */
+    public static Set<String> persistedRepositoryIds( final File directory )
+    {
+        return PackageIndexFile.repositoryIds( directory );
+    }
+
+    private boolean addRow( final String location )
+    {
+        final int slash = location.lastIndexOf( '/' );
+        final String path = slash < 0 ? "" : location.substring( 0, slash );
+        final int directory = names.intern( path );
+        final int name = names.intern( location.substring( slash + 1 ) );
+        final long key = LongIntMap.key( directory, name );
+        if ( rows.get( key ) != LongIntMap.NOT_FOUND )
+        {
+            return false;
+        }
+        final int version = names.intern( path.substring( path.lastIndexOf( '/' ) + 1 ) );
+        final int row = allocateRow();
+        rowDirectories[row] = directory;
+        rowNames[row] = name;
+        rowVersions[row] = version;
+        nextRows[row] = NONE;
+        final int last = lastRows.get( LongIntMap.key( version, 0 ) );
+        previousRows[row] = last;
+        if ( last == LongIntMap.NOT_FOUND )
+        {
+            firstRows.put( LongIntMap.key( version, 0 ), row );
+        }
+        else
+        {
+            nextRows[last] = row;
+        }
+        lastRows.put( LongIntMap.key( version, 0 ), row );
+        rows.put( key, row );
+        return true;
+    }
+
+    private boolean removeRow( final String location )
+    {
+        final int row = row( location );
+        if ( row == NONE )
+        {
+            return false;
+        }
+        freeRow( row );
+        return true;
+    }
+
+    private int removeRows( final String path )
+    {
+        final String trimmed = path.endsWith( "/" ) ? path.substring( 0, path.length() - 1 ) : path;
+        final String prefix = trimmed + "/";
+        // per directory: 0 = not yet checked, 1 = below path, 2 = not below path
+        final byte[] below = new byte[names.size()];
+        int removed = 0;
+        for ( int row = 0; row < rowCount; row++ )
+        {
+            final int directory = rowDirectories[row];
+            if ( directory != NONE )
+            {
+                if ( below[directory] == 0 )
+                {
+                    final String candidate = names.get( directory );
+                    below[directory] = (byte) ( trimmed.length() == 0 || candidate.equals( trimmed )
+                        || candidate.startsWith( prefix ) ? 1 : 2 );
+                }
+                if ( below[directory] == 1 )
+                {
+                    freeRow( row );
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    public boolean contains( final String location )
+    {
+        return row( location ) != NONE;
+    }
+
+    /**
+     * @return locations of RPMs in directories named as given version, in order they were added
+     */
+    public List<String> get( final String version )
+    {
+        final List<String> locations = new ArrayList<String>();
+        final int id = names.find( version );
+        if ( id != SymbolTable.NOT_FOUND )
+        {
+            for ( int row = firstRows.get( LongIntMap.key( id, 0 ) ); row != NONE; row = nextRows[row] )
+            {
+                locations.add( location( row ) );
+            }
+        }
+        return locations;
+    }
+
+    public int size()
+    {
+        return rows.size();
+    }
+
+    /**
+     * @return approximate number of heap bytes used
+     */
+    public long memory()
+    {
+        return names.memory() + rows.memory() + firstRows.memory() + lastRows.memory()
+            + 4L * ( rowDirectories.length + rowNames.length + rowVersions.length + previousRows.length
+            + nextRows.length + freeRows.length );
+    }
+
+    /**
+     * Keeps table in memory only, dropping the persisted one, as it would miss changes from now on.
+     */
+    private void disablePersistence( final IOException e )
+    {
+        LOG.warn(
+            "Could not persist version index of repository {}, keeping it in memory only",
+            new Object[]{ repositoryId, e }
+        );
+        delete();
+    }
+
+    private String location( final int row )
+    {
+        final String directory = names.get( rowDirectories[row] );
+        final String name = names.get( rowNames[row] );
+        return directory.length() == 0 ? name : directory + "/" + name;
+    }
+
+    private int row( final String location )
+    {
+        final int slash = location.lastIndexOf( '/' );
+        final int directory = names.find( slash < 0 ? "" : location.substring( 0, slash ) );
+        final int name = names.find( location.substring( slash + 1 ) );
+        if ( directory == SymbolTable.NOT_FOUND || name == SymbolTable.NOT_FOUND )
+        {
+            return NONE;
+        }
+        return rows.get( LongIntMap.key( directory, name ) );
+    }
+
+    private int allocateRow()
+    {
+        if ( freeCount > 0 )
+        {
+            return freeRows[--freeCount];
+        }
+        if ( rowCount == rowDirectories.length )
+        {
+            rowDirectories = Arrays.copyOf( rowDirectories, rowCount * 2 );
+            rowNames = Arrays.copyOf( rowNames, rowCount * 2 );
+            rowVersions = Arrays.copyOf( rowVersions, rowCount * 2 );
+            previousRows = Arrays.copyOf( previousRows, rowCount * 2 );
+            nextRows = Arrays.copyOf( nextRows, rowCount * 2 );
+        }
+        return rowCount++;
+    }
+
+    private void freeRow( final int row )
+    {
+        rows.remove( LongIntMap.key( rowDirectories[row], rowNames[row] ) );
+        final long version = LongIntMap.key( rowVersions[row], 0 );
+        final int previous = previousRows[row];
+        final int next = nextRows[row];
+        if ( previous == NONE )
+        {
+            if ( next == NONE )
+            {
+                firstRows.remove( version );
+            }
+            else
+            {
+                firstRows.put( version, next );
+            }
+        }
+        else
+        {
+            nextRows[previous] = next;
+        }
+        if ( next == NONE )
+        {
+            if ( previous == NONE )
+            {
+                lastRows.remove( version );
+            }
+            else
+            {
+                lastRows.put( version, previous );
+            }
+        }
+        else
+        {
+            previousRows[next] = previous;
+        }
+        rowDirectories[row] = NONE;
+        if ( freeCount == freeRows.length )
+        {
+            freeRows = Arrays.copyOf( freeRows, freeCount * 2 );
+        }
+        freeRows[freeCount++] = row;
+    }
+
+    /**
+     * Replays persisted changes into the table and provides its content for compaction, without persisting again.
+     */
+    private class Journal
+        implements PackageIndexFile.Table
+    {
+
+        @Override
+        public void put( final String location, final String checksum )
+        {
+            addRow( location );
+        }
+
+        @Override
+        public boolean remove( final String location )
+        {
+            return removeRow( location );
+        }
+
+        @Override
+        public int removeDirectory( final String path )
+        {
+            return removeRows( path );
+        }
+
+        @Override
+        public int size()
+        {
+            return VersionTable.this.size();
+        }
+
+        @Override
+        public Map<String, String> toMap()
+        {
+            final Map<String, String> map = new HashMap<String, String>( size() * 2 );
+            for ( int row = 0; row < rowCount; row++ )
+            {
+                if ( rowDirectories[row] != NONE )
+                {
+                    map.put( location( row ), null );
+                }
+            }
+            return map;
+        }
+
+    }
+
+}
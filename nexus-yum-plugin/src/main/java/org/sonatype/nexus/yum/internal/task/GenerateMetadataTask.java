@@ -14,7 +14,7 @@ package org.sonatype.nexus.yum.internal.task;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.lang.String.format;
-import static org.apache.commons.io.FileUtils.writeStringToFile;
+import static org.apache.commons.io.FileUtils.sizeOfDirectory;
 import static org.apache.commons.lang.StringUtils.isBlank;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 import static org.sonatype.scheduling.TaskState.RUNNING;
@@ -31,6 +31,7 @@ import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.LineIterator;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,18 +42,31 @@ import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.rest.RepositoryURLBuilder;
 import org.sonatype.nexus.scheduling.AbstractNexusTask;
 import org.sonatype.nexus.scheduling.NexusScheduler;
+import org.sonatype.nexus.yum.Yum;
 import org.sonatype.nexus.yum.YumRegistry;
 import org.sonatype.nexus.yum.YumRepository;
+import org.sonatype.nexus.yum.internal.ExternalSorter;
 import org.sonatype.nexus.yum.internal.ListFileFactory;
+import org.sonatype.nexus.yum.internal.RepoMD;
+import org.sonatype.nexus.yum.internal.RepodataPublisher;
 import org.sonatype.nexus.yum.internal.RepositoryUtils;
 import org.sonatype.nexus.yum.internal.RpmListWriter;
 import org.sonatype.nexus.yum.internal.RpmScanner;
+import org.sonatype.nexus.yum.internal.VersionIndex;
 import org.sonatype.nexus.yum.internal.YumRepositoryImpl;
+import org.sonatype.nexus.yum.internal.metrics.RepositoryMetrics;
+import org.sonatype.nexus.yum.internal.metrics.Timeline;
+import org.sonatype.nexus.yum.internal.metrics.YumMetrics;
+import org.sonatype.nexus.yum.internal.rpm.MetadataAssembler;
 import org.sonatype.scheduling.ScheduledTask;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 /**
- * Create a yum-repository directory via 'createrepo' command line tool.
+ * Create a yum-repository directory via 'createrepo' command line tool, or by assembling pre-rendered package
+ * metadata (see {@link MetadataAssembler}).
  *
  * @author sherold
  */
@@ -68,6 +82,8 @@ public class GenerateMetadataTask
 
     private static final String CACHE_DIR_PREFIX = ".cache-";
 
+    private static final String PUBLISHER_DIR_PREFIX = ".repodata-";
+
     private static final Logger LOG = LoggerFactory.getLogger( GenerateMetadataTask.class );
 
     public static final String PARAM_REPO_ID = "repoId";
@@ -86,6 +102,10 @@ public class GenerateMetadataTask
 
     public static final String PARAM_SINGLE_RPM_PER_DIR = "singleRpmPerDir";
 
+    public static final String PARAM_GENERATE_DATABASE = "generateDatabase";
+
+    public static final String PARAM_ASSEMBLE_METADATA = "assembleMetadata";
+
     private final RepositoryRegistry repositoryRegistry;
 
     private final RepositoryURLBuilder repositoryURLBuilder;
@@ -96,13 +116,24 @@ public class GenerateMetadataTask
 
     private final YumRegistry yumRegistry;
 
+    private final YumMetrics metrics;
+
+    private final MetadataAssembler assembler;
+
+    private final VersionIndex versionIndex;
+
+    private volatile boolean superseded;
+
     @Inject
     public GenerateMetadataTask( final EventBus eventBus,
                                  final RepositoryRegistry repositoryRegistry,
                                  final YumRegistry yumRegistry,
                                  final RepositoryURLBuilder repositoryURLBuilder,
                                  final RpmScanner scanner,
-                                 final NexusScheduler nexusScheduler )
+                                 final NexusScheduler nexusScheduler,
+                                 final YumMetrics metrics,
+                                 final MetadataAssembler assembler,
+                                 final VersionIndex versionIndex )
     {
         super( eventBus, null );
         this.yumRegistry = checkNotNull( yumRegistry );
@@ -110,8 +141,13 @@ public class GenerateMetadataTask
         this.scanner = checkNotNull( scanner );
         this.repositoryRegistry = checkNotNull( repositoryRegistry );
         this.repositoryURLBuilder = checkNotNull( repositoryURLBuilder );
+        this.metrics = checkNotNull( metrics );
+        this.assembler = checkNotNull( assembler );
+        this.versionIndex = checkNotNull( versionIndex );
 
         getParameters().put( PARAM_SINGLE_RPM_PER_DIR, Boolean.toString( true ) );
+        getParameters().put( PARAM_GENERATE_DATABASE, Boolean.toString( true ) );
+        getParameters().put( PARAM_ASSEMBLE_METADATA, Boolean.toString( false ) );
     }
 
     @Override
@@ -121,27 +157,109 @@ public class GenerateMetadataTask
         setDefaults();
 
         LOG.debug( "Generating Yum-Repository for '{}' ...", getRpmDir() );
+        final RepositoryMetrics repositoryMetrics = metrics.get( getRepositoryId() );
+        final Timeline timeline = new Timeline( getRepositoryId(), getVersion() );
         try
         {
             getRepoDir().mkdirs();
 
+            final RepodataPublisher publisher = new RepodataPublisher(
+                getRepoDir(), getCacheDir( PUBLISHER_DIR_PREFIX + getRepositoryIdVersion() ),
+                yumRegistry.get( getRepositoryId() )
+            );
+            final boolean assemble = shouldAssembleMetadata() && !shouldGenerateDatabase();
+            final File stagingDir = publisher.prepare( !assemble );
+            timeline.end( "prepare", -1, sizeOfDirectory( stagingDir ) );
+            if ( abandonAtPhaseBoundary( timeline, repositoryMetrics, stagingDir ) )
+            {
+                return null;
+            }
+
             File rpmListFile = createRpmListFile();
-            new CommandLineExecutor().exec( buildCreateRepositoryCommand( rpmListFile ) );
+            final int numberOfPackages = countPackages( rpmListFile );
+            timeline.end( "list", numberOfPackages, rpmListFile.length() );
+            if ( abandonAtPhaseBoundary( timeline, repositoryMetrics, stagingDir ) )
+            {
+                return null;
+            }
 
-            replaceUrl();
+            if ( assemble )
+            {
+                assembler.assemble(
+                    getRepositoryId(), findRepository(), new File( getRpmDir() ), rpmListFile, getRpmUrl(), stagingDir
+                );
+                timeline.end( "assemble", numberOfPackages, sizeOfDirectory( stagingDir ) );
+            }
+            else
+            {
+                new CommandLineExecutor().exec( buildCreateRepositoryCommand( rpmListFile, stagingDir ) );
+                timeline.end( "createrepo", numberOfPackages, sizeOfDirectory( stagingDir ) );
+            }
+
+            rebaseRepoMD( stagingDir );
+            timeline.end( "rebase" );
+
+            publisher.publish();
+            timeline.end( "publish" );
+
+            if ( Lane.FULL.equals( getLane() ) )
+            {
+                // all RPMs of the repository were indexed, so fragments of replaced or deleted ones can go
+                assembler.collectGarbage();
+                timeline.end( "collect-garbage" );
+            }
+
+            regenerateMetadataForGroups();
+            timeline.end( "trigger-merge" ).succeeded();
+            repositoryMetrics.generated( timeline.getTotalMillis(), numberOfPackages );
         }
-        catch ( IOException e )
+        catch ( InterruptedException e )
         {
+            repositoryMetrics.record( timeline );
+            throw e;
+        }
+        catch ( Exception e )
+        {
+            // timeline tells the phase that failed, as the one following the last ended phase
+            repositoryMetrics.generationFailed();
+            repositoryMetrics.record( timeline );
             LOG.warn( "Yum metadata generation failed", e );
             throw new IOException( "Yum metadata generation failed", e );
         }
-        // TODO dubious
-        Thread.sleep( 100 );
 
-        regenerateMetadataForGroups();
+        repositoryMetrics.record( timeline );
+        LOG.debug( "Generated Yum-Repository for '{}' {}", getRepositoryIdVersion(), timeline );
+
         return new YumRepositoryImpl( getRepoDir(), getRepositoryId(), getVersion() );
     }
 
+    /**
+     * Checked at phase boundaries before expensive phases, fails if cancelled and returns true if superseded. Once
+     * createrepo ran, the result is published anyway. Either way the staging directory is deleted, as nothing will
+     * be published from it.
+     */
+    private boolean abandonAtPhaseBoundary( final Timeline timeline,
+                                            final RepositoryMetrics repositoryMetrics,
+                                            final File stagingDir )
+        throws InterruptedException
+    {
+        if ( Thread.interrupted() )
+        {
+            FileUtils.deleteQuietly( stagingDir );
+            throw new InterruptedException( "Yum metadata generation of " + getRepositoryIdVersion() + " cancelled" );
+        }
+        final boolean abandon = superseded;
+        if ( abandon )
+        {
+            FileUtils.deleteQuietly( stagingDir );
+            repositoryMetrics.superseded();
+            repositoryMetrics.record( timeline );
+            LOG.debug( "Abandoned superseded generation of Yum-Repository for '{}' {}", getRepositoryIdVersion(),
+                       timeline );
+        }
+        return abandon;
+    }
+
     protected void setDefaults()
         throws MalformedURLException, URISyntaxException
     {
@@ -188,30 +306,129 @@ public class GenerateMetadataTask
         return "Yum metadata generation";
     }
 
+    /**
+     * Runs the task if a thread is free, it does not conflict with a running task and no task of a more urgent
+     * {@link Lane} is waiting for that thread. Background lanes never use the threads reserved for interactive ones.
+     * Within a lane threads are shared fairly between repositories: a waiting task of a repository using less than its
+     * weighted share of running tasks goes first, and a repository never exceeds its own thread limit.
+     */
     @Override
     public boolean allowConcurrentExecution( Map<String, List<ScheduledTask<?>>> activeTasks )
     {
 
         if ( activeTasks.containsKey( ID ) )
         {
+            final Lane lane = getLane();
+            final Map<String, Integer> runningPerRepository = Maps.newHashMap();
+            final List<GenerateMetadataTask> runningTasks = Lists.newArrayList();
             int activeRunningTasks = 0;
+            int backgroundRunningTasks = 0;
             for ( ScheduledTask<?> scheduledTask : activeTasks.get( ID ) )
             {
-                if ( RUNNING.equals( scheduledTask.getTaskState() ) )
+                final GenerateMetadataTask task = (GenerateMetadataTask) scheduledTask.getTask();
+                if ( task != this && RUNNING.equals( scheduledTask.getTaskState() ) )
                 {
-                    if ( conflictsWith( (GenerateMetadataTask) scheduledTask.getTask() ) )
+                    if ( conflictsWith( task ) )
                     {
                         return false;
                     }
                     activeRunningTasks++;
+                    runningTasks.add( task );
+                    if ( !Lane.INTERACTIVE.equals( task.getLane() ) )
+                    {
+                        backgroundRunningTasks++;
+                    }
+                    runningPerRepository.put( task.getRepositoryId(), running( runningPerRepository, task ) + 1 );
+                }
+            }
+
+            final int running = running( runningPerRepository, this );
+            final int maxParallelThreads = maxParallelThreads( this );
+            if ( maxParallelThreads > 0 && running >= maxParallelThreads )
+            {
+                return false;
+            }
+
+            int waitingTasksAhead = 0;
+            for ( ScheduledTask<?> scheduledTask : activeTasks.get( ID ) )
+            {
+                final GenerateMetadataTask task = (GenerateMetadataTask) scheduledTask.getTask();
+                if ( task != this && isSubmitted( scheduledTask ) && canRun( task, runningTasks, runningPerRepository )
+                    && isAhead( task, runningPerRepository ) )
+                {
+                    waitingTasksAhead++;
                 }
             }
-            return activeRunningTasks < yumRegistry.maxNumberOfParallelThreads();
+            if ( activeRunningTasks + waitingTasksAhead >= yumRegistry.maxNumberOfParallelThreads() )
+            {
+                return false;
+            }
+            return Lane.INTERACTIVE.equals( lane ) || backgroundRunningTasks < maxNumberOfBackgroundThreads();
         }
 
         return true;
     }
 
+    /**
+     * A waiting task could run now if no running task works on the same repository and version, and its repository
+     * did not reach its thread limit. Only such tasks may hold back this one.
+     */
+    private boolean canRun( final GenerateMetadataTask task, final List<GenerateMetadataTask> runningTasks,
+                            final Map<String, Integer> runningPerRepository )
+    {
+        for ( final GenerateMetadataTask runningTask : runningTasks )
+        {
+            if ( task.conflictsWith( runningTask ) )
+            {
+                return false;
+            }
+        }
+        final int taskMaxParallelThreads = maxParallelThreads( task );
+        return taskMaxParallelThreads <= 0 || running( runningPerRepository, task ) < taskMaxParallelThreads;
+    }
+
+    /**
+     * A waiting task goes ahead of this one if it is in a more urgent lane, or in the same lane but of a repository
+     * that runs fewer tasks relative to its scheduling weight.
+     */
+    private boolean isAhead( final GenerateMetadataTask task, final Map<String, Integer> runningPerRepository )
+    {
+        final int laneOrder = task.getLane().compareTo( getLane() );
+        if ( laneOrder != 0 || StringUtils.equals( getRepositoryId(), task.getRepositoryId() ) )
+        {
+            return laneOrder < 0;
+        }
+        return running( runningPerRepository, task ) * schedulingWeight( this )
+            < running( runningPerRepository, this ) * schedulingWeight( task );
+    }
+
+    private int running( final Map<String, Integer> runningPerRepository, final GenerateMetadataTask task )
+    {
+        final Integer running = runningPerRepository.get( task.getRepositoryId() );
+        return running == null ? 0 : running;
+    }
+
+    private int maxParallelThreads( final GenerateMetadataTask task )
+    {
+        final Yum yum = yumRegistry.get( task.getRepositoryId() );
+        return yum == null ? Yum.DEFAULT_MAX_PARALLEL_THREADS : yum.maxParallelThreads();
+    }
+
+    private int schedulingWeight( final GenerateMetadataTask task )
+    {
+        final Yum yum = yumRegistry.get( task.getRepositoryId() );
+        return yum == null ? Yum.DEFAULT_SCHEDULING_WEIGHT : Math.max( 1, yum.schedulingWeight() );
+    }
+
+    private int maxNumberOfBackgroundThreads()
+    {
+        return Math.max( 1, yumRegistry.maxNumberOfParallelThreads() - yumRegistry.interactiveReservedThreads() );
+    }
+
+    /**
+     * A task conflicting with a waiting one is merged into that one (by rejecting it). Otherwise it supersedes a
+     * conflicting running task, taking over its changes, so the running one can be abandoned.
+     */
     @Override
     public boolean allowConcurrentSubmission( Map<String, List<ScheduledTask<?>>> activeTasks )
     {
@@ -225,11 +442,47 @@ public class GenerateMetadataTask
                     throw new TaskAlreadyScheduledException( scheduledTask, "Found same task in scheduler queue." );
                 }
             }
+            for ( ScheduledTask<?> scheduledTask : activeTasks.get( ID ) )
+            {
+                final GenerateMetadataTask task = (GenerateMetadataTask) scheduledTask.getTask();
+                if ( task != this && RUNNING.equals( scheduledTask.getTaskState() ) && conflictsWith( task ) )
+                {
+                    supersede( task );
+                }
+            }
         }
 
         return true;
     }
 
+    /**
+     * Versioned views are awaited by clients, so only background generations are superseded. The superseding task
+     * takes over the added files of the superseded one, the same way queued tasks are merged, and its lane if that is
+     * the stronger one: superseding a full generation rescans the whole repository.
+     */
+    private void supersede( final GenerateMetadataTask task )
+    {
+        if ( isBlank( getVersion() ) && !task.isSuperseded() )
+        {
+            if ( Lane.FULL.equals( task.getLane() ) )
+            {
+                setAddedFiles( null );
+            }
+            else if ( Lane.INCREMENTAL.equals( getLane() ) && isNotBlank( task.getAddedFiles() ) )
+            {
+                // a full generation (blank added files) stays full
+                setAddedFiles( getAddedFiles() + File.pathSeparator + task.getAddedFiles() );
+            }
+            task.superseded = true;
+            LOG.debug( "Generation of Yum-Repository for '{}' superseded by a newer one", getRepositoryId() );
+        }
+    }
+
+    public boolean isSuperseded()
+    {
+        return superseded;
+    }
+
     private boolean isSubmitted( ScheduledTask<?> scheduledTask )
     {
         return SUBMITTED.equals( scheduledTask.getTaskState() ) || SLEEPING.equals( scheduledTask.getTaskState() );
@@ -260,6 +513,19 @@ public class GenerateMetadataTask
         }
     }
 
+    public Lane getLane()
+    {
+        if ( isNotBlank( getVersion() ) )
+        {
+            return Lane.INTERACTIVE;
+        }
+        if ( isNotBlank( getAddedFiles() ) )
+        {
+            return Lane.INCREMENTAL;
+        }
+        return Lane.FULL;
+    }
+
     private boolean conflictsWith( GenerateMetadataTask task )
     {
         if ( StringUtils.equals( getRepositoryId(), task.getRepositoryId() ) )
@@ -279,33 +545,60 @@ public class GenerateMetadataTask
             getVersion(),
             isSingleRpmPerDirectory(),
             this,
-            scanner
+            scanner,
+            ExternalSorter.megabytes( yumRegistry.sortMemory() ),
+            versionIndex
         ).writeList();
     }
 
+    private int countPackages( final File rpmListFile )
+        throws IOException
+    {
+        int count = 0;
+        final LineIterator lines = FileUtils.lineIterator( rpmListFile );
+        try
+        {
+            while ( lines.hasNext() )
+            {
+                if ( !RpmListWriter.EMPTY_LIST_PLACEHOLDER.equals( lines.nextLine() ) )
+                {
+                    count++;
+                }
+            }
+        }
+        finally
+        {
+            LineIterator.closeQuietly( lines );
+        }
+        return count;
+    }
+
     private String getRepositoryIdVersion()
     {
         return getRepositoryId() + ( isNotBlank( getVersion() ) ? ( "-version-" + getVersion() ) : "" );
     }
 
-    private void replaceUrl()
+    /**
+     * createrepo sets the rpm url as base of the metadata locations. Versioned views are served from another url, so
+     * only for them the location bases are pointed to the view, leaving the rest of repomd.xml untouched.
+     */
+    private void rebaseRepoMD( final File stagingDir )
         throws IOException
     {
-        File repomd = new File( getRepoDir(), YumRepository.PATH_OF_REPOMD_XML );
-        if ( repomd.exists() && getRepoUrl() != null )
+        if ( getRepoUrl() != null && !getRepoUrl().equals( getRpmUrl() ) )
         {
-            String repomdStr = FileUtils.readFileToString( repomd );
-            repomdStr = repomdStr.replace( getRpmUrl(), getRepoUrl() );
-            writeStringToFile( repomd, repomdStr );
+            RepoMD.rebase( new File( stagingDir, YumRepository.PATH_OF_REPOMD_XML ), getRpmUrl(), getRepoUrl() );
         }
     }
 
-    private String buildCreateRepositoryCommand( File packageList )
+    @VisibleForTesting
+    String buildCreateRepositoryCommand( File packageList, File outputDir )
     {
         String packageFile = packageList.getAbsolutePath();
         String cacheDir = createCacheDir().getAbsolutePath();
-        return format( "createrepo --update -o %s -u %s  -v -d -i %s -c %s %s", getRepoDir().getAbsolutePath(),
-                       getRpmUrl(), packageFile, cacheDir, getRpmDir() );
+        return format( "createrepo --update --unique-md-filenames -o %s -u %s  -v %s -i %s -c %s %s",
+                       outputDir.getAbsolutePath(), getRpmUrl(), shouldGenerateDatabase() ? "-d" : "--no-database",
+                       packageFile, cacheDir, getRpmDir() );
     }
 
     @Override
@@ -314,6 +607,18 @@ public class GenerateMetadataTask
         return new File( createPackageDir(), getRepositoryId() + ".txt" );
     }
 
+    /**
+     * @return RPM list written by generation of given repository, listing all RPMs of its metadata
+     * @since 3.0
+     */
+    public static File getRpmListFile( final File temporaryDirectory, final String repositoryId )
+    {
+        return new File(
+            new File( new File( temporaryDirectory, CACHE_DIR_PREFIX + repositoryId ), PACKAGE_FILE_DIR_NAME ),
+            repositoryId + ".txt"
+        );
+    }
+
     private File createCacheDir()
     {
         return getCacheDir( getRepositoryIdVersion() );
@@ -418,4 +723,28 @@ public class GenerateMetadataTask
     {
         getParameters().put( PARAM_SINGLE_RPM_PER_DIR, Boolean.toString( singleRpmPerDirectory ) );
     }
+
+    public boolean shouldGenerateDatabase()
+    {
+        return Boolean.valueOf( getParameter( PARAM_GENERATE_DATABASE ) );
+    }
+
+    public void setGenerateDatabase( boolean generateDatabase )
+    {
+        getParameters().put( PARAM_GENERATE_DATABASE, Boolean.toString( generateDatabase ) );
+    }
+
+    /**
+     * @return true if metadata should be assembled out of pre-rendered package metadata instead of running
+     *         createrepo (only done if no sqlite databases are to be generated)
+     */
+    public boolean shouldAssembleMetadata()
+    {
+        return Boolean.valueOf( getParameter( PARAM_ASSEMBLE_METADATA ) );
+    }
+
+    public void setAssembleMetadata( boolean assembleMetadata )
+    {
+        getParameters().put( PARAM_ASSEMBLE_METADATA, Boolean.toString( assembleMetadata ) );
+    }
 }
@@ -0,0 +1,38 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.task;
+
+/**
+ * Scheduling lanes of {@link GenerateMetadataTask}s, most urgent first.
+ *
+ * @since 3.0
+ */
+public enum Lane
+{
+
+    /**
+     * Versioned repository a client is waiting for.
+     */
+    INTERACTIVE,
+
+    /**
+     * Rpms added by deployments.
+     */
+    INCREMENTAL,
+
+    /**
+     * Rebuild of a whole repository, e.g. after a scan or delete.
+     */
+    FULL
+
+}
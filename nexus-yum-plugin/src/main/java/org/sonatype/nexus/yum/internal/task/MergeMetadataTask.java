@@ -12,8 +12,10 @@
  */
 package org.sonatype.nexus.yum.internal.task;
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import static java.lang.String.format;
 import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.apache.commons.io.FileUtils.sizeOfDirectory;
 import static org.sonatype.nexus.yum.YumRepository.PATH_OF_REPOMD_XML;
 import static org.sonatype.scheduling.TaskState.RUNNING;
 
@@ -38,12 +40,19 @@ import org.sonatype.nexus.proxy.repository.GroupRepository;
 import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.scheduling.AbstractNexusTask;
 import org.sonatype.nexus.scheduling.NexusScheduler;
+import org.sonatype.nexus.yum.Yum;
+import org.sonatype.nexus.yum.YumRegistry;
 import org.sonatype.nexus.yum.YumRepository;
 import org.sonatype.nexus.yum.internal.RepoMD;
+import org.sonatype.nexus.yum.internal.RepodataPublisher;
 import org.sonatype.nexus.yum.internal.RepositoryUtils;
 import org.sonatype.nexus.yum.internal.YumRepositoryImpl;
+import org.sonatype.nexus.yum.internal.metrics.RepositoryMetrics;
+import org.sonatype.nexus.yum.internal.metrics.Timeline;
+import org.sonatype.nexus.yum.internal.metrics.YumMetrics;
 import org.sonatype.scheduling.ScheduledTask;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.io.Closeables;
 
 @Named( MergeMetadataTask.ID )
@@ -57,12 +66,22 @@ public class MergeMetadataTask
 
     private static final int MAXIMAL_PARALLEL_RUNS = 1;
 
+    private static final String PUBLISHER_DIR_PREFIX = ".repodata-";
+
+    private final YumRegistry yumRegistry;
+
+    private final YumMetrics metrics;
+
     private GroupRepository groupRepository;
 
     @Inject
-    public MergeMetadataTask( final EventBus eventBus )
+    public MergeMetadataTask( final EventBus eventBus,
+                              final YumRegistry yumRegistry,
+                              final YumMetrics metrics )
     {
         super( eventBus, null );
+        this.yumRegistry = checkNotNull( yumRegistry );
+        this.metrics = checkNotNull( metrics );
     }
 
     public void setGroupRepository( final GroupRepository groupRepository )
@@ -79,12 +98,40 @@ public class MergeMetadataTask
             deleteYumTempDirs();
 
             final File repoBaseDir = RepositoryUtils.getBaseDir( groupRepository );
+            final Timeline timeline = new Timeline( groupRepository.getId(), null );
             final List<File> memberReposBaseDirs = getBaseDirsOfMemberRepositories();
+            timeline.end( "members", memberReposBaseDirs.size(), -1 );
             if ( memberReposBaseDirs.size() > 1 )
             {
                 LOG.debug( "Merging repository group '{}' out of {}", groupRepository.getId(), memberReposBaseDirs );
-                new CommandLineExecutor().exec( buildCommand( repoBaseDir, memberReposBaseDirs ) );
-                LOG.debug( "Group repository '{}' merged", groupRepository.getId() );
+                final RepositoryMetrics repositoryMetrics = metrics.get( groupRepository.getId() );
+                final RepodataPublisher publisher = new RepodataPublisher(
+                    repoBaseDir,
+                    new File( yumRegistry.getTemporaryDirectory(), PUBLISHER_DIR_PREFIX + groupRepository.getId() ),
+                    yumRegistry.get( groupRepository.getId() )
+                );
+                try
+                {
+                    final File stagingDir = publisher.prepare( false );
+                    timeline.end( "prepare" );
+                    new CommandLineExecutor().exec( buildCommand( stagingDir, memberReposBaseDirs ) );
+                    // mergerepo has no option for unique file names, which publishing requires
+                    RepoMD.uniquify( new File( stagingDir, PATH_OF_REPOMD_XML ) );
+                    timeline.end( "mergerepo", -1, sizeOfDirectory( stagingDir ) );
+                    publisher.publish();
+                    timeline.end( "publish" ).succeeded();
+                    repositoryMetrics.merged( timeline.getTotalMillis() );
+                }
+                catch ( Exception e )
+                {
+                    repositoryMetrics.mergeFailed();
+                    throw e;
+                }
+                finally
+                {
+                    repositoryMetrics.record( timeline );
+                }
+                LOG.debug( "Group repository '{}' merged {}", groupRepository.getId(), timeline );
             }
             else
             {
@@ -224,7 +271,8 @@ public class MergeMetadataTask
         return groupRepository != null && !groupRepository.getMemberRepositories().isEmpty();
     }
 
-    private String buildCommand( File repoBaseDir, List<File> memberRepoBaseDirs )
+    @VisibleForTesting
+    String buildCommand( File outputDir, List<File> memberRepoBaseDirs )
         throws MalformedURLException, URISyntaxException
     {
         final StringBuilder repos = new StringBuilder();
@@ -233,7 +281,14 @@ public class MergeMetadataTask
             repos.append( " --repo=" );
             repos.append( memberRepoBaseDir.toURI().toString() );
         }
-        return format( "mergerepo --nogroups -d %s -o %s", repos.toString(), repoBaseDir.getAbsolutePath() );
+        return format( "mergerepo --nogroups %s%s -o %s", shouldGenerateDatabase() ? "-d" : "--no-database",
+                       repos.toString(), outputDir.getAbsolutePath() );
+    }
+
+    private boolean shouldGenerateDatabase()
+    {
+        final Yum yum = yumRegistry.get( groupRepository.getId() );
+        return yum == null || yum.shouldGenerateDatabase();
     }
 
     public static ScheduledTask<YumRepository> createTaskFor( final NexusScheduler nexusScheduler,
@@ -0,0 +1,158 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.task;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.scheduling.TaskState.RUNNING;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonatype.nexus.scheduling.AbstractNexusTask;
+import org.sonatype.nexus.yum.Yum;
+import org.sonatype.nexus.yum.YumRegistry;
+import org.sonatype.nexus.yum.internal.StorageWatcher;
+import org.sonatype.scheduling.ScheduledTask;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+
+/**
+ * Compares the storage of a yum repository with its generated metadata, by size and modification time of RPMs only,
+ * and feeds the differences into incremental generation (see {@link StorageWatcher#reconcile(Yum, File, boolean)}).
+ * Meant to be scheduled as safety net for lost events, instead of periodically regenerating all metadata.
+ *
+ * @since 3.0
+ */
+@Named( ReconcileMetadataTask.ID )
+public class ReconcileMetadataTask
+    extends AbstractNexusTask<Object>
+{
+
+    public static final String ID = "ReconcileMetadataTask";
+
+    public static final String PARAM_REPO_ID = "repoId";
+
+    public static final String PARAM_SINGLE_RPM_PER_DIR = GenerateMetadataTask.PARAM_SINGLE_RPM_PER_DIR;
+
+    private static final Logger LOG = LoggerFactory.getLogger( ReconcileMetadataTask.class );
+
+    private final YumRegistry yumRegistry;
+
+    private final StorageWatcher storageWatcher;
+
+    @Inject
+    public ReconcileMetadataTask( final EventBus eventBus,
+                                  final YumRegistry yumRegistry,
+                                  final StorageWatcher storageWatcher )
+    {
+        super( eventBus, null );
+        this.yumRegistry = checkNotNull( yumRegistry );
+        this.storageWatcher = checkNotNull( storageWatcher );
+        // same default as generation
+        getParameters().put( PARAM_SINGLE_RPM_PER_DIR, Boolean.toString( true ) );
+    }
+
+    @Override
+    protected Object doRun()
+        throws Exception
+    {
+        final Yum yum = yumRegistry.get( getRepositoryId() );
+        if ( yum == null )
+        {
+            LOG.warn( "Repository '{}' is not a Yum repository, nothing to reconcile", getRepositoryId() );
+            return null;
+        }
+        final File rpmListFile = GenerateMetadataTask.getRpmListFile(
+            yumRegistry.getTemporaryDirectory(), getRepositoryId()
+        );
+        if ( !rpmListFile.isFile() )
+        {
+            LOG.debug( "No metadata generated yet for '{}', nothing to reconcile", getRepositoryId() );
+            return null;
+        }
+        storageWatcher.reconcile( yum, rpmListFile, isSingleRpmPerDirectory() );
+        return null;
+    }
+
+    /**
+     * Runs the task unless another one reconciles the same repository, or metadata of the same repository is being
+     * generated (which rewrites the RPM list this task reads).
+     */
+    @Override
+    public boolean allowConcurrentExecution( Map<String, List<ScheduledTask<?>>> activeTasks )
+    {
+        if ( activeTasks.containsKey( GenerateMetadataTask.ID ) )
+        {
+            for ( ScheduledTask<?> scheduledTask : activeTasks.get( GenerateMetadataTask.ID ) )
+            {
+                final GenerateMetadataTask task = (GenerateMetadataTask) scheduledTask.getTask();
+                if ( RUNNING.equals( scheduledTask.getTaskState() )
+                    && StringUtils.equals( getRepositoryId(), task.getRepositoryId() ) )
+                {
+                    return false;
+                }
+            }
+        }
+        if ( activeTasks.containsKey( ID ) )
+        {
+            for ( ScheduledTask<?> scheduledTask : activeTasks.get( ID ) )
+            {
+                final ReconcileMetadataTask task = (ReconcileMetadataTask) scheduledTask.getTask();
+                if ( task != this && RUNNING.equals( scheduledTask.getTaskState() )
+                    && StringUtils.equals( getRepositoryId(), task.getRepositoryId() ) )
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected String getAction()
+    {
+        return "Yum metadata reconciliation";
+    }
+
+    @Override
+    protected String getMessage()
+    {
+        return "Reconciling Yum metadata of repository '" + getRepositoryId() + "'";
+    }
+
+    public String getRepositoryId()
+    {
+        return getParameter( PARAM_REPO_ID );
+    }
+
+    public void setRepositoryId( final String repositoryId )
+    {
+        getParameters().put( PARAM_REPO_ID, repositoryId );
+    }
+
+    public boolean isSingleRpmPerDirectory()
+    {
+        return Boolean.valueOf( getParameter( PARAM_SINGLE_RPM_PER_DIR ) );
+    }
+
+    public void setSingleRpmPerDirectory( final boolean singleRpmPerDirectory )
+    {
+        getParameters().put( PARAM_SINGLE_RPM_PER_DIR, Boolean.toString( singleRpmPerDirectory ) );
+    }
+
+}
@@ -0,0 +1,72 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.task;
+
+import static org.sonatype.nexus.formfields.FormField.MANDATORY;
+import static org.sonatype.nexus.formfields.FormField.OPTIONAL;
+import static org.sonatype.nexus.yum.internal.task.ReconcileMetadataTask.PARAM_REPO_ID;
+import static org.sonatype.nexus.yum.internal.task.ReconcileMetadataTask.PARAM_SINGLE_RPM_PER_DIR;
+
+import java.util.Arrays;
+import java.util.List;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.nexus.formfields.CheckboxFormField;
+import org.sonatype.nexus.formfields.FormField;
+import org.sonatype.nexus.formfields.RepoComboFormField;
+import org.sonatype.nexus.tasks.descriptors.AbstractScheduledTaskDescriptor;
+
+/**
+ * @since 3.0
+ */
+@Named( ReconcileMetadataTask.ID )
+@Singleton
+public class ReconcileMetadataTaskDescriptor
+    extends AbstractScheduledTaskDescriptor
+{
+
+    public static final String NAME = "Yum: Reconcile Metadata";
+
+    private final RepoComboFormField repoField = new RepoComboFormField(
+        PARAM_REPO_ID, "Repository",
+        "Yum enabled repository whose storage is compared with its metadata. RPMs added, changed or deleted without"
+            + " Nexus noticing are added to or removed from the metadata, without regenerating all of it.",
+        MANDATORY
+    );
+
+    private final CheckboxFormField singleRpmPerDirectoryField = new CheckboxFormField(
+        PARAM_SINGLE_RPM_PER_DIR, "Single RPM per directory",
+        "Check if metadata lists only the latest RPM of every directory, as generated by default (default true)",
+        OPTIONAL
+    );
+
+    @Override
+    public String getId()
+    {
+        return ReconcileMetadataTask.ID;
+    }
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public List<FormField> formFields()
+    {
+        return Arrays.<FormField>asList( repoField, singleRpmPerDirectoryField );
+    }
+
+}
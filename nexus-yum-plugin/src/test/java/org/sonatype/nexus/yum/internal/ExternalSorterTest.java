@@ -0,0 +1,89 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.emptyArray;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class ExternalSorterTest
+    extends TestSupport
+{
+
+    private File tempDir;
+
+    @Before
+    public void createTempDir()
+        throws Exception
+    {
+        tempDir = util.createTempDir( "sort" );
+    }
+
+    @Test
+    public void shouldSortInMemoryWithinBudget()
+        throws Exception
+    {
+        assertSorted( new ExternalSorter( tempDir, ExternalSorter.megabytes( 1 ) ), 1000 );
+    }
+
+    @Test
+    public void shouldSortOnDiskBeyondBudget()
+        throws Exception
+    {
+        assertSorted( new ExternalSorter( tempDir, 4096 ), 10000 );
+    }
+
+    @Test
+    public void shouldMergeManySpilledFilesInSeveralPasses()
+        throws Exception
+    {
+        // every line is spilled on its own
+        assertSorted( new ExternalSorter( tempDir, 1 ), 500 );
+    }
+
+    private void assertSorted( final ExternalSorter sorter, final int count )
+        throws Exception
+    {
+        final Random random = new Random( count );
+        final List<String> expected = new ArrayList<String>();
+        for ( int i = 0; i < count; i++ )
+        {
+            final String line = "dir/" + Long.toString( random.nextLong(), 36 ) + "/file.rpm";
+            expected.add( line );
+            sorter.add( line );
+        }
+        Collections.sort( expected );
+
+        final List<String> sorted = new ArrayList<String>();
+        for ( final Iterator<String> lines = sorter.sorted(); lines.hasNext(); )
+        {
+            sorted.add( lines.next() );
+        }
+        sorter.close();
+
+        assertThat( sorted, is( expected ) );
+        assertThat( tempDir.list(), is( emptyArray() ) );
+    }
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class RepoMDTest
+    extends TestSupport
+{
+
+    private static final String RPM_URL = "http://foobar.de/";
+
+    private static final String VERSION_URL = "http://localhost:8081/nexus/service/local/yum/repos/releases/1.0/";
+
+    private File repomd;
+
+    @Before
+    public void copyRepoMD()
+        throws Exception
+    {
+        repomd = util.resolveFile( "target/test-repomd/repomd.xml" );
+        FileUtils.copyFile( util.resolveFile( "src/test/ut-resources/repo1/repodata/repomd.xml" ), repomd );
+    }
+
+    @Test
+    public void shouldRebaseLocationsOnly()
+        throws Exception
+    {
+        assertThat( RepoMD.rebase( repomd, RPM_URL, VERSION_URL ), is( true ) );
+
+        final String after = FileUtils.readFileToString( repomd, "UTF-8" );
+        assertThat( after, not( containsString( RPM_URL ) ) );
+        assertThat( after, containsString( "xml:base=\"" + VERSION_URL + "\"" ) );
+        assertThat( after, containsString( "e7eca98287b407a55151df2535d0bc03a2d5b3bc" ) );
+        assertThat( after, containsString( "<revision>1330537351</revision>" ) );
+        assertThat( new RepoMD( repomd ).getPrimaryLocation(), is( "repodata/primary.xml.gz" ) );
+    }
+
+    @Test
+    public void shouldPrefixDataFilesWithTheirChecksum()
+        throws Exception
+    {
+        final File repoDir = util.createTempDir( "repo" );
+        FileUtils.copyDirectory( util.resolveFile( "src/test/ut-resources/repo1" ), repoDir );
+        final File file = new File( repoDir, "repodata/repomd.xml" );
+
+        assertThat( RepoMD.uniquify( file ), is( true ) );
+
+        final String primaryLocation = new RepoMD( file ).getPrimaryLocation();
+        assertThat( primaryLocation, startsWith( "repodata/" ) );
+        assertThat( primaryLocation, endsWith( "-primary.xml.gz" ) );
+        assertThat( new File( repoDir, primaryLocation ).isFile(), is( true ) );
+        assertThat( new File( repoDir, "repodata/primary.xml.gz" ).exists(), is( false ) );
+        assertThat(
+            FileUtils.readFileToString( file, "UTF-8" ),
+            containsString( "repodata/e7eca98287b407a55151df2535d0bc03a2d5b3bc-other.sqlite.bz2" )
+        );
+        assertThat( RepoMD.uniquify( file ), is( false ) );
+    }
+
+    @Test
+    public void shouldNotTouchFileIfUrlsAreEqual()
+        throws Exception
+    {
+        final long lastModified = repomd.lastModified();
+
+        assertThat( RepoMD.rebase( repomd, RPM_URL, RPM_URL ), is( false ) );
+        assertThat( RepoMD.rebase( repomd, "http://other.de/", VERSION_URL ), is( false ) );
+        assertThat( repomd.lastModified(), is( lastModified ) );
+    }
+
+}
@@ -0,0 +1,164 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class RepodataPublisherTest
+    extends TestSupport
+{
+
+    private File repoDir;
+
+    private File workDir;
+
+    @Before
+    public void prepareDirs()
+        throws Exception
+    {
+        repoDir = util.resolveFile( "target/test-publisher/repo" );
+        workDir = util.resolveFile( "target/test-publisher/work" );
+        FileUtils.deleteDirectory( repoDir.getParentFile() );
+    }
+
+    @Test
+    public void shouldKeepPreviousGenerationDuringGracePeriod()
+        throws Exception
+    {
+        final RepodataPublisher publisher = new RepodataPublisher( repoDir, workDir, 1, 60000, 0 );
+
+        stage( publisher.prepare( false ), "aaa-primary.xml.gz" );
+        publisher.publish();
+        assertThat( new RepoMD( repomd() ).getPrimaryLocation(), is( "repodata/aaa-primary.xml.gz" ) );
+
+        final File staging = publisher.prepare( true );
+        assertThat( new File( staging, "repodata/aaa-primary.xml.gz" ).exists(), is( true ) );
+        stage( staging, "bbb-primary.xml.gz" );
+        publisher.publish();
+
+        assertThat( new RepoMD( repomd() ).getPrimaryLocation(), is( "repodata/bbb-primary.xml.gz" ) );
+        assertThat( new File( repoDir, "repodata/aaa-primary.xml.gz" ).exists(), is( true ) );
+        assertThat( new File( repoDir, "repodata/bbb-primary.xml.gz" ).exists(), is( true ) );
+        assertThat( staging.exists(), is( false ) );
+    }
+
+    @Test
+    public void shouldDeletePreviousGenerationAfterGracePeriod()
+        throws Exception
+    {
+        final RepodataPublisher publisher = new RepodataPublisher( repoDir, workDir, 1, 0, 0 );
+
+        stage( publisher.prepare( false ), "aaa-primary.xml.gz" );
+        publisher.publish();
+        stage( publisher.prepare( true ), "bbb-primary.xml.gz" );
+        publisher.publish();
+
+        assertThat( new File( repoDir, "repodata/aaa-primary.xml.gz" ).exists(), is( false ) );
+        assertThat( new File( repoDir, "repodata/bbb-primary.xml.gz" ).exists(), is( true ) );
+    }
+
+    @Test
+    public void shouldRetainConfiguredNumberOfGenerations()
+        throws Exception
+    {
+        final RepodataPublisher publisher = new RepodataPublisher( repoDir, workDir, 2, 60000, 0 );
+
+        for ( final String name : new String[]{ "aaa", "bbb", "ccc", "ddd" } )
+        {
+            stage( publisher.prepare( true ), name + "-primary.xml.gz" );
+            publisher.publish();
+            Thread.sleep( 5 );
+        }
+
+        assertThat( new File( repoDir, "repodata/aaa-primary.xml.gz" ).exists(), is( false ) );
+        assertThat( new File( repoDir, "repodata/bbb-primary.xml.gz" ).exists(), is( true ) );
+        assertThat( new File( repoDir, "repodata/ccc-primary.xml.gz" ).exists(), is( true ) );
+        assertThat( new File( repoDir, "repodata/ddd-primary.xml.gz" ).exists(), is( true ) );
+    }
+
+    @Test
+    public void shouldNotRetainGenerationsExceedingMaxSize()
+        throws Exception
+    {
+        final RepodataPublisher publisher = new RepodataPublisher(
+            repoDir, workDir, 10, 60000, "aaa-primary.xml.gz".length()
+        );
+
+        for ( final String name : new String[]{ "aaa", "bbb", "ccc" } )
+        {
+            stage( publisher.prepare( true ), name + "-primary.xml.gz" );
+            publisher.publish();
+            Thread.sleep( 5 );
+        }
+
+        assertThat( new File( repoDir, "repodata/aaa-primary.xml.gz" ).exists(), is( false ) );
+        assertThat( new File( repoDir, "repodata/bbb-primary.xml.gz" ).exists(), is( true ) );
+        assertThat( new File( repoDir, "repodata/ccc-primary.xml.gz" ).exists(), is( true ) );
+    }
+
+    @Test
+    public void shouldNotReplaceFilesReferencedByCurrentGeneration()
+        throws Exception
+    {
+        final RepodataPublisher publisher = new RepodataPublisher( repoDir, workDir, 1, 60000, 0 );
+        stage( publisher.prepare( false ), "primary.xml.gz" );
+        publisher.publish();
+
+        final File staging = publisher.prepare( true );
+        FileUtils.writeStringToFile( new File( staging, "repodata/primary.xml.gz" ), "changed" );
+        try
+        {
+            publisher.publish();
+            fail( "Expected IOException" );
+        }
+        catch ( IOException e )
+        {
+            // expected
+        }
+
+        assertThat(
+            FileUtils.readFileToString( new File( repoDir, "repodata/primary.xml.gz" ) ), is( "primary.xml.gz" )
+        );
+    }
+
+    private File repomd()
+    {
+        return new File( repoDir, "repodata/repomd.xml" );
+    }
+
+    private static void stage( final File stagingDir, final String primaryName )
+        throws Exception
+    {
+        FileUtils.writeStringToFile( new File( stagingDir, "repodata/" + primaryName ), primaryName );
+        FileUtils.writeStringToFile(
+            new File( stagingDir, "repodata/repomd.xml" ),
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<repomd xmlns=\"http://linux.duke.edu/metadata/repo\">\n"
+                + "  <data type=\"primary\">\n"
+                + "    <location href=\"repodata/" + primaryName + "\"/>\n"
+                + "  </data>\n"
+                + "</repomd>\n"
+        );
+    }
+
+}
@@ -13,6 +13,7 @@
 package org.sonatype.nexus.yum.internal;
 
 import static java.io.File.pathSeparator;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertThat;
 
@@ -140,6 +141,33 @@ public class RpmListWriterTest
         assertThat( rpmListFile, not( FileMatchers.contains( pathSeparator ) ) );
     }
 
+    @Test
+    public void shouldLookUpVersionSpecificRpmsInVersionIndex()
+        throws Exception
+    {
+        final File rpmListFile = writeRpmListFile( rpmsDir(), NO_VERSION );
+        final File versionedListFile = new File( testIndex.getDirectory(), "package-list-1.3.txt" );
+        final VersionIndex versionIndex = new VersionIndex();
+        versionIndex.add( REPO_ID, "/test-artifact/1.3/not-existing-anymore.rpm" );
+
+        new RpmListWriter(
+            REPO_ID,
+            rpmsDir(),
+            NO_ADDED_FILE,
+            "1.3",
+            true,
+            listFileFactory( rpmListFile, versionedListFile ),
+            new RpmScanner( new SerialScanner() ),
+            ExternalSorter.megabytes( ExternalSorter.DEFAULT_MEMORY ),
+            versionIndex
+        ).writeList();
+
+        assertThat(
+            versionedListFile, FileMatchers.containsOnly( "test-artifact/1.3/test-artifact-1.3-1.noarch.rpm\n" )
+        );
+        assertThat( versionIndex.get( REPO_ID, "2.2-2" ).size(), is( 1 ) );
+    }
+
     private File writeRpmListFile( final File rpmsDir, final String version )
         throws IOException
     {
@@ -159,6 +187,11 @@ public class RpmListWriterTest
     }
 
     private ListFileFactory listFileFactory( final File file )
+    {
+        return listFileFactory( file, file );
+    }
+
+    private ListFileFactory listFileFactory( final File file, final File versionedFile )
     {
         return new ListFileFactory()
         {
@@ -171,7 +204,7 @@ public class RpmListWriterTest
             @Override
             public File getRpmListFile( String id, String version )
             {
-                return file;
+                return versionedFile;
             }
         };
     }
@@ -0,0 +1,67 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.sonatype.nexus.yum.internal.RpmVersionComparator.rpmvercmp;
+
+import org.junit.Test;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class RpmVersionComparatorTest
+    extends TestSupport
+{
+
+    @Test
+    public void shouldCompareVersionsAsRpmDoes()
+    {
+        assertThat( rpmvercmp( "1.0", "1.0" ), is( 0 ) );
+        assertThat( rpmvercmp( "1.0", "2.0" ), is( -1 ) );
+        assertThat( rpmvercmp( "1.10", "1.9" ), is( 1 ) );
+        assertThat( rpmvercmp( "2.0.1", "2.0" ), is( 1 ) );
+        assertThat( rpmvercmp( "2.0.1a", "2.0.1" ), is( 1 ) );
+        assertThat( rpmvercmp( "5.5p1", "5.5p2" ), is( -1 ) );
+        assertThat( rpmvercmp( "5.5p10", "5.5p2" ), is( 1 ) );
+        assertThat( rpmvercmp( "10xyz", "10.1xyz" ), is( -1 ) );
+        assertThat( rpmvercmp( "xyz10", "xyz10.1" ), is( -1 ) );
+        assertThat( rpmvercmp( "1.0", "1.0a" ), is( -1 ) );
+        assertThat( rpmvercmp( "1.0a", "1.0.1" ), is( -1 ) );
+        assertThat( rpmvercmp( "2a", "2.0" ), is( -1 ) );
+        assertThat( rpmvercmp( "1.01", "1.1" ), is( 0 ) );
+        assertThat( rpmvercmp( "1.0_1", "1.0.1" ), is( 0 ) );
+        assertThat( rpmvercmp( "1.0~rc1", "1.0" ), is( -1 ) );
+        assertThat( rpmvercmp( "1.0~rc1", "1.0~rc2" ), is( -1 ) );
+        assertThat( rpmvercmp( "1.0~rc1~git123", "1.0~rc1" ), is( -1 ) );
+        assertThat( rpmvercmp( "1.0^", "1.0" ), is( 1 ) );
+        assertThat( rpmvercmp( "1.0^git1", "1.0.1" ), is( -1 ) );
+        assertThat( rpmvercmp( "1.0^git1", "1.0~rc1" ), is( 1 ) );
+    }
+
+    @Test
+    public void shouldOrderRpmFileNamesByVersionAndRelease()
+    {
+        final RpmVersionComparator underTest = RpmVersionComparator.INSTANCE;
+
+        assertThat( underTest.compare( "foo-1.10-1.noarch.rpm", "foo-1.9-1.noarch.rpm" ), greaterThan( 0 ) );
+        assertThat( underTest.compare( "foo-1.9-10.noarch.rpm", "foo-1.9-9.noarch.rpm" ), greaterThan( 0 ) );
+        assertThat(
+            underTest.compare( "foo-bar-2.0-1.x86_64.rpm", "foo-bar-2.0~beta-1.x86_64.rpm" ), greaterThan( 0 )
+        );
+        assertThat( underTest.compare( "foo-1.0-1.noarch.rpm", "foo-1.0-1.x86_64.rpm" ), lessThan( 0 ) );
+        assertThat( underTest.compare( "foo.rpm", "foo.rpm" ), is( 0 ) );
+    }
+
+}
@@ -15,6 +15,7 @@ package org.sonatype.nexus.yum.internal;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -30,6 +31,8 @@ import org.sonatype.nexus.proxy.ResourceStoreRequest;
 import org.sonatype.nexus.proxy.access.Action;
 import org.sonatype.nexus.proxy.item.StorageFileItem;
 import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.yum.internal.metrics.RepositoryMetrics;
+import org.sonatype.nexus.yum.internal.metrics.YumMetrics;
 import org.sonatype.sisu.litmus.testsupport.TestSupport;
 
 public class SteadyLinksRequestProcessorTest
@@ -41,10 +44,18 @@ public class SteadyLinksRequestProcessorTest
     @Mock
     private Repository repository;
 
+    @Mock
+    private YumMetrics metrics;
+
+    @Mock
+    private RepositoryMetrics repositoryMetrics;
+
     @Before
     public void prepareRepository()
         throws Exception
     {
+        when( repository.getId() ).thenReturn( "repo" );
+        when( metrics.get( "repo" ) ).thenReturn( repositoryMetrics );
         when( repository.retrieveItem( Mockito.any( ResourceStoreRequest.class ) ) ).thenReturn(
             mock( StorageFileItem.class )
         );
@@ -55,13 +66,13 @@ public class SteadyLinksRequestProcessorTest
     {
         final ResourceStoreRequest request = mock( ResourceStoreRequest.class );
 
-        new SteadyLinksRequestProcessor().process(
+        new SteadyLinksRequestProcessor( metrics ).process(
             mock( Repository.class ), request, Action.create
         );
-        new SteadyLinksRequestProcessor().process(
+        new SteadyLinksRequestProcessor( metrics ).process(
             mock( Repository.class ), request, Action.update
         );
-        new SteadyLinksRequestProcessor().process(
+        new SteadyLinksRequestProcessor( metrics ).process(
             mock( Repository.class ), request, Action.delete
         );
 
@@ -76,7 +87,7 @@ public class SteadyLinksRequestProcessorTest
         when( request.getRequestContext() ).thenReturn( context );
         when( request.getRequestPath() ).thenReturn( "/repodata/primary.xml.gz" );
 
-        new SteadyLinksRequestProcessor()
+        new SteadyLinksRequestProcessor( metrics )
         {
             @Override
             String matchRequestPath( final String requestPath, final InputStream repomd )
@@ -101,7 +112,7 @@ public class SteadyLinksRequestProcessorTest
         when( request.getRequestContext() ).thenReturn( context );
         when( request.getRequestPath() ).thenReturn( "/foo/repodata/primary.xml.gz" );
 
-        new SteadyLinksRequestProcessor()
+        new SteadyLinksRequestProcessor( metrics )
         {
             @Override
             String matchRequestPath( final String requestPath, final InputStream repomd )
@@ -126,7 +137,7 @@ public class SteadyLinksRequestProcessorTest
         when( request.getRequestContext() ).thenReturn( context );
         when( request.getRequestPath() ).thenReturn( "/repodata/primary.xml.gz" );
 
-        new SteadyLinksRequestProcessor()
+        new SteadyLinksRequestProcessor( metrics )
         {
             @Override
             String matchRequestPath( final String requestPath, final InputStream repomd )
@@ -141,6 +152,38 @@ public class SteadyLinksRequestProcessorTest
         verify( request ).getRequestPath();
         verifyNoMoreInteractions( request );
         verifyNoMoreInteractions( context );
+        verify( repositoryMetrics ).steadyLinkMiss();
+    }
+
+    @Test
+    public void shouldNotCountRequestOfUniqueNameAsMiss()
+    {
+        final ResourceStoreRequest request = mock( ResourceStoreRequest.class );
+        when( request.getRequestPath() ).thenReturn(
+            "/repodata/e7eca98287b407a55151df2535d0bc03a2d5b3bc-primary.xml.gz"
+        );
+
+        new SteadyLinksRequestProcessor( metrics )
+        {
+            @Override
+            String matchRequestPath( final String requestPath, final InputStream repomd )
+            {
+                return null;
+            }
+        }.process(
+            repository, request, Action.read
+        );
+
+        verify( repositoryMetrics, never() ).steadyLinkMiss();
+    }
+
+    @Test
+    public void shouldTellUniqueNames()
+    {
+        final String checksum = "e7eca98287b407a55151df2535d0bc03a2d5b3bc";
+        assertThat( SteadyLinksRequestProcessor.isUnique( "/foo/repodata/" + checksum + "-other.xml.gz" ), is( true ) );
+        assertThat( SteadyLinksRequestProcessor.isUnique( "/foo/repodata/primary.xml.gz" ), is( false ) );
+        assertThat( SteadyLinksRequestProcessor.isUnique( "/foo/repodata/my-comps.xml" ), is( false ) );
     }
 
 }
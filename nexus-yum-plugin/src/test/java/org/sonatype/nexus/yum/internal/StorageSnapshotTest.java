@@ -0,0 +1,144 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+import org.sonatype.sisu.resource.scanner.scanners.SerialScanner;
+
+public class StorageSnapshotTest
+    extends TestSupport
+{
+
+    private final RpmScanner scanner = new RpmScanner( new SerialScanner() );
+
+    @Test
+    public void shouldReportAddedChangedAndRemovedRpms()
+        throws Exception
+    {
+        final File storage = util.createTempDir( "storage" );
+        final File snapshots = util.createTempDir( "snapshots" );
+        write( new File( storage, "1.0/changed-1.0-1.noarch.rpm" ), "old" );
+        write( new File( storage, "1.0/kept-1.0-1.noarch.rpm" ), "kept" );
+        write( new File( storage, "removed-1.0-1.noarch.rpm" ), "removed" );
+        final StorageSnapshot older = take( storage, new File( snapshots, "older.txt" ) );
+
+        write( new File( storage, "1.0/changed-1.0-1.noarch.rpm" ), "changed" );
+        write( new File( storage, "2.0/added-2.0-1.noarch.rpm" ), "added" );
+        new File( storage, "removed-1.0-1.noarch.rpm" ).delete();
+        final Recorder recorder = new Recorder();
+        take( storage, new File( snapshots, "newer.txt" ) ).diff( older, recorder );
+
+        assertThat( recorder.added, contains( "2.0/added-2.0-1.noarch.rpm" ) );
+        assertThat( recorder.changed, contains( "1.0/changed-1.0-1.noarch.rpm" ) );
+        assertThat( recorder.removed, contains( "removed-1.0-1.noarch.rpm" ) );
+    }
+
+    @Test
+    public void shouldReportAllRpmsAsAddedWithoutOlderSnapshot()
+        throws Exception
+    {
+        final File storage = util.createTempDir( "storage" );
+        final File snapshots = util.createTempDir( "snapshots" );
+        write( new File( storage, "b/foo-1.0-1.noarch.rpm" ), "foo" );
+        write( new File( storage, "a/bar-1.0-1.noarch.rpm" ), "bar" );
+        write( new File( storage, "a/readme.txt" ), "not an rpm" );
+        final Recorder recorder = new Recorder();
+        take( storage, new File( snapshots, "newer.txt" ) ).diff(
+            new StorageSnapshot( new File( snapshots, "missing.txt" ) ), recorder
+        );
+
+        assertThat( recorder.added, contains( "a/bar-1.0-1.noarch.rpm", "b/foo-1.0-1.noarch.rpm" ) );
+        assertThat( recorder.changed, empty() );
+        assertThat( recorder.removed, empty() );
+    }
+
+    @Test
+    public void shouldCompareLatestRpmOfEveryDirectoryWithListedRpms()
+        throws Exception
+    {
+        final File storage = util.createTempDir( "storage" );
+        final File snapshots = util.createTempDir( "snapshots" );
+        write( new File( storage, "1.0/foo-1.9-1.noarch.rpm" ), "foo" );
+        write( new File( storage, "1.0/foo-1.10-1.noarch.rpm" ), "foo" );
+        write( new File( storage, "2.0/bar-2.0-1.noarch.rpm" ), "bar" );
+        write( new File( storage, "baz-1.0-1.noarch.rpm" ), "baz" );
+        final File rpmList = new File( snapshots, "rpms.txt" );
+        write( rpmList, "1.0/foo-1.9-1.noarch.rpm\n2.0/bar-2.0-1.noarch.rpm\n3.0/gone-1.0-1.noarch.rpm\n" );
+
+        final Recorder recorder = new Recorder();
+        take( storage, new File( snapshots, "storage.txt" ) )
+            .latestPerDirectory( new File( snapshots, "latest.txt" ) )
+            .diff(
+                StorageSnapshot.listed( rpmList, new File( snapshots, "listed.txt" ), ExternalSorter.megabytes( 1 ) ),
+                recorder
+            );
+
+        assertThat( recorder.added, contains( "baz-1.0-1.noarch.rpm", "1.0/foo-1.10-1.noarch.rpm" ) );
+        assertThat( recorder.changed, empty() );
+        assertThat( recorder.removed, contains( "1.0/foo-1.9-1.noarch.rpm", "3.0/gone-1.0-1.noarch.rpm" ) );
+    }
+
+    private StorageSnapshot take( final File storage, final File file )
+        throws IOException
+    {
+        return StorageSnapshot.take( scanner, storage, file, ExternalSorter.megabytes( 1 ) );
+    }
+
+    private static void write( final File file, final String content )
+        throws IOException
+    {
+        FileUtils.writeStringToFile( file, content );
+    }
+
+    private static class Recorder
+        implements StorageSnapshot.Listener
+    {
+
+        private final List<String> added = new ArrayList<String>();
+
+        private final List<String> changed = new ArrayList<String>();
+
+        private final List<String> removed = new ArrayList<String>();
+
+        @Override
+        public void onAdded( final String location )
+        {
+            added.add( location );
+        }
+
+        @Override
+        public void onChanged( final String location )
+        {
+            changed.add( location );
+        }
+
+        @Override
+        public void onRemoved( final String location )
+        {
+            removed.add( location );
+        }
+
+    }
+
+}
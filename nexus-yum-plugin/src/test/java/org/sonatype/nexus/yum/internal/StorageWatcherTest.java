@@ -0,0 +1,201 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.yum.Yum;
+import org.sonatype.nexus.yum.YumRegistry;
+import org.sonatype.nexus.yum.internal.rpm.HeaderIndex;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+import org.sonatype.sisu.resource.scanner.scanners.SerialScanner;
+
+public class StorageWatcherTest
+    extends TestSupport
+{
+
+    private static final String REPO_ID = "releases";
+
+    private static final String SHA256 = "aefd9433a55aecfe74baa0c72c51341bb06e696cfaf2d7cbd0edf4419e6455ac";
+
+    private File storage;
+
+    private File rpmListFile;
+
+    private Yum yum;
+
+    private VersionIndex versionIndex;
+
+    private HeaderIndex headerIndex;
+
+    private StorageWatcher underTest;
+
+    @Before
+    public void prepare()
+        throws Exception
+    {
+        storage = util.createTempDir( "storage" );
+        final File temporaryDirectory = util.createTempDir( "tmp" );
+        rpmListFile = new File( temporaryDirectory, "rpms.txt" );
+        final Repository repository = mock( Repository.class );
+        when( repository.getId() ).thenReturn( REPO_ID );
+        yum = mock( Yum.class );
+        when( yum.getRepository() ).thenReturn( repository );
+        when( yum.getBaseDir() ).thenReturn( storage );
+        final YumRegistry yumRegistry = mock( YumRegistry.class );
+        when( yumRegistry.getTemporaryDirectory() ).thenReturn( temporaryDirectory );
+        when( yumRegistry.sortMemory() ).thenReturn( 1 );
+        when( yumRegistry.get( REPO_ID ) ).thenReturn( yum );
+        versionIndex = new VersionIndex();
+        headerIndex = new HeaderIndex( util.createTempDir( "index" ) );
+        underTest = new StorageWatcher(
+            yumRegistry, mock( YumExecutors.class ), new RpmScanner( new SerialScanner() ), versionIndex, headerIndex
+        );
+    }
+
+    @Test
+    public void shouldOnlyRememberStorageOnFirstScan()
+        throws Exception
+    {
+        write( "1.0/foo-1.0-1.noarch.rpm", "foo" );
+
+        assertThat( underTest.scan( yum ), is( 0 ) );
+
+        verify( yum, never() ).addToYumRepository( anyString() );
+    }
+
+    @Test
+    public void shouldAddRpmCopiedIntoStorage()
+        throws Exception
+    {
+        underTest.scan( yum );
+
+        write( "1.0/foo-1.0-1.noarch.rpm", "foo" );
+
+        assertThat( underTest.scan( yum ), is( 1 ) );
+        verify( yum ).addToYumRepository( "/1.0/foo-1.0-1.noarch.rpm" );
+        assertThat( versionIndex.contains( REPO_ID, "1.0/foo-1.0-1.noarch.rpm" ), is( true ) );
+    }
+
+    @Test
+    public void shouldDropHeaderOfChangedRpm()
+        throws Exception
+    {
+        write( "1.0/foo-1.0-1.noarch.rpm", "foo" );
+        underTest.scan( yum );
+        headerIndex.put( REPO_ID, "1.0/foo-1.0-1.noarch.rpm", SHA256 );
+
+        write( "1.0/foo-1.0-1.noarch.rpm", "changed foo" );
+
+        assertThat( underTest.scan( yum ), is( 1 ) );
+        verify( yum ).addToYumRepository( "/1.0/foo-1.0-1.noarch.rpm" );
+        assertThat( headerIndex.get( REPO_ID, "1.0/foo-1.0-1.noarch.rpm" ), is( nullValue() ) );
+    }
+
+    @Test
+    public void shouldDeleteRpmRemovedFromStorage()
+        throws Exception
+    {
+        write( "1.0/foo-1.0-1.noarch.rpm", "foo" );
+        underTest.scan( yum );
+
+        FileUtils.forceDelete( new File( storage, "1.0/foo-1.0-1.noarch.rpm" ) );
+
+        assertThat( underTest.scan( yum ), is( 1 ) );
+        verify( yum ).deleteRpm( "/1.0/foo-1.0-1.noarch.rpm" );
+    }
+
+    @Test
+    public void shouldIgnoreRpmStoredViaNexus()
+        throws Exception
+    {
+        underTest.scan( yum );
+
+        write( "1.0/foo-1.0-1.noarch.rpm", "foo" );
+        versionIndex.add( REPO_ID, "1.0/foo-1.0-1.noarch.rpm" );
+
+        assertThat( underTest.scan( yum ), is( 0 ) );
+        verify( yum, never() ).addToYumRepository( anyString() );
+    }
+
+    @Test
+    public void shouldReconcileLatestRpmOfEveryDirectory()
+        throws Exception
+    {
+        write( "1.0/foo-1.0-1.noarch.rpm", "foo" );
+        write( "1.0/foo-1.0-2.noarch.rpm", "foo" );
+        write( "2.0/bar-2.0-1.noarch.rpm", "bar" );
+        FileUtils.writeStringToFile(
+            rpmListFile, "1.0/foo-1.0-1.noarch.rpm\n2.0/bar-2.0-1.noarch.rpm\n3.0/gone-1.0-1.noarch.rpm\n"
+        );
+
+        assertThat( underTest.reconcile( yum, rpmListFile, true ), is( 2 ) );
+
+        verify( yum ).addToYumRepository( "/1.0/foo-1.0-2.noarch.rpm" );
+        verify( yum ).deleteRpm( "/3.0/gone-1.0-1.noarch.rpm" );
+        verify( yum, never() ).deleteRpm( "/1.0/foo-1.0-1.noarch.rpm" );
+        assertThat( versionIndex.contains( REPO_ID, "1.0/foo-1.0-2.noarch.rpm" ), is( true ) );
+    }
+
+    @Test
+    public void shouldReconcileAllRpmsIfNotSingleRpmPerDirectory()
+        throws Exception
+    {
+        write( "1.0/foo-1.0-1.noarch.rpm", "foo" );
+        write( "1.0/foo-1.0-2.noarch.rpm", "foo" );
+        FileUtils.writeStringToFile( rpmListFile, "1.0/foo-1.0-2.noarch.rpm\n" );
+
+        assertThat( underTest.reconcile( yum, rpmListFile, false ), is( 1 ) );
+
+        verify( yum ).addToYumRepository( "/1.0/foo-1.0-1.noarch.rpm" );
+        verify( yum, never() ).deleteRpm( anyString() );
+    }
+
+    @Test
+    public void shouldReconcileRpmsChangedSinceLastReconciliation()
+        throws Exception
+    {
+        write( "1.0/foo-1.0-1.noarch.rpm", "foo" );
+        write( "2.0/bar-2.0-1.noarch.rpm", "bar" );
+        FileUtils.writeStringToFile( rpmListFile, "1.0/foo-1.0-1.noarch.rpm\n2.0/bar-2.0-1.noarch.rpm\n" );
+        assertThat( underTest.reconcile( yum, rpmListFile, true ), is( 0 ) );
+        headerIndex.put( REPO_ID, "2.0/bar-2.0-1.noarch.rpm", SHA256 );
+
+        write( "2.0/bar-2.0-1.noarch.rpm", "changed bar" );
+
+        assertThat( underTest.reconcile( yum, rpmListFile, true ), is( 1 ) );
+        verify( yum ).addToYumRepository( "/2.0/bar-2.0-1.noarch.rpm" );
+        assertThat( headerIndex.get( REPO_ID, "2.0/bar-2.0-1.noarch.rpm" ), is( nullValue() ) );
+    }
+
+    private void write( final String location, final String content )
+        throws IOException
+    {
+        FileUtils.writeStringToFile( new File( storage, location ), content );
+    }
+
+}
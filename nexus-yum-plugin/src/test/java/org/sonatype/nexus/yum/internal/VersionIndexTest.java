@@ -0,0 +1,98 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+import org.sonatype.sisu.resource.scanner.scanners.SerialScanner;
+
+public class VersionIndexTest
+    extends TestSupport
+{
+
+    private static final String REPO_ID = "releases";
+
+    private final RpmScanner scanner = new RpmScanner( new SerialScanner() );
+
+    @Test
+    public void shouldIndexAllRpmsOfStorageOnLoad()
+        throws Exception
+    {
+        final File storage = util.createTempDir( "storage" );
+        write( new File( storage, "foo/1.0/foo-1.0-1.noarch.rpm" ) );
+        write( new File( storage, "foo/1.0/foo-1.0-2.noarch.rpm" ) );
+        write( new File( storage, "foo/1.1/foo-1.1-1.noarch.rpm" ) );
+        final VersionIndex underTest = new VersionIndex( util.createTempDir( "versions" ) );
+        underTest.add( REPO_ID, "/foo/1.0/not-existing-anymore.rpm" );
+
+        underTest.loadIfNeeded( REPO_ID, storage, scanner );
+
+        assertThat( underTest.isLoaded( REPO_ID ), is( true ) );
+        assertThat( underTest.get( REPO_ID, "1.0" ).size(), is( 2 ) );
+        assertThat( underTest.contains( REPO_ID, "foo/1.0/foo-1.0-1.noarch.rpm" ), is( true ) );
+        assertThat( underTest.contains( REPO_ID, "foo/1.0/foo-1.0-2.noarch.rpm" ), is( true ) );
+        assertThat( underTest.contains( REPO_ID, "foo/1.0/not-existing-anymore.rpm" ), is( false ) );
+    }
+
+    @Test
+    public void shouldRestorePersistedIndexAfterRestart()
+        throws Exception
+    {
+        final File storage = util.createTempDir( "storage" );
+        final File directory = util.createTempDir( "versions" );
+        write( new File( storage, "foo/1.0/foo-1.0-1.noarch.rpm" ) );
+        write( new File( storage, "foo/1.0/foo-1.0-2.noarch.rpm" ) );
+        final VersionIndex before = new VersionIndex( directory );
+        before.loadIfNeeded( REPO_ID, storage, scanner );
+        before.add( REPO_ID, "/foo/1.0/foo-1.0-3.noarch.rpm" );
+        before.remove( REPO_ID, "/foo/1.0/foo-1.0-1.noarch.rpm" );
+
+        final VersionIndex after = new VersionIndex( directory );
+
+        assertThat( after.isLoaded( REPO_ID ), is( true ) );
+        assertThat(
+            after.get( REPO_ID, "1.0" ), is( asList( "foo/1.0/foo-1.0-2.noarch.rpm", "foo/1.0/foo-1.0-3.noarch.rpm" ) )
+        );
+    }
+
+    @Test
+    public void shouldDropPersistedIndexOfRemovedRepository()
+        throws Exception
+    {
+        final File storage = util.createTempDir( "storage" );
+        final File directory = util.createTempDir( "versions" );
+        write( new File( storage, "foo/1.0/foo-1.0-1.noarch.rpm" ) );
+        new VersionIndex( directory ).loadIfNeeded( REPO_ID, storage, scanner );
+
+        new VersionIndex( directory ).removeRepository( REPO_ID );
+
+        final VersionIndex after = new VersionIndex( directory );
+        assertThat( after.isLoaded( REPO_ID ), is( false ) );
+        assertThat( after.get( REPO_ID, "1.0" ).isEmpty(), is( true ) );
+    }
+
+    private static void write( final File file )
+        throws IOException
+    {
+        FileUtils.writeStringToFile( file, file.getName() );
+    }
+
+}
@@ -0,0 +1,192 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.nexus.yum.internal.metrics.ExecutorMetrics;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class YumExecutorsTest
+    extends TestSupport
+{
+
+    private YumExecutors underTest;
+
+    @Before
+    public void createExecutors()
+    {
+        underTest = new YumExecutors();
+    }
+
+    @After
+    public void shutdownExecutors()
+    {
+        underTest.shutdown();
+    }
+
+    @Test
+    public void shouldRunTasksInNamedThreads()
+        throws Exception
+    {
+        final Callable<String> threadName = new Callable<String>()
+        {
+            @Override
+            public String call()
+            {
+                return Thread.currentThread().getName();
+            }
+        };
+        assertThat( underTest.delays().submit( threadName ).get(), startsWith( "yum-delays-" ) );
+        assertThat( underTest.io().submit( threadName ).get(), startsWith( "yum-io-" ) );
+        assertThat( underTest.cpu().submit( threadName ).get(), startsWith( "yum-cpu-" ) );
+    }
+
+    @Test
+    public void shouldResizePoolsInPlace()
+    {
+        underTest.resize( 3, 7, 2 );
+        assertThat( underTest.delays().getCorePoolSize(), is( 3 ) );
+        assertThat( metrics( "io" ).getMaximumPoolSize(), is( 7 ) );
+        assertThat( metrics( "cpu" ).getMaximumPoolSize(), is( 2 ) );
+
+        underTest.resize( 0, 1, 0 );
+        assertThat( underTest.delays().getCorePoolSize(), is( YumExecutors.DEFAULT_DELAY_THREADS ) );
+        assertThat( metrics( "io" ).getMaximumPoolSize(), is( 1 ) );
+        assertThat( metrics( "cpu" ).getMaximumPoolSize(), is( Runtime.getRuntime().availableProcessors() ) );
+    }
+
+    @Test
+    public void shouldDiscardDelayedTasksAfterShutdown()
+    {
+        underTest.shutdown();
+        final ScheduledFuture<?> future = underTest.delays().schedule( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        }, 1, SECONDS );
+        assertThat( future.isDone(), is( false ) );
+        assertThat( metrics( "delays" ).getRejectedTaskCount(), is( 1L ) );
+    }
+
+    @Test
+    public void shouldRejectCpuTasksAfterShutdown()
+    {
+        underTest.shutdown();
+        try
+        {
+            underTest.cpu().execute( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                }
+            } );
+            fail( "Expected " + RejectedExecutionException.class.getSimpleName() );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            assertThat( metrics( "cpu" ).getRejectedTaskCount(), is( 1L ) );
+            assertThat( metrics( "cpu" ).getCallerRunTaskCount(), is( 0L ) );
+        }
+    }
+
+    @Test
+    public void shouldCancelIoTasksWhenSaturated()
+        throws Exception
+    {
+        underTest.resize( 0, 1, 0 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final Runnable blocking = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    release.await();
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        Future<?> last = null;
+        try
+        {
+            // one running and a full queue
+            for ( int i = 0; i < 2000 && metrics( "io" ).getRejectedTaskCount() == 0; i++ )
+            {
+                last = underTest.io().submit( blocking );
+            }
+            assertThat( last.isCancelled(), is( true ) );
+            assertThat( metrics( "io" ).getCallerRunTaskCount(), is( 0L ) );
+        }
+        finally
+        {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void shouldExposeMetricsViaJmx()
+        throws Exception
+    {
+        underTest.io().submit( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        } ).get();
+        // task duration is recorded right after the future completed
+        for ( int i = 0; i < 50 && metrics( "io" ).getCompletedTaskCount() == 0; i++ )
+        {
+            Thread.sleep( 100 );
+        }
+        final Object count = ManagementFactory.getPlatformMBeanServer().getAttribute(
+            YumExecutors.objectName( "io" ), "CompletedTaskCount"
+        );
+        assertThat( count, is( (Object) 1L ) );
+    }
+
+    private ExecutorMetrics metrics( final String name )
+    {
+        for ( final ExecutorMetrics metrics : underTest.metrics() )
+        {
+            if ( metrics.getName().equals( name ) )
+            {
+                return metrics;
+            }
+        }
+        throw new IllegalArgumentException( name );
+    }
+
+}
@@ -22,8 +22,8 @@ import static org.mockito.Mockito.when;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -33,6 +33,7 @@ import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.rest.RepositoryURLBuilder;
 import org.sonatype.nexus.scheduling.NexusScheduler;
 import org.sonatype.nexus.yum.Yum;
+import org.sonatype.nexus.yum.internal.metrics.YumMetrics;
 import org.sonatype.nexus.yum.internal.task.GenerateMetadataTask;
 import org.sonatype.sisu.litmus.testsupport.TestSupport;
 
@@ -58,6 +59,8 @@ public class YumImplDeletionsTest
 
     private NexusScheduler nexusScheduler;
 
+    private YumExecutors executors;
+
     @Before
     public void prepareService()
         throws MalformedURLException, URISyntaxException
@@ -71,16 +74,24 @@ public class YumImplDeletionsTest
             mock( GenerateMetadataTask.class )
         );
 
+        executors = new YumExecutors();
         yum = new YumImpl(
             mock( RepositoryURLBuilder.class ),
             nexusScheduler,
-            new ScheduledThreadPoolExecutor( 10 ),
+            executors,
+            mock( YumMetrics.class ),
             repository,
             new File( util.getTargetDir(), "tmp" )
         ).setProcessDeletes( true )
             .setDeleteProcessingDelay( TIMEOUT_IN_SEC );
     }
 
+    @After
+    public void shutdownExecutors()
+    {
+        executors.shutdown();
+    }
+
     @Test
     public void shouldNotRegenerateRepositoryWithoutRpms()
         throws Exception
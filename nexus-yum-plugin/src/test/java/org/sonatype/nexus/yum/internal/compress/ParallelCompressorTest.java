@@ -0,0 +1,110 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.compress;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class ParallelCompressorTest
+    extends TestSupport
+{
+
+    private ExecutorService executor;
+
+    private ParallelCompressor underTest;
+
+    @Before
+    public void createCompressor()
+    {
+        executor = Executors.newFixedThreadPool( 4 );
+        underTest = new ParallelCompressor( executor );
+    }
+
+    @After
+    public void shutdownExecutor()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldCompressFileIntoSibling()
+        throws Exception
+    {
+        final byte[] content = createContent( 3 * 1024 * 1024 + 17 );
+        final File source = new File( util.createTempDir( "compress" ), "primary.xml" );
+        FileUtils.writeByteArrayToFile( source, content );
+
+        final File target = underTest.compress( source );
+
+        assertThat( target, is( new File( source.getParentFile(), "primary.xml.gz" ) ) );
+        assertThat( decompress( new FileInputStream( target ) ), is( content ) );
+    }
+
+    @Test
+    public void shouldCompressWrittenContent()
+        throws Exception
+    {
+        final byte[] content = createContent( 100000 );
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+        final OutputStream out = underTest.openStream( compressed );
+        out.write( content );
+        out.close();
+
+        assertThat( decompress( new ByteArrayInputStream( compressed.toByteArray() ) ), is( content ) );
+    }
+
+    private byte[] decompress( final InputStream compressed )
+        throws IOException
+    {
+        try
+        {
+            return IOUtils.toByteArray( new GZIPInputStream( compressed ) );
+        }
+        finally
+        {
+            IOUtils.closeQuietly( compressed );
+        }
+    }
+
+    private byte[] createContent( final int size )
+    {
+        final Random random = new Random( size );
+        final byte[] content = new byte[size];
+        for ( int i = 0; i < size; i++ )
+        {
+            content[i] = (byte) ( 'a' + random.nextInt( 8 ) );
+        }
+        return content;
+    }
+
+}
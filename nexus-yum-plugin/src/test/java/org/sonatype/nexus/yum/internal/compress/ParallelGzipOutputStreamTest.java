@@ -0,0 +1,128 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.compress;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class ParallelGzipOutputStreamTest
+    extends TestSupport
+{
+
+    private static final int BLOCK_SIZE = 4096;
+
+    private ExecutorService executor;
+
+    @Before
+    public void createExecutor()
+    {
+        executor = Executors.newFixedThreadPool( 4 );
+    }
+
+    @After
+    public void shutdownExecutor()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldBeReadableByStandardDecoder()
+        throws Exception
+    {
+        final byte[] content = createContent( BLOCK_SIZE * 10 + 17 );
+
+        final byte[] compressed = compress( content, BLOCK_SIZE, 2 );
+
+        assertThat( decompress( compressed ), is( content ) );
+    }
+
+    @Test
+    public void shouldKeepOrderOfBlocksWithManyPendingBlocks()
+        throws Exception
+    {
+        final byte[] content = createContent( BLOCK_SIZE * 50 );
+
+        final byte[] compressed = compress( content, BLOCK_SIZE, 64 );
+
+        assertThat( decompress( compressed ), is( content ) );
+    }
+
+    @Test
+    public void shouldWriteValidGzipForEmptyStream()
+        throws Exception
+    {
+        final byte[] compressed = compress( new byte[0], BLOCK_SIZE, 2 );
+
+        assertThat( decompress( compressed ).length, is( 0 ) );
+    }
+
+    @Test
+    public void shouldCompressInCallingThreadWhenExecutorIsShutdown()
+        throws Exception
+    {
+        executor.shutdown();
+        final byte[] content = createContent( BLOCK_SIZE * 3 );
+
+        assertThat( decompress( compress( content, BLOCK_SIZE, 2 ) ), is( content ) );
+    }
+
+    private byte[] compress( final byte[] content, final int blockSize, final int maxPendingBlocks )
+        throws IOException
+    {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        final OutputStream out = new ParallelGzipOutputStream(
+            compressed, executor, blockSize, maxPendingBlocks, Deflater.BEST_SPEED
+        );
+        // write in odd sized chunks to cross block boundaries
+        for ( int i = 0; i < content.length; i += 1000 )
+        {
+            out.write( content, i, Math.min( 1000, content.length - i ) );
+        }
+        out.close();
+        return compressed.toByteArray();
+    }
+
+    private byte[] decompress( final byte[] compressed )
+        throws IOException
+    {
+        return IOUtils.toByteArray( new GZIPInputStream( new ByteArrayInputStream( compressed ) ) );
+    }
+
+    private byte[] createContent( final int size )
+    {
+        final Random random = new Random( size );
+        final byte[] content = new byte[size];
+        for ( int i = 0; i < size; i++ )
+        {
+            content[i] = (byte) ( 'a' + random.nextInt( 8 ) );
+        }
+        return content;
+    }
+
+}
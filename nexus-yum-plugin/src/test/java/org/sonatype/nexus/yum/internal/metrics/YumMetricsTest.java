@@ -0,0 +1,119 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.metrics;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.sonatype.scheduling.TaskState.RUNNING;
+import static org.sonatype.scheduling.TaskState.SUBMITTED;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.nexus.scheduling.NexusScheduler;
+import org.sonatype.nexus.yum.internal.task.GenerateMetadataTask;
+import org.sonatype.scheduling.ScheduledTask;
+import org.sonatype.scheduling.TaskState;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class YumMetricsTest
+    extends TestSupport
+{
+
+    private static final String REPO_ID = "metrics-repo";
+
+    private NexusScheduler nexusScheduler;
+
+    private YumMetrics underTest;
+
+    @Before
+    public void createMetrics()
+    {
+        nexusScheduler = mock( NexusScheduler.class );
+        underTest = new YumMetrics( nexusScheduler );
+    }
+
+    @Test
+    public void shouldExposeMetricsViaJmx()
+        throws Exception
+    {
+        final RepositoryMetrics metrics = underTest.get( REPO_ID );
+        metrics.generated( 100, 3 );
+        metrics.generated( 300, 2 );
+        metrics.steadyLinkHit();
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = YumMetrics.objectName( REPO_ID );
+        assertThat( server.getAttribute( name, "GenerationCount" ), is( (Object) 2L ) );
+        assertThat( server.getAttribute( name, "GenerationMaxMillis" ), is( (Object) 300L ) );
+        assertThat( server.getAttribute( name, "PackagesProcessed" ), is( (Object) 5L ) );
+        assertThat( server.getAttribute( name, "SteadyLinkHits" ), is( (Object) 1L ) );
+
+        underTest.remove( REPO_ID );
+        assertThat( server.isRegistered( name ), is( false ) );
+    }
+
+    @Test
+    public void shouldCountOnlyPendingTasksOfRepository()
+    {
+        final Map<String, List<ScheduledTask<?>>> activeTasks = new HashMap<String, List<ScheduledTask<?>>>();
+        final List<ScheduledTask<?>> tasks = new ArrayList<ScheduledTask<?>>();
+        tasks.add( scheduledTask( REPO_ID, SUBMITTED ) );
+        tasks.add( scheduledTask( REPO_ID, SUBMITTED ) );
+        tasks.add( scheduledTask( REPO_ID, RUNNING ) );
+        tasks.add( scheduledTask( "other-repo", SUBMITTED ) );
+        activeTasks.put( GenerateMetadataTask.ID, tasks );
+        when( nexusScheduler.getActiveTasks() ).thenReturn( activeTasks );
+
+        assertThat( underTest.get( REPO_ID ).getPendingTasks(), is( 2 ) );
+        underTest.remove( REPO_ID );
+    }
+
+    @Test
+    public void shouldRetainMostRecentTimelines()
+    {
+        final RepositoryMetrics metrics = underTest.get( REPO_ID );
+        for ( int i = 0; i < RepositoryMetrics.MAX_TIMELINES + 5; i++ )
+        {
+            metrics.record( new Timeline( REPO_ID, String.valueOf( i ) ).end( "list", i, -1 ).succeeded() );
+        }
+
+        final List<Timeline> timelines = metrics.timelines();
+        assertThat( timelines.size(), is( RepositoryMetrics.MAX_TIMELINES ) );
+        assertThat( timelines.get( 0 ).getVersion(), is( String.valueOf( RepositoryMetrics.MAX_TIMELINES + 4 ) ) );
+        assertThat( timelines.get( 0 ).getPhases().get( 0 ).getName(), is( "list" ) );
+        underTest.remove( REPO_ID );
+    }
+
+    @SuppressWarnings( { "unchecked", "rawtypes" } )
+    private ScheduledTask<?> scheduledTask( final String repositoryId, final TaskState state )
+    {
+        final GenerateMetadataTask task = mock( GenerateMetadataTask.class );
+        when( task.getRepositoryId() ).thenReturn( repositoryId );
+        final ScheduledTask<?> scheduledTask = mock( ScheduledTask.class );
+        when( scheduledTask.getTaskState() ).thenReturn( state );
+        when( scheduledTask.getTask() ).thenReturn( (Callable) task );
+        return scheduledTask;
+    }
+
+}
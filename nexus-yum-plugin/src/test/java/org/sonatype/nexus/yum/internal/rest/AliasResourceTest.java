@@ -104,7 +104,7 @@ public class AliasResourceTest
         Map<String, String> aliases = Maps.newHashMap();
         aliases.put( "foo", "bar" );
         when( yumRepositoryCapability.configuration() ).thenReturn(
-            new GenerateMetadataCapabilityConfiguration( RELEASES, aliases, true, 1 )
+            new GenerateMetadataCapabilityConfiguration( RELEASES, aliases, true, 1, true )
         );
 
         doReturn( references ).when( capabilityRegistry ).get( Mockito.<Predicate<CapabilityReference>>any() );
@@ -0,0 +1,90 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rest;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.restlet.data.MediaType;
+import org.restlet.resource.StringRepresentation;
+import org.sonatype.nexus.scheduling.NexusScheduler;
+import org.sonatype.nexus.yum.internal.YumExecutors;
+import org.sonatype.nexus.yum.internal.metrics.ExecutorMetrics;
+import org.sonatype.nexus.yum.internal.metrics.RepositoryMetrics;
+import org.sonatype.nexus.yum.internal.metrics.YumMetrics;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class MetricsResourceTest
+    extends TestSupport
+{
+
+    private static final String REPO_ID = "metrics\"resource\nrepo";
+
+    private YumMetrics metrics;
+
+    private MetricsResource underTest;
+
+    @Before
+    public void createResource()
+    {
+        metrics = new YumMetrics( mock( NexusScheduler.class ) );
+        final YumExecutors executors = mock( YumExecutors.class );
+        when( executors.metrics() ).thenReturn( Collections.<ExecutorMetrics>emptyList() );
+        underTest = new MetricsResource( metrics, executors );
+    }
+
+    @After
+    public void removeMetrics()
+    {
+        metrics.remove( REPO_ID );
+    }
+
+    @Test
+    public void shouldRenderMetricsOfRepositories()
+        throws Exception
+    {
+        final RepositoryMetrics repositoryMetrics = metrics.get( REPO_ID );
+        repositoryMetrics.generated( 100, 3 );
+        repositoryMetrics.steadyLinkMiss();
+        repositoryMetrics.mergeFailed();
+
+        final StringRepresentation representation = (StringRepresentation) underTest.get( null, null, null, null );
+
+        assertThat( representation.getMediaType(), is( MediaType.APPLICATION_JSON ) );
+        final String json = representation.getText();
+        assertThat( json, containsString( "\"repositoryId\":\"metrics\\\"resource\\nrepo\"" ) );
+        assertThat( json, containsString( "\"count\":1,\"totalMillis\":100" ) );
+        assertThat( json, containsString( "\"packagesProcessed\":3" ) );
+        assertThat( json, containsString( "\"lastMillis\":0,\"failures\":1},\"pendingTasks\"" ) );
+        assertThat( json, containsString( "\"steadyLinkMisses\":1" ) );
+        assertThat( json, containsString( "\"executors\":[]" ) );
+    }
+
+    @Test
+    public void shouldEscapeControlCharacters()
+    {
+        assertThat( MetricsResource.escape( "a\\b\"c" ), is( "a\\\\b\\\"c" ) );
+        assertThat( MetricsResource.escape( "a\tb\r\nc" ), is( "a\\tb\\r\\nc" ) );
+        assertThat( MetricsResource.escape( "a\u0000b\u001fc" ), is( "a\\u0000b\\u001fc" ) );
+        assertThat( MetricsResource.escape( "\u00e4rger" ), is( "\u00e4rger" ) );
+    }
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rest;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.restlet.data.Request;
+import org.restlet.resource.ResourceException;
+import org.restlet.resource.StringRepresentation;
+import org.sonatype.nexus.scheduling.NexusScheduler;
+import org.sonatype.nexus.yum.YumRegistry;
+import org.sonatype.nexus.yum.internal.metrics.Timeline;
+import org.sonatype.nexus.yum.internal.metrics.YumMetrics;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class TimelineResourceTest
+    extends TestSupport
+{
+
+    private static final String REPO_ID = "timeline-repo";
+
+    private YumMetrics metrics;
+
+    private TimelineResource underTest;
+
+    @Before
+    public void createResource()
+    {
+        metrics = new YumMetrics( mock( NexusScheduler.class ) );
+        final YumRegistry yumRegistry = mock( YumRegistry.class );
+        when( yumRegistry.isRegistered( REPO_ID ) ).thenReturn( true );
+        underTest = new TimelineResource( yumRegistry, metrics );
+    }
+
+    @After
+    public void removeMetrics()
+    {
+        metrics.remove( REPO_ID );
+    }
+
+    @Test( expected = ResourceException.class )
+    public void shouldThrowNotFound()
+        throws Exception
+    {
+        underTest.get( null, createRequest( "unknown" ), null, null );
+    }
+
+    @Test
+    public void shouldRenderTimelinesNewestFirst()
+        throws Exception
+    {
+        metrics.get( REPO_ID ).record( new Timeline( REPO_ID, null ).end( "createrepo" ) );
+        metrics.get( REPO_ID ).record(
+            new Timeline( REPO_ID, "1.0\t\"beta\"" ).end( "write-list", 2, -1 ).succeeded()
+        );
+
+        final String json =
+            ( (StringRepresentation) underTest.get( null, createRequest( REPO_ID ), null, null ) ).getText();
+
+        assertThat( json, containsString( "{\"repositoryId\":\"timeline-repo\",\"timelines\":[{\"version\":" ) );
+        assertThat( json, containsString( "\"version\":\"1.0\\t\\\"beta\\\"\"" ) );
+        assertThat( json, containsString( "{\"name\":\"write-list\"" ) );
+        assertThat( json, containsString( "\"packages\":2,\"bytes\":-1}" ) );
+        assertThat( json.indexOf( "write-list" ) < json.indexOf( "createrepo" ), is( true ) );
+        assertThat( json, containsString( "\"version\":null" ) );
+    }
+
+    private Request createRequest( final String repositoryId )
+    {
+        final Request request = new Request();
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        attributes.put( TimelineResource.REPOSITORY_ID_PARAM, repositoryId );
+        request.setAttributes( attributes );
+        return request;
+    }
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rpm;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class HeaderExtractorTest
+    extends TestSupport
+{
+
+    private static final String REPO_ID = "releases";
+
+    private static final String PATH = "/conflict-artifact/2.2-2/conflict-artifact-2.2-2.noarch.rpm";
+
+    private static final String SHA256 = "aefd9433a55aecfe74baa0c72c51341bb06e696cfaf2d7cbd0edf4419e6455ac";
+
+    private HeaderIndex index;
+
+    private FragmentStore store;
+
+    private HeaderExtractor underTest;
+
+    private StorageFileItem item;
+
+    private File rpm;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        rpm = util.resolveFile( "src/test/ut-resources/rpms" + PATH );
+        item = mock( StorageFileItem.class );
+        when( item.getPath() ).thenReturn( PATH );
+        final RpmChecksums checksums = mock( RpmChecksums.class );
+        when( checksums.storeSha256( item ) ).thenReturn( SHA256 );
+        index = new HeaderIndex( util.createTempDir( "index" ) );
+        store = new FragmentStore( util.createTempDir( "fragments" ) );
+        underTest = new HeaderExtractor( checksums, index, store );
+    }
+
+    @Test
+    public void shouldStoreRenderedFragmentsAndIndexChecksum()
+        throws Exception
+    {
+        assertThat( underTest.extract( REPO_ID, item, rpm ), is( SHA256 ) );
+
+        assertThat( index.get( REPO_ID, PATH ), is( SHA256 ) );
+        final FragmentStore.Entry entry = store.get( SHA256 );
+        final ByteArrayOutputStream primary = new ByteArrayOutputStream();
+        entry.writePrimary( primary, "http://localhost/", "other/location.rpm", 1234567890L );
+        assertThat( primary.toString( "UTF-8" ), containsString( "<name>conflict-artifact</name>" ) );
+        assertThat( primary.toString( "UTF-8" ), containsString( SHA256 ) );
+        assertThat( primary.toString( "UTF-8" ), containsString( "<time file=\"1234567890\" build=\"" ) );
+        assertThat(
+            primary.toString( "UTF-8" ),
+            containsString( "<location xml:base=\"http://localhost/\" href=\"other/location.rpm\"/>" )
+        );
+        final ByteArrayOutputStream other = new ByteArrayOutputStream();
+        entry.writeOther( other );
+        assertThat( other.toString( "UTF-8" ), containsString( "pkgid=\"" + SHA256 + "\"" ) );
+    }
+
+    @Test
+    public void shouldRemoveFragmentsOfDeletedDirectory()
+        throws Exception
+    {
+        underTest.extract( REPO_ID, item, rpm );
+
+        index.remove( REPO_ID, "/conflict-artifact/2.2-2" );
+
+        assertThat( index.get( REPO_ID, PATH ), is( nullValue() ) );
+    }
+
+}
@@ -0,0 +1,147 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rpm;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContainingInAnyOrder;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.nexus.yum.YumRegistry;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class HeaderIndexTest
+    extends TestSupport
+{
+
+    private static final String REPO_ID = "releases";
+
+    private static final String SHA256 = "aefd9433a55aecfe74baa0c72c51341bb06e696cfaf2d7cbd0edf4419e6455ac";
+
+    private static final String OTHER_SHA256 = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    private File directory;
+
+    @Before
+    public void createDirectory()
+        throws Exception
+    {
+        directory = util.createTempDir( "index" );
+    }
+
+    @Test
+    public void shouldRestorePersistedIndex()
+    {
+        final HeaderIndex index = new HeaderIndex( directory );
+        index.put( REPO_ID, "/foo/1.0/foo-1.0.noarch.rpm", SHA256 );
+        index.put( REPO_ID, "/foo/1.1/foo-1.1.noarch.rpm", SHA256 );
+        index.put( REPO_ID, "/bar/1.0/bar-1.0.noarch.rpm", SHA256 );
+        index.put( REPO_ID, "/bar/1.0/bar-1.0.noarch.rpm", OTHER_SHA256 );
+        index.remove( REPO_ID, "/foo/1.0" );
+
+        final HeaderIndex restored = new HeaderIndex( directory );
+
+        assertThat( restored.get( REPO_ID ), is( index.get( REPO_ID ) ) );
+        assertThat( restored.get( REPO_ID, "/foo/1.1/foo-1.1.noarch.rpm" ), is( SHA256 ) );
+        assertThat( restored.get( REPO_ID, "/bar/1.0/bar-1.0.noarch.rpm" ), is( OTHER_SHA256 ) );
+        assertThat( restored.get( REPO_ID, "/foo/1.0/foo-1.0.noarch.rpm" ), is( nullValue() ) );
+    }
+
+    @Test
+    public void shouldKeepCompleteRecordsOfPartiallyWrittenIndex()
+        throws Exception
+    {
+        final HeaderIndex index = new HeaderIndex( directory );
+        index.put( REPO_ID, "/foo/1.0/foo-1.0.noarch.rpm", SHA256 );
+        index.put( REPO_ID, "/foo/1.1/foo-1.1.noarch.rpm", SHA256 );
+        final RandomAccessFile records = new RandomAccessFile( new File( directory, REPO_ID + ".records" ), "rw" );
+        try
+        {
+            records.setLength( records.length() - PackageIndexFile.RECORD_SIZE / 2 );
+        }
+        finally
+        {
+            records.close();
+        }
+
+        final HeaderIndex restored = new HeaderIndex( directory );
+
+        assertThat( restored.get( REPO_ID ).size(), is( 1 ) );
+        assertThat( restored.get( REPO_ID, "/foo/1.0/foo-1.0.noarch.rpm" ), is( SHA256 ) );
+        restored.put( REPO_ID, "/foo/1.2/foo-1.2.noarch.rpm", SHA256 );
+        assertThat( new HeaderIndex( directory ).get( REPO_ID ).size(), is( 2 ) );
+    }
+
+    @Test
+    public void shouldCompactIndexOfFrequentlyChangedRpms()
+    {
+        final HeaderIndex index = new HeaderIndex( directory );
+        for ( int i = 0; i < 10000; i++ )
+        {
+            index.put( REPO_ID, "/foo/1.0/foo-1.0.noarch.rpm", i % 2 == 0 ? SHA256 : OTHER_SHA256 );
+        }
+
+        assertThat(
+            new File( directory, REPO_ID + ".records" ).length() < 10000L * PackageIndexFile.RECORD_SIZE, is( true )
+        );
+        assertThat( new HeaderIndex( directory ).get( REPO_ID, "/foo/1.0/foo-1.0.noarch.rpm" ), is( OTHER_SHA256 ) );
+    }
+
+    @Test
+    public void shouldOnlyReferenceChecksumsOfRegisteredRepositories()
+    {
+        final HeaderIndex index = new HeaderIndex( directory );
+        index.put( REPO_ID, "/foo/1.0/foo-1.0.noarch.rpm", SHA256 );
+        index.put( "removed", "/foo/1.0/foo-1.0.noarch.rpm", OTHER_SHA256 );
+        final YumRegistry yumRegistry = mock( YumRegistry.class );
+        when( yumRegistry.isRegistered( REPO_ID ) ).thenReturn( true );
+
+        final HeaderIndex restored = new HeaderIndex( directory, yumRegistry );
+
+        assertThat( restored.persistedRepositoryIds(), containsInAnyOrder( REPO_ID, "removed" ) );
+        assertThat( restored.checksums(), contains( SHA256 ) );
+    }
+
+    @Test
+    public void shouldRenameCompactedIndexOverPersistedOne()
+    {
+        final HeaderIndex index = new HeaderIndex( directory );
+        for ( int i = 0; i < 10000; i++ )
+        {
+            index.put( REPO_ID, "/foo/1.0/foo-1.0.noarch.rpm", i % 2 == 0 ? SHA256 : OTHER_SHA256 );
+        }
+
+        assertThat( directory.list(), arrayContainingInAnyOrder( REPO_ID + ".records", REPO_ID + ".names" ) );
+    }
+
+    @Test
+    public void shouldDeletePersistedIndexOfRemovedRepository()
+    {
+        final HeaderIndex index = new HeaderIndex( directory );
+        index.put( REPO_ID, "/foo/1.0/foo-1.0.noarch.rpm", SHA256 );
+
+        index.removeRepository( REPO_ID );
+
+        assertThat( new HeaderIndex( directory ).get( REPO_ID ).isEmpty(), is( true ) );
+    }
+
+}
@@ -0,0 +1,170 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rpm;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.nexus.yum.internal.RepoMD;
+import org.sonatype.nexus.yum.internal.YumExecutors;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class MetadataAssemblerTest
+    extends TestSupport
+{
+
+    private static final String REPO_ID = "releases";
+
+    private static final String BASE_URL = "http://localhost:8081/nexus/content/repositories/releases";
+
+    private static final String RPM_1 = "conflict-artifact/2.2-1/conflict-artifact-2.2-1.noarch.rpm";
+
+    private static final String RPM_2 = "conflict-artifact/2.2-2/conflict-artifact-2.2-2.noarch.rpm";
+
+    private YumExecutors executors;
+
+    private File fragments;
+
+    private FragmentStore store;
+
+    private HeaderIndex index;
+
+    private MetadataAssembler underTest;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        executors = new YumExecutors();
+        fragments = util.createTempDir( "fragments" );
+        store = new FragmentStore( fragments );
+        index = new HeaderIndex( util.createTempDir( "index" ) );
+        final RpmChecksums checksums = mock( RpmChecksums.class );
+        underTest = new MetadataAssembler(
+            store, index, new HeaderExtractor( checksums, index, store ), checksums, executors
+        );
+    }
+
+    @After
+    public void shutdownExecutors()
+    {
+        executors.shutdown();
+    }
+
+    @Test
+    public void shouldAssembleMetadataOfListedRpms()
+        throws Exception
+    {
+        final File outputDir = util.createTempDir( "assembled" );
+
+        final int count = underTest.assemble(
+            REPO_ID, null, util.resolveFile( "src/test/ut-resources/rpms" ), listOf( RPM_1, RPM_2 ), BASE_URL,
+            outputDir
+        );
+
+        assertThat( count, is( 2 ) );
+        assertThat( new File( outputDir, "repodata/.packages.txt" ).exists(), is( false ) );
+        final RepoMD repomd = new RepoMD( new File( outputDir, "repodata/repomd.xml" ) );
+        assertThat( repomd.getLocations().size(), is( 3 ) );
+        assertThat( repomd.getPrimaryLocation(), startsWith( "repodata/" ) );
+        final String primary = gunzip( new File( outputDir, repomd.getPrimaryLocation() ) );
+        assertThat( primary, containsString( "packages=\"2\"" ) );
+        assertThat( primary, containsString( "<location xml:base=\"" + BASE_URL + "\" href=\"" + RPM_2 + "\"/>" ) );
+        assertThat( primary, containsString( "<version epoch=\"0\" ver=\"2.2\" rel=\"1\"/>" ) );
+        assertThat( gunzip( new File( outputDir, repomd.getLocation( "other" ) ) ), containsString( "</otherdata>" ) );
+    }
+
+    @Test
+    public void shouldReuseStoredFragmentsForSameRpmAtOtherLocation()
+        throws Exception
+    {
+        final File rpmDir = util.createTempDir( "rpms" );
+        FileUtils.copyFile(
+            util.resolveFile( "src/test/ut-resources/rpms/" + RPM_2 ), new File( rpmDir, "copy/copy.rpm" )
+        );
+        new File( rpmDir, "copy/copy.rpm" ).setLastModified( 1234567890000L );
+        underTest.assemble(
+            REPO_ID, null, util.resolveFile( "src/test/ut-resources/rpms" ), listOf( RPM_2 ), null,
+            util.createTempDir( "first" )
+        );
+
+        final File outputDir = util.createTempDir( "second" );
+        underTest.assemble( "other", null, rpmDir, listOf( "copy/copy.rpm" ), null, outputDir );
+
+        final RepoMD repomd = new RepoMD( new File( outputDir, "repodata/repomd.xml" ) );
+        final String primary = gunzip( new File( outputDir, repomd.getPrimaryLocation() ) );
+        assertThat( primary, containsString( "<location href=\"copy/copy.rpm\"/>" ) );
+        assertThat( primary, containsString( "<name>conflict-artifact</name>" ) );
+        assertThat( primary, containsString( "<time file=\"1234567890\"" ) );
+    }
+
+    @Test
+    public void shouldDeleteFragmentsOfRpmsNoLongerIndexed()
+        throws Exception
+    {
+        underTest.assemble(
+            REPO_ID, null, util.resolveFile( "src/test/ut-resources/rpms" ), listOf( RPM_1, RPM_2 ), null,
+            util.createTempDir( "assembled" )
+        );
+        final String removed = index.get( REPO_ID, RPM_1 );
+        final String kept = index.get( REPO_ID, RPM_2 );
+        index.remove( REPO_ID, RPM_1 );
+
+        assertThat( underTest.collectGarbage(), is( 0 ) );
+
+        for ( final File file : FileUtils.listFiles( fragments, null, true ) )
+        {
+            file.setLastModified( System.currentTimeMillis() - 60000 );
+        }
+
+        assertThat( underTest.collectGarbage(), is( 1 ) );
+        assertThat( store.contains( removed ), is( false ) );
+        assertThat( store.contains( kept ), is( true ) );
+    }
+
+    private File listOf( final String... locations )
+        throws Exception
+    {
+        final File list = new File( util.createTempDir( "list" ), "rpms.txt" );
+        FileUtils.writeLines( list, "UTF-8", Arrays.asList( locations ), "\n" );
+        return list;
+    }
+
+    private String gunzip( final File file )
+        throws Exception
+    {
+        final GZIPInputStream in = new GZIPInputStream( new FileInputStream( file ) );
+        try
+        {
+            return IOUtils.toString( in, "UTF-8" );
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rpm;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class PackageTableTest
+    extends TestSupport
+{
+
+    private static final String SHA256 = "aefd9433a55aecfe74baa0c72c51341bb06e696cfaf2d7cbd0edf4419e6455ac";
+
+    private static final String OTHER_SHA256 = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    private final PackageTable underTest = new PackageTable();
+
+    @Test
+    public void shouldMapLocationToChecksum()
+    {
+        underTest.put( "foo/1.0/foo-1.0.noarch.rpm", SHA256 );
+        underTest.put( "foo.rpm", OTHER_SHA256 );
+
+        assertThat( underTest.get( "foo/1.0/foo-1.0.noarch.rpm" ), is( SHA256 ) );
+        assertThat( underTest.get( "foo.rpm" ), is( OTHER_SHA256 ) );
+        assertThat( underTest.get( "foo/1.0/foo-1.0.noarch.rpm.sha1" ), is( nullValue() ) );
+        assertThat( underTest.get( "foo/1.0" ), is( nullValue() ) );
+        assertThat( underTest.get( "bar/1.0/foo-1.0.noarch.rpm" ), is( nullValue() ) );
+        assertThat( underTest.size(), is( 2 ) );
+    }
+
+    @Test
+    public void shouldReplaceChecksumOfSameLocation()
+    {
+        underTest.put( "foo/1.0/foo-1.0.noarch.rpm", SHA256 );
+        underTest.put( "foo/1.0/foo-1.0.noarch.rpm", OTHER_SHA256 );
+
+        assertThat( underTest.get( "foo/1.0/foo-1.0.noarch.rpm" ), is( OTHER_SHA256 ) );
+        assertThat( underTest.size(), is( 1 ) );
+    }
+
+    @Test
+    public void shouldRemoveLocationsBelowDirectory()
+    {
+        underTest.put( "foo/1.0/foo-1.0.noarch.rpm", SHA256 );
+        underTest.put( "foo/1.1/foo-1.1.noarch.rpm", SHA256 );
+        underTest.put( "foobar/1.0/foobar-1.0.noarch.rpm", SHA256 );
+
+        assertThat( underTest.removeDirectory( "foo/" ), is( 2 ) );
+        assertThat( underTest.remove( "foobar/1.0/foobar-1.0.noarch.rpm" ), is( true ) );
+        assertThat( underTest.remove( "foobar/1.0/foobar-1.0.noarch.rpm" ), is( false ) );
+        assertThat( underTest.size(), is( 0 ) );
+        assertThat( underTest.toMap().isEmpty(), is( true ) );
+    }
+
+    @Test
+    public void shouldMatchMapAfterRandomChanges()
+    {
+        final Random random = new Random( 42 );
+        final Map<String, String> expected = new HashMap<String, String>();
+        for ( int i = 0; i < 20000; i++ )
+        {
+            final int id = random.nextInt( 2000 );
+            final String location = "group" + id % 7 + "/artifact" + id + "/1." + id % 3 + "/artifact" + id + ".rpm";
+            if ( random.nextInt( 3 ) == 0 )
+            {
+                expected.remove( location );
+                underTest.remove( location );
+            }
+            else
+            {
+                final String checksum = random.nextBoolean() ? SHA256 : OTHER_SHA256;
+                expected.put( location, checksum );
+                underTest.put( location, checksum );
+            }
+        }
+
+        assertThat( underTest.toMap(), is( expected ) );
+        assertThat( underTest.size(), is( expected.size() ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void shouldRejectNonSha256Checksums()
+    {
+        underTest.put( "foo.rpm", "da39a3ee5e6b4b0d3255bfef95601890afd80709" );
+    }
+
+}
@@ -0,0 +1,105 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rpm;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.attributes.AttributeStorage;
+import org.sonatype.nexus.proxy.attributes.Attributes;
+import org.sonatype.nexus.proxy.attributes.AttributesHandler;
+import org.sonatype.nexus.proxy.item.RepositoryItemUid;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class RpmChecksumsTest
+    extends TestSupport
+{
+
+    private static final String SHA256_OF_FOO = "2c26b46b68ffc68ff99b453c1d30413413422d706483bfa0f98a5e886266e7ae";
+
+    @Mock
+    private StorageFileItem item;
+
+    @Mock
+    private Attributes attributes;
+
+    @Mock
+    private AttributesHandler attributesHandler;
+
+    private Repository repository;
+
+    @Before
+    public void prepareItem()
+        throws Exception
+    {
+        repository = mock( Repository.class );
+        when( repository.getAttributesHandler() ).thenReturn( attributesHandler );
+        final RepositoryItemUid uid = mock( RepositoryItemUid.class );
+        when( uid.getRepository() ).thenReturn( repository );
+        when( item.getRepositoryItemUid() ).thenReturn( uid );
+        when( item.getRepositoryItemAttributes() ).thenReturn( attributes );
+        when( item.getInputStream() ).thenReturn( new ByteArrayInputStream( "foo".getBytes( "UTF-8" ) ) );
+    }
+
+    @Test
+    public void shouldReuseDigestCalculatedByNexus()
+        throws Exception
+    {
+        when( attributes.get( "digest.sha1" ) ).thenReturn( "stored-sha1" );
+
+        assertThat( new RpmChecksums().checksum( item, "sha" ), is( "stored-sha1" ) );
+        verify( item, never() ).getInputStream();
+    }
+
+    @Test
+    public void shouldCalculateAndPersistSha256Once()
+        throws Exception
+    {
+        assertThat( new RpmChecksums().checksum( item, RpmChecksums.SHA256 ), is( SHA256_OF_FOO ) );
+        verify( attributes ).put( RpmChecksums.SHA256_ATTRIBUTE, SHA256_OF_FOO );
+        verify( attributesHandler ).storeAttributes( item );
+
+        when( attributes.get( RpmChecksums.SHA256_ATTRIBUTE ) ).thenReturn( SHA256_OF_FOO );
+        assertThat( new RpmChecksums().storeSha256( item ), is( SHA256_OF_FOO ) );
+        verify( item ).getInputStream();
+    }
+
+    @Test
+    public void shouldReadStoredSha256WithoutRetrievingItem()
+        throws Exception
+    {
+        final RepositoryItemUid uid = mock( RepositoryItemUid.class );
+        final AttributeStorage attributeStorage = mock( AttributeStorage.class );
+        when( repository.createUid( "/foo.rpm" ) ).thenReturn( uid );
+        when( attributesHandler.getAttributeStorage() ).thenReturn( attributeStorage );
+        when( attributeStorage.getAttributes( uid ) ).thenReturn( attributes );
+        when( attributes.get( RpmChecksums.SHA256_ATTRIBUTE ) ).thenReturn( SHA256_OF_FOO );
+
+        assertThat( new RpmChecksums().storedSha256( repository, "/foo.rpm" ), is( SHA256_OF_FOO ) );
+        verify( repository, never() ).retrieveItem( any( ResourceStoreRequest.class ) );
+    }
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rpm;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class RpmHeaderReaderTest
+    extends TestSupport
+{
+
+    private static final String RPMS = "src/test/ut-resources/rpms/conflict-artifact/";
+
+    private static final String RPM = RPMS + "2.2-2/conflict-artifact-2.2-2.noarch.rpm";
+
+    @Test
+    public void shouldReadHeaderTags()
+        throws Exception
+    {
+        final RpmHeader header = new RpmHeaderReader().read( util.resolveFile( RPM ) );
+
+        assertThat( header.getString( RpmHeader.NAME ), is( "conflict-artifact" ) );
+        assertThat( header.getString( RpmHeader.VERSION ), is( "2.2" ) );
+        assertThat( header.getString( RpmHeader.RELEASE ), is( "2" ) );
+        assertThat( header.getString( RpmHeader.ARCH ), is( "noarch" ) );
+    }
+
+    @Test
+    public void shouldLocateHeaderRange()
+        throws Exception
+    {
+        final File rpm = util.resolveFile( RPM );
+        final RpmHeaderReader reader = new RpmHeaderReader();
+        final RpmHeader header = reader.read( rpm );
+
+        // signature size covers main header plus payload
+        assertThat(
+            reader.getSignature().getNumber( RpmHeader.SIGNATURE_SIZE, -1 ), is( rpm.length() - header.getStart() )
+        );
+        assertThat( header.getEnd() <= rpm.length(), is( true ) );
+    }
+
+    @Test
+    public void shouldReuseReaderForSeveralFiles()
+        throws Exception
+    {
+        final RpmHeaderReader reader = new RpmHeaderReader();
+        reader.read( util.resolveFile( RPM ) );
+        final RpmHeader header = reader.read(
+            util.resolveFile( RPMS + "2.2-1/conflict-artifact-2.2-1.noarch.rpm" )
+        );
+
+        assertThat( header.getStrings( RpmHeader.RELEASE ), arrayContaining( "1" ) );
+    }
+
+    @Test( expected = IOException.class )
+    public void shouldRejectNonRpmFiles()
+        throws Exception
+    {
+        final File file = util.resolveFile( "target/not-an-rpm.rpm" );
+        FileUtils.writeStringToFile( file, FileUtils.readFileToString( util.resolveFile( "pom.xml" ) ) );
+        new RpmHeaderReader().read( file );
+    }
+
+    @Test
+    public void shouldChecksumWholeFile()
+        throws Exception
+    {
+        final File rpm = util.resolveFile( RPM );
+        assertThat(
+            new RpmHeaderReader().checksum( rpm, "SHA-256" ),
+            is( "aefd9433a55aecfe74baa0c72c51341bb06e696cfaf2d7cbd0edf4419e6455ac" )
+        );
+    }
+
+}
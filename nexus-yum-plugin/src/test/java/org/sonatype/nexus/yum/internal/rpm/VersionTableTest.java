@@ -0,0 +1,105 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.rpm;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class VersionTableTest
+    extends TestSupport
+{
+
+    private final VersionTable underTest = new VersionTable();
+
+    @Test
+    public void shouldListLocationsOfVersionInOrderAdded()
+    {
+        underTest.add( "foo/1.0/foo-1.0-2.noarch.rpm" );
+        underTest.add( "bar/1.0/bar-1.0.noarch.rpm" );
+        underTest.add( "foo/1.0/foo-1.0-1.noarch.rpm" );
+        underTest.add( "foo/1.1/foo-1.1.noarch.rpm" );
+        underTest.add( "root.rpm" );
+
+        assertThat( underTest.add( "bar/1.0/bar-1.0.noarch.rpm" ), is( false ) );
+        assertThat(
+            underTest.get( "1.0" ),
+            is( asList( "foo/1.0/foo-1.0-2.noarch.rpm", "bar/1.0/bar-1.0.noarch.rpm", "foo/1.0/foo-1.0-1.noarch.rpm" ) )
+        );
+        assertThat( underTest.get( "" ), is( asList( "root.rpm" ) ) );
+        assertThat( underTest.get( "2.0" ).isEmpty(), is( true ) );
+        assertThat( underTest.contains( "foo/1.1/foo-1.1.noarch.rpm" ), is( true ) );
+        assertThat( underTest.contains( "foo/1.1/foo-1.0.noarch.rpm" ), is( false ) );
+        assertThat( underTest.size(), is( 5 ) );
+    }
+
+    @Test
+    public void shouldRemoveLocationsBelowDirectory()
+    {
+        underTest.add( "foo/1.0/foo-1.0.noarch.rpm" );
+        underTest.add( "foo/1.1/foo-1.1.noarch.rpm" );
+        underTest.add( "foobar/1.0/foobar-1.0.noarch.rpm" );
+
+        assertThat( underTest.removeDirectory( "foo/" ), is( 2 ) );
+        assertThat( underTest.get( "1.0" ), is( asList( "foobar/1.0/foobar-1.0.noarch.rpm" ) ) );
+        assertThat( underTest.remove( "foobar/1.0/foobar-1.0.noarch.rpm" ), is( true ) );
+        assertThat( underTest.remove( "foobar/1.0/foobar-1.0.noarch.rpm" ), is( false ) );
+        assertThat( underTest.size(), is( 0 ) );
+        assertThat( underTest.get( "1.0" ).isEmpty(), is( true ) );
+    }
+
+    @Test
+    public void shouldMatchSetsAfterRandomChanges()
+    {
+        final Random random = new Random( 42 );
+        final Set<String> expected = new LinkedHashSet<String>();
+        for ( int i = 0; i < 20000; i++ )
+        {
+            final int id = random.nextInt( 2000 );
+            final String location =
+                "group" + id % 7 + "/artifact" + id % 50 + "/1." + id % 3 + "/artifact" + id + ".rpm";
+            if ( random.nextInt( 3 ) == 0 )
+            {
+                assertThat( underTest.remove( location ), is( expected.remove( location ) ) );
+            }
+            else
+            {
+                assertThat( underTest.add( location ), is( expected.add( location ) ) );
+            }
+        }
+
+        for ( final String version : new String[]{ "1.0", "1.1", "1.2" } )
+        {
+            final List<String> locations = new ArrayList<String>();
+            for ( final String location : expected )
+            {
+                if ( location.contains( "/" + version + "/" ) )
+                {
+                    locations.add( location );
+                }
+            }
+            assertThat( underTest.get( version ), is( locations ) );
+        }
+        assertThat( underTest.size(), is( expected.size() ) );
+    }
+
+}
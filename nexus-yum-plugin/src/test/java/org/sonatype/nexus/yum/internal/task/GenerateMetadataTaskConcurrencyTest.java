@@ -49,6 +49,9 @@ import org.sonatype.nexus.yum.YumRegistry;
 import org.sonatype.nexus.yum.YumRepository;
 import org.sonatype.nexus.yum.internal.RepoMD;
 import org.sonatype.nexus.yum.internal.RpmScanner;
+import org.sonatype.nexus.yum.internal.VersionIndex;
+import org.sonatype.nexus.yum.internal.metrics.YumMetrics;
+import org.sonatype.nexus.yum.internal.rpm.MetadataAssembler;
 import org.sonatype.scheduling.ScheduledTask;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
 import com.google.code.tempusfugit.temporal.Condition;
@@ -170,7 +173,10 @@ public class GenerateMetadataTaskConcurrencyTest
             yumRegistry,
             mock( RepositoryURLBuilder.class ),
             mock( RpmScanner.class ),
-            nexusScheduler
+            nexusScheduler,
+            mock( YumMetrics.class ),
+            mock( MetadataAssembler.class ),
+            new VersionIndex()
         )
         {
             @Override
@@ -12,7 +12,10 @@
  */
 package org.sonatype.nexus.yum.internal.task;
 
+import static java.io.File.pathSeparator;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
@@ -20,7 +23,9 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.sonatype.nexus.yum.internal.task.GenerateMetadataTask.ID;
 import static org.sonatype.scheduling.TaskState.RUNNING;
+import static org.sonatype.scheduling.TaskState.SUBMITTED;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -33,9 +38,13 @@ import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
 import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.rest.RepositoryURLBuilder;
 import org.sonatype.nexus.scheduling.NexusScheduler;
+import org.sonatype.nexus.yum.Yum;
 import org.sonatype.nexus.yum.YumRegistry;
 import org.sonatype.nexus.yum.YumRepository;
 import org.sonatype.nexus.yum.internal.RpmScanner;
+import org.sonatype.nexus.yum.internal.VersionIndex;
+import org.sonatype.nexus.yum.internal.metrics.YumMetrics;
+import org.sonatype.nexus.yum.internal.rpm.MetadataAssembler;
 import org.sonatype.nexus.yum.internal.support.YumNexusTestSupport;
 import org.sonatype.scheduling.DefaultScheduledTask;
 import org.sonatype.scheduling.ScheduledTask;
@@ -99,6 +108,147 @@ public class GenerateMetadataTaskSettingsTest
                                                               scheduledTask( ANOTHER_REPO, NO_VERSION, RUNNING ) ) ) );
     }
 
+    @Test
+    public void shouldKeepReservedThreadsForInteractiveTasks()
+        throws Exception
+    {
+        GenerateMetadataTask fullTask = task( REPO, NO_VERSION, 2, 1 );
+        GenerateMetadataTask versionedTask = task( REPO, VERSION, 2, 1 );
+        ScheduledTask<YumRepository> running = scheduledTask( ANOTHER_REPO, NO_VERSION, RUNNING );
+
+        assertFalse( fullTask.allowConcurrentExecution( createMap( scheduledTask( fullTask ), running ) ) );
+        assertTrue( versionedTask.allowConcurrentExecution( createMap( scheduledTask( versionedTask ), running ) ) );
+    }
+
+    @Test
+    public void shouldLetWaitingInteractiveTaskGoFirst()
+        throws Exception
+    {
+        GenerateMetadataTask fullTask = task( REPO, NO_VERSION, 2, 0 );
+        ScheduledTask<YumRepository> running = scheduledTask( ANOTHER_REPO, NO_VERSION, RUNNING );
+        ScheduledTask<YumRepository> waiting = scheduledTask( ANOTHER_REPO, VERSION, SUBMITTED );
+
+        assertFalse( fullTask.allowConcurrentExecution( createMap( scheduledTask( fullTask ), running, waiting ) ) );
+        assertTrue( fullTask.allowConcurrentExecution( createMap( scheduledTask( fullTask ), running ) ) );
+    }
+
+    @Test
+    public void shouldNotWaitForInteractiveTaskBlockedByRunningTask()
+        throws Exception
+    {
+        GenerateMetadataTask fullTask = task( REPO, NO_VERSION, 2, 0 );
+        ScheduledTask<YumRepository> running = scheduledTask( ANOTHER_REPO, VERSION, RUNNING );
+        ScheduledTask<YumRepository> waiting = scheduledTask( ANOTHER_REPO, VERSION, SUBMITTED );
+
+        assertTrue( fullTask.allowConcurrentExecution( createMap( scheduledTask( fullTask ), running, waiting ) ) );
+    }
+
+    @Test
+    public void shouldLetWaitingTaskOfLessBusyRepositoryGoFirst()
+        throws Exception
+    {
+        GenerateMetadataTask fullTask = task( REPO, NO_VERSION, 2, 0 );
+        ScheduledTask<YumRepository> running = scheduledTask( REPO, ANOTHER_VERSION, RUNNING );
+        ScheduledTask<YumRepository> waiting = scheduledTask( ANOTHER_REPO, NO_VERSION, SUBMITTED );
+
+        assertFalse( fullTask.allowConcurrentExecution( createMap( scheduledTask( fullTask ), running, waiting ) ) );
+        assertTrue( fullTask.allowConcurrentExecution( createMap( scheduledTask( fullTask ), running ) ) );
+    }
+
+    @Test
+    public void shouldNotExceedThreadLimitOfRepository()
+        throws Exception
+    {
+        final Yum yum = mock( Yum.class );
+        when( yum.maxParallelThreads() ).thenReturn( 1 );
+        when( yum.schedulingWeight() ).thenReturn( 1 );
+        final YumRegistry yumRegistry = yumRegistry( 10, 0 );
+        when( yumRegistry.get( REPO ) ).thenReturn( yum );
+
+        GenerateMetadataTask versionedTask = task( REPO, VERSION, yumRegistry );
+        assertFalse( versionedTask.allowConcurrentExecution(
+            createMap( scheduledTask( versionedTask ), scheduledTask( REPO, ANOTHER_VERSION, RUNNING ) )
+        ) );
+    }
+
+    @Test
+    public void shouldTurnSqliteDatabaseOnAndOff()
+        throws Exception
+    {
+        final YumRegistry yumRegistry = yumRegistry( 10, 0 );
+        when( yumRegistry.getTemporaryDirectory() ).thenReturn( cacheDir() );
+        final GenerateMetadataTask task = task( REPO, NO_VERSION, yumRegistry );
+        final File rpmListFile = new File( cacheDir(), "rpms.txt" );
+
+        task.setGenerateDatabase( true );
+        final String withDatabase = task.buildCreateRepositoryCommand( rpmListFile, rpmsDir() );
+        assertThat( withDatabase, containsString( " -d " ) );
+        assertThat( withDatabase, not( containsString( "--no-database" ) ) );
+
+        task.setGenerateDatabase( false );
+        final String withoutDatabase = task.buildCreateRepositoryCommand( rpmListFile, rpmsDir() );
+        assertThat( withoutDatabase, containsString( " --no-database " ) );
+        assertThat( withoutDatabase, not( containsString( " -d " ) ) );
+    }
+
+    @Test
+    public void shouldSupersedeRunningTaskOfSameRepository()
+        throws Exception
+    {
+        GenerateMetadataTask runningTask = task( REPO, NO_VERSION );
+        runningTask.setAddedFiles( "a.rpm" );
+        MockScheduledTask<YumRepository> running = scheduledTask( runningTask );
+        running.setTaskState( RUNNING );
+        GenerateMetadataTask task = task( REPO, NO_VERSION );
+        task.setAddedFiles( "b.rpm" );
+
+        assertTrue( task.allowConcurrentSubmission( createMap( running ) ) );
+        assertTrue( runningTask.isSuperseded() );
+        assertThat( task.getAddedFiles(), is( "b.rpm" + pathSeparator + "a.rpm" ) );
+    }
+
+    @Test
+    public void shouldKeepFullLaneWhenSupersedingFullTask()
+        throws Exception
+    {
+        GenerateMetadataTask runningTask = task( REPO, NO_VERSION );
+        MockScheduledTask<YumRepository> running = scheduledTask( runningTask );
+        running.setTaskState( RUNNING );
+        GenerateMetadataTask task = task( REPO, NO_VERSION );
+        task.setAddedFiles( "b.rpm" );
+
+        assertTrue( task.allowConcurrentSubmission( createMap( running ) ) );
+        assertTrue( runningTask.isSuperseded() );
+        assertThat( task.getLane(), is( Lane.FULL ) );
+    }
+
+    @Test
+    public void shouldKeepFullLaneWhenSupersedingIncrementalTask()
+        throws Exception
+    {
+        GenerateMetadataTask runningTask = task( REPO, NO_VERSION );
+        runningTask.setAddedFiles( "a.rpm" );
+        MockScheduledTask<YumRepository> running = scheduledTask( runningTask );
+        running.setTaskState( RUNNING );
+        GenerateMetadataTask task = task( REPO, NO_VERSION );
+
+        assertTrue( task.allowConcurrentSubmission( createMap( running ) ) );
+        assertTrue( runningTask.isSuperseded() );
+        assertThat( task.getLane(), is( Lane.FULL ) );
+    }
+
+    @Test
+    public void shouldNotSupersedeRunningVersionedTask()
+        throws Exception
+    {
+        GenerateMetadataTask runningTask = task( REPO, VERSION );
+        MockScheduledTask<YumRepository> running = scheduledTask( runningTask );
+        running.setTaskState( RUNNING );
+
+        assertTrue( task( REPO, VERSION ).allowConcurrentSubmission( createMap( running ) ) );
+        assertFalse( runningTask.isSuperseded() );
+    }
+
     @Test
     public void shouldSetDefaultsForRepoParams()
         throws Exception
@@ -110,7 +260,10 @@ public class GenerateMetadataTaskSettingsTest
             mock( YumRegistry.class ),
             mock( RepositoryURLBuilder.class ),
             mock( RpmScanner.class ),
-            mock( NexusScheduler.class )
+            mock( NexusScheduler.class ),
+            mock( YumMetrics.class ),
+            mock( MetadataAssembler.class ),
+            new VersionIndex()
         );
         task.setRpmDir( rpmsDir().getAbsolutePath() );
         task.setRpmUrl( RPM_URL );
@@ -132,7 +285,10 @@ public class GenerateMetadataTaskSettingsTest
             mock( YumRegistry.class ),
             repositoryURLBuilder(),
             mock( RpmScanner.class ),
-            mock( NexusScheduler.class )
+            mock( NexusScheduler.class ),
+            mock( YumMetrics.class ),
+            mock( MetadataAssembler.class ),
+            new VersionIndex()
         );
         task.setRepositoryId( REPO );
         // when
@@ -181,17 +337,35 @@ public class GenerateMetadataTaskSettingsTest
     }
 
     private GenerateMetadataTask task( String repo, String version )
+    {
+        return task( repo, version, YumRegistry.DEFAULT_MAX_NUMBER_PARALLEL_THREADS, 0 );
+    }
+
+    private GenerateMetadataTask task( String repo, String version, int maxThreads, int interactiveReservedThreads )
+    {
+        return task( repo, version, yumRegistry( maxThreads, interactiveReservedThreads ) );
+    }
+
+    private YumRegistry yumRegistry( int maxThreads, int interactiveReservedThreads )
     {
         final YumRegistry yumRegistry = mock( YumRegistry.class );
-        when( yumRegistry.maxNumberOfParallelThreads() ).thenReturn( YumRegistry.DEFAULT_MAX_NUMBER_PARALLEL_THREADS );
+        when( yumRegistry.maxNumberOfParallelThreads() ).thenReturn( maxThreads );
+        when( yumRegistry.interactiveReservedThreads() ).thenReturn( interactiveReservedThreads );
+        return yumRegistry;
+    }
 
+    private GenerateMetadataTask task( String repo, String version, YumRegistry yumRegistry )
+    {
         GenerateMetadataTask task = new GenerateMetadataTask(
             mock( EventBus.class ),
             mock( RepositoryRegistry.class ),
             yumRegistry,
             mock( RepositoryURLBuilder.class ),
             mock( RpmScanner.class ),
-            mock( NexusScheduler.class )
+            mock( NexusScheduler.class ),
+            mock( YumMetrics.class ),
+            mock( MetadataAssembler.class ),
+            new VersionIndex()
         )
         {
 
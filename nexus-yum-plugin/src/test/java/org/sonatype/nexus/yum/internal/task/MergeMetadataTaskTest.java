@@ -13,7 +13,10 @@
 package org.sonatype.nexus.yum.internal.task;
 
 import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -21,20 +24,30 @@ import static org.sonatype.nexus.yum.internal.task.MergeMetadataTask.ID;
 import static org.sonatype.scheduling.TaskState.RUNNING;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.zip.GZIPInputStream;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.sonatype.nexus.proxy.repository.GroupRepository;
 import org.sonatype.nexus.proxy.repository.HostedRepository;
 import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.proxy.repository.RepositoryKind;
+import org.sonatype.nexus.scheduling.NexusScheduler;
+import org.sonatype.nexus.yum.Yum;
+import org.sonatype.nexus.yum.YumRegistry;
+import org.sonatype.nexus.yum.YumRepository;
+import org.sonatype.nexus.yum.internal.RepoMD;
 import org.sonatype.nexus.yum.internal.support.IgnoreOn;
 import org.sonatype.nexus.yum.internal.support.OsTestRule;
+import org.sonatype.nexus.yum.internal.metrics.YumMetrics;
 import org.sonatype.nexus.yum.internal.support.YumNexusTestSupport;
 import org.sonatype.scheduling.ScheduledTask;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
@@ -56,19 +69,59 @@ public class MergeMetadataTaskTest
         throws Exception
     {
         final GroupRepository group = givenGroupWithTwoYumEnabledRepositories();
+        final YumRegistry yumRegistry = mock( YumRegistry.class );
+        when( yumRegistry.getTemporaryDirectory() ).thenReturn( cacheDir() );
 
-        final MergeMetadataTask task = new MergeMetadataTask( mock( EventBus.class ) );
+        final MergeMetadataTask task = new MergeMetadataTask(
+            mock( EventBus.class ), yumRegistry, new YumMetrics( mock( NexusScheduler.class ) )
+        );
         task.setGroupRepository( group );
         task.doRun();
 
         assertThatYumMetadataAreTheSame( repositoryDir( group.getId() ), "group-repo" );
     }
 
+    @Test
+    @IgnoreOn( "mac" )
+    public void shouldPublishChangedGroupRepoAgain()
+        throws Exception
+    {
+        final File changingRepoDir = new File( util.createTempDir( "repos" ), "changing" );
+        FileUtils.copyDirectory( testData.resolveFile( "repo2" ), changingRepoDir );
+        final GroupRepository group = mock( GroupRepository.class );
+        when( group.getId() ).thenReturn( testName.getMethodName() );
+        when( group.getLocalUrl() ).thenReturn( repositoryDir( testName.getMethodName() ).getAbsolutePath() );
+        final List<Repository> repositories = asList(
+            createRepositoryWithYumMetadata( "repo1" ), createRepositoryWithYumMetadata( "changing", changingRepoDir )
+        );
+        when( group.getMemberRepositories() ).thenReturn( repositories );
+        final YumRegistry yumRegistry = mock( YumRegistry.class );
+        when( yumRegistry.getTemporaryDirectory() ).thenReturn( cacheDir() );
+
+        mergeMetadata( group, yumRegistry );
+        final String firstPrimaryLocation = primaryLocationOf( group );
+        FileUtils.deleteDirectory( new File( changingRepoDir, "repodata" ) );
+        FileUtils.copyDirectory( testData.resolveFile( "repo1/repodata" ), new File( changingRepoDir, "repodata" ) );
+        mergeMetadata( group, yumRegistry );
+        final String secondPrimaryLocation = primaryLocationOf( group );
+
+        assertThat( secondPrimaryLocation, not( is( firstPrimaryLocation ) ) );
+        assertThat( new File( repositoryDir( group.getId() ), firstPrimaryLocation ).isFile(), is( true ) );
+        assertThat(
+            IOUtils.toString( new GZIPInputStream(
+                new FileInputStream( new File( repositoryDir( group.getId() ), secondPrimaryLocation ) )
+            ) ),
+            not( containsString( "koloriegel" ) )
+        );
+    }
+
     @Test
     public void shouldNotAllowConcurrentExecutionForSameRepo()
         throws Exception
     {
-        final MergeMetadataTask task = new MergeMetadataTask( mock( EventBus.class ) );
+        final MergeMetadataTask task = new MergeMetadataTask(
+            mock( EventBus.class ), mock( YumRegistry.class ), mock( YumMetrics.class )
+        );
         final GroupRepository group = mock( GroupRepository.class );
         when( group.getId() ).thenReturn( GROUP_ID_1 );
         task.setGroupRepository( group );
@@ -79,7 +132,9 @@ public class MergeMetadataTaskTest
     public void shouldNotAllowConcurrentExecutionIfAnotherTaskIsRunning()
         throws Exception
     {
-        final MergeMetadataTask task = new MergeMetadataTask( mock( EventBus.class ) );
+        final MergeMetadataTask task = new MergeMetadataTask(
+            mock( EventBus.class ), mock( YumRegistry.class ), mock( YumMetrics.class )
+        );
         final GroupRepository group1 = mock( GroupRepository.class );
         when( group1.getId() ).thenReturn( GROUP_ID_1 );
         final GroupRepository group2 = mock( GroupRepository.class );
@@ -88,6 +143,52 @@ public class MergeMetadataTaskTest
         assertThat( task.allowConcurrentExecution( createRunningTaskForGroups( group2 ) ), is( false ) );
     }
 
+    @Test
+    public void shouldTurnSqliteDatabaseOnAndOff()
+        throws Exception
+    {
+        final Yum yum = mock( Yum.class );
+        final YumRegistry yumRegistry = mock( YumRegistry.class );
+        when( yumRegistry.get( GROUP_ID_1 ) ).thenReturn( yum );
+        final MergeMetadataTask task = new MergeMetadataTask(
+            mock( EventBus.class ), yumRegistry, mock( YumMetrics.class )
+        );
+        final GroupRepository group = mock( GroupRepository.class );
+        when( group.getId() ).thenReturn( GROUP_ID_1 );
+        task.setGroupRepository( group );
+        final List<File> members = asList( testData.resolveFile( "repo1" ), testData.resolveFile( "repo2" ) );
+
+        when( yum.shouldGenerateDatabase() ).thenReturn( true );
+        final String withDatabase = task.buildCommand( cacheDir(), members );
+        assertThat( withDatabase, startsWith( "mergerepo --nogroups -d --repo=" ) );
+        assertThat( withDatabase, not( containsString( "--no-database" ) ) );
+
+        when( yum.shouldGenerateDatabase() ).thenReturn( false );
+        final String withoutDatabase = task.buildCommand( cacheDir(), members );
+        assertThat( withoutDatabase, startsWith( "mergerepo --nogroups --no-database --repo=" ) );
+        assertThat( withoutDatabase, not( containsString( " -d " ) ) );
+    }
+
+    private void mergeMetadata( final GroupRepository group, final YumRegistry yumRegistry )
+        throws Exception
+    {
+        final MergeMetadataTask task = new MergeMetadataTask(
+            mock( EventBus.class ), yumRegistry, new YumMetrics( mock( NexusScheduler.class ) )
+        );
+        task.setGroupRepository( group );
+        task.doRun();
+    }
+
+    private String primaryLocationOf( final GroupRepository group )
+    {
+        final String location = new RepoMD(
+            new File( repositoryDir( group.getId() ), YumRepository.PATH_OF_REPOMD_XML )
+        ).getPrimaryLocation();
+        assertThat( location, startsWith( "repodata/" ) );
+        assertThat( location, not( is( "repodata/primary.xml.gz" ) ) );
+        return location;
+    }
+
     private Map<String, List<ScheduledTask<?>>> createRunningTaskForGroups( final GroupRepository... groups )
     {
         final Map<String, List<ScheduledTask<?>>> map = new HashMap<String, List<ScheduledTask<?>>>();
@@ -128,10 +229,15 @@ public class MergeMetadataTaskTest
     }
 
     private Repository createRepositoryWithYumMetadata( final String repositoryId )
+    {
+        return createRepositoryWithYumMetadata( repositoryId, testData.resolveFile( repositoryId ) );
+    }
+
+    private Repository createRepositoryWithYumMetadata( final String repositoryId, final File repositoryDir )
     {
         final Repository repository = mock( Repository.class );
         when( repository.getId() ).thenReturn( repositoryId );
-        when( repository.getLocalUrl() ).thenReturn( testData.resolveFile( repositoryId ).getAbsolutePath() );
+        when( repository.getLocalUrl() ).thenReturn( repositoryDir.getAbsolutePath() );
         final RepositoryKind kind = mock( RepositoryKind.class );
         when( kind.isFacetAvailable( HostedRepository.class ) ).thenReturn( true );
         when( repository.getRepositoryKind() ).thenReturn( kind );
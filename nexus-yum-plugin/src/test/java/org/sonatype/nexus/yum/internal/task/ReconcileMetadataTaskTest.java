@@ -0,0 +1,100 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.task;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sonatype.scheduling.TaskState.RUNNING;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.sonatype.nexus.yum.Yum;
+import org.sonatype.nexus.yum.YumRegistry;
+import org.sonatype.nexus.yum.internal.StorageWatcher;
+import org.sonatype.scheduling.ScheduledTask;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class ReconcileMetadataTaskTest
+    extends TestSupport
+{
+
+    private static final String REPO_ID = "releases";
+
+    private final YumRegistry yumRegistry = mock( YumRegistry.class );
+
+    private final StorageWatcher storageWatcher = mock( StorageWatcher.class );
+
+    @Test
+    public void shouldPassSingleRpmPerDirectoryToReconciliation()
+        throws Exception
+    {
+        final Yum yum = mock( Yum.class );
+        final File temporaryDirectory = util.createTempDir( "tmp" );
+        when( yumRegistry.get( REPO_ID ) ).thenReturn( yum );
+        when( yumRegistry.getTemporaryDirectory() ).thenReturn( temporaryDirectory );
+        final File rpmListFile = GenerateMetadataTask.getRpmListFile( temporaryDirectory, REPO_ID );
+        FileUtils.writeStringToFile( rpmListFile, "foo-1.0-1.noarch.rpm\n" );
+        final ReconcileMetadataTask task = task( REPO_ID );
+        assertThat( task.isSingleRpmPerDirectory(), is( true ) );
+        task.setSingleRpmPerDirectory( false );
+
+        task.doRun();
+
+        verify( storageWatcher ).reconcile( yum, rpmListFile, false );
+    }
+
+    @Test
+    public void shouldNotRunWhileMetadataOfSameRepositoryIsGenerated()
+    {
+        final Map<String, List<ScheduledTask<?>>> activeTasks = runningGenerationOf( REPO_ID );
+
+        assertThat( task( REPO_ID ).allowConcurrentExecution( activeTasks ), is( false ) );
+        assertThat( task( "other" ).allowConcurrentExecution( activeTasks ), is( true ) );
+    }
+
+    private ReconcileMetadataTask task( final String repositoryId )
+    {
+        final ReconcileMetadataTask task = new ReconcileMetadataTask(
+            mock( EventBus.class ), yumRegistry, storageWatcher
+        );
+        task.setRepositoryId( repositoryId );
+        return task;
+    }
+
+    @SuppressWarnings( { "unchecked" } )
+    private Map<String, List<ScheduledTask<?>>> runningGenerationOf( final String repositoryId )
+    {
+        final GenerateMetadataTask generation = mock( GenerateMetadataTask.class );
+        when( generation.getRepositoryId() ).thenReturn( repositoryId );
+        final ScheduledTask<?> scheduledTask = mock( ScheduledTask.class );
+        when( scheduledTask.getTaskState() ).thenReturn( RUNNING );
+        when( scheduledTask.getTask() ).thenReturn( (Callable) generation );
+        final List<ScheduledTask<?>> tasks = new ArrayList<ScheduledTask<?>>();
+        tasks.add( scheduledTask );
+        final Map<String, List<ScheduledTask<?>>> activeTasks = new HashMap<String, List<ScheduledTask<?>>>();
+        activeTasks.put( GenerateMetadataTask.ID, tasks );
+        return activeTasks;
+    }
+
+}
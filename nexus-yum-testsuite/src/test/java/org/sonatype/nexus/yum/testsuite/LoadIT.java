@@ -0,0 +1,201 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.testsuite;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.sonatype.nexus.client.core.subsystem.content.Location.repositoryLocation;
+import static org.sonatype.nexus.yum.testsuite.client.MetadataType.PRIMARY_XML;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonatype.nexus.client.core.subsystem.repository.GroupRepository;
+import org.sonatype.nexus.client.core.subsystem.repository.Repository;
+import org.sonatype.nexus.yum.testsuite.support.IgnoreOn;
+import org.sonatype.nexus.yum.testsuite.support.Latencies;
+import org.sonatype.nexus.yum.testsuite.support.OsTestRule;
+import org.sonatype.nexus.yum.testsupport.RpmRepositoryGenerator;
+
+/**
+ * Deploys synthetic rpms concurrently while yum clients read versioned, group and steady link metadata, reporting
+ * deploy to visible latency percentiles and read throughput. Size of the scenario can be changed via system
+ * properties {@code it.yum.load.rpms}, {@code it.yum.load.deployers} and {@code it.yum.load.readers}.
+ *
+ * @since 3.0
+ */
+public class LoadIT
+    extends YumITSupport
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger( LoadIT.class );
+
+    private static final int RPMS = Integer.getInteger( "it.yum.load.rpms", 50 );
+
+    private static final int DEPLOYERS = Integer.getInteger( "it.yum.load.deployers", 4 );
+
+    private static final int READERS = Integer.getInteger( "it.yum.load.readers", 4 );
+
+    private static final long VISIBILITY_TIMEOUT = TimeUnit.MINUTES.toMillis( 5 );
+
+    @Rule
+    public OsTestRule osTestRule = new OsTestRule();
+
+    public LoadIT( final String nexusBundleCoordinates )
+    {
+        super( nexusBundleCoordinates );
+    }
+
+    @Test
+    @IgnoreOn( "mac" )
+    public void shouldServeMetadataWhileDeployingConcurrently()
+        throws Exception
+    {
+        final File rpmsDir = testIndex().getDirectory( "rpms" );
+        final List<File> rpms = new RpmRepositoryGenerator( rpmsDir )
+            .withArtifacts( RPMS + 2 )
+            .withVersionsPerArtifact( 1 )
+            .generate();
+
+        final Repository repo1 = createYumEnabledRepository( repositoryIdForTest( "1" ) );
+        final Repository repo2 = createYumEnabledRepository( repositoryIdForTest( "2" ) );
+        final GroupRepository group = createYumEnabledGroupRepository( repositoryIdForTest(), repo1.id(), repo2.id() );
+
+        // seed both members, so versioned and group metadata exist before readers start
+        deploy( repo1.id(), rpmsDir, rpms.get( 0 ) );
+        deploy( repo2.id(), rpmsDir, rpms.get( 1 ) );
+        waitForNexusToSettleDown();
+        final String version = rpms.get( 0 ).getParentFile().getName();
+
+        final AtomicBoolean deploying = new AtomicBoolean( true );
+        final AtomicInteger failedReads = new AtomicInteger();
+        final Latencies reads = new Latencies();
+        final Latencies deployToVisible = new Latencies();
+
+        final ExecutorService readers = Executors.newFixedThreadPool( READERS );
+        for ( int i = 0; i < READERS; i++ )
+        {
+            final File target = new File( testIndex().getDirectory( "reads" ), "primary-" + i + ".xml.gz" );
+            readers.submit( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    int next = 0;
+                    while ( deploying.get() )
+                    {
+                        final long start = System.currentTimeMillis();
+                        try
+                        {
+                            switch ( next++ % 3 )
+                            {
+                                case 0:
+                                    repodata().getMetadata( repo1.id(), version, PRIMARY_XML, String.class );
+                                    break;
+                                case 1:
+                                    repodata().getMetadata( group.id(), PRIMARY_XML, String.class );
+                                    break;
+                                default:
+                                    content().download(
+                                        repositoryLocation( repo2.id(), "repodata/primary.xml.gz" ), target
+                                    );
+                            }
+                            reads.record( System.currentTimeMillis() - start );
+                        }
+                        catch ( Exception e )
+                        {
+                            failedReads.incrementAndGet();
+                            LOG.warn( "Read failed: {}", e.getMessage() );
+                        }
+                    }
+                }
+            } );
+        }
+
+        final long loadStart = System.currentTimeMillis();
+        final ExecutorService deployers = Executors.newFixedThreadPool( DEPLOYERS );
+        final List<Future<Void>> deploys = new ArrayList<Future<Void>>();
+        for ( int i = 2; i < rpms.size(); i++ )
+        {
+            final Repository repository = i % 2 == 0 ? repo1 : repo2;
+            final File rpm = rpms.get( i );
+            deploys.add( deployers.submit( new Callable<Void>()
+            {
+                @Override
+                public Void call()
+                    throws Exception
+                {
+                    final long start = System.currentTimeMillis();
+                    deploy( repository.id(), rpmsDir, rpm );
+                    waitUntilVisible( repository, rpm.getParentFile().getParentFile().getName() );
+                    deployToVisible.record( System.currentTimeMillis() - start );
+                    return null;
+                }
+            } ) );
+        }
+        try
+        {
+            for ( final Future<Void> deploy : deploys )
+            {
+                deploy.get();
+            }
+        }
+        finally
+        {
+            deploying.set( false );
+            deployers.shutdownNow();
+            readers.shutdown();
+            readers.awaitTermination( 1, TimeUnit.MINUTES );
+        }
+        final long loadMillis = Math.max( 1, System.currentTimeMillis() - loadStart );
+
+        LOG.info( "Deployed {} rpms with {} deployers and {} readers in {}ms", RPMS, DEPLOYERS, READERS, loadMillis );
+        LOG.info( "Deploy to visible latency: {}", deployToVisible );
+        LOG.info( "Read latency: {}", reads );
+        LOG.info(
+            "Read throughput: {} reads/s, {} failed reads", reads.count() * 1000L / loadMillis, failedReads.get()
+        );
+
+        assertThat( deployToVisible.count(), is( RPMS ) );
+        assertThat( failedReads.get(), is( 0 ) );
+    }
+
+    private void waitUntilVisible( final Repository repository, final String name )
+        throws Exception
+    {
+        final long timeout = System.currentTimeMillis() + VISIBILITY_TIMEOUT;
+        while ( System.currentTimeMillis() < timeout )
+        {
+            final String primaryXml = repodata().getMetadata( repository.id(), PRIMARY_XML, String.class );
+            if ( primaryXml.contains( "<name>" + name + "</name>" ) )
+            {
+                return;
+            }
+            Thread.sleep( 200 );
+        }
+        throw new AssertionError( "Rpm " + name + " did not become visible in " + repository.id() );
+    }
+
+}
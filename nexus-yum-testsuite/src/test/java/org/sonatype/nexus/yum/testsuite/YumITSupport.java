@@ -12,11 +12,13 @@
  */
 package org.sonatype.nexus.yum.testsuite;
 
+import static org.sonatype.nexus.client.core.subsystem.content.Location.repositoryLocation;
 import static org.sonatype.nexus.testsuite.support.ParametersLoaders.firstAvailableTestParameters;
 import static org.sonatype.nexus.testsuite.support.ParametersLoaders.systemTestParameters;
 import static org.sonatype.nexus.testsuite.support.ParametersLoaders.testParameters;
 import static org.sonatype.sisu.goodies.common.Varargs.$;
 
+import java.io.File;
 import java.util.Collection;
 
 import org.junit.runners.Parameterized;
@@ -108,6 +110,18 @@ public class YumITSupport
         capabilities().create( MergeMetadataCapability.class ).withRepository( repositoryId ).enable();
     }
 
+    /**
+     * Uploads an rpm into repository, using its path relative to base directory as repository path.
+     *
+     * @since 3.0
+     */
+    protected void deploy( final String repositoryId, final File baseDir, final File rpm )
+    {
+        content().upload(
+            repositoryLocation( repositoryId, baseDir.toURI().relativize( rpm.toURI() ).getPath() ), rpm
+        );
+    }
+
     protected Yum yum()
     {
         return client().getSubsystem( Yum.class );
@@ -0,0 +1,62 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.testsuite.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thread safe recorder of latencies, reporting percentiles.
+ *
+ * @since 3.0
+ */
+public class Latencies
+{
+
+    private final List<Long> millis = new ArrayList<Long>();
+
+    public synchronized void record( final long latencyInMillis )
+    {
+        millis.add( latencyInMillis );
+    }
+
+    public synchronized int count()
+    {
+        return millis.size();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return latency in milliseconds below which given percentage of recorded latencies are, -1 if none recorded
+     */
+    public synchronized long percentile( final double percentile )
+    {
+        if ( millis.isEmpty() )
+        {
+            return -1;
+        }
+        final List<Long> sorted = new ArrayList<Long>( millis );
+        Collections.sort( sorted );
+        final int index = (int) Math.ceil( percentile / 100 * sorted.size() ) - 1;
+        return sorted.get( Math.max( 0, Math.min( index, sorted.size() - 1 ) ) );
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "count=" + count() + ", p50=" + percentile( 50 ) + "ms, p90=" + percentile( 90 ) + "ms, p99="
+            + percentile( 99 ) + "ms, max=" + percentile( 100 ) + "ms";
+    }
+
+}
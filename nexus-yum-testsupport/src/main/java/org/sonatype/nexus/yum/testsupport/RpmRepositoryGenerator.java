@@ -0,0 +1,168 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.testsupport;
+
+import static org.freecompany.redline.header.Os.LINUX;
+import static org.freecompany.redline.header.RpmType.BINARY;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.freecompany.redline.Builder;
+import org.freecompany.redline.header.Architecture;
+
+/**
+ * Generates a repository of valid RPMs with varied names, versions, architectures and file lists, laid out in Maven
+ * style version directories: {@code <group path>/<artifactId>/<version>/<artifactId>-<version>.rpm}.
+ * <p/>
+ * Generation is deterministic for a given seed, so repositories of any size can be recreated offline.
+ *
+ * @since 3.0
+ */
+public class RpmRepositoryGenerator
+{
+
+    private static final String[] GROUPS = { "org/example/core", "org/example/tools", "com/acme/web", "com/acme/db" };
+
+    private static final String[] NAMES = { "server", "client", "agent", "common", "utils", "config", "docs", "api" };
+
+    private static final Architecture[] ARCHITECTURES = {
+        Architecture.NOARCH, Architecture.NOARCH, Architecture.X86_64, Architecture.I386
+    };
+
+    private final File baseDir;
+
+    private int artifacts = 100;
+
+    private int versionsPerArtifact = 3;
+
+    private int minFilesPerRpm = 1;
+
+    private int maxFilesPerRpm = 10;
+
+    private long seed = 0;
+
+    public RpmRepositoryGenerator( final File baseDir )
+    {
+        this.baseDir = baseDir;
+    }
+
+    public RpmRepositoryGenerator withArtifacts( final int artifacts )
+    {
+        this.artifacts = artifacts;
+        return this;
+    }
+
+    public RpmRepositoryGenerator withVersionsPerArtifact( final int versionsPerArtifact )
+    {
+        this.versionsPerArtifact = versionsPerArtifact;
+        return this;
+    }
+
+    public RpmRepositoryGenerator withFilesPerRpm( final int min, final int max )
+    {
+        this.minFilesPerRpm = min;
+        this.maxFilesPerRpm = max;
+        return this;
+    }
+
+    public RpmRepositoryGenerator withSeed( final long seed )
+    {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @return generated RPM files, {@code artifacts * versionsPerArtifact} of them
+     */
+    public List<File> generate()
+        throws IOException
+    {
+        final Random random = new Random( seed );
+        final List<File> rpms = new ArrayList<File>( artifacts * versionsPerArtifact );
+        final File contentDir = new File( baseDir, ".content" );
+        try
+        {
+            for ( int artifact = 0; artifact < artifacts; artifact++ )
+            {
+                final String group = GROUPS[artifact % GROUPS.length];
+                final String artifactId = NAMES[random.nextInt( NAMES.length )] + "-" + artifact;
+                final Architecture architecture = ARCHITECTURES[random.nextInt( ARCHITECTURES.length )];
+                final int major = 1 + random.nextInt( 3 );
+                for ( int version = 0; version < versionsPerArtifact; version++ )
+                {
+                    final String versionString = major + "." + version + "." + random.nextInt( 20 );
+                    final File versionDir = new File( baseDir, group + "/" + artifactId + "/" + versionString );
+                    rpms.add( createRpm( artifactId, versionString, architecture, versionDir, contentDir, random ) );
+                }
+            }
+        }
+        finally
+        {
+            FileUtils.deleteQuietly( contentDir );
+        }
+        return rpms;
+    }
+
+    private File createRpm( final String name,
+                            final String version,
+                            final Architecture architecture,
+                            final File versionDir,
+                            final File contentDir,
+                            final Random random )
+        throws IOException
+    {
+        final Builder builder = new Builder();
+        builder.setPackage( name, version, "1" );
+        builder.setPlatform( architecture, LINUX );
+        builder.setType( BINARY );
+        builder.setVendor( "Sonatype" );
+        builder.setGroup( "Applications/System" );
+        builder.setPackager( "nexus-yum-testsupport" );
+        builder.setBuildHost( "localhost" );
+        builder.setLicense( "EPL" );
+        builder.setSummary( "Synthetic package " + name );
+        builder.setDescription( "Synthetic package " + name + " " + version + " generated for testing" );
+        builder.setSourceRpm( name + "-" + version + "-1.src.rpm" );
+
+        try
+        {
+            final int files = minFilesPerRpm + random.nextInt( maxFilesPerRpm - minFilesPerRpm + 1 );
+            for ( int i = 0; i < files; i++ )
+            {
+                final File content = new File( contentDir, name + "-" + version + "-" + i + ".txt" );
+                FileUtils.writeStringToFile( content, name + " " + version + " file " + i + " " + random.nextLong() );
+                builder.addFile( "/usr/share/" + name + "/file-" + i + ".txt", content );
+            }
+
+            versionDir.mkdirs();
+            final File built = new File( versionDir, builder.build( versionDir ) );
+            final File rpm = new File( versionDir, name + "-" + version + ".rpm" );
+            if ( !built.renameTo( rpm ) )
+            {
+                throw new IOException( "Could not rename " + built + " to " + rpm );
+            }
+            return rpm;
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IOException( "Could not create RPM " + name + "-" + version, e );
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.testsupport;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class RpmRepositoryGeneratorTest
+    extends TestSupport
+{
+
+    private static final int RPM_MAGIC = 0xedabeedb;
+
+    private File baseDir;
+
+    @Before
+    public void cleanBaseDir()
+        throws Exception
+    {
+        baseDir = util.resolveFile( "target/synthetic-repository" );
+        FileUtils.deleteDirectory( baseDir );
+    }
+
+    @Test
+    public void shouldGenerateRpmsInVersionDirectories()
+        throws Exception
+    {
+        final List<File> rpms = new RpmRepositoryGenerator( baseDir )
+            .withArtifacts( 5 )
+            .withVersionsPerArtifact( 2 )
+            .withFilesPerRpm( 1, 3 )
+            .generate();
+
+        assertThat( rpms, hasSize( 10 ) );
+        for ( final File rpm : rpms )
+        {
+            final String version = rpm.getParentFile().getName();
+            final String artifactId = rpm.getParentFile().getParentFile().getName();
+            assertThat( rpm.getName(), is( artifactId + "-" + version + ".rpm" ) );
+            assertThat( readMagic( rpm ), is( RPM_MAGIC ) );
+        }
+        assertThat( new File( baseDir, ".content" ).exists(), is( false ) );
+    }
+
+    @Test
+    public void shouldGenerateSameLayoutForSameSeed()
+        throws Exception
+    {
+        final List<File> first = new RpmRepositoryGenerator( new File( baseDir, "first" ) ).withSeed( 42 ).generate();
+        final List<File> second = new RpmRepositoryGenerator( new File( baseDir, "second" ) ).withSeed( 42 ).generate();
+
+        assertThat( second, hasSize( first.size() ) );
+        for ( int i = 0; i < first.size(); i++ )
+        {
+            assertThat(
+                second.get( i ).getAbsolutePath().replace( "second", "first" ), is( first.get( i ).getAbsolutePath() )
+            );
+        }
+    }
+
+    private static int readMagic( final File rpm )
+        throws Exception
+    {
+        final DataInputStream in = new DataInputStream( new FileInputStream( rpm ) );
+        try
+        {
+            return in.readInt();
+        }
+        finally
+        {
+            IOUtils.closeQuietly( in );
+        }
+    }
+
+}